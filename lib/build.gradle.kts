@@ -10,14 +10,57 @@ repositories {
     mavenCentral()
 }
 
+// Vector API code, compiled against the incubator module and shipped in the main jar.
+// PackUtils loads it reflectively and falls back to scalar loops when the module is absent.
+val vector: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+}
+
+// JMH benchmarks, run with ./gradlew :lib:jmh (JMH options go in --args)
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output + vector.output
+}
+
+sourceSets.test {
+    runtimeClasspath += vector.output
+}
+
 dependencies {
     testImplementation(platform(libs.junit.bom))
     testImplementation(libs.junit.jupiter)
     testRuntimeOnly(libs.junit.launcher)
+
+    "jmhImplementation"(libs.jmh.core)
+    "jmhAnnotationProcessor"(libs.jmh.generator)
+}
+
+val incubatorVector = listOf("--add-modules", "jdk.incubator.vector")
+
+tasks.named<JavaCompile>(vector.compileJavaTaskName) {
+    options.compilerArgs.addAll(incubatorVector)
+}
+
+tasks.jar {
+    from(vector.output)
+}
+
+tasks.named<Jar>("sourcesJar") {
+    from(vector.allJava)
 }
 
 tasks.test {
     useJUnitPlatform()
+    // Exercise the vector path; BulkCodecTest compares it with the scalar one
+    jvmArgs(incubatorVector)
+}
+
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks."
+    group = "verification"
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    jvmArgs(incubatorVector)
 }
 
 tasks.javadoc {
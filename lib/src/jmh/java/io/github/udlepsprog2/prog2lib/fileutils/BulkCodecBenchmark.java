@@ -0,0 +1,112 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+
+/**
+ * Compares the scalar and the {@code jdk.incubator.vector} bulk codecs behind
+ * {@link PackUtils#packInts(int[], int, int, byte[], int)} and friends, one
+ * call converting {@code length} elements.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class BulkCodecBenchmark {
+
+    @Param({"scalar", "vector"})
+    public String codec;
+
+    @Param({"16", "1024", "65536"})
+    public int length;
+
+    private BulkCodec bulk;
+    private byte[] buffer;
+    private int[] ints;
+    private long[] longs;
+    private float[] floats;
+    private double[] doubles;
+
+    @Setup
+    public void setup() {
+        bulk = codec.equals("scalar") ? ScalarBulkCodec.INSTANCE : BulkCodec.load(BulkCodec.VECTOR_CODEC);
+        if (codec.equals("vector") && bulk == ScalarBulkCodec.INSTANCE) {
+            throw new IllegalStateException("the vector codec could not be loaded");
+        }
+        Random random = new Random(length);
+        buffer = new byte[SIZEOF_LONG * length];
+        ints = random.ints(length).toArray();
+        longs = random.longs(length).toArray();
+        floats = new float[length];
+        doubles = random.doubles(length).toArray();
+        for (int i = 0; i < length; i++) {
+            floats[i] = (float) doubles[i];
+        }
+        // Fill the whole buffer so that the unpack benchmarks decode ordinary values
+        bulk.packLongs(longs, 0, length, buffer, 0);
+    }
+
+    @Benchmark
+    public byte[] packInts() {
+        bulk.packInts(ints, 0, length, buffer, 0);
+        return buffer;
+    }
+
+    @Benchmark
+    public int[] unpackInts() {
+        bulk.unpackInts(buffer, 0, ints, 0, length);
+        return ints;
+    }
+
+    @Benchmark
+    public byte[] packLongs() {
+        bulk.packLongs(longs, 0, length, buffer, 0);
+        return buffer;
+    }
+
+    @Benchmark
+    public long[] unpackLongs() {
+        bulk.unpackLongs(buffer, 0, longs, 0, length);
+        return longs;
+    }
+
+    @Benchmark
+    public byte[] packFloats() {
+        bulk.packFloats(floats, 0, length, buffer, 0);
+        return buffer;
+    }
+
+    @Benchmark
+    public float[] unpackFloats() {
+        bulk.unpackFloats(buffer, 0, floats, 0, length);
+        return floats;
+    }
+
+    @Benchmark
+    public byte[] packDoubles() {
+        bulk.packDoubles(doubles, 0, length, buffer, 0);
+        return buffer;
+    }
+
+    @Benchmark
+    public double[] unpackDoubles() {
+        bulk.unpackDoubles(buffer, 0, doubles, 0, length);
+        return doubles;
+    }
+}
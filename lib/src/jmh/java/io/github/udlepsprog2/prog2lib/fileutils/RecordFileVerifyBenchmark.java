@@ -0,0 +1,89 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of checksums in {@link RecordFile}: the parallel
+ * {@link RecordFile#verify()} pass over a whole file, and a sequential read of
+ * every record with and without verify-on-read. Both files hold the same
+ * 64 MiB of records and stay in the page cache after the first iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class RecordFileVerifyBenchmark {
+
+    private static final int DATA_SIZE = 64 * 1024 * 1024;
+
+    @Param({"64", "1024"})
+    public int recordSize;
+
+    private Path dir;
+    private RecordFile plain;
+    private RecordFile checked;
+    private byte[] record;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("verify-bench");
+        plain = new RecordFile(dir.resolve("plain.dat"), recordSize);
+        checked = new RecordFile(dir.resolve("checked.dat"), recordSize, RecordFile.DEFAULT_WINDOW_SIZE, true);
+        record = new byte[recordSize];
+        Random random = new Random(recordSize);
+        for (int i = 0; i < DATA_SIZE / recordSize; i++) {
+            random.nextBytes(record);
+            plain.append(record);
+            checked.append(record);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        plain.close();
+        checked.close();
+        Files.delete(dir.resolve("plain.dat"));
+        Files.delete(dir.resolve("checked.dat"));
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public long[] verify() throws IOException {
+        return checked.verify();
+    }
+
+    @Benchmark
+    public byte[] readPlain() throws IOException {
+        for (long i = 0; i < plain.size(); i++) {
+            plain.read(i, record);
+        }
+        return record;
+    }
+
+    @Benchmark
+    public byte[] readChecked() throws IOException {
+        for (long i = 0; i < checked.size(); i++) {
+            checked.read(i, record);
+        }
+        return record;
+    }
+}
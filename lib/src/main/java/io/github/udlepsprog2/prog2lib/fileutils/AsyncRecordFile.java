@@ -0,0 +1,374 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronous random reader of a file of fixed-size records, built on an
+ * {@link AsynchronousFileChannel}.
+ * <p>
+ * Every read returns at once with a {@link CompletableFuture} that completes
+ * when the record has been read and decoded, so a single thread can keep many
+ * reads outstanding instead of blocking on each one:
+ * </p>
+ * <pre>{@code
+ * try (AsyncRecordFile file = new AsyncRecordFile(path, RECORD_SIZE)) {
+ *     List<CompletableFuture<Integer>> ids = new ArrayList<>();
+ *     for (long index : wanted) {
+ *         ids.add(file.read(index, (buffer, offset) -> PackUtils.unpackInt(buffer, offset)));
+ *     }
+ *     ...
+ * }
+ * }</pre>
+ * <p>
+ * At most {@code maxInFlight} reads are issued to the channel at a time; the
+ * other requests wait in a queue, in arrival order. When a read is issued, the
+ * queued requests for adjacent records (and for the same record) are merged
+ * into it, up to {@code maxMergeSize} bytes, so a burst of requests for nearby
+ * records costs a few large reads rather than many small ones.
+ * </p>
+ * <p>
+ * Futures are completed, and decoders run, on the threads of the channel; code
+ * chained with the non-async methods of {@link CompletableFuture} runs there
+ * too and should not block. A read of a record beyond the end of the file
+ * completes exceptionally with an {@link EOFException}.
+ * </p>
+ * <p>
+ * Instances are thread-safe.
+ * </p>
+ */
+public class AsyncRecordFile implements Closeable {
+
+    /**
+     * Default maximum number of reads issued to the channel at a time.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
+    /**
+     * Default maximum size in bytes of a merged read (256 KiB).
+     */
+    public static final int DEFAULT_MAX_MERGE_SIZE = 256 * 1024;
+
+    /**
+     * Decodes the record starting at {@code buffer[offset]}.
+     *
+     * @param <T> the decoded type
+     */
+    @FunctionalInterface
+    public interface RecordDecoder<T> {
+        /**
+         * Decodes one record.
+         *
+         * @param buffer the array holding the record; valid only during this call
+         * @param offset the position of the record in {@code buffer}
+         * @return the decoded record
+         */
+        T decode(byte[] buffer, int offset);
+    }
+
+    private final AsynchronousFileChannel channel;
+    private final int recordSize;
+    private final int maxInFlight;
+    private final int maxMergeRecords;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Requests not yet issued, in arrival order and by record index
+    private final ArrayDeque<Request<?>> queue = new ArrayDeque<>();
+    private final TreeMap<Long, Request<?>> queued = new TreeMap<>();
+    private int inFlight;
+    private long reads;
+    private boolean closed;
+
+    /**
+     * Opens {@code path} with the default in-flight and merge limits.
+     *
+     * @param path the file to read
+     * @param recordSize size in bytes of each record (must be positive)
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if {@code recordSize <= 0}
+     */
+    public AsyncRecordFile(Path path, int recordSize) throws IOException {
+        this(path, recordSize, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_MERGE_SIZE);
+    }
+
+    /**
+     * Opens {@code path}, issuing at most {@code maxInFlight} reads at a time and
+     * merging adjacent records into reads of up to
+     * {@code max(recordSize, maxMergeSize)} bytes.
+     *
+     * @param path the file to read
+     * @param recordSize size in bytes of each record (must be positive)
+     * @param maxInFlight maximum number of outstanding reads (must be positive)
+     * @param maxMergeSize maximum size in bytes of a merged read (must be positive)
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if any size is not positive
+     */
+    public AsyncRecordFile(Path path, int recordSize, int maxInFlight, int maxMergeSize) throws IOException {
+        if (recordSize <= 0 || maxInFlight <= 0 || maxMergeSize <= 0) {
+            throw new IllegalArgumentException("recordSize, maxInFlight and maxMergeSize must be positive");
+        }
+        this.recordSize = recordSize;
+        this.maxInFlight = maxInFlight;
+        this.maxMergeRecords = Math.max(1, maxMergeSize / recordSize);
+        this.channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    /**
+     * Returns the size in bytes of each record.
+     *
+     * @return the record size
+     */
+    public int recordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Returns the number of whole records in the file.
+     *
+     * @return the number of records
+     * @throws IOException if an I/O error occurs
+     */
+    public long size() throws IOException {
+        return channel.size() / recordSize;
+    }
+
+    /**
+     * Returns the number of reads issued to the channel so far, not counting the
+     * reads that continue a short read. With merging it can be much lower than
+     * the number of records requested.
+     *
+     * @return the number of reads issued
+     */
+    public long reads() {
+        lock.lock();
+        try {
+            return reads;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads record {@code index} into a new array.
+     *
+     * @param index the record number (non-negative)
+     * @return a future completed with the {@code recordSize} bytes of the record
+     * @throws IndexOutOfBoundsException if {@code index} is negative
+     */
+    public CompletableFuture<byte[]> read(long index) {
+        return read(index, (buffer, offset) -> {
+            byte[] record = new byte[recordSize];
+            System.arraycopy(buffer, offset, record, 0, recordSize);
+            return record;
+        });
+    }
+
+    /**
+     * Reads record {@code index} and decodes it with {@code decoder}, typically
+     * through {@code PackUtils.unpack*}. If the decoder throws, the future
+     * completes exceptionally with that exception.
+     *
+     * @param index the record number (non-negative)
+     * @param decoder the code that turns the record bytes into a value
+     * @param <T> the decoded type
+     * @return a future completed with the decoded record
+     * @throws IndexOutOfBoundsException if {@code index} is negative
+     */
+    public <T> CompletableFuture<T> read(long index, RecordDecoder<T> decoder) {
+        Objects.requireNonNull(decoder, "decoder");
+        Objects.checkIndex(index, Long.MAX_VALUE / recordSize);
+        Request<T> request = new Request<>(index, decoder);
+        List<Run> runs;
+        lock.lock();
+        try {
+            if (closed) {
+                return CompletableFuture.failedFuture(new ClosedChannelException());
+            }
+            queue.add(request);
+            request.sameIndex = queued.put(index, request);
+            runs = dispatch();
+        } finally {
+            lock.unlock();
+        }
+        issue(runs);
+        return request.future;
+    }
+
+    /**
+     * Closes the channel. Queued reads complete exceptionally with a
+     * {@link ClosedChannelException}, and reads already issued fail with the
+     * exception reported by the channel.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        List<Request<?>> abandoned = new ArrayList<>();
+        lock.lock();
+        try {
+            closed = true;
+            for (Request<?> request : queued.values()) {
+                for (Request<?> r = request; r != null; r = r.sameIndex) {
+                    abandoned.add(r);
+                }
+            }
+            queue.clear();
+            queued.clear();
+        } finally {
+            lock.unlock();
+        }
+        for (Request<?> request : abandoned) {
+            request.future.completeExceptionally(new ClosedChannelException());
+        }
+        channel.close();
+    }
+
+    private static final class Request<T> {
+        final long index;
+        final RecordDecoder<T> decoder;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        // Other queued requests for the same record
+        Request<?> sameIndex;
+        boolean issued;
+
+        Request(long index, RecordDecoder<T> decoder) {
+            this.index = index;
+            this.decoder = decoder;
+        }
+
+        void complete(byte[] buffer, int offset) {
+            try {
+                future.complete(decoder.decode(buffer, offset));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /*
+     * One read of the consecutive records [first, first + requests.size()),
+     * where requests.get(i) heads the chain of requests for record first + i.
+     */
+    private record Run(long first, List<Request<?>> requests) { }
+
+    /*
+     * Takes runs off the queue while there is room for more reads. Must be
+     * called with the lock held; the runs are issued after releasing it.
+     */
+    private List<Run> dispatch() {
+        List<Run> runs = List.of();
+        while (inFlight < maxInFlight && !queue.isEmpty()) {
+            Request<?> head = queue.remove();
+            if (head.issued) {
+                continue;
+            }
+            long first = head.index;
+            long last = head.index;
+            // Extend backwards and then forwards over queued neighbours
+            while (last - first + 1 < maxMergeRecords && first > 0 && queued.containsKey(first - 1)) {
+                first--;
+            }
+            while (last - first + 1 < maxMergeRecords && queued.containsKey(last + 1)) {
+                last++;
+            }
+            List<Request<?>> requests = new ArrayList<>((int) (last - first + 1));
+            for (Map.Entry<Long, Request<?>> entry : queued.subMap(first, true, last, true).entrySet()) {
+                for (Request<?> r = entry.getValue(); r != null; r = r.sameIndex) {
+                    r.issued = true;
+                }
+                requests.add(entry.getValue());
+            }
+            queued.subMap(first, true, last, true).clear();
+            if (runs.isEmpty()) {
+                runs = new ArrayList<>();
+            }
+            runs.add(new Run(first, requests));
+            inFlight++;
+            reads++;
+        }
+        return runs;
+    }
+
+    private void issue(List<Run> runs) {
+        for (Run run : runs) {
+            ByteBuffer target = ByteBuffer.allocate(run.requests().size() * recordSize);
+            try {
+                channel.read(target, run.first() * recordSize, run, new Handler(target));
+            } catch (RuntimeException e) {
+                // Typically the channel was closed concurrently
+                finish(run, null, 0, e);
+            }
+        }
+    }
+
+    private final class Handler implements CompletionHandler<Integer, Run> {
+        private final ByteBuffer target;
+
+        Handler(ByteBuffer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void completed(Integer n, Run run) {
+            if (n >= 0 && target.hasRemaining()) {
+                try {
+                    channel.read(target, run.first() * recordSize + target.position(), run, this);
+                    return;
+                } catch (RuntimeException e) {
+                    finish(run, target, target.position() / recordSize, e);
+                    return;
+                }
+            }
+            finish(run, target, target.position() / recordSize, null);
+        }
+
+        @Override
+        public void failed(Throwable e, Run run) {
+            finish(run, target, target.position() / recordSize, e);
+        }
+    }
+
+    /*
+     * Completes the requests of run: the first complete records from the bytes
+     * read, and the rest with failure or, if there was none, end of file. Then
+     * frees the slot of the run and issues more queued reads.
+     */
+    private void finish(Run run, ByteBuffer target, int complete, Throwable failure) {
+        List<Request<?>> requests = run.requests();
+        for (int i = 0; i < requests.size(); i++) {
+            for (Request<?> r = requests.get(i); r != null; r = r.sameIndex) {
+                if (i < complete) {
+                    r.complete(target.array(), i * recordSize);
+                } else if (failure != null) {
+                    r.future.completeExceptionally(failure);
+                } else {
+                    r.future.completeExceptionally(
+                            new EOFException("record " + r.index + " is beyond the end of the file"));
+                }
+            }
+        }
+        List<Run> runs;
+        lock.lock();
+        try {
+            inFlight--;
+            runs = closed ? List.of() : dispatch();
+        } finally {
+            lock.unlock();
+        }
+        issue(runs);
+    }
+}
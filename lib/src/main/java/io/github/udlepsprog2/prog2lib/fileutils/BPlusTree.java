@@ -0,0 +1,572 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+
+/**
+ * A disk-backed B+tree index mapping unique keys to record numbers, typically
+ * the positions of records in a {@link RecordFile}.
+ * <p>
+ * The index is stored in a file of fixed-size pages encoded with
+ * {@link PackUtils}. Page {@code 0} is a header; every other page is a node
+ * with the layout
+ * </p>
+ * <pre>
+ * [type: byte][count: int][link: long][key, long] x count
+ * </pre>
+ * <p>
+ * In a leaf the entries are {@code (key, record number)} pairs sorted by key and
+ * {@code link} is the next leaf (or {@code 0}); in an internal node the entries
+ * are {@code (separator, child)} pairs and {@code link} is the leftmost child.
+ * Keys are compared in packed form through their {@link KeyType}, so no key is
+ * decoded while searching.
+ * </p>
+ * <p>
+ * A lookup reads one page per level, i.e. O(log n) pages, and recently used
+ * pages are kept in a bounded cache. Changes are written back when pages are
+ * evicted, on {@link #flush()} and on {@link #close()}.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ */
+public class BPlusTree<K> implements Closeable {
+
+    /**
+     * Default page size in bytes.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+
+    /**
+     * Default number of pages kept in the cache.
+     */
+    public static final int DEFAULT_CACHE_PAGES = 256;
+
+    private static final int MAGIC = 0x42505452; // "BPTR"
+    private static final byte LEAF = 0;
+    private static final byte INTERNAL = 1;
+
+    // Header page layout
+    private static final int H_MAGIC = 0;
+    private static final int H_PAGE_SIZE = H_MAGIC + SIZEOF_INT;
+    private static final int H_KEY_SIZE = H_PAGE_SIZE + SIZEOF_INT;
+    private static final int H_ROOT = H_KEY_SIZE + SIZEOF_INT;
+    private static final int H_SIZE = H_ROOT + SIZEOF_LONG;
+    private static final int H_END = H_SIZE + SIZEOF_LONG;
+
+    // Node page layout
+    private static final int N_TYPE = 0;
+    private static final int N_COUNT = N_TYPE + SIZEOF_BYTE;
+    private static final int N_LINK = N_COUNT + SIZEOF_INT;
+    private static final int N_ENTRIES = N_LINK + SIZEOF_LONG;
+
+    private final KeyType<K> keyType;
+    private final PageFile pages;
+    private final int keySize;
+    private final int entrySize;
+    private final int maxEntries;
+    private final byte[] searchKey;
+    private long root;
+    private long size;
+
+    /**
+     * Opens (creating it if needed) an index with the default page and cache sizes.
+     *
+     * @param path the index file
+     * @param keyType the encoding of the keys
+     * @throws IOException if the file cannot be opened or was created with a
+     *         different page or key size
+     */
+    public BPlusTree(Path path, KeyType<K> keyType) throws IOException {
+        this(path, keyType, DEFAULT_PAGE_SIZE, DEFAULT_CACHE_PAGES);
+    }
+
+    /**
+     * Opens (creating it if needed) an index.
+     *
+     * @param path the index file
+     * @param keyType the encoding of the keys
+     * @param pageSize size in bytes of each page; must fit at least four entries
+     * @param cachePages maximum number of pages kept in memory (at least 4)
+     * @throws IOException if the file cannot be opened or was created with a
+     *         different page or key size
+     * @throws IllegalArgumentException if {@code pageSize} is too small or
+     *         {@code cachePages < 4}
+     */
+    public BPlusTree(Path path, KeyType<K> keyType, int pageSize, int cachePages) throws IOException {
+        this.keyType = Objects.requireNonNull(keyType, "keyType");
+        this.keySize = keyType.size();
+        this.entrySize = keySize + SIZEOF_LONG;
+        // One spare slot lets a node overflow before it is split
+        this.maxEntries = (pageSize - N_ENTRIES) / entrySize - 1;
+        if (maxEntries < 3 || pageSize < H_END) {
+            throw new IllegalArgumentException("page size " + pageSize + " is too small");
+        }
+        this.searchKey = new byte[keySize];
+        this.pages = new PageFile(path, pageSize, cachePages);
+        if (pages.pageCount() == 0) {
+            byte[] header = pages.page(pages.allocate());
+            root = pages.allocate();
+            packInt(MAGIC, header, H_MAGIC);
+            packInt(pageSize, header, H_PAGE_SIZE);
+            packInt(keySize, header, H_KEY_SIZE);
+            writeHeader();
+        } else {
+            byte[] header = pages.page(0);
+            if (unpackInt(header, H_MAGIC) != MAGIC
+                    || unpackInt(header, H_PAGE_SIZE) != pageSize
+                    || unpackInt(header, H_KEY_SIZE) != keySize) {
+                pages.close();
+                throw new IOException("not an index with page size " + pageSize + " and key size " + keySize);
+            }
+            root = unpackLong(header, H_ROOT);
+            size = unpackLong(header, H_SIZE);
+        }
+    }
+
+    /**
+     * Returns the number of keys in the index.
+     *
+     * @return the number of keys
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the record number associated with {@code key}.
+     *
+     * @param key the key to look up
+     * @return the record number, or {@code -1} if the key is not in the index
+     * @throws IOException if an I/O error occurs
+     */
+    public long get(K key) throws IOException {
+        keyType.pack(key, searchKey, 0);
+        byte[] leaf = pages.page(findLeaf(searchKey));
+        int pos = lowerBound(leaf, searchKey);
+        if (pos < count(leaf) && keyType.compare(leaf, keyOffset(pos), searchKey, 0) == 0) {
+            return unpackLong(leaf, keyOffset(pos) + keySize);
+        }
+        return -1;
+    }
+
+    /**
+     * Associates {@code recordNumber} with {@code key}, replacing any previous association.
+     *
+     * @param key the key
+     * @param recordNumber the record number (must be non-negative)
+     * @return the previous record number, or {@code -1} if the key was not in the index
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if {@code recordNumber} is negative
+     */
+    public long put(K key, long recordNumber) throws IOException {
+        if (recordNumber < 0) {
+            throw new IllegalArgumentException("negative record number " + recordNumber);
+        }
+        byte[] packed = new byte[keySize];
+        keyType.pack(key, packed, 0);
+        long[] previous = {-1};
+        Split split = insert(root, packed, recordNumber, previous);
+        if (split != null) {
+            long newRoot = pages.allocate();
+            byte[] node = pages.page(newRoot);
+            node[N_TYPE] = INTERNAL;
+            packInt(1, node, N_COUNT);
+            packLong(root, node, N_LINK);
+            System.arraycopy(split.key, 0, node, keyOffset(0), keySize);
+            packLong(split.page, node, keyOffset(0) + keySize);
+            pages.write(newRoot, node);
+            root = newRoot;
+        }
+        if (previous[0] < 0) {
+            size++;
+        }
+        writeHeader();
+        return previous[0];
+    }
+
+    /**
+     * Returns a cursor over the keys in {@code [from, to)}, in ascending order.
+     * The index must not be modified while the cursor is in use.
+     *
+     * @param from the smallest key to return, or {@code null} to start at the first key
+     * @param to the first key not to return, or {@code null} to continue to the last key
+     * @return a cursor positioned before the first matching key
+     * @throws IOException if an I/O error occurs
+     */
+    public Cursor range(K from, K to) throws IOException {
+        byte[] fromKey = null;
+        if (from != null) {
+            fromKey = new byte[keySize];
+            keyType.pack(from, fromKey, 0);
+        }
+        byte[] toKey = null;
+        if (to != null) {
+            toKey = new byte[keySize];
+            keyType.pack(to, toKey, 0);
+        }
+        long leafNo = findLeaf(fromKey);
+        byte[] leaf = pages.page(leafNo);
+        int pos = fromKey == null ? 0 : lowerBound(leaf, fromKey);
+        return new Cursor(leaf, pos - 1, toKey);
+    }
+
+    /**
+     * Starts loading an empty index from entries sorted by strictly increasing key.
+     * Leaves are filled completely and written sequentially, which is much faster
+     * than inserting the entries one by one. The index must not be used until the
+     * loader is closed.
+     *
+     * @return the loader
+     * @throws IllegalStateException if the index is not empty
+     */
+    public Loader bulkLoad() {
+        if (size != 0) {
+            throw new IllegalStateException("bulk loading requires an empty index");
+        }
+        return new Loader();
+    }
+
+    /**
+     * Writes all pending changes to the index file and forces them to the storage device.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void flush() throws IOException {
+        pages.flush();
+    }
+
+    /**
+     * Writes all pending changes and closes the index file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        pages.close();
+    }
+
+    /**
+     * Iterates over a range of entries of the index, in ascending key order.
+     */
+    public final class Cursor {
+        private byte[] leaf;
+        private int pos;
+        private final byte[] toKey;
+        private boolean done;
+
+        private Cursor(byte[] leaf, int pos, byte[] toKey) {
+            this.leaf = leaf;
+            this.pos = pos;
+            this.toKey = toKey;
+        }
+
+        /**
+         * Advances to the next entry in the range.
+         *
+         * @return {@code true} if there is a current entry; {@code false} at the end of the range
+         * @throws IOException if an I/O error occurs
+         */
+        public boolean next() throws IOException {
+            if (done) {
+                return false;
+            }
+            pos++;
+            while (pos >= count(leaf)) {
+                long next = unpackLong(leaf, N_LINK);
+                if (next == 0) {
+                    done = true;
+                    return false;
+                }
+                leaf = pages.page(next);
+                pos = 0;
+            }
+            if (toKey != null && keyType.compare(leaf, keyOffset(pos), toKey, 0) >= 0) {
+                done = true;
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the key of the current entry.
+         *
+         * @return the current key
+         */
+        public K key() {
+            return keyType.unpack(leaf, keyOffset(pos));
+        }
+
+        /**
+         * Returns the record number of the current entry.
+         *
+         * @return the current record number
+         */
+        public long value() {
+            return unpackLong(leaf, keyOffset(pos) + keySize);
+        }
+    }
+
+    /**
+     * Fills an empty index from entries added in strictly increasing key order.
+     * Closing the loader builds the internal levels.
+     */
+    public final class Loader implements Closeable {
+
+        // Internal node being filled at some level, with the smallest key below it
+        private final class Level {
+            final byte[] node = new byte[pages.pageSize()];
+            final byte[] firstKey = new byte[keySize];
+            boolean empty = true;
+        }
+
+        private final List<Level> levels = new ArrayList<>();
+        private final byte[] key = new byte[keySize];
+        private final byte[] lastKey = new byte[keySize];
+        private final byte[] leafFirstKey = new byte[keySize];
+        private long leafNo = root;
+        private byte[] leaf = new byte[pages.pageSize()];
+        private boolean closed;
+
+        private Loader() {
+            leaf[N_TYPE] = LEAF;
+        }
+
+        /**
+         * Adds the next entry.
+         *
+         * @param k the key; must be greater than every key added before
+         * @param recordNumber the record number (must be non-negative)
+         * @throws IOException if an I/O error occurs
+         * @throws IllegalArgumentException if {@code k} is out of order or
+         *         {@code recordNumber} is negative
+         */
+        public void add(K k, long recordNumber) throws IOException {
+            if (recordNumber < 0) {
+                throw new IllegalArgumentException("negative record number " + recordNumber);
+            }
+            keyType.pack(k, key, 0);
+            if (size > 0 && keyType.compare(key, 0, lastKey, 0) <= 0) {
+                throw new IllegalArgumentException("keys must be added in strictly increasing order");
+            }
+            int count = count(leaf);
+            if (count == maxEntries) {
+                long next = pages.allocate();
+                packLong(next, leaf, N_LINK);
+                pages.write(leafNo, leaf);
+                addChild(0, leafFirstKey, leafNo);
+                leafNo = next;
+                leaf = new byte[pages.pageSize()];
+                leaf[N_TYPE] = LEAF;
+                count = 0;
+            }
+            if (count == 0) {
+                System.arraycopy(key, 0, leafFirstKey, 0, keySize);
+            }
+            System.arraycopy(key, 0, leaf, keyOffset(count), keySize);
+            packLong(recordNumber, leaf, keyOffset(count) + keySize);
+            packInt(count + 1, leaf, N_COUNT);
+            System.arraycopy(key, 0, lastKey, 0, keySize);
+            size++;
+        }
+
+        /**
+         * Writes the last leaf and builds the internal levels of the index.
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pages.write(leafNo, leaf);
+            long top = leafNo;
+            if (!levels.isEmpty()) {
+                addChild(0, leafFirstKey, leafNo);
+                // levels may grow while the partial nodes are written
+                for (int i = 0; i < levels.size(); i++) {
+                    Level level = levels.get(i);
+                    top = pages.allocate();
+                    pages.write(top, level.node);
+                    if (i + 1 < levels.size()) {
+                        addChild(i + 1, level.firstKey, top);
+                    }
+                }
+            }
+            root = top;
+            writeHeader();
+        }
+
+        /*
+         * Appends a completed child (with the smallest key of its subtree) to the
+         * internal node being filled at the given level, writing that node and
+         * moving up when it is full.
+         */
+        private void addChild(int index, byte[] firstKey, long child) throws IOException {
+            if (index == levels.size()) {
+                levels.add(new Level());
+            }
+            Level level = levels.get(index);
+            if (level.empty) {
+                level.node[N_TYPE] = INTERNAL;
+                packInt(0, level.node, N_COUNT);
+                packLong(child, level.node, N_LINK);
+                System.arraycopy(firstKey, 0, level.firstKey, 0, keySize);
+                level.empty = false;
+                return;
+            }
+            int count = count(level.node);
+            if (count == maxEntries) {
+                long pageNo = pages.allocate();
+                pages.write(pageNo, level.node.clone());
+                addChild(index + 1, level.firstKey, pageNo);
+                level.empty = true;
+                addChild(index, firstKey, child);
+                return;
+            }
+            System.arraycopy(firstKey, 0, level.node, keyOffset(count), keySize);
+            packLong(child, level.node, keyOffset(count) + keySize);
+            packInt(count + 1, level.node, N_COUNT);
+        }
+    }
+
+    private record Split(byte[] key, long page) { }
+
+    /*
+     * Inserts (key, value) in the subtree rooted at pageNo. Returns the split to
+     * be inserted in the parent, or null if the node did not overflow.
+     */
+    private Split insert(long pageNo, byte[] key, long value, long[] previous) throws IOException {
+        byte[] node = pages.page(pageNo);
+        if (node[N_TYPE] == LEAF) {
+            int count = count(node);
+            int pos = lowerBound(node, key);
+            if (pos < count && keyType.compare(node, keyOffset(pos), key, 0) == 0) {
+                previous[0] = unpackLong(node, keyOffset(pos) + keySize);
+                packLong(value, node, keyOffset(pos) + keySize);
+                pages.write(pageNo, node);
+                return null;
+            }
+            insertEntry(node, pos, key, value);
+            pages.write(pageNo, node);
+            return count + 1 > maxEntries ? split(pageNo, node, true) : null;
+        }
+        int pos = upperBound(node, key);
+        long child = pos == 0 ? unpackLong(node, N_LINK) : unpackLong(node, keyOffset(pos - 1) + keySize);
+        Split split = insert(child, key, value, previous);
+        if (split == null) {
+            return null;
+        }
+        // The subtree may have evicted this page: fetch it again
+        node = pages.page(pageNo);
+        insertEntry(node, pos, split.key, split.page);
+        pages.write(pageNo, node);
+        return count(node) > maxEntries ? split(pageNo, node, false) : null;
+    }
+
+    private Split split(long pageNo, byte[] node, boolean leaf) throws IOException {
+        long siblingNo = pages.allocate();
+        byte[] sibling = pages.page(siblingNo);
+        int count = count(node);
+        int mid = count / 2;
+        byte[] separator = new byte[keySize];
+        System.arraycopy(node, keyOffset(mid), separator, 0, keySize);
+        sibling[N_TYPE] = node[N_TYPE];
+        if (leaf) {
+            System.arraycopy(node, keyOffset(mid), sibling, keyOffset(0), (count - mid) * entrySize);
+            packInt(count - mid, sibling, N_COUNT);
+            packLong(unpackLong(node, N_LINK), sibling, N_LINK);
+            packLong(siblingNo, node, N_LINK);
+        } else {
+            // The middle separator moves up; its child becomes the sibling's leftmost child
+            packLong(unpackLong(node, keyOffset(mid) + keySize), sibling, N_LINK);
+            System.arraycopy(node, keyOffset(mid + 1), sibling, keyOffset(0), (count - mid - 1) * entrySize);
+            packInt(count - mid - 1, sibling, N_COUNT);
+        }
+        packInt(mid, node, N_COUNT);
+        pages.write(siblingNo, sibling);
+        pages.write(pageNo, node);
+        return new Split(separator, siblingNo);
+    }
+
+    private void insertEntry(byte[] node, int pos, byte[] key, long value) {
+        int count = count(node);
+        System.arraycopy(node, keyOffset(pos), node, keyOffset(pos + 1), (count - pos) * entrySize);
+        System.arraycopy(key, 0, node, keyOffset(pos), keySize);
+        packLong(value, node, keyOffset(pos) + keySize);
+        packInt(count + 1, node, N_COUNT);
+    }
+
+    /*
+     * Descends to the leaf that may contain key (the leftmost leaf if key is null).
+     */
+    private long findLeaf(byte[] key) throws IOException {
+        long pageNo = root;
+        byte[] node = pages.page(pageNo);
+        while (node[N_TYPE] == INTERNAL) {
+            int pos = key == null ? 0 : upperBound(node, key);
+            pageNo = pos == 0 ? unpackLong(node, N_LINK) : unpackLong(node, keyOffset(pos - 1) + keySize);
+            node = pages.page(pageNo);
+        }
+        return pageNo;
+    }
+
+    /*
+     * Index of the first entry whose key is >= key.
+     */
+    private int lowerBound(byte[] node, byte[] key) {
+        int lo = 0;
+        int hi = count(node);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keyType.compare(node, keyOffset(mid), key, 0) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /*
+     * Index of the first entry whose key is > key.
+     */
+    private int upperBound(byte[] node, byte[] key) {
+        int lo = 0;
+        int hi = count(node);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keyType.compare(node, keyOffset(mid), key, 0) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int keyOffset(int entry) {
+        return N_ENTRIES + entry * entrySize;
+    }
+
+    private static int count(byte[] node) {
+        return unpackInt(node, N_COUNT);
+    }
+
+    private void writeHeader() throws IOException {
+        byte[] header = pages.page(0);
+        packLong(root, header, H_ROOT);
+        packLong(size, header, H_SIZE);
+        pages.write(0, header);
+    }
+}
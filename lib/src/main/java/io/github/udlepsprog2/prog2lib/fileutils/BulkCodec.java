@@ -0,0 +1,55 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+/**
+ * Big-Endian conversion loops behind the bulk {@code int}, {@code long},
+ * {@code float} and {@code double} methods of {@link PackUtils}.
+ * <p>
+ * Implementations produce exactly the bytes of the single-value methods and
+ * do not validate their arguments: {@link PackUtils} checks both ranges before
+ * calling them. {@link ScalarBulkCodec} is always available; the
+ * {@code jdk.incubator.vector} implementation is compiled separately and only
+ * used when {@link #load(String)} can instantiate it.
+ * </p>
+ */
+interface BulkCodec {
+
+    /**
+     * Name of the implementation built on the {@code jdk.incubator.vector}
+     * module, which is only usable when the module has been added to the boot
+     * layer with {@code --add-modules jdk.incubator.vector}.
+     */
+    String VECTOR_CODEC = "io.github.udlepsprog2.prog2lib.fileutils.VectorBulkCodec";
+
+    void packInts(int[] src, int srcOff, int len, byte[] buffer, int offset);
+
+    void unpackInts(byte[] buffer, int offset, int[] dst, int dstOff, int len);
+
+    void packLongs(long[] src, int srcOff, int len, byte[] buffer, int offset);
+
+    void unpackLongs(byte[] buffer, int offset, long[] dst, int dstOff, int len);
+
+    void packFloats(float[] src, int srcOff, int len, byte[] buffer, int offset);
+
+    void unpackFloats(byte[] buffer, int offset, float[] dst, int dstOff, int len);
+
+    void packDoubles(double[] src, int srcOff, int len, byte[] buffer, int offset);
+
+    void unpackDoubles(byte[] buffer, int offset, double[] dst, int dstOff, int len);
+
+    /**
+     * Instantiates the codec class {@code className} through its no-argument
+     * constructor, falling back to {@link ScalarBulkCodec#INSTANCE} if the
+     * class is missing, cannot be linked (as happens to the vector codec when
+     * its module is absent) or refuses to run on this hardware.
+     *
+     * @param className the binary name of a {@code BulkCodec} implementation
+     * @return the loaded codec, or the scalar one
+     */
+    static BulkCodec load(String className) {
+        try {
+            return (BulkCodec) Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return ScalarBulkCodec.INSTANCE;
+        }
+    }
+}
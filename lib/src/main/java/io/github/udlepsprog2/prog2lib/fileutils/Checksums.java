@@ -0,0 +1,144 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+/**
+ * CRC-32C checksums of packed records and blocks.
+ * <p>
+ * A checksum covers a range of bytes; it is computed with
+ * {@link java.util.zip.CRC32C}, which the JVM implements with the CPU's CRC
+ * instructions where available, so it costs much less than the I/O it protects.
+ * A <em>sealed</em> range stores the checksum of its {@code length} bytes in the
+ * {@value #SIZEOF_CHECKSUM} bytes that follow it, packed like
+ * {@link PackUtils#packInt(int, byte[], int)}:
+ * </p>
+ * <pre>
+ * [data: length bytes][checksum: int]
+ * </pre>
+ * <p>
+ * The same layout serves a single record (see the checksummed mode of
+ * {@link RecordFile}) and a whole block of records.
+ * </p>
+ */
+public final class Checksums {
+
+    /**
+     * Size in bytes of a packed checksum.
+     */
+    public static final int SIZEOF_CHECKSUM = PackUtils.SIZEOF_INT;
+
+    private Checksums() {
+    }
+
+    /**
+     * Returns the CRC-32C of {@code buffer[offset..offset+length-1]}.
+     *
+     * @param buffer the array holding the bytes
+     * @param offset the first byte
+     * @param length the number of bytes
+     * @return the checksum
+     * @throws IndexOutOfBoundsException if the range is outside {@code buffer}
+     */
+    public static int crc32c(byte[] buffer, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, buffer.length);
+        return crc32c(new CRC32C(), buffer, offset, length);
+    }
+
+    /*
+     * Computes the checksum with crc, which is reset first, so that callers
+     * checking many records can reuse a single instance.
+     */
+    static int crc32c(CRC32C crc, byte[] buffer, int offset, int length) {
+        crc.reset();
+        crc.update(buffer, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns the CRC-32C of the {@code length} bytes of {@code buffer} starting
+     * at absolute index {@code offset}. The buffer's position and limit are not
+     * changed.
+     *
+     * @param buffer the buffer holding the bytes
+     * @param offset the first byte
+     * @param length the number of bytes
+     * @return the checksum
+     * @throws IndexOutOfBoundsException if the range is outside {@code buffer}
+     */
+    public static int crc32c(ByteBuffer buffer, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, buffer.limit());
+        return crc32c(new CRC32C(), buffer.duplicate(), offset, length);
+    }
+
+    /*
+     * Computes the checksum with crc, which is reset first, by moving the
+     * position and limit of view onto the range instead of slicing it. view is
+     * meant to be a duplicate owned by the caller and reused for many ranges.
+     */
+    static int crc32c(CRC32C crc, ByteBuffer view, int offset, int length) {
+        crc.reset();
+        view.limit(offset + length).position(offset);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Computes the checksum of {@code buffer[offset..offset+length-1]} and packs
+     * it right after the range.
+     *
+     * @param buffer the array holding the range
+     * @param offset the first byte of the range
+     * @param length the number of bytes of the range
+     * @throws IndexOutOfBoundsException if there isn’t space for the checksum
+     */
+    public static void seal(byte[] buffer, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length + SIZEOF_CHECKSUM, buffer.length);
+        PackUtils.packInt(crc32c(buffer, offset, length), buffer, offset + length);
+    }
+
+    /**
+     * Checks that the checksum packed after {@code buffer[offset..offset+length-1]}
+     * matches the range.
+     *
+     * @param buffer the array holding the sealed range
+     * @param offset the first byte of the range
+     * @param length the number of bytes of the range, without the checksum
+     * @return {@code true} if the checksum matches
+     * @throws IndexOutOfBoundsException if the range and checksum are outside {@code buffer}
+     */
+    public static boolean isSealed(byte[] buffer, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length + SIZEOF_CHECKSUM, buffer.length);
+        return crc32c(buffer, offset, length) == PackUtils.unpackInt(buffer, offset + length);
+    }
+
+    /**
+     * Computes the checksum of the {@code length} bytes of {@code buffer} starting
+     * at absolute index {@code offset} and packs it right after them.
+     *
+     * @param buffer the buffer holding the range
+     * @param offset the first byte of the range
+     * @param length the number of bytes of the range
+     * @throws IndexOutOfBoundsException if there isn’t space for the checksum
+     */
+    public static void seal(ByteBuffer buffer, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length + SIZEOF_CHECKSUM, buffer.limit());
+        PackUtils.packInt(crc32c(buffer, offset, length), buffer, offset + length);
+    }
+
+    /**
+     * Checks that the checksum packed after the {@code length} bytes of
+     * {@code buffer} starting at absolute index {@code offset} matches them.
+     *
+     * @param buffer the buffer holding the sealed range
+     * @param offset the first byte of the range
+     * @param length the number of bytes of the range, without the checksum
+     * @return {@code true} if the checksum matches
+     * @throws IndexOutOfBoundsException if the range and checksum are outside {@code buffer}
+     */
+    public static boolean isSealed(ByteBuffer buffer, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length + SIZEOF_CHECKSUM, buffer.limit());
+        return crc32c(buffer, offset, length) == PackUtils.unpackInt(buffer, offset + length);
+    }
+}
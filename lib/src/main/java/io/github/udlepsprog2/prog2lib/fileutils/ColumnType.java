@@ -0,0 +1,55 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+/**
+ * The primitive types of the columns of a {@link ColumnarFile}, each packed
+ * with the {@link PackUtils} method of the same type.
+ */
+public enum ColumnType {
+    /**
+     * {@code boolean} values, one byte each.
+     */
+    BOOLEAN(PackUtils.SIZEOF_BOOLEAN),
+    /**
+     * {@code byte} values.
+     */
+    BYTE(PackUtils.SIZEOF_BYTE),
+    /**
+     * {@code char} values, two bytes each.
+     */
+    CHAR(PackUtils.SIZEOF_CHAR),
+    /**
+     * {@code short} values, two bytes each.
+     */
+    SHORT(PackUtils.SIZEOF_SHORT),
+    /**
+     * {@code int} values, four bytes each.
+     */
+    INT(PackUtils.SIZEOF_INT),
+    /**
+     * {@code long} values, eight bytes each.
+     */
+    LONG(PackUtils.SIZEOF_LONG),
+    /**
+     * {@code float} values, four bytes each.
+     */
+    FLOAT(PackUtils.SIZEOF_FLOAT),
+    /**
+     * {@code double} values, eight bytes each.
+     */
+    DOUBLE(PackUtils.SIZEOF_DOUBLE);
+
+    private final int size;
+
+    ColumnType(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Returns the size in bytes of a packed value.
+     *
+     * @return the value size
+     */
+    public int size() {
+        return size;
+    }
+}
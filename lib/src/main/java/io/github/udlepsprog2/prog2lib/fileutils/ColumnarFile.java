@@ -0,0 +1,442 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+
+/**
+ * Reader of a columnar (struct-of-arrays) table written by {@link ColumnarWriter}.
+ * <p>
+ * A table is a directory with one file per column, named after the column
+ * with the suffix {@code ".col"}, holding the values of that column for every
+ * row, packed one after another with {@link PackUtils}. A schema file lists the
+ * columns and the number of rows; it is written last, so a table whose writer
+ * did not close cleanly cannot be opened.
+ * </p>
+ * <p>
+ * A scan reads only the columns it asks for: {@link #column(String)} returns a
+ * {@link ColumnReader} that fills primitive arrays in bulk with the
+ * {@code PackUtils.unpack*s} methods, and column files are opened the first
+ * time they are used:
+ * </p>
+ * <pre>{@code
+ * try (ColumnarFile table = new ColumnarFile(dir)) {
+ *     ColumnarFile.ColumnReader prices = table.column("price");
+ *     double[] chunk = new double[4096];
+ *     double total = 0;
+ *     for (int n; (n = prices.readDoubles(chunk, 0, chunk.length)) > 0; ) {
+ *         for (int i = 0; i < n; i++) {
+ *             total += chunk[i];
+ *         }
+ *     }
+ * }
+ * }</pre>
+ * <p>
+ * Instances are not thread-safe, but each column reader only uses positional
+ * reads, so different readers can be used by different threads.
+ * </p>
+ */
+public class ColumnarFile implements Closeable {
+
+    /**
+     * Name of the schema file inside the table directory.
+     */
+    public static final String SCHEMA_FILE = "columns.schema";
+
+    /**
+     * Suffix of the column files.
+     */
+    public static final String COLUMN_SUFFIX = ".col";
+
+    static final int MAGIC = 0x434F4C53; // "COLS"
+    static final int MAX_NAME_LENGTH = 64;
+    static final int SCHEMA_HEADER_SIZE = SIZEOF_INT + SIZEOF_LONG + SIZEOF_INT;
+    static final int SCHEMA_ENTRY_SIZE = SIZEOF_BYTE + MAX_NAME_LENGTH;
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_]{1," + MAX_NAME_LENGTH + "}");
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * A column of a table: its name, which is also the base name of its file,
+     * and the type of its values.
+     *
+     * @param name the column name: 1 to 64 ASCII letters, digits or underscores
+     * @param type the type of the values
+     */
+    public record Column(String name, ColumnType type) {
+        /**
+         * Validates the column.
+         *
+         * @throws IllegalArgumentException if the name is not valid
+         * @throws NullPointerException if {@code name} or {@code type} is {@code null}
+         */
+        public Column {
+            Objects.requireNonNull(type, "type");
+            if (!NAME.matcher(Objects.requireNonNull(name, "name")).matches()) {
+                throw new IllegalArgumentException("invalid column name " + name);
+            }
+        }
+    }
+
+    private final Path directory;
+    private final long rowCount;
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+    private final Map<String, FileChannel> channels = new LinkedHashMap<>();
+
+    /**
+     * Opens the table stored in {@code directory}.
+     *
+     * @param directory the table directory
+     * @throws IOException if the schema cannot be read or is not valid
+     */
+    public ColumnarFile(Path directory) throws IOException {
+        this.directory = directory;
+        byte[] schema = Files.readAllBytes(directory.resolve(SCHEMA_FILE));
+        if (schema.length < SCHEMA_HEADER_SIZE || unpackInt(schema, 0) != MAGIC) {
+            throw new IOException("not a columnar table schema");
+        }
+        this.rowCount = unpackLong(schema, SIZEOF_INT);
+        int count = unpackInt(schema, SIZEOF_INT + SIZEOF_LONG);
+        if (count < 0 || schema.length != SCHEMA_HEADER_SIZE + count * SCHEMA_ENTRY_SIZE) {
+            throw new IOException("corrupt columnar table schema");
+        }
+        ColumnType[] types = ColumnType.values();
+        for (int i = 0; i < count; i++) {
+            int offset = SCHEMA_HEADER_SIZE + i * SCHEMA_ENTRY_SIZE;
+            int ordinal = unpackByte(schema, offset);
+            if (ordinal < 0 || ordinal >= types.length) {
+                throw new IOException("corrupt columnar table schema");
+            }
+            String name = unpackUtf8String(MAX_NAME_LENGTH, schema, offset + SIZEOF_BYTE);
+            columns.put(name, new Column(name, types[ordinal]));
+        }
+    }
+
+    /**
+     * Returns the number of rows, which is the number of values of every column.
+     *
+     * @return the row count
+     */
+    public long rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the columns of the table, in the order they were declared.
+     *
+     * @return an unmodifiable list of the columns
+     */
+    public List<Column> columns() {
+        return Collections.unmodifiableList(new ArrayList<>(columns.values()));
+    }
+
+    /**
+     * Returns a new reader positioned at the first row of column {@code name}.
+     *
+     * @param name the column name
+     * @return a reader of the column
+     * @throws IOException if the column file cannot be opened or has the wrong length
+     * @throws IllegalArgumentException if the table has no such column
+     */
+    public ColumnReader column(String name) throws IOException {
+        Column column = columns.get(name);
+        if (column == null) {
+            throw new IllegalArgumentException("no column named " + name);
+        }
+        FileChannel channel = channels.get(name);
+        if (channel == null) {
+            channel = FileChannel.open(directory.resolve(name + COLUMN_SUFFIX), StandardOpenOption.READ);
+            if (channel.size() != rowCount * column.type().size()) {
+                channel.close();
+                throw new IOException("column " + name + " does not hold " + rowCount + " values");
+            }
+            channels.put(name, channel);
+        }
+        return new ColumnReader(column, channel);
+    }
+
+    /**
+     * Closes the column files opened so far. Readers cannot be used afterwards.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (FileChannel channel : channels.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        channels.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Sequential bulk reader of the values of one column.
+     * <p>
+     * Each {@code read*} method fills up to {@code len} elements of an array with
+     * the next values of the column and returns how many it read, {@code 0} at
+     * the end of the column. Only the method matching the column type may be
+     * used. Values are transferred in large blocks and decoded with the bulk
+     * {@code PackUtils.unpack*s} methods.
+     * </p>
+     * <p>
+     * Instances are not thread-safe.
+     * </p>
+     */
+    public final class ColumnReader {
+        private final Column column;
+        private final FileChannel channel;
+        private final int size;
+        private final byte[] block;
+        private long row;
+
+        private ColumnReader(Column column, FileChannel channel) {
+            this.column = column;
+            this.channel = channel;
+            this.size = column.type().size();
+            this.block = new byte[(int) Math.min(BLOCK_SIZE, Math.max(size, rowCount * size))];
+        }
+
+        /**
+         * Returns the column read.
+         *
+         * @return the column
+         */
+        public Column column() {
+            return column;
+        }
+
+        /**
+         * Returns the row of the next value to read.
+         *
+         * @return the current row
+         */
+        public long position() {
+            return row;
+        }
+
+        /**
+         * Moves the reader to row {@code row}.
+         *
+         * @param row the row of the next value to read, in {@code [0, rowCount()]}
+         * @throws IndexOutOfBoundsException if {@code row} is out of range
+         */
+        public void seek(long row) {
+            this.row = Objects.checkIndex(row, rowCount + 1);
+        }
+
+        /**
+         * Reads the next {@code boolean} values.
+         *
+         * @param dst destination array
+         * @param dstOff first element of {@code dst} to fill
+         * @param len maximum number of values to read
+         * @return the number of values read, {@code 0} at the end of the column
+         * @throws IOException if an I/O error occurs
+         * @throws IllegalStateException if the column is not of type {@link ColumnType#BOOLEAN}
+         * @throws IndexOutOfBoundsException if the range is outside {@code dst}
+         */
+        public int readBooleans(boolean[] dst, int dstOff, int len) throws IOException {
+            Objects.checkFromIndexSize(dstOff, len, dst.length);
+            check(ColumnType.BOOLEAN);
+            int total = 0;
+            for (int n; total < len && (n = fill(len - total)) > 0; total += n) {
+                unpackBooleans(block, 0, dst, dstOff + total, n);
+            }
+            return total;
+        }
+
+        /**
+         * Reads the next {@code byte} values.
+         *
+         * @param dst destination array
+         * @param dstOff first element of {@code dst} to fill
+         * @param len maximum number of values to read
+         * @return the number of values read, {@code 0} at the end of the column
+         * @throws IOException if an I/O error occurs
+         * @throws IllegalStateException if the column is not of type {@link ColumnType#BYTE}
+         * @throws IndexOutOfBoundsException if the range is outside {@code dst}
+         */
+        public int readBytes(byte[] dst, int dstOff, int len) throws IOException {
+            Objects.checkFromIndexSize(dstOff, len, dst.length);
+            check(ColumnType.BYTE);
+            int total = 0;
+            for (int n; total < len && (n = fill(len - total)) > 0; total += n) {
+                unpackBytes(block, 0, dst, dstOff + total, n);
+            }
+            return total;
+        }
+
+        /**
+         * Reads the next {@code char} values.
+         *
+         * @param dst destination array
+         * @param dstOff first element of {@code dst} to fill
+         * @param len maximum number of values to read
+         * @return the number of values read, {@code 0} at the end of the column
+         * @throws IOException if an I/O error occurs
+         * @throws IllegalStateException if the column is not of type {@link ColumnType#CHAR}
+         * @throws IndexOutOfBoundsException if the range is outside {@code dst}
+         */
+        public int readChars(char[] dst, int dstOff, int len) throws IOException {
+            Objects.checkFromIndexSize(dstOff, len, dst.length);
+            check(ColumnType.CHAR);
+            int total = 0;
+            for (int n; total < len && (n = fill(len - total)) > 0; total += n) {
+                unpackChars(block, 0, dst, dstOff + total, n);
+            }
+            return total;
+        }
+
+        /**
+         * Reads the next {@code short} values.
+         *
+         * @param dst destination array
+         * @param dstOff first element of {@code dst} to fill
+         * @param len maximum number of values to read
+         * @return the number of values read, {@code 0} at the end of the column
+         * @throws IOException if an I/O error occurs
+         * @throws IllegalStateException if the column is not of type {@link ColumnType#SHORT}
+         * @throws IndexOutOfBoundsException if the range is outside {@code dst}
+         */
+        public int readShorts(short[] dst, int dstOff, int len) throws IOException {
+            Objects.checkFromIndexSize(dstOff, len, dst.length);
+            check(ColumnType.SHORT);
+            int total = 0;
+            for (int n; total < len && (n = fill(len - total)) > 0; total += n) {
+                unpackShorts(block, 0, dst, dstOff + total, n);
+            }
+            return total;
+        }
+
+        /**
+         * Reads the next {@code int} values.
+         *
+         * @param dst destination array
+         * @param dstOff first element of {@code dst} to fill
+         * @param len maximum number of values to read
+         * @return the number of values read, {@code 0} at the end of the column
+         * @throws IOException if an I/O error occurs
+         * @throws IllegalStateException if the column is not of type {@link ColumnType#INT}
+         * @throws IndexOutOfBoundsException if the range is outside {@code dst}
+         */
+        public int readInts(int[] dst, int dstOff, int len) throws IOException {
+            Objects.checkFromIndexSize(dstOff, len, dst.length);
+            check(ColumnType.INT);
+            int total = 0;
+            for (int n; total < len && (n = fill(len - total)) > 0; total += n) {
+                unpackInts(block, 0, dst, dstOff + total, n);
+            }
+            return total;
+        }
+
+        /**
+         * Reads the next {@code long} values.
+         *
+         * @param dst destination array
+         * @param dstOff first element of {@code dst} to fill
+         * @param len maximum number of values to read
+         * @return the number of values read, {@code 0} at the end of the column
+         * @throws IOException if an I/O error occurs
+         * @throws IllegalStateException if the column is not of type {@link ColumnType#LONG}
+         * @throws IndexOutOfBoundsException if the range is outside {@code dst}
+         */
+        public int readLongs(long[] dst, int dstOff, int len) throws IOException {
+            Objects.checkFromIndexSize(dstOff, len, dst.length);
+            check(ColumnType.LONG);
+            int total = 0;
+            for (int n; total < len && (n = fill(len - total)) > 0; total += n) {
+                unpackLongs(block, 0, dst, dstOff + total, n);
+            }
+            return total;
+        }
+
+        /**
+         * Reads the next {@code float} values.
+         *
+         * @param dst destination array
+         * @param dstOff first element of {@code dst} to fill
+         * @param len maximum number of values to read
+         * @return the number of values read, {@code 0} at the end of the column
+         * @throws IOException if an I/O error occurs
+         * @throws IllegalStateException if the column is not of type {@link ColumnType#FLOAT}
+         * @throws IndexOutOfBoundsException if the range is outside {@code dst}
+         */
+        public int readFloats(float[] dst, int dstOff, int len) throws IOException {
+            Objects.checkFromIndexSize(dstOff, len, dst.length);
+            check(ColumnType.FLOAT);
+            int total = 0;
+            for (int n; total < len && (n = fill(len - total)) > 0; total += n) {
+                unpackFloats(block, 0, dst, dstOff + total, n);
+            }
+            return total;
+        }
+
+        /**
+         * Reads the next {@code double} values.
+         *
+         * @param dst destination array
+         * @param dstOff first element of {@code dst} to fill
+         * @param len maximum number of values to read
+         * @return the number of values read, {@code 0} at the end of the column
+         * @throws IOException if an I/O error occurs
+         * @throws IllegalStateException if the column is not of type {@link ColumnType#DOUBLE}
+         * @throws IndexOutOfBoundsException if the range is outside {@code dst}
+         */
+        public int readDoubles(double[] dst, int dstOff, int len) throws IOException {
+            Objects.checkFromIndexSize(dstOff, len, dst.length);
+            check(ColumnType.DOUBLE);
+            int total = 0;
+            for (int n; total < len && (n = fill(len - total)) > 0; total += n) {
+                unpackDoubles(block, 0, dst, dstOff + total, n);
+            }
+            return total;
+        }
+
+        private void check(ColumnType type) {
+            if (column.type() != type) {
+                throw new IllegalStateException("column " + column.name() + " is of type "
+                        + column.type() + ", not " + type);
+            }
+        }
+
+        /*
+         * Reads up to max values (limited by the block and the rows left) into
+         * the start of the block and returns how many were read.
+         */
+        private int fill(int max) throws IOException {
+            int n = (int) Math.min(Math.min(max, block.length / size), rowCount - row);
+            if (n <= 0) {
+                return 0;
+            }
+            ByteBuffer target = ByteBuffer.wrap(block, 0, n * size);
+            long position = row * size;
+            while (target.hasRemaining()) {
+                if (channel.read(target, position + target.position()) < 0) {
+                    throw new IOException("column " + column.name() + " is truncated");
+                }
+            }
+            row += n;
+            return n;
+        }
+    }
+}
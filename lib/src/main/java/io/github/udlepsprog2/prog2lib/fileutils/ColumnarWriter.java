@@ -0,0 +1,382 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+
+/**
+ * Writer of a columnar table, to be read with {@link ColumnarFile}.
+ * <p>
+ * Values are appended column by column with the bulk {@code write*} methods,
+ * which pack them with the {@code PackUtils.pack*s} methods into a block per
+ * column and write full blocks to the column file. Columns can be written in
+ * any order and in chunks of any size, but every column must hold the same
+ * number of values when the writer is closed:
+ * </p>
+ * <pre>{@code
+ * try (ColumnarWriter writer = new ColumnarWriter(dir,
+ *         new ColumnarFile.Column("id", ColumnType.INT),
+ *         new ColumnarFile.Column("price", ColumnType.DOUBLE))) {
+ *     writer.writeInts("id", ids, 0, n);
+ *     writer.writeDoubles("price", prices, 0, n);
+ * }
+ * }</pre>
+ * <p>
+ * {@link #close()} writes the schema file, which makes the table readable.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class ColumnarWriter implements Closeable {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final class Sink {
+        final ColumnarFile.Column column;
+        final FileChannel channel;
+        final byte[] block = new byte[BLOCK_SIZE];
+        final int size;
+        int used;
+        long position;
+        long count;
+
+        Sink(ColumnarFile.Column column, FileChannel channel) {
+            this.column = column;
+            this.channel = channel;
+            this.size = column.type().size();
+        }
+
+        /*
+         * Makes room in the block, writing it if it is full, and returns how
+         * many of the len values fit.
+         */
+        int room(int len) throws IOException {
+            if (used == block.length) {
+                flush();
+            }
+            return Math.min(len, (block.length - used) / size);
+        }
+
+        void advance(int n) {
+            used += n * size;
+            count += n;
+        }
+
+        void flush() throws IOException {
+            ByteBuffer source = ByteBuffer.wrap(block, 0, used);
+            while (source.hasRemaining()) {
+                channel.write(source, position + source.position());
+            }
+            position += used;
+            used = 0;
+        }
+    }
+
+    private final Path directory;
+    private final Map<String, Sink> sinks = new LinkedHashMap<>();
+
+    /**
+     * Creates the table directory if needed and creates (or truncates) one file
+     * per column. Any previous schema file is deleted until {@link #close()}.
+     *
+     * @param directory the table directory
+     * @param columns the columns of the table
+     * @throws IOException if a file cannot be created
+     * @throws IllegalArgumentException if there are no columns or two of them
+     *         have the same name
+     */
+    public ColumnarWriter(Path directory, ColumnarFile.Column... columns) throws IOException {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("a table needs at least one column");
+        }
+        // Reserve the names first, in declaration order
+        for (ColumnarFile.Column column : columns) {
+            if (sinks.containsKey(column.name())) {
+                throw new IllegalArgumentException("duplicate column " + column.name());
+            }
+            sinks.put(column.name(), null);
+        }
+        this.directory = directory;
+        Files.createDirectories(directory);
+        Files.deleteIfExists(directory.resolve(ColumnarFile.SCHEMA_FILE));
+        try {
+            for (ColumnarFile.Column column : columns) {
+                FileChannel channel = FileChannel.open(
+                        directory.resolve(column.name() + ColumnarFile.COLUMN_SUFFIX),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                sinks.put(column.name(), new Sink(column, channel));
+            }
+        } catch (IOException e) {
+            closeChannels();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of values written so far to column {@code name}.
+     *
+     * @param name the column name
+     * @return the number of values of the column
+     * @throws IllegalArgumentException if the table has no such column
+     */
+    public long count(String name) {
+        return sink(name).count;
+    }
+
+    /**
+     * Appends {@code src[srcOff..srcOff+len-1]} to a {@link ColumnType#BOOLEAN} column.
+     *
+     * @param name the column name
+     * @param src source array
+     * @param srcOff first element to write
+     * @param len number of values to write
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the table has no such column
+     * @throws IllegalStateException if the column is of another type
+     * @throws IndexOutOfBoundsException if the range is outside {@code src}
+     */
+    public void writeBooleans(String name, boolean[] src, int srcOff, int len) throws IOException {
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Sink sink = sink(name, ColumnType.BOOLEAN);
+        for (int n; len > 0; srcOff += n, len -= n) {
+            n = sink.room(len);
+            packBooleans(src, srcOff, n, sink.block, sink.used);
+            sink.advance(n);
+        }
+    }
+
+    /**
+     * Appends {@code src[srcOff..srcOff+len-1]} to a {@link ColumnType#BYTE} column.
+     *
+     * @param name the column name
+     * @param src source array
+     * @param srcOff first element to write
+     * @param len number of values to write
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the table has no such column
+     * @throws IllegalStateException if the column is of another type
+     * @throws IndexOutOfBoundsException if the range is outside {@code src}
+     */
+    public void writeBytes(String name, byte[] src, int srcOff, int len) throws IOException {
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Sink sink = sink(name, ColumnType.BYTE);
+        for (int n; len > 0; srcOff += n, len -= n) {
+            n = sink.room(len);
+            packBytes(src, srcOff, n, sink.block, sink.used);
+            sink.advance(n);
+        }
+    }
+
+    /**
+     * Appends {@code src[srcOff..srcOff+len-1]} to a {@link ColumnType#CHAR} column.
+     *
+     * @param name the column name
+     * @param src source array
+     * @param srcOff first element to write
+     * @param len number of values to write
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the table has no such column
+     * @throws IllegalStateException if the column is of another type
+     * @throws IndexOutOfBoundsException if the range is outside {@code src}
+     */
+    public void writeChars(String name, char[] src, int srcOff, int len) throws IOException {
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Sink sink = sink(name, ColumnType.CHAR);
+        for (int n; len > 0; srcOff += n, len -= n) {
+            n = sink.room(len);
+            packChars(src, srcOff, n, sink.block, sink.used);
+            sink.advance(n);
+        }
+    }
+
+    /**
+     * Appends {@code src[srcOff..srcOff+len-1]} to a {@link ColumnType#SHORT} column.
+     *
+     * @param name the column name
+     * @param src source array
+     * @param srcOff first element to write
+     * @param len number of values to write
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the table has no such column
+     * @throws IllegalStateException if the column is of another type
+     * @throws IndexOutOfBoundsException if the range is outside {@code src}
+     */
+    public void writeShorts(String name, short[] src, int srcOff, int len) throws IOException {
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Sink sink = sink(name, ColumnType.SHORT);
+        for (int n; len > 0; srcOff += n, len -= n) {
+            n = sink.room(len);
+            packShorts(src, srcOff, n, sink.block, sink.used);
+            sink.advance(n);
+        }
+    }
+
+    /**
+     * Appends {@code src[srcOff..srcOff+len-1]} to a {@link ColumnType#INT} column.
+     *
+     * @param name the column name
+     * @param src source array
+     * @param srcOff first element to write
+     * @param len number of values to write
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the table has no such column
+     * @throws IllegalStateException if the column is of another type
+     * @throws IndexOutOfBoundsException if the range is outside {@code src}
+     */
+    public void writeInts(String name, int[] src, int srcOff, int len) throws IOException {
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Sink sink = sink(name, ColumnType.INT);
+        for (int n; len > 0; srcOff += n, len -= n) {
+            n = sink.room(len);
+            packInts(src, srcOff, n, sink.block, sink.used);
+            sink.advance(n);
+        }
+    }
+
+    /**
+     * Appends {@code src[srcOff..srcOff+len-1]} to a {@link ColumnType#LONG} column.
+     *
+     * @param name the column name
+     * @param src source array
+     * @param srcOff first element to write
+     * @param len number of values to write
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the table has no such column
+     * @throws IllegalStateException if the column is of another type
+     * @throws IndexOutOfBoundsException if the range is outside {@code src}
+     */
+    public void writeLongs(String name, long[] src, int srcOff, int len) throws IOException {
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Sink sink = sink(name, ColumnType.LONG);
+        for (int n; len > 0; srcOff += n, len -= n) {
+            n = sink.room(len);
+            packLongs(src, srcOff, n, sink.block, sink.used);
+            sink.advance(n);
+        }
+    }
+
+    /**
+     * Appends {@code src[srcOff..srcOff+len-1]} to a {@link ColumnType#FLOAT} column.
+     *
+     * @param name the column name
+     * @param src source array
+     * @param srcOff first element to write
+     * @param len number of values to write
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the table has no such column
+     * @throws IllegalStateException if the column is of another type
+     * @throws IndexOutOfBoundsException if the range is outside {@code src}
+     */
+    public void writeFloats(String name, float[] src, int srcOff, int len) throws IOException {
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Sink sink = sink(name, ColumnType.FLOAT);
+        for (int n; len > 0; srcOff += n, len -= n) {
+            n = sink.room(len);
+            packFloats(src, srcOff, n, sink.block, sink.used);
+            sink.advance(n);
+        }
+    }
+
+    /**
+     * Appends {@code src[srcOff..srcOff+len-1]} to a {@link ColumnType#DOUBLE} column.
+     *
+     * @param name the column name
+     * @param src source array
+     * @param srcOff first element to write
+     * @param len number of values to write
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the table has no such column
+     * @throws IllegalStateException if the column is of another type
+     * @throws IndexOutOfBoundsException if the range is outside {@code src}
+     */
+    public void writeDoubles(String name, double[] src, int srcOff, int len) throws IOException {
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Sink sink = sink(name, ColumnType.DOUBLE);
+        for (int n; len > 0; srcOff += n, len -= n) {
+            n = sink.room(len);
+            packDoubles(src, srcOff, n, sink.block, sink.used);
+            sink.advance(n);
+        }
+    }
+
+    /**
+     * Writes the pending values of every column and the schema file, and closes
+     * the column files.
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalStateException if the columns hold different numbers of
+     *         values; the files are closed but no schema is written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            long rows = sinks.values().iterator().next().count;
+            for (Sink sink : sinks.values()) {
+                if (sink.count != rows) {
+                    throw new IllegalStateException("column " + sink.column.name() + " has "
+                            + sink.count + " values, expected " + rows);
+                }
+                sink.flush();
+                sink.channel.force(false);
+            }
+            byte[] schema = new byte[ColumnarFile.SCHEMA_HEADER_SIZE
+                    + sinks.size() * ColumnarFile.SCHEMA_ENTRY_SIZE];
+            packInt(ColumnarFile.MAGIC, schema, 0);
+            packLong(rows, schema, SIZEOF_INT);
+            packInt(sinks.size(), schema, SIZEOF_INT + SIZEOF_LONG);
+            int offset = ColumnarFile.SCHEMA_HEADER_SIZE;
+            for (Sink sink : sinks.values()) {
+                packByte((byte) sink.column.type().ordinal(), schema, offset);
+                packUtf8String(sink.column.name(), ColumnarFile.MAX_NAME_LENGTH, schema, offset + SIZEOF_BYTE);
+                offset += ColumnarFile.SCHEMA_ENTRY_SIZE;
+            }
+            Files.write(directory.resolve(ColumnarFile.SCHEMA_FILE), schema);
+        } finally {
+            closeChannels();
+        }
+    }
+
+    private Sink sink(String name) {
+        Sink sink = sinks.get(name);
+        if (sink == null) {
+            throw new IllegalArgumentException("no column named " + name);
+        }
+        return sink;
+    }
+
+    private Sink sink(String name, ColumnType type) {
+        Sink sink = sink(name);
+        if (sink.column.type() != type) {
+            throw new IllegalStateException("column " + name + " is of type "
+                    + sink.column.type() + ", not " + type);
+        }
+        return sink;
+    }
+
+    private void closeChannels() throws IOException {
+        IOException failure = null;
+        for (Sink sink : sinks.values()) {
+            if (sink != null) {
+                try {
+                    sink.channel.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
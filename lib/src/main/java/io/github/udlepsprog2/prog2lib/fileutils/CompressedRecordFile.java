@@ -0,0 +1,344 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+
+/**
+ * Reader of a block-compressed file of fixed-size records written by
+ * {@link CompressedRecordWriter}.
+ * <p>
+ * The file layout is:
+ * </p>
+ * <pre>
+ * [magic: int][recordSize: int][recordsPerBlock: int]
+ * [deflated block][checksum: int] x blockCount
+ * [block position: long] x blockCount
+ * [count: long][blockCount: int][index position: long][magic: int]
+ * </pre>
+ * <p>
+ * The block index is loaded when the file is opened, so
+ * {@link #read(long, byte[])} decompresses only the block holding the record.
+ * Recently used blocks are kept decompressed in an LRU cache, so reads of
+ * nearby records rarely decompress anything. Sequential scans use a
+ * {@link Scanner}, which decompresses the following blocks in parallel on a
+ * pool of background threads while the caller walks the current one. Every
+ * block is checked against its CRC-32C before it is decompressed.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class CompressedRecordFile implements Closeable {
+
+    /**
+     * Default number of decompressed blocks kept in the cache.
+     */
+    public static final int DEFAULT_CACHE_BLOCKS = 16;
+
+    static final int MAGIC = 0x43524346; // "CRCF"
+    static final int HEADER_SIZE = 3 * SIZEOF_INT;
+    static final int TRAILER_SIZE = 2 * SIZEOF_LONG + 2 * SIZEOF_INT;
+
+    private final FileChannel channel;
+    private final int recordSize;
+    private final int recordsPerBlock;
+    private final long size;
+    private final long[] blockPositions;
+    private final LinkedHashMap<Integer, byte[]> cache;
+    private ExecutorService decompressors;
+
+    /**
+     * Opens {@code path} with the default cache size.
+     *
+     * @param path the file to read
+     * @throws IOException if the file cannot be opened or is not a complete
+     *         compressed record file
+     */
+    public CompressedRecordFile(Path path) throws IOException {
+        this(path, DEFAULT_CACHE_BLOCKS);
+    }
+
+    /**
+     * Opens {@code path}, keeping up to {@code cacheBlocks} decompressed blocks.
+     *
+     * @param path the file to read
+     * @param cacheBlocks maximum number of cached blocks (must be positive)
+     * @throws IOException if the file cannot be opened or is not a complete
+     *         compressed record file
+     * @throws IllegalArgumentException if {@code cacheBlocks <= 0}
+     */
+    public CompressedRecordFile(Path path, int cacheBlocks) throws IOException {
+        if (cacheBlocks <= 0) {
+            throw new IllegalArgumentException("cacheBlocks must be positive");
+        }
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                return size() > cacheBlocks;
+            }
+        };
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            if (length < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("file is too short to be a compressed record file");
+            }
+            byte[] header = readFully(0, HEADER_SIZE);
+            byte[] trailer = readFully(length - TRAILER_SIZE, TRAILER_SIZE);
+            if (unpackInt(header, 0) != MAGIC
+                    || unpackInt(trailer, TRAILER_SIZE - SIZEOF_INT) != MAGIC) {
+                throw new IOException("not a complete compressed record file");
+            }
+            this.recordSize = unpackInt(header, SIZEOF_INT);
+            this.recordsPerBlock = unpackInt(header, 2 * SIZEOF_INT);
+            this.size = unpackLong(trailer, 0);
+            int blockCount = unpackInt(trailer, SIZEOF_LONG);
+            long indexPosition = unpackLong(trailer, SIZEOF_LONG + SIZEOF_INT);
+            if (recordSize <= 0 || recordsPerBlock <= 0 || blockCount < 0
+                    || indexPosition + (long) blockCount * SIZEOF_LONG != length - TRAILER_SIZE
+                    || (size + recordsPerBlock - 1) / recordsPerBlock != blockCount) {
+                throw new IOException("corrupt compressed record file trailer");
+            }
+            // One extra position marks the end of the last block
+            this.blockPositions = new long[blockCount + 1];
+            unpackLongs(readFully(indexPosition, blockCount * SIZEOF_LONG), 0, blockPositions, 0, blockCount);
+            blockPositions[blockCount] = indexPosition;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the size in bytes of each record.
+     *
+     * @return the record size
+     */
+    public int recordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Returns the number of records in the file.
+     *
+     * @return the number of records
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Copies record {@code index} into {@code dst[0..recordSize-1]}, decompressing
+     * its block unless it is cached.
+     *
+     * @param index the record number, in {@code [0, size())}
+     * @param dst destination array (at least {@code recordSize} bytes)
+     * @throws IOException if an I/O error occurs or the block is corrupt
+     * @throws IndexOutOfBoundsException if {@code index} is out of range or
+     *         {@code dst} is too small
+     */
+    public void read(long index, byte[] dst) throws IOException {
+        Objects.checkIndex(index, size);
+        Objects.checkFromIndexSize(0, recordSize, dst.length);
+        int b = (int) (index / recordsPerBlock);
+        byte[] block = cache.get(b);
+        if (block == null) {
+            block = decompress(b);
+            cache.put(b, block);
+        }
+        System.arraycopy(block, (int) (index % recordsPerBlock) * recordSize, dst, 0, recordSize);
+    }
+
+    /**
+     * Returns a scanner over all the records, in order, that decompresses blocks
+     * in parallel with the default read-ahead of one block per available processor.
+     *
+     * @return a new scanner
+     */
+    public Scanner scan() {
+        return scan(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns a scanner over all the records, in order, that keeps up to
+     * {@code readAhead} blocks being decompressed in the background.
+     *
+     * @param readAhead number of blocks decompressed ahead (must be positive)
+     * @return a new scanner
+     * @throws IllegalArgumentException if {@code readAhead <= 0}
+     */
+    public Scanner scan(int readAhead) {
+        if (readAhead <= 0) {
+            throw new IllegalArgumentException("readAhead must be positive");
+        }
+        if (decompressors == null) {
+            decompressors = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread thread = new Thread(r, "CompressedRecordFile decompressor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return new Scanner(readAhead);
+    }
+
+    /**
+     * Closes the file and stops the decompression threads.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (decompressors != null) {
+            decompressors.shutdownNow();
+        }
+        cache.clear();
+        channel.close();
+    }
+
+    /**
+     * Sequential cursor over the records of a {@link CompressedRecordFile}.
+     * <p>
+     * As with {@link RecordReader}, records are not copied: after each successful
+     * {@link #next()}, the current record occupies
+     * {@code buffer()[offset() .. offset() + recordSize - 1]}, and the array is only
+     * valid until the next call to {@link #next()}.
+     * </p>
+     */
+    public final class Scanner {
+        private final int readAhead;
+        private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+        private int nextBlock;
+        private byte[] current = new byte[0];
+        private int offset;
+        private long index = -1;
+
+        private Scanner(int readAhead) {
+            this.readAhead = readAhead;
+            this.offset = -recordSize;
+        }
+
+        /**
+         * Advances to the next record.
+         *
+         * @return {@code true} if there is a current record; {@code false} at the end of the file
+         * @throws IOException if an I/O error occurs or a block is corrupt
+         */
+        public boolean next() throws IOException {
+            if (index + 1 >= size) {
+                return false;
+            }
+            offset += recordSize;
+            if (offset >= current.length) {
+                while (pending.size() < readAhead && nextBlock < blockPositions.length - 1) {
+                    int b = nextBlock++;
+                    pending.add(decompressors.submit(() -> decompress(b)));
+                }
+                current = await(pending.remove());
+                offset = 0;
+            }
+            index++;
+            return true;
+        }
+
+        /**
+         * Returns the decompressed block holding the current record. Only valid
+         * until the next call to {@link #next()}.
+         *
+         * @return the current block
+         */
+        public byte[] buffer() {
+            return current;
+        }
+
+        /**
+         * Returns the offset of the current record within {@link #buffer()}.
+         *
+         * @return the offset of the current record
+         */
+        public int offset() {
+            return offset;
+        }
+
+        /**
+         * Returns the index of the current record in the file.
+         *
+         * @return the current record number, or {@code -1} before the first {@link #next()}
+         */
+        public long index() {
+            return index;
+        }
+
+        private byte[] await(Future<byte[]> future) throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while decompressing", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    /*
+     * Reads, verifies and decompresses block b. Safe to call from several
+     * threads at once, as it only uses positional reads.
+     */
+    private byte[] decompress(int b) throws IOException {
+        long start = blockPositions[b];
+        int length = (int) (blockPositions[b + 1] - start) - Checksums.SIZEOF_CHECKSUM;
+        byte[] compressed = readFully(start, length + Checksums.SIZEOF_CHECKSUM);
+        if (!Checksums.isSealed(compressed, 0, length)) {
+            throw new IOException("block " + b + " does not match its checksum");
+        }
+        long records = Math.min(recordsPerBlock, size - (long) b * recordsPerBlock);
+        byte[] block = new byte[(int) records * recordSize];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed, 0, length);
+            int n = 0;
+            while (n < block.length) {
+                int inflated = inflater.inflate(block, n, block.length - n);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("block " + b + " is shorter than expected");
+                }
+                n += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("block " + b + " is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+        return block;
+    }
+
+    private byte[] readFully(long position, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        ByteBuffer target = ByteBuffer.wrap(bytes);
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+        return bytes;
+    }
+}
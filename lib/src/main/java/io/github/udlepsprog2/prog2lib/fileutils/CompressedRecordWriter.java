@@ -0,0 +1,234 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.Deflater;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+
+/**
+ * Sequential writer of a block-compressed file of fixed-size records, to be
+ * read with {@link CompressedRecordFile}.
+ * <p>
+ * Records are gathered into blocks of a fixed number of records; each full
+ * block is compressed with a {@link Deflater} and sealed with its CRC-32C (see
+ * {@link Checksums}). The file ends with an index of the block positions, so a
+ * reader can reach any record by decompressing a single block. Like
+ * {@link RecordWriter}, records can be copied in with {@link #write(byte[])} or
+ * packed in place after {@link #reserve()}:
+ * </p>
+ * <pre>{@code
+ * try (CompressedRecordWriter writer = new CompressedRecordWriter(path, RECORD_SIZE)) {
+ *     for (Person p : people) {
+ *         int offset = writer.reserve();
+ *         PackUtils.packInt(p.id(), writer.buffer(), offset);
+ *         ...
+ *     }
+ * }
+ * }</pre>
+ * <p>
+ * The file is only readable after {@link #close()}, which writes the last block
+ * and the index.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class CompressedRecordWriter implements Closeable {
+
+    /**
+     * Default uncompressed block size in bytes (64 KiB), rounded down to a whole
+     * number of records.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final int recordSize;
+    private final byte[] block;
+    private final Deflater deflater;
+    private byte[] compressed;
+    private long[] blockPositions = new long[64];
+    private int blockCount;
+    private long position;
+    private int used;
+    private long written;
+
+    /**
+     * Creates (or truncates) {@code path} with the default block size and
+     * compression level.
+     *
+     * @param path the file to write
+     * @param recordSize size in bytes of each record (must be positive)
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if {@code recordSize <= 0}
+     */
+    public CompressedRecordWriter(Path path, int recordSize) throws IOException {
+        this(path, recordSize, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates (or truncates) {@code path}, compressing blocks of about
+     * {@code blockSize} bytes at the given level. The effective block holds
+     * {@code max(1, blockSize / recordSize)} records.
+     *
+     * @param path the file to write
+     * @param recordSize size in bytes of each record (must be positive)
+     * @param blockSize requested uncompressed block size in bytes (must be positive)
+     * @param level the {@link Deflater} compression level, from
+     *        {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION},
+     *        or {@link Deflater#DEFAULT_COMPRESSION}
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if {@code recordSize <= 0}, {@code blockSize <= 0}
+     *         or {@code level} is invalid
+     */
+    public CompressedRecordWriter(Path path, int recordSize, int blockSize, int level) throws IOException {
+        if (recordSize <= 0 || blockSize <= 0) {
+            throw new IllegalArgumentException("recordSize and blockSize must be positive");
+        }
+        this.deflater = new Deflater(level, true);
+        this.recordSize = recordSize;
+        int recordsPerBlock = Math.max(1, blockSize / recordSize);
+        this.block = new byte[recordsPerBlock * recordSize];
+        this.compressed = new byte[block.length / 2 + 64];
+        FileChannel opened = null;
+        try {
+            opened = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.channel = opened;
+            byte[] header = new byte[CompressedRecordFile.HEADER_SIZE];
+            packInt(CompressedRecordFile.MAGIC, header, 0);
+            packInt(recordSize, header, SIZEOF_INT);
+            packInt(recordsPerBlock, header, 2 * SIZEOF_INT);
+            writeFully(header, header.length);
+        } catch (IOException e) {
+            if (opened != null) {
+                try {
+                    opened.close();
+                } catch (IOException closing) {
+                    e.addSuppressed(closing);
+                }
+            }
+            deflater.end();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the size in bytes of each record.
+     *
+     * @return the record size
+     */
+    public int recordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Reserves space for the next record, compressing the current block first if
+     * it is full, and returns where it must be packed.
+     *
+     * @return the offset within {@link #buffer()} of the new record
+     * @throws IOException if a full block cannot be written
+     */
+    public int reserve() throws IOException {
+        if (used == block.length) {
+            writeBlock();
+        }
+        int offset = used;
+        used += recordSize;
+        written++;
+        return offset;
+    }
+
+    /**
+     * Returns the block in which records are packed. Only valid until the next
+     * call to {@link #reserve()} or {@link #write(byte[])}.
+     *
+     * @return the current block
+     */
+    public byte[] buffer() {
+        return block;
+    }
+
+    /**
+     * Appends a copy of {@code src[0..recordSize-1]}.
+     *
+     * @param src source array (at least {@code recordSize} bytes)
+     * @throws IOException if a full block cannot be written
+     * @throws IndexOutOfBoundsException if {@code src} is too small
+     */
+    public void write(byte[] src) throws IOException {
+        Objects.checkFromIndexSize(0, recordSize, src.length);
+        System.arraycopy(src, 0, block, reserve(), recordSize);
+    }
+
+    /**
+     * Returns the number of records written so far.
+     *
+     * @return the record count
+     */
+    public long count() {
+        return written;
+    }
+
+    /**
+     * Compresses the last block, writes the block index and closes the file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (used > 0) {
+                writeBlock();
+            }
+            // [block positions: long * blockCount][count: long][blockCount: int][index position: long][magic: int]
+            long indexPosition = position;
+            byte[] index = new byte[blockCount * SIZEOF_LONG + CompressedRecordFile.TRAILER_SIZE];
+            packLongs(blockPositions, 0, blockCount, index, 0);
+            int trailer = blockCount * SIZEOF_LONG;
+            packLong(written, index, trailer);
+            packInt(blockCount, index, trailer + SIZEOF_LONG);
+            packLong(indexPosition, index, trailer + SIZEOF_LONG + SIZEOF_INT);
+            packInt(CompressedRecordFile.MAGIC, index, trailer + 2 * SIZEOF_LONG + SIZEOF_INT);
+            writeFully(index, index.length);
+            channel.force(false);
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        deflater.reset();
+        deflater.setInput(block, 0, used);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length - Checksums.SIZEOF_CHECKSUM) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - Checksums.SIZEOF_CHECKSUM - length);
+        }
+        Checksums.seal(compressed, 0, length);
+        if (blockCount == blockPositions.length) {
+            blockPositions = Arrays.copyOf(blockPositions, blockCount * 2);
+        }
+        blockPositions[blockCount++] = position;
+        writeFully(compressed, length + Checksums.SIZEOF_CHECKSUM);
+        used = 0;
+    }
+
+    private void writeFully(byte[] bytes, int length) throws IOException {
+        ByteBuffer source = ByteBuffer.wrap(bytes, 0, length);
+        while (source.hasRemaining()) {
+            channel.write(source, position + source.position());
+        }
+        position += length;
+    }
+}
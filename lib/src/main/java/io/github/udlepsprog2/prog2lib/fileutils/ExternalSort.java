@@ -0,0 +1,525 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * External merge sort of files of fixed-size records that may be larger than
+ * the available memory, ordered by a key packed in every record.
+ * <p>
+ * Keys are compared in place with {@link KeyType#compare(byte[], int, byte[], int)},
+ * so records are never decoded. The sort works in two phases, both within a
+ * memory budget:
+ * </p>
+ * <ol>
+ *   <li>Run generation: the source is cut into chunks that are read, sorted
+ *   and written to temporary run files by one worker per available processor,
+ *   each using an equal share of the budget.</li>
+ *   <li>Merge: the runs are merged with a loser tree, which finds the next
+ *   record with one comparison per level, through one buffer per run. If the
+ *   budget does not allow a buffer for every run, groups of runs are first
+ *   merged into longer runs.</li>
+ * </ol>
+ * <p>
+ * The sort is stable: records with equal keys keep their order in the
+ * source. Temporary files are created in the given directory (by default the
+ * directory of the target), are deleted as soon as they have been merged and,
+ * at any moment, hold at most about twice the size of the source; they are
+ * all removed when the sort ends, normally or not.
+ * </p>
+ */
+public final class ExternalSort {
+
+    /**
+     * Default memory budget in bytes (64 MiB).
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * Largest I/O buffer used for a run or the output, in bytes (1 MiB).
+     */
+    public static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+    // Bytes per record of the index arrays used to sort a chunk
+    private static final int INDEX_OVERHEAD = 2 * Integer.BYTES;
+    // Smallest buffer worth giving a run when choosing the merge fan-in
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+    private ExternalSort() {
+    }
+
+    /**
+     * Sorts {@code source} into {@code target} (creating or truncating it) with
+     * the default memory budget, using the directory of {@code target} for the
+     * temporary files.
+     *
+     * @param source the file to sort
+     * @param target the sorted file; must not be {@code source}
+     * @param recordSize size in bytes of each record (must be positive)
+     * @param keyType the type of the key
+     * @param keyOffset the position of the packed key within each record
+     * @return the number of records sorted
+     * @throws IOException if an I/O error occurs or the source length is not a
+     *         multiple of {@code recordSize}
+     * @throws IllegalArgumentException if {@code recordSize <= 0} or both paths
+     *         are the same file
+     * @throws IndexOutOfBoundsException if the key does not fit in the record
+     */
+    public static long sort(Path source, Path target, int recordSize, KeyType<?> keyType, int keyOffset)
+            throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        return sort(source, target, recordSize, keyType, keyOffset, DEFAULT_MEMORY_BUDGET, dir);
+    }
+
+    /**
+     * Sorts {@code source} into {@code target} (creating or truncating it),
+     * keeping the record buffers of both phases within {@code memoryBudget}
+     * bytes (but always holding at least one record per worker and run) and
+     * creating the temporary files in {@code tempDir}.
+     *
+     * @param source the file to sort
+     * @param target the sorted file; must not be {@code source}
+     * @param recordSize size in bytes of each record (must be positive)
+     * @param keyType the type of the key
+     * @param keyOffset the position of the packed key within each record
+     * @param memoryBudget maximum size in bytes of the sort buffers (must be positive)
+     * @param tempDir the directory for the temporary run files
+     * @return the number of records sorted
+     * @throws IOException if an I/O error occurs or the source length is not a
+     *         multiple of {@code recordSize}
+     * @throws IllegalArgumentException if {@code recordSize <= 0},
+     *         {@code memoryBudget <= 0} or both paths are the same file
+     * @throws IndexOutOfBoundsException if the key does not fit in the record
+     */
+    public static long sort(Path source, Path target, int recordSize, KeyType<?> keyType, int keyOffset,
+                            long memoryBudget, Path tempDir) throws IOException {
+        Objects.requireNonNull(keyType, "keyType");
+        Objects.requireNonNull(tempDir, "tempDir");
+        if (recordSize <= 0 || memoryBudget <= 0) {
+            throw new IllegalArgumentException("recordSize and memoryBudget must be positive");
+        }
+        Objects.checkFromIndexSize(keyOffset, keyType.size(), recordSize);
+        if (Files.exists(target) && Files.isSameFile(source, target)) {
+            throw new IllegalArgumentException(target + " is also the source");
+        }
+        Sorter sorter = new Sorter(recordSize, keyType, keyOffset, memoryBudget, tempDir);
+        List<Path> runs = new ArrayList<>();
+        try {
+            long records = sorter.createRuns(source, runs);
+            sorter.mergeRuns(runs, target);
+            return records;
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    private static final class Sorter {
+        private final int recordSize;
+        private final KeyType<?> keyType;
+        private final int keyOffset;
+        private final long memoryBudget;
+        private final Path tempDir;
+
+        Sorter(int recordSize, KeyType<?> keyType, int keyOffset, long memoryBudget, Path tempDir) {
+            this.recordSize = recordSize;
+            this.keyType = keyType;
+            this.keyOffset = keyOffset;
+            this.memoryBudget = memoryBudget;
+            this.tempDir = tempDir;
+        }
+
+        /*
+         * Sorts the source chunk by chunk into run files, added to runs in
+         * source order, and returns the number of records.
+         */
+        long createRuns(Path source, List<Path> runs) throws IOException {
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                long length = in.size();
+                if (length % recordSize != 0) {
+                    throw new IOException("length " + length + " of " + source
+                            + " is not a multiple of the record size " + recordSize);
+                }
+                long records = length / recordSize;
+                if (records == 0) {
+                    return 0;
+                }
+                // Every worker gets at least four minimal buffers' worth of the budget
+                int workers = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                        memoryBudget / (4L * MIN_BUFFER_SIZE)));
+                long share = memoryBudget / workers - minBufferSize();
+                int chunk = (int) Math.max(1, Math.min(share / (recordSize + INDEX_OVERHEAD),
+                        Integer.MAX_VALUE / recordSize));
+                chunk = (int) Math.min(chunk, records);
+                workers = (int) Math.min(workers, (records + chunk - 1) / chunk);
+                BlockingQueue<Workspace> workspaces = new ArrayBlockingQueue<>(workers);
+                for (int i = 0; i < workers; i++) {
+                    workspaces.add(new Workspace(chunk));
+                }
+                ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+                    Thread thread = new Thread(r, "ExternalSort run writer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                // Set on the first failure, so that queued chunks are skipped
+                AtomicBoolean failed = new AtomicBoolean();
+                try {
+                    List<Future<Path>> pending = new ArrayList<>();
+                    for (long start = 0; start < records; start += chunk) {
+                        long first = start;
+                        int count = (int) Math.min(chunk, records - start);
+                        pending.add(pool.submit(() -> {
+                            if (failed.get()) {
+                                return null;
+                            }
+                            Workspace workspace = workspaces.take();
+                            try {
+                                return writeRun(in, first, count, workspace);
+                            } finally {
+                                workspaces.add(workspace);
+                            }
+                        }));
+                    }
+                    // Every task completes, so keep collecting the runs written so that all are deleted
+                    IOException failure = null;
+                    for (Future<Path> future : pending) {
+                        try {
+                            Path run = await(future);
+                            if (run != null) {
+                                runs.add(run);
+                            }
+                        } catch (IOException e) {
+                            if (failure == null) {
+                                failure = e;
+                                failed.set(true);
+                            } else {
+                                failure.addSuppressed(e);
+                            }
+                        }
+                    }
+                    if (failure != null) {
+                        throw failure;
+                    }
+                } finally {
+                    pool.shutdown();
+                }
+                return records;
+            }
+        }
+
+        /*
+         * Merges runs into target, first merging groups of runs while there are
+         * more than the budget allows in one pass. Merged runs are deleted and
+         * removed from runs.
+         */
+        void mergeRuns(List<Path> runs, Path target) throws IOException {
+            if (runs.isEmpty()) {
+                Files.newOutputStream(target).close();
+                return;
+            }
+            int fanIn = (int) Math.max(2, Math.min(Integer.MAX_VALUE, memoryBudget / minBufferSize() - 1));
+            while (runs.size() > fanIn) {
+                // Each pass merges consecutive groups in place, which keeps ties in source order
+                for (int i = 0; i + 1 < runs.size(); i++) {
+                    List<Path> group = new ArrayList<>(runs.subList(i, Math.min(runs.size(), i + fanIn)));
+                    Path merged = Files.createTempFile(tempDir, "sort", ".run");
+                    runs.add(i, merged);
+                    merge(group, merged);
+                    for (Path run : group) {
+                        Files.delete(run);
+                    }
+                    runs.subList(i + 1, i + 1 + group.size()).clear();
+                }
+            }
+            if (runs.size() == 1) {
+                Files.move(runs.get(0), target, StandardCopyOption.REPLACE_EXISTING);
+                runs.clear();
+            } else {
+                merge(runs, target);
+            }
+        }
+
+        private Path writeRun(FileChannel in, long first, int count, Workspace workspace) throws IOException {
+            byte[] records = workspace.records;
+            int length = count * recordSize;
+            ByteBuffer target = ByteBuffer.wrap(records, 0, length);
+            while (target.hasRemaining()) {
+                if (in.read(target, first * recordSize + target.position()) < 0) {
+                    throw new IOException("source file ended while it was being sorted");
+                }
+            }
+            int[] order = workspace.order;
+            for (int i = 0; i < count; i++) {
+                order[i] = i * recordSize;
+            }
+            sort(records, order, workspace.scratch, 0, count);
+            Path run = Files.createTempFile(tempDir, "sort", ".run");
+            try (Output out = new Output(run, Math.min(length, minBufferSize()))) {
+                for (int i = 0; i < count; i++) {
+                    out.write(records, order[i]);
+                }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(run);
+                throw e;
+            }
+            return run;
+        }
+
+        /*
+         * Stable merge sort of the record offsets order[from, to) by key, using
+         * scratch as the auxiliary array.
+         */
+        private void sort(byte[] records, int[] order, int[] scratch, int from, int to) {
+            if (to - from <= 16) {
+                for (int i = from + 1; i < to; i++) {
+                    int offset = order[i];
+                    int j = i - 1;
+                    while (j >= from && compare(records, order[j], records, offset) > 0) {
+                        order[j + 1] = order[j];
+                        j--;
+                    }
+                    order[j + 1] = offset;
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            sort(records, order, scratch, from, mid);
+            sort(records, order, scratch, mid, to);
+            if (compare(records, order[mid - 1], records, order[mid]) <= 0) {
+                return;
+            }
+            System.arraycopy(order, from, scratch, from, to - from);
+            int i = from;
+            int j = mid;
+            for (int k = from; k < to; k++) {
+                if (j >= to || i < mid && compare(records, scratch[i], records, scratch[j]) <= 0) {
+                    order[k] = scratch[i++];
+                } else {
+                    order[k] = scratch[j++];
+                }
+            }
+        }
+
+        private void merge(List<Path> runs, Path target) throws IOException {
+            int bufferSize = bufferSize(runs.size());
+            List<Input> inputs = new ArrayList<>(runs.size());
+            try (Output out = new Output(target, bufferSize)) {
+                for (Path run : runs) {
+                    inputs.add(new Input(run, bufferSize));
+                }
+                LoserTree tree = new LoserTree(inputs.toArray(new Input[0]));
+                for (Input winner = tree.winner(); winner != null; winner = tree.next()) {
+                    out.write(winner.buffer, winner.offset);
+                }
+            } finally {
+                for (Input input : inputs) {
+                    input.close();
+                }
+            }
+        }
+
+        private int minBufferSize() {
+            return Math.max(recordSize, MIN_BUFFER_SIZE / recordSize * recordSize);
+        }
+
+        /*
+         * Size of each of the k input buffers and the output buffer so that
+         * together they fit in the budget.
+         */
+        private int bufferSize(int k) {
+            long size = Math.min(MAX_BUFFER_SIZE, memoryBudget / (k + 1));
+            return (int) Math.max(recordSize, size / recordSize * recordSize);
+        }
+
+        private int compare(byte[] a, int aOffset, byte[] b, int bOffset) {
+            return keyType.compare(a, aOffset + keyOffset, b, bOffset + keyOffset);
+        }
+
+        private final class Workspace {
+            final byte[] records;
+            final int[] order;
+            final int[] scratch;
+
+            Workspace(int chunk) {
+                this.records = new byte[chunk * recordSize];
+                this.order = new int[chunk];
+                this.scratch = new int[chunk];
+            }
+        }
+
+        /*
+         * Tournament tree over the current records of k inputs: tree[0] holds
+         * the winner and every other node the loser of the match played there.
+         * Replacing the winner replays only the matches on its path to the root.
+         * Leaf k stands for a key smaller than all, used only to build the tree.
+         */
+        private final class LoserTree {
+            private final Input[] inputs;
+            private final int[] tree;
+
+            LoserTree(Input[] inputs) {
+                this.inputs = inputs;
+                int k = inputs.length;
+                this.tree = new int[k];
+                Arrays.fill(tree, k);
+                for (int i = k - 1; i >= 0; i--) {
+                    replay(i);
+                }
+            }
+
+            Input winner() {
+                Input input = inputs[tree[0]];
+                return input.exhausted ? null : input;
+            }
+
+            Input next() throws IOException {
+                int leaf = tree[0];
+                inputs[leaf].next();
+                replay(leaf);
+                return winner();
+            }
+
+            private void replay(int leaf) {
+                int winner = leaf;
+                for (int node = (leaf + inputs.length) >>> 1; node > 0; node >>>= 1) {
+                    if (beats(tree[node], winner)) {
+                        int loser = winner;
+                        winner = tree[node];
+                        tree[node] = loser;
+                    }
+                }
+                tree[0] = winner;
+            }
+
+            /*
+             * Tells whether input a comes before input b; ties go to the
+             * earlier run, which keeps the sort stable.
+             */
+            private boolean beats(int a, int b) {
+                int k = inputs.length;
+                if (a == k || b == k) {
+                    return a == k && b != k;
+                }
+                Input x = inputs[a];
+                Input y = inputs[b];
+                if (x.exhausted || y.exhausted) {
+                    return !x.exhausted;
+                }
+                int c = compare(x.buffer, x.offset, y.buffer, y.offset);
+                return c < 0 || c == 0 && a < b;
+            }
+        }
+
+        /*
+         * Buffered sequential reader of a run; the current record occupies
+         * buffer[offset, offset + recordSize).
+         */
+        private final class Input {
+            final FileChannel channel;
+            final byte[] buffer;
+            int offset;
+            int limit;
+            long position;
+            boolean exhausted;
+
+            Input(Path run, int bufferSize) throws IOException {
+                this.channel = FileChannel.open(run, StandardOpenOption.READ);
+                this.buffer = new byte[bufferSize];
+                this.offset = -recordSize;
+                next();
+            }
+
+            void next() throws IOException {
+                offset += recordSize;
+                if (offset < limit) {
+                    return;
+                }
+                ByteBuffer target = ByteBuffer.wrap(buffer);
+                while (target.hasRemaining()) {
+                    if (channel.read(target, position + target.position()) < 0) {
+                        break;
+                    }
+                }
+                position += target.position();
+                limit = target.position() / recordSize * recordSize;
+                offset = 0;
+                exhausted = limit == 0;
+            }
+
+            void close() throws IOException {
+                channel.close();
+            }
+        }
+
+        /*
+         * Buffered sequential writer of a run or the target.
+         */
+        private final class Output implements AutoCloseable {
+            final FileChannel channel;
+            final byte[] buffer;
+            int used;
+
+            Output(Path path, int bufferSize) throws IOException {
+                this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                this.buffer = new byte[Math.max(recordSize, bufferSize)];
+            }
+
+            void write(byte[] src, int offset) throws IOException {
+                if (used + recordSize > buffer.length) {
+                    flush();
+                }
+                System.arraycopy(src, offset, buffer, used, recordSize);
+                used += recordSize;
+            }
+
+            private void flush() throws IOException {
+                ByteBuffer source = ByteBuffer.wrap(buffer, 0, used);
+                while (source.hasRemaining()) {
+                    channel.write(source);
+                }
+                used = 0;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    flush();
+                } finally {
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while sorting", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
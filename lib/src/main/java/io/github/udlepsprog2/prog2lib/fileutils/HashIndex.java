@@ -0,0 +1,401 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+
+/**
+ * A disk-backed extendible hash index mapping unique keys to record numbers,
+ * for exact-match lookups.
+ * <p>
+ * Keys are packed with their {@link KeyType} and hashed; the low
+ * {@code globalDepth} bits of the hash select an entry of an in-memory
+ * directory that points to a bucket page. A lookup therefore costs a single
+ * page read (none if the page is cached), however many keys the index holds.
+ * Buckets are pages encoded with {@link PackUtils}:
+ * </p>
+ * <pre>
+ * [localDepth: int][count: int][key, long] x count
+ * </pre>
+ * <p>
+ * When a bucket fills up only that bucket is split, and the directory is
+ * doubled if needed; the rest of the table is never rehashed. The directory is
+ * saved next to the index file, in a file with the same name plus
+ * {@code ".dir"}, when the index is created and on {@link #flush()} and
+ * {@link #close()}, replacing the previous one atomically.
+ * </p>
+ * <p>
+ * Durability: changes are only safe once {@link #flush()} or {@link #close()}
+ * returns. Bucket pages evicted from the cache reach the file earlier, so after
+ * a crash the saved directory may no longer match them. The header therefore
+ * records whether there are unsaved changes, and an index that was modified
+ * and then not flushed or closed cannot be reopened: the constructor throws an
+ * {@link IOException} instead of silently losing keys, and the index must be
+ * rebuilt from the records it indexes.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ */
+public class HashIndex<K> implements Closeable {
+
+    /**
+     * Default page (bucket) size in bytes.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+
+    /**
+     * Default number of bucket pages kept in the cache.
+     */
+    public static final int DEFAULT_CACHE_PAGES = 256;
+
+    private static final int MAGIC = 0x48494458; // "HIDX"
+    // The saved directory, 8 bytes per entry, must fit in a byte array
+    private static final int MAX_DEPTH = 27;
+
+    // Header page layout
+    private static final int H_MAGIC = 0;
+    private static final int H_PAGE_SIZE = H_MAGIC + SIZEOF_INT;
+    private static final int H_KEY_SIZE = H_PAGE_SIZE + SIZEOF_INT;
+    private static final int H_DEPTH = H_KEY_SIZE + SIZEOF_INT;
+    private static final int H_SIZE = H_DEPTH + SIZEOF_INT;
+    private static final int H_DIRTY = H_SIZE + SIZEOF_LONG;
+    private static final int H_END = H_DIRTY + SIZEOF_INT;
+
+    // Bucket page layout
+    private static final int B_DEPTH = 0;
+    private static final int B_COUNT = B_DEPTH + SIZEOF_INT;
+    private static final int B_ENTRIES = B_COUNT + SIZEOF_INT;
+
+    private final KeyType<K> keyType;
+    private final PageFile pages;
+    private final Path directoryPath;
+    private final int keySize;
+    private final int entrySize;
+    private final int capacity;
+    private final byte[] key;
+    private long[] directory;
+    private int globalDepth;
+    private long size;
+    private boolean dirty;
+
+    /**
+     * Opens (creating it if needed) an index with the default page and cache sizes.
+     *
+     * @param path the index file
+     * @param keyType the encoding of the keys
+     * @throws IOException if the files cannot be opened, were created with a
+     *         different page or key size, or were not closed after a change
+     */
+    public HashIndex(Path path, KeyType<K> keyType) throws IOException {
+        this(path, keyType, DEFAULT_PAGE_SIZE, DEFAULT_CACHE_PAGES);
+    }
+
+    /**
+     * Opens (creating it if needed) an index.
+     *
+     * @param path the index file
+     * @param keyType the encoding of the keys
+     * @param pageSize size in bytes of each bucket page; must fit at least two entries
+     * @param cachePages maximum number of pages kept in memory (at least 4)
+     * @throws IOException if the files cannot be opened, were created with a
+     *         different page or key size, or were not closed after a change
+     * @throws IllegalArgumentException if {@code pageSize} is too small or
+     *         {@code cachePages < 4}
+     */
+    public HashIndex(Path path, KeyType<K> keyType, int pageSize, int cachePages) throws IOException {
+        this.keyType = Objects.requireNonNull(keyType, "keyType");
+        this.keySize = keyType.size();
+        this.entrySize = keySize + SIZEOF_LONG;
+        this.capacity = (pageSize - B_ENTRIES) / entrySize;
+        if (capacity < 2 || pageSize < H_END) {
+            throw new IllegalArgumentException("page size " + pageSize + " is too small");
+        }
+        this.key = new byte[keySize];
+        this.directoryPath = path.resolveSibling(path.getFileName() + ".dir");
+        this.pages = new PageFile(path, pageSize, cachePages);
+        if (pages.pageCount() == 0) {
+            byte[] header = pages.page(pages.allocate());
+            packInt(MAGIC, header, H_MAGIC);
+            packInt(pageSize, header, H_PAGE_SIZE);
+            packInt(keySize, header, H_KEY_SIZE);
+            pages.write(0, header);
+            directory = new long[] {pages.allocate()};
+            // The directory goes first: an index file without pages is simply created again
+            try {
+                writeDirectory();
+                pages.flush();
+            } catch (IOException e) {
+                pages.close();
+                throw e;
+            }
+        } else {
+            byte[] header = pages.page(0);
+            if (unpackInt(header, H_MAGIC) != MAGIC
+                    || unpackInt(header, H_PAGE_SIZE) != pageSize
+                    || unpackInt(header, H_KEY_SIZE) != keySize) {
+                pages.close();
+                throw new IOException("not an index with page size " + pageSize + " and key size " + keySize);
+            }
+            if (unpackInt(header, H_DIRTY) != 0) {
+                pages.close();
+                throw new IOException("index " + path + " was not closed after its last change; rebuild it");
+            }
+            globalDepth = unpackInt(header, H_DEPTH);
+            if (globalDepth < 0 || globalDepth > MAX_DEPTH) {
+                pages.close();
+                throw new IOException("index header has an invalid depth " + globalDepth);
+            }
+            size = unpackLong(header, H_SIZE);
+            directory = readDirectory(1 << globalDepth);
+        }
+    }
+
+    /**
+     * Returns the number of keys in the index.
+     *
+     * @return the number of keys
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the record number associated with {@code k}.
+     *
+     * @param k the key to look up
+     * @return the record number, or {@code -1} if the key is not in the index
+     * @throws IOException if an I/O error occurs
+     */
+    public long get(K k) throws IOException {
+        keyType.pack(k, key, 0);
+        byte[] bucket = pages.page(directory[(int) (hash(key) & mask())]);
+        int pos = find(bucket, key);
+        return pos < 0 ? -1 : unpackLong(bucket, entryOffset(pos) + keySize);
+    }
+
+    /**
+     * Associates {@code recordNumber} with {@code k}, replacing any previous association.
+     *
+     * @param k the key
+     * @param recordNumber the record number (must be non-negative)
+     * @return the previous record number, or {@code -1} if the key was not in the index
+     * @throws IOException if an I/O error occurs or the bucket is full and the
+     *         directory has already reached 2<sup>27</sup> entries
+     * @throws IllegalArgumentException if {@code recordNumber} is negative
+     */
+    public long put(K k, long recordNumber) throws IOException {
+        if (recordNumber < 0) {
+            throw new IllegalArgumentException("negative record number " + recordNumber);
+        }
+        markDirty();
+        keyType.pack(k, key, 0);
+        long hash = hash(key);
+        while (true) {
+            long pageNo = directory[(int) (hash & mask())];
+            byte[] bucket = pages.page(pageNo);
+            int pos = find(bucket, key);
+            if (pos >= 0) {
+                long previous = unpackLong(bucket, entryOffset(pos) + keySize);
+                packLong(recordNumber, bucket, entryOffset(pos) + keySize);
+                pages.write(pageNo, bucket);
+                return previous;
+            }
+            int count = unpackInt(bucket, B_COUNT);
+            if (count < capacity) {
+                System.arraycopy(key, 0, bucket, entryOffset(count), keySize);
+                packLong(recordNumber, bucket, entryOffset(count) + keySize);
+                packInt(count + 1, bucket, B_COUNT);
+                pages.write(pageNo, bucket);
+                size++;
+                return -1;
+            }
+            split(hash);
+        }
+    }
+
+    /**
+     * Writes all pending changes, including the directory, and forces them to the
+     * storage device.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void flush() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        // Buckets, then the directory, and only then the header that declares them consistent
+        pages.flush();
+        writeDirectory();
+        byte[] header = pages.page(0);
+        packInt(globalDepth, header, H_DEPTH);
+        packLong(size, header, H_SIZE);
+        packInt(0, header, H_DIRTY);
+        pages.write(0, header);
+        pages.flush();
+        dirty = false;
+    }
+
+    /**
+     * Writes all pending changes and closes the index files.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            pages.close();
+        }
+    }
+
+    /*
+     * Records in the header, before the first change since the last flush
+     * reaches the file, that the buckets may no longer match the directory.
+     */
+    private void markDirty() throws IOException {
+        if (!dirty) {
+            byte[] header = pages.page(0);
+            packInt(1, header, H_DIRTY);
+            pages.write(0, header);
+            pages.flush();
+            dirty = true;
+        }
+    }
+
+    /*
+     * Splits the full bucket that hash maps to, doubling the directory first if
+     * the bucket is already distinguished by every directory bit.
+     */
+    private void split(long hash) throws IOException {
+        long pageNo = directory[(int) (hash & mask())];
+        int localDepth = unpackInt(pages.page(pageNo), B_DEPTH);
+        if (localDepth == globalDepth) {
+            if (globalDepth == MAX_DEPTH) {
+                throw new IOException("the directory cannot grow beyond " + (1 << MAX_DEPTH) + " entries");
+            }
+            long[] doubled = new long[directory.length * 2];
+            System.arraycopy(directory, 0, doubled, 0, directory.length);
+            System.arraycopy(directory, 0, doubled, directory.length, directory.length);
+            directory = doubled;
+            globalDepth++;
+        }
+        long siblingNo = pages.allocate();
+        byte[] sibling = pages.page(siblingNo);
+        byte[] bucket = pages.page(pageNo);
+        int count = unpackInt(bucket, B_COUNT);
+        int kept = 0;
+        int moved = 0;
+        for (int i = 0; i < count; i++) {
+            int from = entryOffset(i);
+            if ((hash(bucket, from) >>> localDepth & 1) == 0) {
+                System.arraycopy(bucket, from, bucket, entryOffset(kept++), entrySize);
+            } else {
+                System.arraycopy(bucket, from, sibling, entryOffset(moved++), entrySize);
+            }
+        }
+        packInt(localDepth + 1, bucket, B_DEPTH);
+        packInt(kept, bucket, B_COUNT);
+        packInt(localDepth + 1, sibling, B_DEPTH);
+        packInt(moved, sibling, B_COUNT);
+        pages.write(pageNo, bucket);
+        pages.write(siblingNo, sibling);
+        // Every directory entry sharing the bucket's low localDepth bits and
+        // having bit localDepth set now points to the sibling
+        int prefix = (int) (hash & ((1L << localDepth) - 1));
+        for (int i = prefix | 1 << localDepth; i < directory.length; i += 1 << (localDepth + 1)) {
+            directory[i] = siblingNo;
+        }
+    }
+
+    private int find(byte[] bucket, byte[] k) {
+        int count = unpackInt(bucket, B_COUNT);
+        for (int i = 0; i < count; i++) {
+            if (keyType.compare(bucket, entryOffset(i), k, 0) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int entryOffset(int entry) {
+        return B_ENTRIES + entry * entrySize;
+    }
+
+    private long mask() {
+        return (1L << globalDepth) - 1;
+    }
+
+    private long hash(byte[] k) {
+        return hash(k, 0);
+    }
+
+    /*
+     * 64-bit FNV-1a over the packed key followed by a MurmurHash3 finalizer, so
+     * that the low bits used by the directory are well mixed.
+     */
+    private long hash(byte[] buffer, int offset) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < keySize; i++) {
+            h ^= buffer[offset + i] & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private long[] readDirectory(int length) throws IOException {
+        try (FileChannel channel = FileChannel.open(directoryPath, StandardOpenOption.READ)) {
+            if (channel.size() != (long) length * SIZEOF_LONG) {
+                throw new IOException("directory file does not match the index");
+            }
+            byte[] bytes = new byte[length * SIZEOF_LONG];
+            ByteBuffer target = ByteBuffer.wrap(bytes);
+            while (target.hasRemaining()) {
+                if (channel.read(target) < 0) {
+                    throw new IOException("directory file is truncated");
+                }
+            }
+            long[] result = new long[length];
+            unpackLongs(bytes, 0, result, 0, length);
+            return result;
+        } catch (IOException e) {
+            pages.close();
+            throw e;
+        }
+    }
+
+    /*
+     * Writes the directory to a temporary file and renames it over the saved
+     * one, so that a crash leaves either the old or the new directory.
+     */
+    private void writeDirectory() throws IOException {
+        byte[] bytes = new byte[directory.length * SIZEOF_LONG];
+        packLongs(directory, 0, directory.length, bytes, 0);
+        Path temp = directoryPath.resolveSibling(directoryPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer source = ByteBuffer.wrap(bytes);
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+            channel.force(false);
+        }
+        Files.move(temp, directoryPath, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,164 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size binary encoding of the keys stored in the on-disk indexes of
+ * this package.
+ * <p>
+ * A key type packs keys with {@link PackUtils} into exactly {@link #size()}
+ * bytes and can compare two packed keys in place, without creating key
+ * objects: numeric keys are read back as primitives and string keys are
+ * compared char by char, stopping at the first difference. Packing is
+ * canonical: equal keys always produce identical bytes, so packed keys can also
+ * be hashed or compared for equality byte by byte.
+ * </p>
+ * <p>
+ * Instances are immutable and thread-safe.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ */
+public abstract class KeyType<K> {
+
+    /**
+     * {@code int} keys, packed with {@link PackUtils#packInt(int, byte[], int)}
+     * and ordered as signed integers.
+     */
+    public static final KeyType<Integer> INT = new KeyType<>(PackUtils.SIZEOF_INT) {
+        @Override
+        public void pack(Integer key, byte[] buffer, int offset) {
+            PackUtils.packInt(key, buffer, offset);
+        }
+
+        @Override
+        public Integer unpack(byte[] buffer, int offset) {
+            return PackUtils.unpackInt(buffer, offset);
+        }
+
+        @Override
+        public int compare(byte[] a, int aOffset, byte[] b, int bOffset) {
+            return Integer.compare(PackUtils.unpackInt(a, aOffset), PackUtils.unpackInt(b, bOffset));
+        }
+    };
+
+    /**
+     * {@code long} keys, packed with {@link PackUtils#packLong(long, byte[], int)}
+     * and ordered as signed integers.
+     */
+    public static final KeyType<Long> LONG = new KeyType<>(PackUtils.SIZEOF_LONG) {
+        @Override
+        public void pack(Long key, byte[] buffer, int offset) {
+            PackUtils.packLong(key, buffer, offset);
+        }
+
+        @Override
+        public Long unpack(byte[] buffer, int offset) {
+            return PackUtils.unpackLong(buffer, offset);
+        }
+
+        @Override
+        public int compare(byte[] a, int aOffset, byte[] b, int bOffset) {
+            return Long.compare(PackUtils.unpackLong(a, aOffset), PackUtils.unpackLong(b, bOffset));
+        }
+    };
+
+    private final int size;
+
+    /**
+     * Creates a key type whose packed keys occupy {@code size} bytes.
+     *
+     * @param size the packed size in bytes (must be positive)
+     * @throws IllegalArgumentException if {@code size <= 0}
+     */
+    protected KeyType(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        this.size = size;
+    }
+
+    /**
+     * Returns the key type for strings of at most {@code maxLength} characters,
+     * packed with {@link PackUtils#packLimitedString(String, int, byte[], int)}
+     * (longer strings are truncated) and ordered like {@link String#compareTo(String)}.
+     * Strings must not contain {@code '\0'}.
+     *
+     * @param maxLength maximum number of characters (must be positive)
+     * @return the key type
+     * @throws IllegalArgumentException if {@code maxLength <= 0}
+     */
+    public static KeyType<String> limitedString(int maxLength) {
+        return new KeyType<>(maxLength * PackUtils.SIZEOF_CHAR) {
+            @Override
+            public void pack(String key, byte[] buffer, int offset) {
+                // Clear the tail so that equal strings give equal bytes
+                Arrays.fill(buffer, offset, offset + size(), (byte) 0);
+                PackUtils.packLimitedString(key, maxLength, buffer, offset);
+            }
+
+            @Override
+            public String unpack(byte[] buffer, int offset) {
+                return PackUtils.unpackLimitedString(maxLength, buffer, offset);
+            }
+
+            @Override
+            public int compare(byte[] a, int aOffset, byte[] b, int bOffset) {
+                for (int i = 0; i < maxLength; i++) {
+                    char ca = PackUtils.unpackChar(a, aOffset + 2 * i);
+                    char cb = PackUtils.unpackChar(b, bOffset + 2 * i);
+                    if (ca != cb) {
+                        return ca - cb;
+                    }
+                    if (ca == '\0') {
+                        return 0;
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * Returns the size in bytes of a packed key.
+     *
+     * @return the packed size
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * Packs {@code key} into {@code buffer[offset..offset+size()-1]}.
+     *
+     * @param key the key (must be non-null)
+     * @param buffer the destination array
+     * @param offset the starting position
+     * @throws NullPointerException if {@code key} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public abstract void pack(K key, byte[] buffer, int offset);
+
+    /**
+     * Unpacks a key from {@code buffer[offset..offset+size()-1]}.
+     *
+     * @param buffer the source array
+     * @param offset the starting position
+     * @return the decoded key
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public abstract K unpack(byte[] buffer, int offset);
+
+    /**
+     * Compares two packed keys.
+     *
+     * @param a the array holding the first key
+     * @param aOffset the offset of the first key
+     * @param b the array holding the second key
+     * @param bOffset the offset of the second key
+     * @return a negative number, zero or a positive number if the first key is
+     *         less than, equal to or greater than the second
+     */
+    public abstract int compare(byte[] a, int aOffset, byte[] b, int bOffset);
+}
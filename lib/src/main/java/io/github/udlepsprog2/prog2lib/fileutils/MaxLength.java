@@ -0,0 +1,64 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the maximum length stored for a {@code String} component of a
+ * record encoded with {@link RecordCodec}, and how it is encoded.
+ * <p>
+ * By default the component is packed with
+ * {@link PackUtils#packLimitedString(String, int, byte[], int)} and therefore
+ * occupies {@code value() * PackUtils.SIZEOF_CHAR} bytes; longer strings are
+ * truncated. The compact {@link Encoding#LATIN1} and {@link Encoding#UTF8}
+ * encodings occupy {@code value()} bytes.
+ * </p>
+ * <pre>{@code
+ * record Person(int id, @MaxLength(20) String name,
+ *               @MaxLength(value = 8, encoding = MaxLength.Encoding.LATIN1) String code) { }
+ * }</pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.RECORD_COMPONENT)
+public @interface MaxLength {
+
+    /**
+     * Maximum length stored, in the unit of the {@link #encoding()}: UTF-16
+     * code units for {@link Encoding#UTF16}, characters (one byte each) for
+     * {@link Encoding#LATIN1} and bytes for {@link Encoding#UTF8}, where a
+     * character takes from one to four bytes.
+     *
+     * @return the maximum length (must be positive)
+     */
+    int value();
+
+    /**
+     * Encoding used to pack the string.
+     *
+     * @return the string encoding
+     */
+    Encoding encoding() default Encoding.UTF16;
+
+    /**
+     * The limited-string encodings supported by {@link PackUtils}.
+     */
+    enum Encoding {
+        /**
+         * Two bytes per char, {@code value()} chars
+         * ({@link PackUtils#packLimitedString(String, int, byte[], int)}).
+         */
+        UTF16,
+        /**
+         * One byte per char, {@code value()} chars
+         * ({@link PackUtils#packLatin1String(String, int, byte[], int)}).
+         */
+        LATIN1,
+        /**
+         * UTF-8, at most {@code value()} bytes
+         * ({@link PackUtils#packUtf8String(String, int, byte[], int)}).
+         */
+        UTF8
+    }
+}
@@ -1,5 +1,14 @@
 package io.github.udlepsprog2.prog2lib.fileutils;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
 /**
  * Utility methods to pack and unpack primitive values and simple strings
  * to/from a byte array using Big-Endian (most significant byte first) order.
@@ -8,6 +17,9 @@ package io.github.udlepsprog2.prog2lib.fileutils;
  * {@code int}, {@code long}, {@code float}, {@code double}, and Strings with a
  * fixed maximum length (packed as {@code maxLength} UTF-16 code units with a
  * Big-Endian char layout and an optional null terminator when shorter).
+ * Compact alternatives for strings are also provided: Latin-1 at one byte per
+ * char ({@link #packLatin1String(String, int, byte[], int)}) and UTF-8 limited
+ * to a number of bytes ({@link #packUtf8String(String, int, byte[], int)}).
  * </p>
  * <p>
  * Buffer and offset requirements: callers must provide a non-null {@code buffer}
@@ -19,6 +31,67 @@ package io.github.udlepsprog2.prog2lib.fileutils;
  * Endianness: all multi-byte types use Big-Endian byte order, matching
  * {@link java.io.DataOutput} / {@link java.io.DataInput} conventions.
  * </p>
+ * <p>
+ * Bulk variants ({@code packInts}, {@code unpackDoubles}, ...) encode whole
+ * array ranges with exactly the same layout as repeated calls to the
+ * single-value methods. They validate both ranges once per call and then
+ * copy without further per-byte checks, throwing
+ * {@link IndexOutOfBoundsException} if either range does not fit. When the
+ * application is started with {@code --add-modules jdk.incubator.vector}, the
+ * {@code int}, {@code long}, {@code float} and {@code double} variants convert
+ * a whole vector of elements per step with the Vector API; without the module
+ * they use scalar loops. Both paths write the same bytes.
+ * </p>
+ * <p>
+ * {@link ByteBuffer} overloads read and write the same Big-Endian layout at an
+ * absolute index of any heap, direct or mapped buffer, regardless of the
+ * buffer's own {@link ByteBuffer#order() order}, and never change its position
+ * or limit. Off-heap {@code java.lang.foreign.MemorySegment}s can be used
+ * through {@code MemorySegment.asByteBuffer()} without copying.
+ * </p>
+ * <p>
+ * Variable-length encodings: {@code packVarInt}/{@code packVarLong} store
+ * unsigned LEB128 varints (7 bits per byte, least significant group first,
+ * high bit set on every byte but the last) and {@code packZigZagInt}/
+ * {@code packZigZagLong} first map signed values to unsigned ones
+ * ({@code 0, -1, 1, -2, ... → 0, 1, 2, 3, ...}) so that small negative numbers
+ * stay short. Pack methods return the number of bytes written and bulk unpack
+ * methods the number of bytes read; the length of the encoding of a value is
+ * given by {@link #sizeOfVarInt(int)} and {@link #sizeOfVarLong(long)}, and
+ * that of an encoding already in a buffer, which may be non-minimal if another
+ * writer produced it, by {@link #sizeOfVarIntAt(byte[], int)} and
+ * {@link #sizeOfVarLongAt(byte[], int)}. Encodings whose value overflows the
+ * target type are rejected.
+ * </p>
+ * <p>
+ * Reduced-precision encodings: {@code packFloat16} stores a {@code float} as an
+ * IEEE 754 half-precision value (about 3 significant decimal digits, range
+ * &plusmn;65504), and {@code packFixed16}/{@code packFixed32} store
+ * {@code Math.rint(value * scale)} in a {@code short} or an {@code int}, so that
+ * with {@code scale = 100} a reading such as {@code 21.37} is kept exactly to
+ * two decimals in two or four bytes. Fixed-point values outside the range of
+ * the storage type are rejected rather than silently wrapped.
+ * </p>
+ * <p>
+ * Bit-level encodings address bit {@code bitIndex} counted from the most
+ * significant bit of {@code buffer[offset]} (bit {@code 8} is the most
+ * significant bit of {@code buffer[offset + 1]}, and so on): {@code packBit}
+ * stores a boolean in a single bit and {@code packBitField} stores an unsigned
+ * value of {@code width} bits (1 to 32), most significant bit first. Only the
+ * addressed bits are modified, so several fields can share the same bytes; the
+ * bulk variants pack consecutive values into
+ * {@link #sizeOfBitFields(int, int)} bytes.
+ * </p>
+ * <p>
+ * Order-preserving encodings: {@code packOrderedInt}, {@code packOrderedLong},
+ * {@code packOrderedDouble} and {@code packOrderedString} store values so that
+ * comparing the packed bytes as unsigned bytes (see
+ * {@link #compareOrdered(byte[], int, byte[], int, int)}) gives the natural
+ * order of the values, which the plain encodings do not for negative numbers
+ * and doubles. Fields packed one after the other form composite keys that sort
+ * field by field, so sorts, indexes and merges can order records without
+ * unpacking their keys.
+ * </p>
  *
  * @author jmgimeno
  */
@@ -60,6 +133,47 @@ public class PackUtils {
      * (via {@link Double#doubleToLongBits(double)}).
      */
     public static final int SIZEOF_DOUBLE  = 8;
+    /**
+     * Size in bytes of a half-precision float (IEEE 754 binary16, via
+     * {@link Float#floatToFloat16(float)}). Packed in Big-Endian order.
+     */
+    public static final int SIZEOF_FLOAT16 = 2;
+    /**
+     * Size in bytes of a scaled fixed-point value stored in a {@code short}.
+     */
+    public static final int SIZEOF_FIXED16 = 2;
+    /**
+     * Size in bytes of a scaled fixed-point value stored in an {@code int}.
+     */
+    public static final int SIZEOF_FIXED32 = 4;
+    /**
+     * Maximum size in bytes of a varint-encoded {@code int} (LEB128, 7 bits per byte).
+     */
+    public static final int MAX_SIZEOF_VARINT  = 5;
+    /**
+     * Maximum size in bytes of a varint-encoded {@code long} (LEB128, 7 bits per byte).
+     */
+    public static final int MAX_SIZEOF_VARLONG = 10;
+
+    private static final VarHandle CHAR_BE =
+            MethodHandles.byteArrayViewVarHandle(char[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle SHORT_BE =
+            MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_BE =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_BE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final VarHandle CHAR_BB =
+            MethodHandles.byteBufferViewVarHandle(char[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle SHORT_BB =
+            MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_BB =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_BB =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final BulkCodec BULK = BulkCodec.load(BulkCodec.VECTOR_CODEC);
 
     private PackUtils() { }
 
@@ -215,6 +329,117 @@ public class PackUtils {
         return sb.toString();
     }
 
+    /**
+     * Writes at most {@code maxLength} characters of {@code str} starting at
+     * {@code buffer[offset]} using one byte per char (ISO-8859-1). Characters
+     * outside Latin-1 are stored as {@code '?'}.
+     * <p>
+     * Truncation and termination follow {@link #packLimitedString(String, int, byte[], int)}:
+     * a zero byte is written after the last character when {@code str} is shorter than
+     * {@code maxLength}. Buffer requirement: {@code maxLength} bytes starting at {@code offset}.
+     * </p>
+     *
+     * @param str the source string (must be non-null)
+     * @param maxLength maximum number of characters to write
+     * @param buffer destination array
+     * @param offset starting index
+     * @throws NullPointerException if {@code buffer} or {@code str} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static void packLatin1String(
+            String str, int maxLength, byte[] buffer, int offset) {
+        int length = Math.min(str.length(), maxLength);
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            buffer[offset + i] = c <= 0xFF ? (byte) c : (byte) '?';
+        }
+        if (length < maxLength) {
+            buffer[offset + length] = 0;
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #packLatin1String(String, int, byte[], int)}:
+     * at most {@code maxLength} bytes starting at {@code buffer[offset]}, stopping at
+     * the first zero byte. The string is built directly from the bytes.
+     *
+     * @param maxLength maximum number of characters to read
+     * @param buffer source array
+     * @param offset starting index
+     * @return the decoded string
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space to read
+     */
+    public static String unpackLatin1String(
+            int maxLength, byte[] buffer, int offset) {
+        return new String(buffer, offset, terminatedLength(maxLength, buffer, offset),
+                StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Writes {@code str} encoded as UTF-8 starting at {@code buffer[offset]}, using
+     * at most {@code maxBytes} bytes. If the encoding does not fit, it is truncated
+     * at the last complete character that fits; if it is shorter than
+     * {@code maxBytes}, a zero byte is written right after it.
+     * <p>
+     * Buffer requirement: {@code maxBytes} bytes starting at {@code offset}.
+     * </p>
+     *
+     * @param str the source string (must be non-null)
+     * @param maxBytes maximum number of bytes to write
+     * @param buffer destination array
+     * @param offset starting index
+     * @throws NullPointerException if {@code buffer} or {@code str} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public static void packUtf8String(
+            String str, int maxBytes, byte[] buffer, int offset) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        if (length > maxBytes) {
+            length = maxBytes;
+            // Never cut a multibyte sequence: back up over continuation bytes
+            while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+                length--;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, offset, length);
+        if (length < maxBytes) {
+            buffer[offset + length] = 0;
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #packUtf8String(String, int, byte[], int)}:
+     * at most {@code maxBytes} bytes starting at {@code buffer[offset]}, stopping at
+     * the first zero byte, decoded as UTF-8.
+     *
+     * @param maxBytes maximum number of bytes to read
+     * @param buffer source array
+     * @param offset starting index
+     * @return the decoded string
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space to read
+     */
+    public static String unpackUtf8String(
+            int maxBytes, byte[] buffer, int offset) {
+        return new String(buffer, offset, terminatedLength(maxBytes, buffer, offset),
+                StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Number of bytes before the first zero in buffer[offset..offset+maxLength-1],
+     * or maxLength if there is none.
+     */
+    private static int terminatedLength(int maxLength, byte[] buffer, int offset) {
+        Objects.checkFromIndexSize(offset, maxLength, buffer.length);
+        int length = 0;
+        while (length < maxLength && buffer[offset + length] != 0) {
+            length++;
+        }
+        return length;
+    }
+
     /**
      * Writes an {@code int} to {@code buffer[offset..offset+3]} in Big-Endian order.
      *
@@ -380,4 +605,1756 @@ public class PackUtils {
         long bits = unpackLong(buffer, offset);
         return Double.longBitsToDouble(bits);
     }
+
+    /**
+     * Writes a boolean value at absolute index {@code offset} of {@code buffer}.
+     * <p>Encoding: {@code true → 1}, {@code false → 0}.</p>
+     *
+     * @param b the value to write
+     * @param buffer destination buffer (must be non-null and writable)
+     * @param offset absolute index at which to write
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if {@code offset} is out of range
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public static void packBoolean(boolean b, ByteBuffer buffer, int offset) {
+        buffer.put(offset, b ? (byte) 1 : (byte) 0);
+    }
+
+    /**
+     * Reads a boolean from absolute index {@code offset} of {@code buffer}.
+     * <p>Decoding: returns {@code true} iff the stored byte equals {@code 1}.</p>
+     *
+     * @param buffer source buffer (must be non-null)
+     * @param offset absolute index from which to read
+     * @return {@code true} if the byte is {@code 1}; {@code false} otherwise
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if {@code offset} is out of range
+     */
+    public static boolean unpackBoolean(ByteBuffer buffer, int offset) {
+        return buffer.get(offset) == (byte) 1;
+    }
+
+    /**
+     * Writes a byte at absolute index {@code offset} of {@code buffer}.
+     *
+     * @param b the byte to write
+     * @param buffer destination buffer (must be non-null and writable)
+     * @param offset absolute index at which to write
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if {@code offset} is out of range
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public static void packByte(byte b, ByteBuffer buffer, int offset) {
+        buffer.put(offset, b);
+    }
+
+    /**
+     * Reads a byte from absolute index {@code offset} of {@code buffer}.
+     *
+     * @param buffer source buffer (must be non-null)
+     * @param offset absolute index from which to read
+     * @return the byte that has been read
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if {@code offset} is out of range
+     */
+    public static byte unpackByte(ByteBuffer buffer, int offset) {
+        return buffer.get(offset);
+    }
+
+    /**
+     * Writes a {@code char} at absolute index {@code offset} of {@code buffer}
+     * in Big-Endian order.
+     *
+     * @param c the char to write
+     * @param buffer destination buffer (must be non-null and writable)
+     * @param offset absolute starting index (must allow two bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public static void packChar(char c, ByteBuffer buffer, int offset) {
+        CHAR_BB.set(buffer, offset, c);
+    }
+
+    /**
+     * Reads a Big-Endian {@code char} from absolute index {@code offset} of {@code buffer}.
+     *
+     * @param buffer source buffer (must be non-null)
+     * @param offset absolute starting index (must allow two bytes)
+     * @return the decoded char
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public static char unpackChar(ByteBuffer buffer, int offset) {
+        return (char) CHAR_BB.get(buffer, offset);
+    }
+
+    /**
+     * Writes at most {@code maxLength} characters of {@code str} at absolute index
+     * {@code offset} of {@code buffer}, with the same layout and truncation rules as
+     * {@link #packLimitedString(String, int, byte[], int)}.
+     *
+     * @param str the source string (must be non-null)
+     * @param maxLength maximum number of characters to write (code units)
+     * @param buffer destination buffer (must be non-null and writable)
+     * @param offset absolute starting index
+     * @throws NullPointerException if {@code buffer} or {@code str} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public static void packLimitedString(
+            String str, int maxLength, ByteBuffer buffer, int offset) {
+
+        for (int i = 0; i < maxLength; i++) {
+            if ( i < str.length() ) {
+                packChar(str.charAt(i), buffer, offset+2*i);
+            } else {
+                // We mark with a zero
+                packChar('\0', buffer, offset+2*i);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reads at most {@code maxLength} characters at absolute index {@code offset}
+     * of {@code buffer}, with the same rules as
+     * {@link #unpackLimitedString(int, byte[], int)}.
+     *
+     * @param maxLength maximum number of characters to read
+     * @param buffer source buffer (must be non-null)
+     * @param offset absolute starting index
+     * @return the decoded string
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space to read
+     */
+    public static String unpackLimitedString(
+            int maxLength, ByteBuffer buffer, int offset) {
+        StringBuilder sb = new StringBuilder(Math.min(maxLength, 16));
+        for (int i = 0; i < maxLength; i++ ) {
+            char c = unpackChar(buffer, offset + 2 * i);
+            if (c != '\0') {
+                sb.append(c);
+            } else {
+                break;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads at most {@code maxLength} bytes at absolute index {@code offset} of
+     * {@code buffer} as a Latin-1 string, with the same rules as
+     * {@link #unpackLatin1String(int, byte[], int)}.
+     *
+     * @param maxLength maximum number of characters to read
+     * @param buffer source buffer (must be non-null)
+     * @param offset absolute starting index
+     * @return the decoded string
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space to read
+     */
+    public static String unpackLatin1String(
+            int maxLength, ByteBuffer buffer, int offset) {
+        return terminatedString(maxLength, buffer, offset, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Reads at most {@code maxBytes} bytes at absolute index {@code offset} of
+     * {@code buffer} as a UTF-8 string, with the same rules as
+     * {@link #unpackUtf8String(int, byte[], int)}.
+     *
+     * @param maxBytes maximum number of bytes to read
+     * @param buffer source buffer (must be non-null)
+     * @param offset absolute starting index
+     * @return the decoded string
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space to read
+     */
+    public static String unpackUtf8String(
+            int maxBytes, ByteBuffer buffer, int offset) {
+        return terminatedString(maxBytes, buffer, offset, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Decodes the bytes of buffer[offset..offset+maxLength-1] that precede the
+     * first zero, or all of them if there is none.
+     */
+    private static String terminatedString(int maxLength, ByteBuffer buffer, int offset, Charset charset) {
+        Objects.checkFromIndexSize(offset, maxLength, buffer.limit());
+        int length = 0;
+        while (length < maxLength && buffer.get(offset + length) != 0) {
+            length++;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Writes a {@code short} at absolute index {@code offset} of {@code buffer}
+     * in Big-Endian order.
+     *
+     * @param s the short to be written
+     * @param buffer destination buffer (must be non-null and writable)
+     * @param offset absolute starting index (must allow two bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public static void packShort(short s, ByteBuffer buffer, int offset) {
+        SHORT_BB.set(buffer, offset, s);
+    }
+
+    /**
+     * Reads a Big-Endian {@code short} from absolute index {@code offset} of {@code buffer}.
+     *
+     * @param buffer source buffer (must be non-null)
+     * @param offset absolute starting index (must allow two bytes)
+     * @return the short that has been read
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public static short unpackShort(ByteBuffer buffer, int offset) {
+        return (short) SHORT_BB.get(buffer, offset);
+    }
+
+    /**
+     * Writes an {@code int} at absolute index {@code offset} of {@code buffer}
+     * in Big-Endian order.
+     *
+     * @param n the int to be written
+     * @param buffer destination buffer (must be non-null and writable)
+     * @param offset absolute starting index (must allow four bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public static void packInt(int n, ByteBuffer buffer, int offset) {
+        INT_BB.set(buffer, offset, n);
+    }
+
+    /**
+     * Reads a Big-Endian {@code int} from absolute index {@code offset} of {@code buffer}.
+     *
+     * @param buffer source buffer (must be non-null)
+     * @param offset absolute starting index (must allow four bytes)
+     * @return the int that has been read
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public static int unpackInt(ByteBuffer buffer, int offset) {
+        return (int) INT_BB.get(buffer, offset);
+    }
+
+    /**
+     * Writes a {@code long} at absolute index {@code offset} of {@code buffer}
+     * in Big-Endian order.
+     *
+     * @param n the long to be written
+     * @param buffer destination buffer (must be non-null and writable)
+     * @param offset absolute starting index (must allow eight bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public static void packLong(long n, ByteBuffer buffer, int offset) {
+        LONG_BB.set(buffer, offset, n);
+    }
+
+    /**
+     * Reads a Big-Endian {@code long} from absolute index {@code offset} of {@code buffer}.
+     *
+     * @param buffer source buffer (must be non-null)
+     * @param offset absolute starting index (must allow eight bytes)
+     * @return the long that has been read
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public static long unpackLong(ByteBuffer buffer, int offset) {
+        return (long) LONG_BB.get(buffer, offset);
+    }
+
+    /**
+     * Writes a {@code float} at absolute index {@code offset} of {@code buffer},
+     * using the same encoding as {@link #packFloat(float, byte[], int)}.
+     *
+     * @param f the float to be written
+     * @param buffer destination buffer (must be non-null and writable)
+     * @param offset absolute starting index (must allow four bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public static void packFloat(float f, ByteBuffer buffer, int offset) {
+        packInt(Float.floatToIntBits(f), buffer, offset);
+    }
+
+    /**
+     * Reads a {@code float} from absolute index {@code offset} of {@code buffer},
+     * using the same decoding as {@link #unpackFloat(byte[], int)}.
+     *
+     * @param buffer source buffer (must be non-null)
+     * @param offset absolute starting index (must allow four bytes)
+     * @return the decoded float
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public static float unpackFloat(ByteBuffer buffer, int offset) {
+        return Float.intBitsToFloat(unpackInt(buffer, offset));
+    }
+
+    /**
+     * Writes a {@code double} at absolute index {@code offset} of {@code buffer},
+     * using the same encoding as {@link #packDouble(double, byte[], int)}.
+     *
+     * @param d the double to be written
+     * @param buffer destination buffer (must be non-null and writable)
+     * @param offset absolute starting index (must allow eight bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public static void packDouble(double d, ByteBuffer buffer, int offset) {
+        packLong(Double.doubleToLongBits(d), buffer, offset);
+    }
+
+    /**
+     * Reads a {@code double} from absolute index {@code offset} of {@code buffer},
+     * using the same decoding as {@link #unpackDouble(byte[], int)}.
+     *
+     * @param buffer source buffer (must be non-null)
+     * @param offset absolute starting index (must allow eight bytes)
+     * @return the decoded double
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public static double unpackDouble(ByteBuffer buffer, int offset) {
+        return Double.longBitsToDouble(unpackLong(buffer, offset));
+    }
+
+    /**
+     * Writes {@code len} booleans from {@code src[srcOff..]} as consecutive
+     * single bytes starting at {@code buffer[offset]}, using the same encoding as
+     * {@link #packBoolean(boolean, byte[], int)}.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void packBooleans(boolean[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_BOOLEAN);
+        for (int i = 0; i < len; i++) {
+            buffer[offset + i] = src[srcOff + i] ? (byte) 1 : (byte) 0;
+        }
+    }
+
+    /**
+     * Reads {@code len} booleans starting at {@code buffer[offset]} into
+     * {@code dst[dstOff..]}, using the same decoding as
+     * {@link #unpackBoolean(byte[], int)}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void unpackBooleans(byte[] buffer, int offset, boolean[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_BOOLEAN);
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = buffer[offset + i] == (byte) 1;
+        }
+    }
+
+    /**
+     * Copies {@code len} bytes from {@code src[srcOff..]} to {@code buffer[offset..]}.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void packBytes(byte[] src, int srcOff, int len, byte[] buffer, int offset) {
+        System.arraycopy(src, srcOff, buffer, offset, len);
+    }
+
+    /**
+     * Copies {@code len} bytes from {@code buffer[offset..]} to {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void unpackBytes(byte[] buffer, int offset, byte[] dst, int dstOff, int len) {
+        System.arraycopy(buffer, offset, dst, dstOff, len);
+    }
+
+    /**
+     * Writes {@code len} chars from {@code src[srcOff..]} starting at
+     * {@code buffer[offset]}, 2 bytes each, in Big-Endian order.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void packChars(char[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_CHAR);
+        for (int i = 0; i < len; i++) {
+            CHAR_BE.set(buffer, offset + SIZEOF_CHAR * i, src[srcOff + i]);
+        }
+    }
+
+    /**
+     * Reads {@code len} Big-Endian chars starting at {@code buffer[offset]}
+     * into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void unpackChars(byte[] buffer, int offset, char[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_CHAR);
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = (char) CHAR_BE.get(buffer, offset + SIZEOF_CHAR * i);
+        }
+    }
+
+    /**
+     * Writes {@code len} shorts from {@code src[srcOff..]} starting at
+     * {@code buffer[offset]}, 2 bytes each, in Big-Endian order.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void packShorts(short[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_SHORT);
+        for (int i = 0; i < len; i++) {
+            SHORT_BE.set(buffer, offset + SIZEOF_SHORT * i, src[srcOff + i]);
+        }
+    }
+
+    /**
+     * Reads {@code len} Big-Endian shorts starting at {@code buffer[offset]}
+     * into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void unpackShorts(byte[] buffer, int offset, short[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_SHORT);
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = (short) SHORT_BE.get(buffer, offset + SIZEOF_SHORT * i);
+        }
+    }
+
+    /**
+     * Writes {@code len} ints from {@code src[srcOff..]} starting at
+     * {@code buffer[offset]}, 4 bytes each, in Big-Endian order.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void packInts(int[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_INT);
+        BULK.packInts(src, srcOff, len, buffer, offset);
+    }
+
+    /**
+     * Reads {@code len} Big-Endian ints starting at {@code buffer[offset]}
+     * into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void unpackInts(byte[] buffer, int offset, int[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_INT);
+        BULK.unpackInts(buffer, offset, dst, dstOff, len);
+    }
+
+    /**
+     * Writes {@code len} longs from {@code src[srcOff..]} starting at
+     * {@code buffer[offset]}, 8 bytes each, in Big-Endian order.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void packLongs(long[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_LONG);
+        BULK.packLongs(src, srcOff, len, buffer, offset);
+    }
+
+    /**
+     * Reads {@code len} Big-Endian longs starting at {@code buffer[offset]}
+     * into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void unpackLongs(byte[] buffer, int offset, long[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_LONG);
+        BULK.unpackLongs(buffer, offset, dst, dstOff, len);
+    }
+
+    /**
+     * Writes {@code len} floats from {@code src[srcOff..]} starting at
+     * {@code buffer[offset]}, using the same encoding as
+     * {@link #packFloat(float, byte[], int)}.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void packFloats(float[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_FLOAT);
+        BULK.packFloats(src, srcOff, len, buffer, offset);
+    }
+
+    /**
+     * Reads {@code len} floats starting at {@code buffer[offset]} into
+     * {@code dst[dstOff..]}, using the same decoding as
+     * {@link #unpackFloat(byte[], int)}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void unpackFloats(byte[] buffer, int offset, float[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_FLOAT);
+        BULK.unpackFloats(buffer, offset, dst, dstOff, len);
+    }
+
+    /**
+     * Writes {@code len} doubles from {@code src[srcOff..]} starting at
+     * {@code buffer[offset]}, using the same encoding as
+     * {@link #packDouble(double, byte[], int)}.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void packDoubles(double[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_DOUBLE);
+        BULK.packDoubles(src, srcOff, len, buffer, offset);
+    }
+
+    /**
+     * Reads {@code len} doubles starting at {@code buffer[offset]} into
+     * {@code dst[dstOff..]}, using the same decoding as
+     * {@link #unpackDouble(byte[], int)}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void unpackDoubles(byte[] buffer, int offset, double[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_DOUBLE);
+        BULK.unpackDoubles(buffer, offset, dst, dstOff, len);
+    }
+
+    /**
+     * Returns the number of bytes used by {@link #packVarInt(int, byte[], int)} to
+     * encode {@code n} (between 1 and {@value #MAX_SIZEOF_VARINT}).
+     *
+     * @param n the value, interpreted as unsigned
+     * @return the encoded size in bytes
+     */
+    public static int sizeOfVarInt(int n) {
+        return 1 + (31 - Integer.numberOfLeadingZeros(n | 1)) / 7;
+    }
+
+    /**
+     * Returns the number of bytes used by {@link #packVarLong(long, byte[], int)} to
+     * encode {@code n} (between 1 and {@value #MAX_SIZEOF_VARLONG}).
+     *
+     * @param n the value, interpreted as unsigned
+     * @return the encoded size in bytes
+     */
+    public static int sizeOfVarLong(long n) {
+        return 1 + (63 - Long.numberOfLeadingZeros(n | 1)) / 7;
+    }
+
+    /**
+     * Returns the number of bytes taken by the varint {@code int} encoded at
+     * {@code buffer[offset]}, that is, how many bytes
+     * {@link #unpackVarInt(byte[], int)} or {@link #unpackZigZagInt(byte[], int)}
+     * consume there. It equals {@link #sizeOfVarInt(int) sizeOfVarInt} of the
+     * value for encodings written by this class, but other writers may pad a
+     * value with redundant {@code 0x80} bytes.
+     *
+     * @param buffer the source array
+     * @param offset the starting position
+     * @return the encoded size in bytes
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if the encoding runs past the end of {@code buffer}
+     * @throws IllegalArgumentException if the encoding is malformed
+     */
+    public static int sizeOfVarIntAt(byte[] buffer, int offset) {
+        return (int) (decodeVarInt(buffer, offset) >>> 32);
+    }
+
+    /**
+     * Returns the number of bytes taken by the varint {@code long} encoded at
+     * {@code buffer[offset]}, that is, how many bytes
+     * {@link #unpackVarLong(byte[], int)} or {@link #unpackZigZagLong(byte[], int)}
+     * consume there.
+     *
+     * @param buffer the source array
+     * @param offset the starting position
+     * @return the encoded size in bytes
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if the encoding runs past the end of {@code buffer}
+     * @throws IllegalArgumentException if the encoding is malformed
+     */
+    public static int sizeOfVarLongAt(byte[] buffer, int offset) {
+        for (int i = 0; i < MAX_SIZEOF_VARLONG - 1; i++) {
+            if (buffer[offset + i] >= 0) {
+                return i + 1;
+            }
+        }
+        checkLastVarLongByte(buffer[offset + MAX_SIZEOF_VARLONG - 1]);
+        return MAX_SIZEOF_VARLONG;
+    }
+
+    /**
+     * Writes {@code n}, interpreted as unsigned, as an LEB128 varint starting at
+     * {@code buffer[offset]}. Values below 128 take a single byte; negative
+     * values always take {@value #MAX_SIZEOF_VARINT} bytes (use
+     * {@link #packZigZagInt(int, byte[], int)} for signed data).
+     *
+     * @param n the int to be written
+     * @param buffer the destination array
+     * @param offset the starting position
+     * @return the number of bytes written
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static int packVarInt(int n, byte[] buffer, int offset) {
+        int i = offset;
+        while ((n & ~0x7F) != 0) {
+            buffer[i++] = (byte) ((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        buffer[i++] = (byte) n;
+        return i - offset;
+    }
+
+    /**
+     * Reads an LEB128 varint {@code int} starting at {@code buffer[offset]}. The
+     * number of bytes consumed is given by {@link #sizeOfVarIntAt(byte[], int)};
+     * non-minimal encodings are accepted.
+     *
+     * @param buffer the source array
+     * @param offset the starting position
+     * @return the int that has been read
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if the encoding runs past the end of {@code buffer}
+     * @throws IllegalArgumentException if the encoding is longer than
+     *         {@value #MAX_SIZEOF_VARINT} bytes or its value does not fit in 32 bits
+     */
+    public static int unpackVarInt(byte[] buffer, int offset) {
+        return (int) decodeVarInt(buffer, offset);
+    }
+
+    /*
+     * Decodes the varint int at buffer[offset] and returns its value in the
+     * low 32 bits and the number of bytes it takes in the high 32 bits.
+     */
+    private static long decodeVarInt(byte[] buffer, int offset) {
+        int result = 0;
+        for (int i = 0; i < MAX_SIZEOF_VARINT; i++) {
+            byte b = buffer[offset + i];
+            result |= (b & 0x7F) << (7 * i);
+            if (b >= 0) {
+                // Only the low 4 bits of a fifth byte fit in an int
+                if (i == MAX_SIZEOF_VARINT - 1 && b > 0x0F) {
+                    throw new IllegalArgumentException("varint overflows an int");
+                }
+                return (long) (i + 1) << 32 | (result & 0xFFFFFFFFL);
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    /**
+     * Writes {@code n}, interpreted as unsigned, as an LEB128 varint starting at
+     * {@code buffer[offset]}.
+     *
+     * @param n the long to be written
+     * @param buffer the destination array
+     * @param offset the starting position
+     * @return the number of bytes written
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static int packVarLong(long n, byte[] buffer, int offset) {
+        int i = offset;
+        while ((n & ~0x7FL) != 0) {
+            buffer[i++] = (byte) ((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        buffer[i++] = (byte) n;
+        return i - offset;
+    }
+
+    /**
+     * Reads an LEB128 varint {@code long} starting at {@code buffer[offset]}. The
+     * number of bytes consumed is given by {@link #sizeOfVarLongAt(byte[], int)};
+     * non-minimal encodings are accepted.
+     *
+     * @param buffer the source array
+     * @param offset the starting position
+     * @return the long that has been read
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if the encoding runs past the end of {@code buffer}
+     * @throws IllegalArgumentException if the encoding is longer than
+     *         {@value #MAX_SIZEOF_VARLONG} bytes or its value does not fit in 64 bits
+     */
+    public static long unpackVarLong(byte[] buffer, int offset) {
+        long result = 0;
+        for (int i = 0; i < MAX_SIZEOF_VARLONG - 1; i++) {
+            byte b = buffer[offset + i];
+            result |= (long) (b & 0x7F) << (7 * i);
+            if (b >= 0) {
+                return result;
+            }
+        }
+        byte last = buffer[offset + MAX_SIZEOF_VARLONG - 1];
+        checkLastVarLongByte(last);
+        return result | (long) last << 63;
+    }
+
+    /*
+     * Decodes the varint long at buffer[offset] into dst[index] and returns
+     * the number of bytes it takes.
+     */
+    private static int decodeVarLong(byte[] buffer, int offset, long[] dst, int index) {
+        long result = 0;
+        for (int i = 0; i < MAX_SIZEOF_VARLONG - 1; i++) {
+            byte b = buffer[offset + i];
+            result |= (long) (b & 0x7F) << (7 * i);
+            if (b >= 0) {
+                dst[index] = result;
+                return i + 1;
+            }
+        }
+        byte last = buffer[offset + MAX_SIZEOF_VARLONG - 1];
+        checkLastVarLongByte(last);
+        dst[index] = result | (long) last << 63;
+        return MAX_SIZEOF_VARLONG;
+    }
+
+    // The tenth byte of a varint long carries bit 63 only
+    private static void checkLastVarLongByte(byte b) {
+        if (b < 0) {
+            throw new IllegalArgumentException("malformed varint");
+        }
+        if (b > 1) {
+            throw new IllegalArgumentException("varint overflows a long");
+        }
+    }
+
+    /**
+     * Writes a signed {@code int} as a ZigZag-encoded varint starting at
+     * {@code buffer[offset]}, so that values close to zero (positive or
+     * negative) take few bytes.
+     *
+     * @param n the int to be written
+     * @param buffer the destination array
+     * @param offset the starting position
+     * @return the number of bytes written
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static int packZigZagInt(int n, byte[] buffer, int offset) {
+        return packVarInt((n << 1) ^ (n >> 31), buffer, offset);
+    }
+
+    /**
+     * Reads a ZigZag-encoded varint {@code int} starting at {@code buffer[offset]}.
+     *
+     * @param buffer the source array
+     * @param offset the starting position
+     * @return the int that has been read
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if the encoding runs past the end of {@code buffer}
+     * @throws IllegalArgumentException if the encoding is longer than
+     *         {@value #MAX_SIZEOF_VARINT} bytes or its value does not fit in 32 bits
+     */
+    public static int unpackZigZagInt(byte[] buffer, int offset) {
+        int n = unpackVarInt(buffer, offset);
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    /**
+     * Writes a signed {@code long} as a ZigZag-encoded varint starting at
+     * {@code buffer[offset]}.
+     *
+     * @param n the long to be written
+     * @param buffer the destination array
+     * @param offset the starting position
+     * @return the number of bytes written
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static int packZigZagLong(long n, byte[] buffer, int offset) {
+        return packVarLong((n << 1) ^ (n >> 63), buffer, offset);
+    }
+
+    /**
+     * Reads a ZigZag-encoded varint {@code long} starting at {@code buffer[offset]}.
+     *
+     * @param buffer the source array
+     * @param offset the starting position
+     * @return the long that has been read
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if the encoding runs past the end of {@code buffer}
+     * @throws IllegalArgumentException if the encoding is longer than
+     *         {@value #MAX_SIZEOF_VARLONG} bytes or its value does not fit in 64 bits
+     */
+    public static long unpackZigZagLong(byte[] buffer, int offset) {
+        long n = unpackVarLong(buffer, offset);
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    /**
+     * Writes {@code len} ints from {@code src[srcOff..]} as consecutive LEB128
+     * varints starting at {@code buffer[offset]}.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @return the number of bytes written
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if the source range is out of bounds or
+     *         there isn’t enough space
+     */
+    public static int packVarInts(int[] src, int srcOff, int len, byte[] buffer, int offset) {
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        int pos = offset;
+        for (int i = 0; i < len; i++) {
+            pos += packVarInt(src[srcOff + i], buffer, pos);
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Reads {@code len} consecutive LEB128 varint ints starting at
+     * {@code buffer[offset]} into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @return the number of bytes read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if the destination range is out of bounds
+     *         or the encodings run past the end of {@code buffer}
+     * @throws IllegalArgumentException if an encoding is malformed
+     */
+    public static int unpackVarInts(byte[] buffer, int offset, int[] dst, int dstOff, int len) {
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        int pos = offset;
+        for (int i = 0; i < len; i++) {
+            long decoded = decodeVarInt(buffer, pos);
+            dst[dstOff + i] = (int) decoded;
+            pos += (int) (decoded >>> 32);
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Writes {@code len} longs from {@code src[srcOff..]} as consecutive LEB128
+     * varints starting at {@code buffer[offset]}.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @return the number of bytes written
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if the source range is out of bounds or
+     *         there isn’t enough space
+     */
+    public static int packVarLongs(long[] src, int srcOff, int len, byte[] buffer, int offset) {
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        int pos = offset;
+        for (int i = 0; i < len; i++) {
+            pos += packVarLong(src[srcOff + i], buffer, pos);
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Reads {@code len} consecutive LEB128 varint longs starting at
+     * {@code buffer[offset]} into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @return the number of bytes read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if the destination range is out of bounds
+     *         or the encodings run past the end of {@code buffer}
+     * @throws IllegalArgumentException if an encoding is malformed
+     */
+    public static int unpackVarLongs(byte[] buffer, int offset, long[] dst, int dstOff, int len) {
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        int pos = offset;
+        for (int i = 0; i < len; i++) {
+            pos += decodeVarLong(buffer, pos, dst, dstOff + i);
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Writes {@code len} signed ints from {@code src[srcOff..]} as consecutive
+     * ZigZag varints starting at {@code buffer[offset]}.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @return the number of bytes written
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if the source range is out of bounds or
+     *         there isn’t enough space
+     */
+    public static int packZigZagInts(int[] src, int srcOff, int len, byte[] buffer, int offset) {
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        int pos = offset;
+        for (int i = 0; i < len; i++) {
+            pos += packZigZagInt(src[srcOff + i], buffer, pos);
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Reads {@code len} consecutive ZigZag varint ints starting at
+     * {@code buffer[offset]} into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @return the number of bytes read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if the destination range is out of bounds
+     *         or the encodings run past the end of {@code buffer}
+     * @throws IllegalArgumentException if an encoding is malformed
+     */
+    public static int unpackZigZagInts(byte[] buffer, int offset, int[] dst, int dstOff, int len) {
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        int pos = offset;
+        for (int i = 0; i < len; i++) {
+            long decoded = decodeVarInt(buffer, pos);
+            int n = (int) decoded;
+            dst[dstOff + i] = (n >>> 1) ^ -(n & 1);
+            pos += (int) (decoded >>> 32);
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Writes {@code len} signed longs from {@code src[srcOff..]} as consecutive
+     * ZigZag varints starting at {@code buffer[offset]}.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @return the number of bytes written
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if the source range is out of bounds or
+     *         there isn’t enough space
+     */
+    public static int packZigZagLongs(long[] src, int srcOff, int len, byte[] buffer, int offset) {
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        int pos = offset;
+        for (int i = 0; i < len; i++) {
+            pos += packZigZagLong(src[srcOff + i], buffer, pos);
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Reads {@code len} consecutive ZigZag varint longs starting at
+     * {@code buffer[offset]} into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @return the number of bytes read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if the destination range is out of bounds
+     *         or the encodings run past the end of {@code buffer}
+     * @throws IllegalArgumentException if an encoding is malformed
+     */
+    public static int unpackZigZagLongs(byte[] buffer, int offset, long[] dst, int dstOff, int len) {
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        int pos = offset;
+        for (int i = 0; i < len; i++) {
+            int j = dstOff + i;
+            pos += decodeVarLong(buffer, pos, dst, j);
+            dst[j] = (dst[j] >>> 1) ^ -(dst[j] & 1);
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Writes {@code f} as an IEEE 754 half-precision value, converted with
+     * {@link Float#floatToFloat16(float)} (round to nearest even; values too
+     * large become infinities), to {@code buffer[offset..offset+1]} in
+     * Big-Endian order.
+     *
+     * @param f the float to be written
+     * @param buffer the destination array
+     * @param offset the starting position (must allow two bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static void packFloat16(float f, byte[] buffer, int offset) {
+        packShort(Float.floatToFloat16(f), buffer, offset);
+    }
+
+    /**
+     * Reads a half-precision value from {@code buffer[offset..offset+1]} in
+     * Big-Endian order and widens it with {@link Float#float16ToFloat(short)}.
+     *
+     * @param buffer the source array
+     * @param offset the starting position (must allow two bytes)
+     * @return the decoded float
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static float unpackFloat16(byte[] buffer, int offset) {
+        return Float.float16ToFloat(unpackShort(buffer, offset));
+    }
+
+    /**
+     * Writes {@code len} floats from {@code src[srcOff..]} as half-precision
+     * values starting at {@code buffer[offset]}, using the same encoding as
+     * {@link #packFloat16(float, byte[], int)}.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void packFloat16s(float[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_FLOAT16);
+        for (int i = 0; i < len; i++) {
+            SHORT_BE.set(buffer, offset + SIZEOF_FLOAT16 * i, Float.floatToFloat16(src[srcOff + i]));
+        }
+    }
+
+    /**
+     * Reads {@code len} half-precision values starting at {@code buffer[offset]}
+     * into {@code dst[dstOff..]}, using the same decoding as
+     * {@link #unpackFloat16(byte[], int)}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void unpackFloat16s(byte[] buffer, int offset, float[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_FLOAT16);
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = Float.float16ToFloat((short) SHORT_BE.get(buffer, offset + SIZEOF_FLOAT16 * i));
+        }
+    }
+
+    /**
+     * Writes {@code value} as the fixed-point {@code short}
+     * {@code Math.rint(value * scale)} to {@code buffer[offset..offset+1]} in
+     * Big-Endian order.
+     *
+     * @param value the value to be written
+     * @param scale the positive factor applied before rounding (e.g. {@code 100}
+     *        keeps two decimals)
+     * @param buffer the destination array
+     * @param offset the starting position (must allow two bytes)
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite,
+     *         or the scaled value is NaN or does not fit in a {@code short}
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static void packFixed16(double value, double scale, byte[] buffer, int offset) {
+        checkScale(scale);
+        packShort((short) toFixed(value, scale, Short.MIN_VALUE, Short.MAX_VALUE), buffer, offset);
+    }
+
+    /**
+     * Reads a fixed-point {@code short} from {@code buffer[offset..offset+1]} and
+     * returns it divided by {@code scale}.
+     *
+     * @param scale the factor used when packing
+     * @param buffer the source array
+     * @param offset the starting position (must allow two bytes)
+     * @return the decoded value
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static double unpackFixed16(double scale, byte[] buffer, int offset) {
+        checkScale(scale);
+        return unpackShort(buffer, offset) / scale;
+    }
+
+    /**
+     * Writes {@code value} as the fixed-point {@code int}
+     * {@code Math.rint(value * scale)} to {@code buffer[offset..offset+3]} in
+     * Big-Endian order.
+     *
+     * @param value the value to be written
+     * @param scale the positive factor applied before rounding (e.g. {@code 100}
+     *        keeps two decimals)
+     * @param buffer the destination array
+     * @param offset the starting position (must allow four bytes)
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite,
+     *         or the scaled value is NaN or does not fit in an {@code int}
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static void packFixed32(double value, double scale, byte[] buffer, int offset) {
+        checkScale(scale);
+        packInt((int) toFixed(value, scale, Integer.MIN_VALUE, Integer.MAX_VALUE), buffer, offset);
+    }
+
+    /**
+     * Reads a fixed-point {@code int} from {@code buffer[offset..offset+3]} and
+     * returns it divided by {@code scale}.
+     *
+     * @param scale the factor used when packing
+     * @param buffer the source array
+     * @param offset the starting position (must allow four bytes)
+     * @return the decoded value
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static double unpackFixed32(double scale, byte[] buffer, int offset) {
+        checkScale(scale);
+        return unpackInt(buffer, offset) / scale;
+    }
+
+    /**
+     * Writes {@code len} values from {@code src[srcOff..]} as fixed-point
+     * {@code short}s starting at {@code buffer[offset]}, using the same encoding
+     * as {@link #packFixed16(double, double, byte[], int)}.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param scale the positive factor applied before rounding
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite,
+     *         or a scaled value does not fit; the values before it are written
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void packFixed16s(double[] src, int srcOff, int len, double scale, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_FIXED16);
+        checkScale(scale);
+        for (int i = 0; i < len; i++) {
+            SHORT_BE.set(buffer, offset + SIZEOF_FIXED16 * i,
+                    (short) toFixed(src[srcOff + i], scale, Short.MIN_VALUE, Short.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Reads {@code len} fixed-point {@code short}s starting at {@code buffer[offset]}
+     * into {@code dst[dstOff..]}, using the same decoding as
+     * {@link #unpackFixed16(double, byte[], int)}.
+     *
+     * @param scale the factor used when packing
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void unpackFixed16s(double scale, byte[] buffer, int offset, double[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_FIXED16);
+        checkScale(scale);
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = (short) SHORT_BE.get(buffer, offset + SIZEOF_FIXED16 * i) / scale;
+        }
+    }
+
+    /**
+     * Writes {@code len} values from {@code src[srcOff..]} as fixed-point
+     * {@code int}s starting at {@code buffer[offset]}, using the same encoding
+     * as {@link #packFixed32(double, double, byte[], int)}.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param scale the positive factor applied before rounding
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite,
+     *         or a scaled value does not fit; the values before it are written
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void packFixed32s(double[] src, int srcOff, int len, double scale, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_FIXED32);
+        checkScale(scale);
+        for (int i = 0; i < len; i++) {
+            INT_BE.set(buffer, offset + SIZEOF_FIXED32 * i,
+                    (int) toFixed(src[srcOff + i], scale, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Reads {@code len} fixed-point {@code int}s starting at {@code buffer[offset]}
+     * into {@code dst[dstOff..]}, using the same decoding as
+     * {@link #unpackFixed32(double, byte[], int)}.
+     *
+     * @param scale the factor used when packing
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void unpackFixed32s(double scale, byte[] buffer, int offset, double[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_FIXED32);
+        checkScale(scale);
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = (int) INT_BE.get(buffer, offset + SIZEOF_FIXED32 * i) / scale;
+        }
+    }
+
+    /**
+     * Returns the number of bytes needed to hold {@code len} consecutive
+     * fields of {@code width} bits, starting at a byte boundary.
+     *
+     * @param len the number of fields
+     * @param width the width in bits of each field (1 for booleans)
+     * @return {@code ceil(len * width / 8)}
+     */
+    public static int sizeOfBitFields(int len, int width) {
+        return Math.toIntExact(((long) len * width + 7) >>> 3);
+    }
+
+    /**
+     * Sets or clears bit {@code bitIndex}, counted from the most significant bit
+     * of {@code buffer[offset]}, leaving the other bits unchanged.
+     *
+     * @param b the value of the bit
+     * @param buffer the destination array
+     * @param offset the byte where bit numbering starts
+     * @param bitIndex the index of the bit (must be non-negative)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if the bit is outside {@code buffer}
+     */
+    public static void packBit(boolean b, byte[] buffer, int offset, int bitIndex) {
+        int index = bitByte(buffer, offset, bitIndex, 1);
+        int mask = 0x80 >>> (bitIndex & 7);
+        buffer[index] = (byte) (b ? buffer[index] | mask : buffer[index] & ~mask);
+    }
+
+    /**
+     * Reads bit {@code bitIndex}, counted from the most significant bit of
+     * {@code buffer[offset]}.
+     *
+     * @param buffer the source array
+     * @param offset the byte where bit numbering starts
+     * @param bitIndex the index of the bit (must be non-negative)
+     * @return {@code true} if the bit is set
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if the bit is outside {@code buffer}
+     */
+    public static boolean unpackBit(byte[] buffer, int offset, int bitIndex) {
+        int index = bitByte(buffer, offset, bitIndex, 1);
+        return (buffer[index] & (0x80 >>> (bitIndex & 7))) != 0;
+    }
+
+    /**
+     * Writes the unsigned value {@code value} in the {@code width} bits that
+     * start at bit {@code bitIndex} (counted from the most significant bit of
+     * {@code buffer[offset]}), most significant bit first, leaving the
+     * surrounding bits unchanged.
+     *
+     * @param value the value; must fit in {@code width} unsigned bits (any
+     *        {@code int} when {@code width} is 32)
+     * @param width the number of bits, from 1 to 32
+     * @param buffer the destination array
+     * @param offset the byte where bit numbering starts
+     * @param bitIndex the index of the first bit (must be non-negative)
+     * @throws IllegalArgumentException if {@code width} is out of range or
+     *         {@code value} does not fit
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if the bits are outside {@code buffer}
+     */
+    public static void packBitField(int value, int width, byte[] buffer, int offset, int bitIndex) {
+        checkBitField(value, width);
+        int index = bitByte(buffer, offset, bitIndex, width);
+        int shift = bitIndex & 7;
+        int bytes = (shift + width + 7) >>> 3;
+        long window = 0;
+        for (int i = 0; i < bytes; i++) {
+            window = window << 8 | (buffer[index + i] & 0xFF);
+        }
+        int low = bytes * 8 - shift - width;
+        long mask = ((1L << width) - 1) << low;
+        window = window & ~mask | ((value & 0xFFFFFFFFL) << low);
+        for (int i = bytes - 1; i >= 0; i--, window >>>= 8) {
+            buffer[index + i] = (byte) window;
+        }
+    }
+
+    /**
+     * Reads the unsigned value stored in the {@code width} bits that start at bit
+     * {@code bitIndex} (counted from the most significant bit of
+     * {@code buffer[offset]}), most significant bit first.
+     *
+     * @param width the number of bits, from 1 to 32
+     * @param buffer the source array
+     * @param offset the byte where bit numbering starts
+     * @param bitIndex the index of the first bit (must be non-negative)
+     * @return the value, between {@code 0} and {@code 2^width - 1} (the raw
+     *         32 bits when {@code width} is 32)
+     * @throws IllegalArgumentException if {@code width} is out of range
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if the bits are outside {@code buffer}
+     */
+    public static int unpackBitField(int width, byte[] buffer, int offset, int bitIndex) {
+        checkWidth(width);
+        int index = bitByte(buffer, offset, bitIndex, width);
+        int shift = bitIndex & 7;
+        int bytes = (shift + width + 7) >>> 3;
+        long window = 0;
+        for (int i = 0; i < bytes; i++) {
+            window = window << 8 | (buffer[index + i] & 0xFF);
+        }
+        return (int) (window >>> (bytes * 8 - shift - width) & ((1L << width) - 1));
+    }
+
+    /**
+     * Writes {@code len} booleans from {@code src[srcOff..]} as a bitmap of
+     * {@link #sizeOfBitFields(int, int) sizeOfBitFields(len, 1)} bytes starting
+     * at {@code buffer[offset]}, with the same layout as {@code len} calls to
+     * {@link #packBit(boolean, byte[], int, int)}. Unused low bits of the last
+     * byte are left unchanged.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void packBits(boolean[] src, int srcOff, int len, byte[] buffer, int offset) {
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Objects.checkFromIndexSize(offset, sizeOfBitFields(len, 1), buffer.length);
+        int full = len >>> 3;
+        for (int i = 0; i < full; i++) {
+            int s = srcOff + 8 * i;
+            buffer[offset + i] = (byte) ((src[s] ? 0x80 : 0) | (src[s + 1] ? 0x40 : 0)
+                    | (src[s + 2] ? 0x20 : 0) | (src[s + 3] ? 0x10 : 0)
+                    | (src[s + 4] ? 0x08 : 0) | (src[s + 5] ? 0x04 : 0)
+                    | (src[s + 6] ? 0x02 : 0) | (src[s + 7] ? 0x01 : 0));
+        }
+        for (int i = full * 8; i < len; i++) {
+            packBit(src[srcOff + i], buffer, offset, i);
+        }
+    }
+
+    /**
+     * Reads {@code len} booleans from the bitmap starting at {@code buffer[offset]}
+     * into {@code dst[dstOff..]}, using the same layout as
+     * {@link #packBits(boolean[], int, int, byte[], int)}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void unpackBits(byte[] buffer, int offset, boolean[] dst, int dstOff, int len) {
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        Objects.checkFromIndexSize(offset, sizeOfBitFields(len, 1), buffer.length);
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = (buffer[offset + (i >>> 3)] & (0x80 >>> (i & 7))) != 0;
+        }
+    }
+
+    /**
+     * Writes {@code len} unsigned values from {@code src[srcOff..]} as
+     * consecutive fields of {@code width} bits occupying
+     * {@link #sizeOfBitFields(int, int) sizeOfBitFields(len, width)} bytes from
+     * {@code buffer[offset]}, with the same layout as {@code len} calls to
+     * {@link #packBitField(int, int, byte[], int, int)}. Unused low bits of the
+     * last byte are left unchanged.
+     *
+     * @param src the values to write; each must fit in {@code width} unsigned bits
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param width the number of bits of each value, from 1 to 32
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws IllegalArgumentException if {@code width} is out of range or a value
+     *         does not fit; the values before it are written
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void packBitFields(int[] src, int srcOff, int len, int width, byte[] buffer, int offset) {
+        checkWidth(width);
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Objects.checkFromIndexSize(offset, sizeOfBitFields(len, width), buffer.length);
+        long acc = 0;
+        int bits = 0;
+        int pos = offset;
+        for (int i = 0; i < len; i++) {
+            int value = src[srcOff + i];
+            checkBitField(value, width);
+            acc = acc << width | (value & 0xFFFFFFFFL);
+            bits += width;
+            while (bits >= 8) {
+                bits -= 8;
+                buffer[pos++] = (byte) (acc >>> bits);
+            }
+            acc &= (1L << bits) - 1;
+        }
+        if (bits > 0) {
+            buffer[pos] = (byte) (acc << (8 - bits) | buffer[pos] & (0xFF >>> bits));
+        }
+    }
+
+    /**
+     * Reads {@code len} consecutive fields of {@code width} bits starting at
+     * {@code buffer[offset]} into {@code dst[dstOff..]}, using the same layout as
+     * {@link #packBitFields(int[], int, int, int, byte[], int)}.
+     *
+     * @param width the number of bits of each value, from 1 to 32
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws IllegalArgumentException if {@code width} is out of range
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public static void unpackBitFields(int width, byte[] buffer, int offset, int[] dst, int dstOff, int len) {
+        checkWidth(width);
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        Objects.checkFromIndexSize(offset, sizeOfBitFields(len, width), buffer.length);
+        long mask = (1L << width) - 1;
+        long acc = 0;
+        int bits = 0;
+        int pos = offset;
+        for (int i = 0; i < len; i++) {
+            while (bits < width) {
+                acc = acc << 8 | (buffer[pos++] & 0xFF);
+                bits += 8;
+            }
+            bits -= width;
+            dst[dstOff + i] = (int) (acc >>> bits & mask);
+            acc &= (1L << bits) - 1;
+        }
+    }
+
+    /**
+     * Writes {@code i} in 4 bytes so that the packed values of any two ints
+     * compare, as unsigned bytes, in the same order as the ints: the
+     * Big-Endian layout of {@link #packInt(int, byte[], int)} with the sign bit
+     * flipped.
+     *
+     * @param i the value to write
+     * @param buffer destination array
+     * @param offset starting index
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static void packOrderedInt(int i, byte[] buffer, int offset) {
+        packInt(i ^ Integer.MIN_VALUE, buffer, offset);
+    }
+
+    /**
+     * Reads an int written by {@link #packOrderedInt(int, byte[], int)}.
+     *
+     * @param buffer source array
+     * @param offset starting index
+     * @return the decoded int
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static int unpackOrderedInt(byte[] buffer, int offset) {
+        return unpackInt(buffer, offset) ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     * Writes {@code l} in 8 bytes so that the packed values of any two longs
+     * compare, as unsigned bytes, in the same order as the longs.
+     *
+     * @param l the value to write
+     * @param buffer destination array
+     * @param offset starting index
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static void packOrderedLong(long l, byte[] buffer, int offset) {
+        packLong(l ^ Long.MIN_VALUE, buffer, offset);
+    }
+
+    /**
+     * Reads a long written by {@link #packOrderedLong(long, byte[], int)}.
+     *
+     * @param buffer source array
+     * @param offset starting index
+     * @return the decoded long
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static long unpackOrderedLong(byte[] buffer, int offset) {
+        return unpackLong(buffer, offset) ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * Writes {@code d} in 8 bytes so that the packed values of any two doubles
+     * compare, as unsigned bytes, like {@link Double#compare(double, double)}:
+     * {@code -0.0} before {@code 0.0}, and NaN (packed canonically) after
+     * positive infinity. Positive values get their sign bit set and negative
+     * values have all their bits flipped.
+     *
+     * @param d the value to write
+     * @param buffer destination array
+     * @param offset starting index
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static void packOrderedDouble(double d, byte[] buffer, int offset) {
+        long bits = Double.doubleToLongBits(d);
+        packLong(bits ^ (bits >> 63 | Long.MIN_VALUE), buffer, offset);
+    }
+
+    /**
+     * Reads a double written by {@link #packOrderedDouble(double, byte[], int)}.
+     *
+     * @param buffer source array
+     * @param offset starting index
+     * @return the decoded double
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static double unpackOrderedDouble(byte[] buffer, int offset) {
+        long bits = unpackLong(buffer, offset);
+        return Double.longBitsToDouble(bits ^ (~bits >> 63 | Long.MIN_VALUE));
+    }
+
+    /**
+     * Writes {@code str} in exactly {@code 2 * maxLength} bytes so that the
+     * packed values of any two strings compare, as unsigned bytes, like
+     * {@link String#compareTo(String)} on their first {@code maxLength}
+     * characters. The characters use the layout of
+     * {@link #packLimitedString(String, int, byte[], int)}, truncated to
+     * {@code maxLength}, and the rest of the field is filled with zeros, so a
+     * prefix sorts before the strings that extend it and equal strings always
+     * give equal bytes.
+     *
+     * @param str the source string (must be non-null and not contain {@code '\0'})
+     * @param maxLength number of characters the field holds
+     * @param buffer destination array
+     * @param offset starting index
+     * @throws NullPointerException if {@code buffer} or {@code str} is {@code null}
+     * @throws IllegalArgumentException if a stored character is {@code '\0'}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public static void packOrderedString(String str, int maxLength, byte[] buffer, int offset) {
+        Objects.checkFromIndexSize(offset, 2 * maxLength, buffer.length);
+        int length = Math.min(str.length(), maxLength);
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            if (c == '\0') {
+                throw new IllegalArgumentException("ordered strings cannot contain '\\0'");
+            }
+            CHAR_BE.set(buffer, offset + 2 * i, c);
+        }
+        Arrays.fill(buffer, offset + 2 * length, offset + 2 * maxLength, (byte) 0);
+    }
+
+    /**
+     * Reads a string written by {@link #packOrderedString(String, int, byte[], int)}.
+     *
+     * @param maxLength number of characters the field holds
+     * @param buffer source array
+     * @param offset starting index
+     * @return the decoded string
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if there isn’t enough space
+     */
+    public static String unpackOrderedString(int maxLength, byte[] buffer, int offset) {
+        return unpackLimitedString(maxLength, buffer, offset);
+    }
+
+    /**
+     * Compares the {@code length} bytes at {@code a[aOffset]} and
+     * {@code b[bOffset]} as unsigned bytes, which orders values packed with the
+     * {@code packOrdered*} methods (or several of them one after the other, as
+     * a composite key) without decoding them.
+     *
+     * @param a the array holding the first key
+     * @param aOffset the offset of the first key
+     * @param b the array holding the second key
+     * @param bOffset the offset of the second key
+     * @param length the length of both keys in bytes
+     * @return a negative number, zero or a positive number if the first key is
+     *         less than, equal to or greater than the second
+     * @throws NullPointerException if {@code a} or {@code b} is {@code null}
+     * @throws IndexOutOfBoundsException if either key is outside its array
+     */
+    public static int compareOrdered(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        return Arrays.compareUnsigned(a, aOffset, aOffset + length, b, bOffset, bOffset + length);
+    }
+
+    /*
+     * Checks that the width bits starting at bit bitIndex of buffer[offset] lie
+     * inside buffer and returns the index of the byte holding the first one.
+     */
+    private static int bitByte(byte[] buffer, int offset, int bitIndex, int width) {
+        if (bitIndex < 0) {
+            throw new IndexOutOfBoundsException("negative bit index " + bitIndex);
+        }
+        long first = (long) offset * 8 + bitIndex;
+        Objects.checkFromIndexSize(first, width, (long) buffer.length * 8);
+        return (int) (first >>> 3);
+    }
+
+    private static void checkWidth(int width) {
+        if (width < 1 || width > 32) {
+            throw new IllegalArgumentException("bit field width must be between 1 and 32: " + width);
+        }
+    }
+
+    private static void checkBitField(int value, int width) {
+        checkWidth(width);
+        if (width < 32 && value >>> width != 0) {
+            throw new IllegalArgumentException(value + " does not fit in " + width + " unsigned bits");
+        }
+    }
+
+    static void checkScale(double scale) {
+        if (!(scale > 0.0) || scale == Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("scale must be positive and finite: " + scale);
+        }
+    }
+
+    static long toFixed(double value, double scale, long min, long max) {
+        double scaled = Math.rint(value * scale);
+        if (!(scaled >= min && scaled <= max)) {
+            throw new IllegalArgumentException(value + " does not fit in the fixed-point range at scale " + scale);
+        }
+        return (long) scaled;
+    }
+
+    /*
+     * Validates, once per bulk call, that [arrayOff, arrayOff + len) fits in the
+     * value array and that the packed bytes [offset, offset + len * size) fit in
+     * the byte buffer.
+     */
+    static void checkBulk(int arrayLength, int arrayOff, int len,
+                                  int bufferLength, int offset, int size) {
+        Objects.checkFromIndexSize(arrayOff, len, arrayLength);
+        Objects.checkFromIndexSize((long) offset, (long) len * size, (long) bufferLength);
+    }
 }
@@ -0,0 +1,1284 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+
+/**
+ * Packs and unpacks primitive values and limited strings in a fixed byte order.
+ * <p>
+ * {@link #BIG_ENDIAN} produces exactly the same layout as the static methods of
+ * {@link PackUtils}, which remain the default. {@link #LITTLE_ENDIAN} is meant
+ * for formats shared with native tools; it reads and writes whole values with
+ * byte-array and byte-buffer view {@link VarHandle}s, so on little-endian
+ * hardware (such as x86) it compiles to plain loads and stores instead of a
+ * Big-Endian decode followed by a byte swap.
+ * </p>
+ * <pre>{@code
+ * Packer le = Packer.LITTLE_ENDIAN;
+ * le.packInt(width, header, 18);
+ * int height = le.unpackInt(header, 22);
+ * }</pre>
+ * <p>
+ * Every method mirrors the {@code PackUtils} method of the same name (single
+ * values on {@code byte[]} and {@link ByteBuffer}, bulk array ranges, the
+ * half-precision and fixed-point encodings, and limited strings stored as
+ * UTF-16 code units) and has the same buffer and offset requirements.
+ * Encodings that do not depend on byte order (varints, bit-packed fields,
+ * Latin-1 and UTF-8 strings) are only available in {@code PackUtils}.
+ * </p>
+ * <p>
+ * Packers are immutable and thread-safe.
+ * </p>
+ */
+public final class Packer {
+
+    /**
+     * Packer using Big-Endian order, equivalent to the static methods of {@link PackUtils}.
+     */
+    public static final Packer BIG_ENDIAN = new Packer(true);
+
+    /**
+     * Packer using Little-Endian order (least significant byte first).
+     */
+    public static final Packer LITTLE_ENDIAN = new Packer(false);
+    private static final VarHandle CHAR_BE =
+            MethodHandles.byteArrayViewVarHandle(char[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle CHAR_LE =
+            MethodHandles.byteArrayViewVarHandle(char[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle CHAR_BB_BE =
+            MethodHandles.byteBufferViewVarHandle(char[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle CHAR_BB_LE =
+            MethodHandles.byteBufferViewVarHandle(char[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle SHORT_BE =
+            MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle SHORT_LE =
+            MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle SHORT_BB_BE =
+            MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle SHORT_BB_LE =
+            MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_BE =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_LE =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_BB_BE =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_BB_LE =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_BE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_BB_BE =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_BB_LE =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    // Selecting between static final handles keeps every access a constant
+    // VarHandle that the JIT can inline
+    private final boolean bigEndian;
+
+    private Packer(boolean bigEndian) {
+        this.bigEndian = bigEndian;
+    }
+
+    /**
+     * Returns the packer for the given byte order.
+     *
+     * @param order the byte order
+     * @return {@link #BIG_ENDIAN} or {@link #LITTLE_ENDIAN}
+     * @throws NullPointerException if {@code order} is {@code null}
+     */
+    public static Packer of(ByteOrder order) {
+        return Objects.requireNonNull(order, "order") == ByteOrder.BIG_ENDIAN ? BIG_ENDIAN : LITTLE_ENDIAN;
+    }
+
+    /**
+     * Returns the byte order of this packer.
+     *
+     * @return the byte order
+     */
+    public ByteOrder order() {
+        return bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    }
+
+    /**
+     * Writes a boolean at {@code buffer[offset]}; same as
+     * {@link PackUtils#packBoolean(boolean, byte[], int)}.
+     *
+     * @param b the value to write
+     * @param buffer destination array
+     * @param offset index at which to write
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if {@code offset} is out of range
+     */
+    public void packBoolean(boolean b, byte[] buffer, int offset) {
+        PackUtils.packBoolean(b, buffer, offset);
+    }
+
+    /**
+     * Reads a boolean from {@code buffer[offset]}; same as
+     * {@link PackUtils#unpackBoolean(byte[], int)}.
+     *
+     * @param buffer source array
+     * @param offset index from which to read
+     * @return {@code true} if the byte is {@code 1}; {@code false} otherwise
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if {@code offset} is out of range
+     */
+    public boolean unpackBoolean(byte[] buffer, int offset) {
+        return PackUtils.unpackBoolean(buffer, offset);
+    }
+
+    /**
+     * Writes a byte at {@code buffer[offset]}; same as
+     * {@link PackUtils#packByte(byte, byte[], int)}.
+     *
+     * @param b the byte to write
+     * @param buffer destination array
+     * @param offset index at which to write
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if {@code offset} is out of range
+     */
+    public void packByte(byte b, byte[] buffer, int offset) {
+        PackUtils.packByte(b, buffer, offset);
+    }
+
+    /**
+     * Reads a byte from {@code buffer[offset]}; same as
+     * {@link PackUtils#unpackByte(byte[], int)}.
+     *
+     * @param buffer source array
+     * @param offset index from which to read
+     * @return the byte that has been read
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws ArrayIndexOutOfBoundsException if {@code offset} is out of range
+     */
+    public byte unpackByte(byte[] buffer, int offset) {
+        return PackUtils.unpackByte(buffer, offset);
+    }
+
+    /**
+     * Writes a boolean at absolute index {@code offset} of {@code buffer}; same as
+     * {@link PackUtils#packBoolean(boolean, ByteBuffer, int)}.
+     *
+     * @param b the value to write
+     * @param buffer destination buffer (must be writable)
+     * @param offset absolute index at which to write
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if {@code offset} is out of range
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public void packBoolean(boolean b, ByteBuffer buffer, int offset) {
+        PackUtils.packBoolean(b, buffer, offset);
+    }
+
+    /**
+     * Reads a boolean at absolute index {@code offset} of {@code buffer}; same as
+     * {@link PackUtils#unpackBoolean(ByteBuffer, int)}.
+     *
+     * @param buffer source buffer
+     * @param offset absolute index from which to read
+     * @return {@code true} if the byte is {@code 1}; {@code false} otherwise
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if {@code offset} is out of range
+     */
+    public boolean unpackBoolean(ByteBuffer buffer, int offset) {
+        return PackUtils.unpackBoolean(buffer, offset);
+    }
+
+    /**
+     * Writes a byte at absolute index {@code offset} of {@code buffer}; same as
+     * {@link PackUtils#packByte(byte, ByteBuffer, int)}.
+     *
+     * @param b the byte to write
+     * @param buffer destination buffer (must be writable)
+     * @param offset absolute index at which to write
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if {@code offset} is out of range
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public void packByte(byte b, ByteBuffer buffer, int offset) {
+        PackUtils.packByte(b, buffer, offset);
+    }
+
+    /**
+     * Reads a byte at absolute index {@code offset} of {@code buffer}; same as
+     * {@link PackUtils#unpackByte(ByteBuffer, int)}.
+     *
+     * @param buffer source buffer
+     * @param offset absolute index from which to read
+     * @return the byte that has been read
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if {@code offset} is out of range
+     */
+    public byte unpackByte(ByteBuffer buffer, int offset) {
+        return PackUtils.unpackByte(buffer, offset);
+    }
+
+    /**
+     * Writes {@code len} booleans as single bytes; same as
+     * {@link PackUtils#packBooleans(boolean[], int, int, byte[], int)}.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void packBooleans(boolean[] src, int srcOff, int len, byte[] buffer, int offset) {
+        PackUtils.packBooleans(src, srcOff, len, buffer, offset);
+    }
+
+    /**
+     * Reads {@code len} booleans stored as single bytes; same as
+     * {@link PackUtils#unpackBooleans(byte[], int, boolean[], int, int)}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void unpackBooleans(byte[] buffer, int offset, boolean[] dst, int dstOff, int len) {
+        PackUtils.unpackBooleans(buffer, offset, dst, dstOff, len);
+    }
+
+    /**
+     * Copies {@code len} bytes; same as
+     * {@link PackUtils#packBytes(byte[], int, int, byte[], int)}.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void packBytes(byte[] src, int srcOff, int len, byte[] buffer, int offset) {
+        PackUtils.packBytes(src, srcOff, len, buffer, offset);
+    }
+
+    /**
+     * Copies {@code len} bytes; same as
+     * {@link PackUtils#unpackBytes(byte[], int, byte[], int, int)}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void unpackBytes(byte[] buffer, int offset, byte[] dst, int dstOff, int len) {
+        PackUtils.unpackBytes(buffer, offset, dst, dstOff, len);
+    }
+
+    /**
+     * Writes a {@code char} to {@code buffer[offset..offset+1]} in this packer's byte order.
+     *
+     * @param c the value to write
+     * @param buffer destination array
+     * @param offset starting index (must allow 2 bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public void packChar(char c, byte[] buffer, int offset) {
+        if (bigEndian) {
+            CHAR_BE.set(buffer, offset, c);
+        } else {
+            CHAR_LE.set(buffer, offset, c);
+        }
+    }
+
+    /**
+     * Reads a {@code char} from {@code buffer[offset..offset+1]} in this packer's byte order.
+     *
+     * @param buffer source array
+     * @param offset starting index (must allow 2 bytes)
+     * @return the decoded value
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public char unpackChar(byte[] buffer, int offset) {
+        return bigEndian
+                ? (char) CHAR_BE.get(buffer, offset)
+                : (char) CHAR_LE.get(buffer, offset);
+    }
+
+    /**
+     * Writes a {@code char} at absolute index {@code offset} of {@code buffer} in this
+     * packer's byte order, regardless of the buffer's own order.
+     *
+     * @param c the value to write
+     * @param buffer destination buffer (must be writable)
+     * @param offset absolute starting index (must allow 2 bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public void packChar(char c, ByteBuffer buffer, int offset) {
+        if (bigEndian) {
+            CHAR_BB_BE.set(buffer, offset, c);
+        } else {
+            CHAR_BB_LE.set(buffer, offset, c);
+        }
+    }
+
+    /**
+     * Reads a {@code char} at absolute index {@code offset} of {@code buffer} in this
+     * packer's byte order, regardless of the buffer's own order.
+     *
+     * @param buffer source buffer
+     * @param offset absolute starting index (must allow 2 bytes)
+     * @return the decoded value
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public char unpackChar(ByteBuffer buffer, int offset) {
+        return bigEndian
+                ? (char) CHAR_BB_BE.get(buffer, offset)
+                : (char) CHAR_BB_LE.get(buffer, offset);
+    }
+
+    /**
+     * Writes {@code len} values from {@code src[srcOff..]} starting at
+     * {@code buffer[offset]}, 2 bytes each, in this packer's byte order.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void packChars(char[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_CHAR);
+        VarHandle handle = bigEndian ? CHAR_BE : CHAR_LE;
+        for (int i = 0; i < len; i++) {
+            handle.set(buffer, offset + SIZEOF_CHAR * i, src[srcOff + i]);
+        }
+    }
+
+    /**
+     * Reads {@code len} values starting at {@code buffer[offset]}, 2 bytes each,
+     * in this packer's byte order into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void unpackChars(byte[] buffer, int offset, char[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_CHAR);
+        if (bigEndian) {
+            PackUtils.unpackChars(buffer, offset, dst, dstOff, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                dst[dstOff + i] = (char) CHAR_LE.get(buffer, offset + SIZEOF_CHAR * i);
+            }
+        }
+    }
+
+    /**
+     * Writes a {@code short} to {@code buffer[offset..offset+1]} in this packer's byte order.
+     *
+     * @param s the value to write
+     * @param buffer destination array
+     * @param offset starting index (must allow 2 bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public void packShort(short s, byte[] buffer, int offset) {
+        if (bigEndian) {
+            SHORT_BE.set(buffer, offset, s);
+        } else {
+            SHORT_LE.set(buffer, offset, s);
+        }
+    }
+
+    /**
+     * Reads a {@code short} from {@code buffer[offset..offset+1]} in this packer's byte order.
+     *
+     * @param buffer source array
+     * @param offset starting index (must allow 2 bytes)
+     * @return the decoded value
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public short unpackShort(byte[] buffer, int offset) {
+        return bigEndian
+                ? (short) SHORT_BE.get(buffer, offset)
+                : (short) SHORT_LE.get(buffer, offset);
+    }
+
+    /**
+     * Writes a {@code short} at absolute index {@code offset} of {@code buffer} in this
+     * packer's byte order, regardless of the buffer's own order.
+     *
+     * @param s the value to write
+     * @param buffer destination buffer (must be writable)
+     * @param offset absolute starting index (must allow 2 bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public void packShort(short s, ByteBuffer buffer, int offset) {
+        if (bigEndian) {
+            SHORT_BB_BE.set(buffer, offset, s);
+        } else {
+            SHORT_BB_LE.set(buffer, offset, s);
+        }
+    }
+
+    /**
+     * Reads a {@code short} at absolute index {@code offset} of {@code buffer} in this
+     * packer's byte order, regardless of the buffer's own order.
+     *
+     * @param buffer source buffer
+     * @param offset absolute starting index (must allow 2 bytes)
+     * @return the decoded value
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public short unpackShort(ByteBuffer buffer, int offset) {
+        return bigEndian
+                ? (short) SHORT_BB_BE.get(buffer, offset)
+                : (short) SHORT_BB_LE.get(buffer, offset);
+    }
+
+    /**
+     * Writes {@code len} values from {@code src[srcOff..]} starting at
+     * {@code buffer[offset]}, 2 bytes each, in this packer's byte order.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void packShorts(short[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_SHORT);
+        VarHandle handle = bigEndian ? SHORT_BE : SHORT_LE;
+        for (int i = 0; i < len; i++) {
+            handle.set(buffer, offset + SIZEOF_SHORT * i, src[srcOff + i]);
+        }
+    }
+
+    /**
+     * Reads {@code len} values starting at {@code buffer[offset]}, 2 bytes each,
+     * in this packer's byte order into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void unpackShorts(byte[] buffer, int offset, short[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_SHORT);
+        if (bigEndian) {
+            PackUtils.unpackShorts(buffer, offset, dst, dstOff, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                dst[dstOff + i] = (short) SHORT_LE.get(buffer, offset + SIZEOF_SHORT * i);
+            }
+        }
+    }
+
+    /**
+     * Writes a {@code int} to {@code buffer[offset..offset+3]} in this packer's byte order.
+     *
+     * @param n the value to write
+     * @param buffer destination array
+     * @param offset starting index (must allow 4 bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public void packInt(int n, byte[] buffer, int offset) {
+        if (bigEndian) {
+            INT_BE.set(buffer, offset, n);
+        } else {
+            INT_LE.set(buffer, offset, n);
+        }
+    }
+
+    /**
+     * Reads a {@code int} from {@code buffer[offset..offset+3]} in this packer's byte order.
+     *
+     * @param buffer source array
+     * @param offset starting index (must allow 4 bytes)
+     * @return the decoded value
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public int unpackInt(byte[] buffer, int offset) {
+        return bigEndian
+                ? (int) INT_BE.get(buffer, offset)
+                : (int) INT_LE.get(buffer, offset);
+    }
+
+    /**
+     * Writes a {@code int} at absolute index {@code offset} of {@code buffer} in this
+     * packer's byte order, regardless of the buffer's own order.
+     *
+     * @param n the value to write
+     * @param buffer destination buffer (must be writable)
+     * @param offset absolute starting index (must allow 4 bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public void packInt(int n, ByteBuffer buffer, int offset) {
+        if (bigEndian) {
+            INT_BB_BE.set(buffer, offset, n);
+        } else {
+            INT_BB_LE.set(buffer, offset, n);
+        }
+    }
+
+    /**
+     * Reads a {@code int} at absolute index {@code offset} of {@code buffer} in this
+     * packer's byte order, regardless of the buffer's own order.
+     *
+     * @param buffer source buffer
+     * @param offset absolute starting index (must allow 4 bytes)
+     * @return the decoded value
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public int unpackInt(ByteBuffer buffer, int offset) {
+        return bigEndian
+                ? (int) INT_BB_BE.get(buffer, offset)
+                : (int) INT_BB_LE.get(buffer, offset);
+    }
+
+    /**
+     * Writes {@code len} values from {@code src[srcOff..]} starting at
+     * {@code buffer[offset]}, 4 bytes each, in this packer's byte order.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void packInts(int[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_INT);
+        VarHandle handle = bigEndian ? INT_BE : INT_LE;
+        for (int i = 0; i < len; i++) {
+            handle.set(buffer, offset + SIZEOF_INT * i, src[srcOff + i]);
+        }
+    }
+
+    /**
+     * Reads {@code len} values starting at {@code buffer[offset]}, 4 bytes each,
+     * in this packer's byte order into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void unpackInts(byte[] buffer, int offset, int[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_INT);
+        if (bigEndian) {
+            PackUtils.unpackInts(buffer, offset, dst, dstOff, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                dst[dstOff + i] = (int) INT_LE.get(buffer, offset + SIZEOF_INT * i);
+            }
+        }
+    }
+
+    /**
+     * Writes a {@code long} to {@code buffer[offset..offset+7]} in this packer's byte order.
+     *
+     * @param n the value to write
+     * @param buffer destination array
+     * @param offset starting index (must allow 8 bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public void packLong(long n, byte[] buffer, int offset) {
+        if (bigEndian) {
+            LONG_BE.set(buffer, offset, n);
+        } else {
+            LONG_LE.set(buffer, offset, n);
+        }
+    }
+
+    /**
+     * Reads a {@code long} from {@code buffer[offset..offset+7]} in this packer's byte order.
+     *
+     * @param buffer source array
+     * @param offset starting index (must allow 8 bytes)
+     * @return the decoded value
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public long unpackLong(byte[] buffer, int offset) {
+        return bigEndian
+                ? (long) LONG_BE.get(buffer, offset)
+                : (long) LONG_LE.get(buffer, offset);
+    }
+
+    /**
+     * Writes a {@code long} at absolute index {@code offset} of {@code buffer} in this
+     * packer's byte order, regardless of the buffer's own order.
+     *
+     * @param n the value to write
+     * @param buffer destination buffer (must be writable)
+     * @param offset absolute starting index (must allow 8 bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public void packLong(long n, ByteBuffer buffer, int offset) {
+        if (bigEndian) {
+            LONG_BB_BE.set(buffer, offset, n);
+        } else {
+            LONG_BB_LE.set(buffer, offset, n);
+        }
+    }
+
+    /**
+     * Reads a {@code long} at absolute index {@code offset} of {@code buffer} in this
+     * packer's byte order, regardless of the buffer's own order.
+     *
+     * @param buffer source buffer
+     * @param offset absolute starting index (must allow 8 bytes)
+     * @return the decoded value
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public long unpackLong(ByteBuffer buffer, int offset) {
+        return bigEndian
+                ? (long) LONG_BB_BE.get(buffer, offset)
+                : (long) LONG_BB_LE.get(buffer, offset);
+    }
+
+    /**
+     * Writes {@code len} values from {@code src[srcOff..]} starting at
+     * {@code buffer[offset]}, 8 bytes each, in this packer's byte order.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void packLongs(long[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_LONG);
+        VarHandle handle = bigEndian ? LONG_BE : LONG_LE;
+        for (int i = 0; i < len; i++) {
+            handle.set(buffer, offset + SIZEOF_LONG * i, src[srcOff + i]);
+        }
+    }
+
+    /**
+     * Reads {@code len} values starting at {@code buffer[offset]}, 8 bytes each,
+     * in this packer's byte order into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void unpackLongs(byte[] buffer, int offset, long[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_LONG);
+        if (bigEndian) {
+            PackUtils.unpackLongs(buffer, offset, dst, dstOff, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                dst[dstOff + i] = (long) LONG_LE.get(buffer, offset + SIZEOF_LONG * i);
+            }
+        }
+    }
+
+    /**
+     * Writes a {@code float} to {@code buffer[offset..offset+3]} in this packer's byte order.
+     *
+     * @param f the value to write
+     * @param buffer destination array
+     * @param offset starting index (must allow 4 bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public void packFloat(float f, byte[] buffer, int offset) {
+        if (bigEndian) {
+            INT_BE.set(buffer, offset, Float.floatToIntBits(f));
+        } else {
+            INT_LE.set(buffer, offset, Float.floatToIntBits(f));
+        }
+    }
+
+    /**
+     * Reads a {@code float} from {@code buffer[offset..offset+3]} in this packer's byte order.
+     *
+     * @param buffer source array
+     * @param offset starting index (must allow 4 bytes)
+     * @return the decoded value
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public float unpackFloat(byte[] buffer, int offset) {
+        return bigEndian
+                ? Float.intBitsToFloat((int) INT_BE.get(buffer, offset))
+                : Float.intBitsToFloat((int) INT_LE.get(buffer, offset));
+    }
+
+    /**
+     * Writes a {@code float} at absolute index {@code offset} of {@code buffer} in this
+     * packer's byte order, regardless of the buffer's own order.
+     *
+     * @param f the value to write
+     * @param buffer destination buffer (must be writable)
+     * @param offset absolute starting index (must allow 4 bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public void packFloat(float f, ByteBuffer buffer, int offset) {
+        if (bigEndian) {
+            INT_BB_BE.set(buffer, offset, Float.floatToIntBits(f));
+        } else {
+            INT_BB_LE.set(buffer, offset, Float.floatToIntBits(f));
+        }
+    }
+
+    /**
+     * Reads a {@code float} at absolute index {@code offset} of {@code buffer} in this
+     * packer's byte order, regardless of the buffer's own order.
+     *
+     * @param buffer source buffer
+     * @param offset absolute starting index (must allow 4 bytes)
+     * @return the decoded value
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public float unpackFloat(ByteBuffer buffer, int offset) {
+        return bigEndian
+                ? Float.intBitsToFloat((int) INT_BB_BE.get(buffer, offset))
+                : Float.intBitsToFloat((int) INT_BB_LE.get(buffer, offset));
+    }
+
+    /**
+     * Writes {@code len} values from {@code src[srcOff..]} starting at
+     * {@code buffer[offset]}, 4 bytes each, in this packer's byte order.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void packFloats(float[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_FLOAT);
+        VarHandle handle = bigEndian ? INT_BE : INT_LE;
+        for (int i = 0; i < len; i++) {
+            handle.set(buffer, offset + SIZEOF_FLOAT * i, Float.floatToIntBits(src[srcOff + i]));
+        }
+    }
+
+    /**
+     * Reads {@code len} values starting at {@code buffer[offset]}, 4 bytes each,
+     * in this packer's byte order into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void unpackFloats(byte[] buffer, int offset, float[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_FLOAT);
+        if (bigEndian) {
+            PackUtils.unpackFloats(buffer, offset, dst, dstOff, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                dst[dstOff + i] = Float.intBitsToFloat((int) INT_LE.get(buffer, offset + SIZEOF_FLOAT * i));
+            }
+        }
+    }
+
+    /**
+     * Writes a {@code double} to {@code buffer[offset..offset+7]} in this packer's byte order.
+     *
+     * @param d the value to write
+     * @param buffer destination array
+     * @param offset starting index (must allow 8 bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public void packDouble(double d, byte[] buffer, int offset) {
+        if (bigEndian) {
+            LONG_BE.set(buffer, offset, Double.doubleToLongBits(d));
+        } else {
+            LONG_LE.set(buffer, offset, Double.doubleToLongBits(d));
+        }
+    }
+
+    /**
+     * Reads a {@code double} from {@code buffer[offset..offset+7]} in this packer's byte order.
+     *
+     * @param buffer source array
+     * @param offset starting index (must allow 8 bytes)
+     * @return the decoded value
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public double unpackDouble(byte[] buffer, int offset) {
+        return bigEndian
+                ? Double.longBitsToDouble((long) LONG_BE.get(buffer, offset))
+                : Double.longBitsToDouble((long) LONG_LE.get(buffer, offset));
+    }
+
+    /**
+     * Writes a {@code double} at absolute index {@code offset} of {@code buffer} in this
+     * packer's byte order, regardless of the buffer's own order.
+     *
+     * @param d the value to write
+     * @param buffer destination buffer (must be writable)
+     * @param offset absolute starting index (must allow 8 bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public void packDouble(double d, ByteBuffer buffer, int offset) {
+        if (bigEndian) {
+            LONG_BB_BE.set(buffer, offset, Double.doubleToLongBits(d));
+        } else {
+            LONG_BB_LE.set(buffer, offset, Double.doubleToLongBits(d));
+        }
+    }
+
+    /**
+     * Reads a {@code double} at absolute index {@code offset} of {@code buffer} in this
+     * packer's byte order, regardless of the buffer's own order.
+     *
+     * @param buffer source buffer
+     * @param offset absolute starting index (must allow 8 bytes)
+     * @return the decoded value
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public double unpackDouble(ByteBuffer buffer, int offset) {
+        return bigEndian
+                ? Double.longBitsToDouble((long) LONG_BB_BE.get(buffer, offset))
+                : Double.longBitsToDouble((long) LONG_BB_LE.get(buffer, offset));
+    }
+
+    /**
+     * Writes {@code len} values from {@code src[srcOff..]} starting at
+     * {@code buffer[offset]}, 8 bytes each, in this packer's byte order.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void packDoubles(double[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_DOUBLE);
+        VarHandle handle = bigEndian ? LONG_BE : LONG_LE;
+        for (int i = 0; i < len; i++) {
+            handle.set(buffer, offset + SIZEOF_DOUBLE * i, Double.doubleToLongBits(src[srcOff + i]));
+        }
+    }
+
+    /**
+     * Reads {@code len} values starting at {@code buffer[offset]}, 8 bytes each,
+     * in this packer's byte order into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void unpackDoubles(byte[] buffer, int offset, double[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_DOUBLE);
+        if (bigEndian) {
+            PackUtils.unpackDoubles(buffer, offset, dst, dstOff, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                dst[dstOff + i] = Double.longBitsToDouble((long) LONG_LE.get(buffer, offset + SIZEOF_DOUBLE * i));
+            }
+        }
+    }
+
+    /**
+     * Writes {@code f} as a half-precision value to {@code buffer[offset..offset+1]}
+     * in this packer's byte order, converted as by
+     * {@link PackUtils#packFloat16(float, byte[], int)}.
+     *
+     * @param f the value to write
+     * @param buffer destination array
+     * @param offset starting index (must allow 2 bytes)
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public void packFloat16(float f, byte[] buffer, int offset) {
+        packShort(Float.floatToFloat16(f), buffer, offset);
+    }
+
+    /**
+     * Reads a half-precision value from {@code buffer[offset..offset+1]} in this
+     * packer's byte order and widens it to a {@code float}.
+     *
+     * @param buffer source array
+     * @param offset starting index (must allow 2 bytes)
+     * @return the decoded value
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public float unpackFloat16(byte[] buffer, int offset) {
+        return Float.float16ToFloat(unpackShort(buffer, offset));
+    }
+
+    /**
+     * Writes {@code len} values from {@code src[srcOff..]} as half-precision values
+     * starting at {@code buffer[offset]}, 2 bytes each, in this packer's byte order.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void packFloat16s(float[] src, int srcOff, int len, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_FLOAT16);
+        VarHandle handle = bigEndian ? SHORT_BE : SHORT_LE;
+        for (int i = 0; i < len; i++) {
+            handle.set(buffer, offset + SIZEOF_FLOAT16 * i, Float.floatToFloat16(src[srcOff + i]));
+        }
+    }
+
+    /**
+     * Reads {@code len} half-precision values starting at {@code buffer[offset]},
+     * 2 bytes each, in this packer's byte order into {@code dst[dstOff..]}.
+     *
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void unpackFloat16s(byte[] buffer, int offset, float[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_FLOAT16);
+        VarHandle handle = bigEndian ? SHORT_BE : SHORT_LE;
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = Float.float16ToFloat((short) handle.get(buffer, offset + SIZEOF_FLOAT16 * i));
+        }
+    }
+
+    /**
+     * Writes {@code value} as the fixed-point {@code short}
+     * {@code Math.rint(value * scale)} to {@code buffer[offset..offset+1]} in this
+     * packer's byte order.
+     *
+     * @param value the value to write
+     * @param scale the positive factor applied before rounding
+     * @param buffer destination array
+     * @param offset starting index (must allow 2 bytes)
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite,
+     *         or the scaled value is NaN or does not fit in a {@code short}
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public void packFixed16(double value, double scale, byte[] buffer, int offset) {
+        checkScale(scale);
+        packShort((short) toFixed(value, scale, Short.MIN_VALUE, Short.MAX_VALUE), buffer, offset);
+    }
+
+    /**
+     * Reads a fixed-point {@code short} from {@code buffer[offset..offset+1]} in this
+     * packer's byte order and returns it divided by {@code scale}.
+     *
+     * @param scale the factor used when packing
+     * @param buffer source array
+     * @param offset starting index (must allow 2 bytes)
+     * @return the decoded value
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public double unpackFixed16(double scale, byte[] buffer, int offset) {
+        checkScale(scale);
+        return unpackShort(buffer, offset) / scale;
+    }
+
+    /**
+     * Writes {@code value} as the fixed-point {@code int}
+     * {@code Math.rint(value * scale)} to {@code buffer[offset..offset+3]} in this
+     * packer's byte order.
+     *
+     * @param value the value to write
+     * @param scale the positive factor applied before rounding
+     * @param buffer destination array
+     * @param offset starting index (must allow 4 bytes)
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite,
+     *         or the scaled value is NaN or does not fit in an {@code int}
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public void packFixed32(double value, double scale, byte[] buffer, int offset) {
+        checkScale(scale);
+        packInt((int) toFixed(value, scale, Integer.MIN_VALUE, Integer.MAX_VALUE), buffer, offset);
+    }
+
+    /**
+     * Reads a fixed-point {@code int} from {@code buffer[offset..offset+3]} in this
+     * packer's byte order and returns it divided by {@code scale}.
+     *
+     * @param scale the factor used when packing
+     * @param buffer source array
+     * @param offset starting index (must allow 4 bytes)
+     * @return the decoded value
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public double unpackFixed32(double scale, byte[] buffer, int offset) {
+        checkScale(scale);
+        return unpackInt(buffer, offset) / scale;
+    }
+
+    /**
+     * Writes {@code len} values from {@code src[srcOff..]} as fixed-point
+     * {@code short}s starting at {@code buffer[offset]}, 2 bytes each, in this
+     * packer's byte order.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param scale the positive factor applied before rounding
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite,
+     *         or a scaled value does not fit; the values before it are written
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void packFixed16s(double[] src, int srcOff, int len, double scale, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_FIXED16);
+        checkScale(scale);
+        VarHandle handle = bigEndian ? SHORT_BE : SHORT_LE;
+        for (int i = 0; i < len; i++) {
+            handle.set(buffer, offset + SIZEOF_FIXED16 * i,
+                    (short) toFixed(src[srcOff + i], scale, Short.MIN_VALUE, Short.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Reads {@code len} fixed-point {@code short}s starting at {@code buffer[offset]},
+     * 2 bytes each, in this packer's byte order into {@code dst[dstOff..]}.
+     *
+     * @param scale the factor used when packing
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void unpackFixed16s(double scale, byte[] buffer, int offset, double[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_FIXED16);
+        checkScale(scale);
+        VarHandle handle = bigEndian ? SHORT_BE : SHORT_LE;
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = (short) handle.get(buffer, offset + SIZEOF_FIXED16 * i) / scale;
+        }
+    }
+
+    /**
+     * Writes {@code len} values from {@code src[srcOff..]} as fixed-point
+     * {@code int}s starting at {@code buffer[offset]}, 4 bytes each, in this
+     * packer's byte order.
+     *
+     * @param src the values to write
+     * @param srcOff index of the first value in {@code src}
+     * @param len number of values to write
+     * @param scale the positive factor applied before rounding
+     * @param buffer destination array
+     * @param offset starting index in {@code buffer}
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite,
+     *         or a scaled value does not fit; the values before it are written
+     * @throws NullPointerException if {@code src} or {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void packFixed32s(double[] src, int srcOff, int len, double scale, byte[] buffer, int offset) {
+        checkBulk(src.length, srcOff, len, buffer.length, offset, SIZEOF_FIXED32);
+        checkScale(scale);
+        VarHandle handle = bigEndian ? INT_BE : INT_LE;
+        for (int i = 0; i < len; i++) {
+            handle.set(buffer, offset + SIZEOF_FIXED32 * i,
+                    (int) toFixed(src[srcOff + i], scale, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Reads {@code len} fixed-point {@code int}s starting at {@code buffer[offset]},
+     * 4 bytes each, in this packer's byte order into {@code dst[dstOff..]}.
+     *
+     * @param scale the factor used when packing
+     * @param buffer source array
+     * @param offset starting index in {@code buffer}
+     * @param dst destination array for the decoded values
+     * @param dstOff index of the first value in {@code dst}
+     * @param len number of values to read
+     * @throws IllegalArgumentException if {@code scale} is not positive and finite
+     * @throws NullPointerException if {@code buffer} or {@code dst} is {@code null}
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void unpackFixed32s(double scale, byte[] buffer, int offset, double[] dst, int dstOff, int len) {
+        checkBulk(dst.length, dstOff, len, buffer.length, offset, SIZEOF_FIXED32);
+        checkScale(scale);
+        VarHandle handle = bigEndian ? INT_BE : INT_LE;
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = (int) handle.get(buffer, offset + SIZEOF_FIXED32 * i) / scale;
+        }
+    }
+
+    /**
+     * Writes at most {@code maxLength} characters of {@code str} starting at
+     * {@code buffer[offset]}, 2 bytes per char in this packer's byte order, with the
+     * truncation and termination rules of
+     * {@link PackUtils#packLimitedString(String, int, byte[], int)}.
+     *
+     * @param str the source string (must be non-null)
+     * @param maxLength maximum number of characters to write (code units)
+     * @param buffer destination array
+     * @param offset starting index
+     * @throws NullPointerException if {@code buffer} or {@code str} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public void packLimitedString(String str, int maxLength, byte[] buffer, int offset) {
+        for (int i = 0; i < maxLength; i++) {
+            if (i < str.length()) {
+                packChar(str.charAt(i), buffer, offset + 2 * i);
+            } else {
+                packChar('\0', buffer, offset + 2 * i);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reads at most {@code maxLength} characters starting at {@code buffer[offset]},
+     * 2 bytes per char in this packer's byte order, stopping at a null terminator.
+     *
+     * @param maxLength maximum number of characters to read
+     * @param buffer source array
+     * @param offset starting index
+     * @return the decoded string
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space to read
+     */
+    public String unpackLimitedString(int maxLength, byte[] buffer, int offset) {
+        StringBuilder sb = new StringBuilder(Math.min(maxLength, 16));
+        for (int i = 0; i < maxLength; i++) {
+            char c = unpackChar(buffer, offset + 2 * i);
+            if (c == '\0') {
+                break;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes at most {@code maxLength} characters of {@code str} at absolute index
+     * {@code offset} of {@code buffer}, 2 bytes per char in this packer's byte order.
+     *
+     * @param str the source string (must be non-null)
+     * @param maxLength maximum number of characters to write (code units)
+     * @param buffer destination buffer (must be writable)
+     * @param offset absolute starting index
+     * @throws NullPointerException if {@code buffer} or {@code str} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+     */
+    public void packLimitedString(String str, int maxLength, ByteBuffer buffer, int offset) {
+        for (int i = 0; i < maxLength; i++) {
+            if (i < str.length()) {
+                packChar(str.charAt(i), buffer, offset + 2 * i);
+            } else {
+                packChar('\0', buffer, offset + 2 * i);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reads at most {@code maxLength} characters at absolute index {@code offset} of
+     * {@code buffer}, 2 bytes per char in this packer's byte order.
+     *
+     * @param maxLength maximum number of characters to read
+     * @param buffer source buffer
+     * @param offset absolute starting index
+     * @return the decoded string
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space to read
+     */
+    public String unpackLimitedString(int maxLength, ByteBuffer buffer, int offset) {
+        StringBuilder sb = new StringBuilder(Math.min(maxLength, 16));
+        for (int i = 0; i < maxLength; i++) {
+            char c = unpackChar(buffer, offset + 2 * i);
+            if (c == '\0') {
+                break;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "Packer[" + order() + "]";
+    }
+}
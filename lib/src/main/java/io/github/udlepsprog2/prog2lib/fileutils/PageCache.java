@@ -0,0 +1,363 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache of the fixed-size pages of a file (a record file, an index,
+ * ...), shared by many threads.
+ * <p>
+ * A page is used by pinning it, which keeps it in memory until it is unpinned;
+ * {@link Page} is {@link AutoCloseable}, so the usual pattern is:
+ * </p>
+ * <pre>{@code
+ * try (PageCache.Page page = cache.pin(index * RECORD_SIZE / PAGE_SIZE)) {
+ *     int offset = (int) (index * RECORD_SIZE % PAGE_SIZE);
+ *     PackUtils.packInt(value, page.data(), offset);
+ *     page.markDirty();
+ * }
+ * }</pre>
+ * <p>
+ * The cache is split into stripes, each holding a share of the capacity behind
+ * its own lock, and every page belongs to the stripe chosen by a hash of its
+ * number, so threads working on different pages rarely contend. Within a
+ * stripe, pages are evicted with the CLOCK algorithm: a hit only sets the
+ * page's reference bit, and the clock hand skips pinned pages and gives
+ * referenced ones a second chance before evicting one. Dirty pages are written
+ * back when they are evicted and on {@link #flush()}; misses and write-backs
+ * are done while holding the lock of their stripe only.
+ * </p>
+ * <p>
+ * Pinning does not lock the contents of a page: threads sharing a pinned page
+ * must coordinate their reads and writes themselves. Pages beyond the end of
+ * the file read as zeros, and writing them back extends the file. A page must
+ * not be used after it has been unpinned. Instances are thread-safe.
+ * </p>
+ */
+public class PageCache implements Closeable {
+
+    /**
+     * Default page size in bytes.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+
+    /**
+     * A snapshot of the cache counters.
+     *
+     * @param hits number of pins served from the cache
+     * @param misses number of pins that had to read the page
+     * @param evictions number of pages evicted to make room
+     * @param writeBacks number of dirty pages written to the file
+     */
+    public record Stats(long hits, long misses, long evictions, long writeBacks) { }
+
+    /**
+     * A cached page, pinned until {@link #close()} (or {@link PageCache#unpin(Page)})
+     * is called once for each {@link PageCache#pin(long)} that returned it.
+     */
+    public static final class Page implements AutoCloseable {
+        private final Stripe stripe;
+        private final byte[] data;
+        private long pageNo = -1;
+        private int pins;
+        private boolean referenced;
+        private boolean dirty;
+
+        private Page(Stripe stripe, byte[] data) {
+            this.stripe = stripe;
+            this.data = data;
+        }
+
+        /**
+         * Returns the number of this page in the file.
+         *
+         * @return the page number
+         */
+        public long pageNo() {
+            return pageNo;
+        }
+
+        /**
+         * Returns the contents of the page, which may be read and modified while
+         * the page is pinned.
+         *
+         * @return the page bytes
+         */
+        public byte[] data() {
+            return data;
+        }
+
+        /**
+         * Records that the contents have been modified, so that the page is
+         * written back before it is evicted.
+         *
+         * @throws IllegalStateException if the page is not pinned
+         */
+        public void markDirty() {
+            stripe.lock.lock();
+            try {
+                checkPinned();
+                dirty = true;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        /**
+         * Unpins the page.
+         *
+         * @throws IllegalStateException if the page is not pinned
+         */
+        @Override
+        public void close() {
+            stripe.lock.lock();
+            try {
+                checkPinned();
+                pins--;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        private void checkPinned() {
+            if (pins == 0) {
+                throw new IllegalStateException("page " + pageNo + " is not pinned");
+            }
+        }
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final HashMap<Long, Page> pages = new HashMap<>();
+        final Page[] frames;
+        int used;
+        int hand;
+
+        Stripe(int frames) {
+            this.frames = new Page[frames];
+        }
+    }
+
+    private final FileChannel channel;
+    private final int pageSize;
+    private final Stripe[] stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder writeBacks = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * Opens (creating it if needed) {@code path}, caching up to {@code capacity}
+     * pages of the default size in one stripe per 16 pages of capacity, up to
+     * four stripes per available processor.
+     *
+     * @param path the file to cache
+     * @param capacity maximum number of cached pages (must be positive)
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if {@code capacity <= 0}
+     */
+    public PageCache(Path path, int capacity) throws IOException {
+        this(path, DEFAULT_PAGE_SIZE, capacity,
+                Math.max(1, Math.min(capacity / 16, 4 * Runtime.getRuntime().availableProcessors())));
+    }
+
+    /**
+     * Opens (creating it if needed) {@code path}, caching up to {@code capacity}
+     * pages of {@code pageSize} bytes split evenly among {@code stripes} stripes.
+     *
+     * @param path the file to cache
+     * @param pageSize size in bytes of each page (must be positive)
+     * @param capacity maximum number of cached pages
+     * @param stripes number of independently locked stripes, in {@code [1, capacity]}
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if {@code pageSize <= 0} or {@code stripes}
+     *         is not in {@code [1, capacity]}
+     */
+    public PageCache(Path path, int pageSize, int capacity, int stripes) throws IOException {
+        if (pageSize <= 0 || stripes <= 0 || stripes > capacity) {
+            throw new IllegalArgumentException("pageSize must be positive and stripes in [1, capacity]");
+        }
+        this.pageSize = pageSize;
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe(capacity / stripes + (i < capacity % stripes ? 1 : 0));
+        }
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Returns the size in bytes of each page.
+     *
+     * @return the page size
+     */
+    public int pageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Pins page {@code pageNo}, reading it from the file unless it is cached.
+     *
+     * @param pageNo the page number (non-negative)
+     * @return the pinned page
+     * @throws IOException if an I/O error occurs reading the page or writing back
+     *         the evicted one, or the cache is closed
+     * @throws IllegalStateException if every page of the stripe is pinned
+     * @throws IndexOutOfBoundsException if {@code pageNo} is negative
+     */
+    public Page pin(long pageNo) throws IOException {
+        Objects.checkIndex(pageNo, Long.MAX_VALUE / pageSize);
+        Stripe stripe = stripeOf(pageNo);
+        stripe.lock.lock();
+        try {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            Page page = stripe.pages.get(pageNo);
+            if (page != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                page = victim(stripe);
+                if (page.pageNo >= 0) {
+                    writeBack(page);
+                    stripe.pages.remove(page.pageNo);
+                    page.pageNo = -1;
+                    evictions.increment();
+                }
+                read(pageNo, page.data);
+                page.pageNo = pageNo;
+                page.dirty = false;
+                stripe.pages.put(pageNo, page);
+            }
+            page.pins++;
+            page.referenced = true;
+            return page;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Unpins {@code page}; same as {@link Page#close()}.
+     *
+     * @param page a page returned by {@link #pin(long)}
+     * @throws IllegalStateException if the page is not pinned
+     */
+    public void unpin(Page page) {
+        page.close();
+    }
+
+    /**
+     * Writes back every dirty page, pinned or not, and forces the file to the
+     * storage device.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void flush() throws IOException {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (int i = 0; i < stripe.used; i++) {
+                    writeBack(stripe.frames[i]);
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Returns a snapshot of the hit, miss, eviction and write-back counters.
+     *
+     * @return the current statistics
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), writeBacks.sum());
+    }
+
+    /**
+     * Flushes the cache and closes the file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    private Stripe stripeOf(long pageNo) {
+        long h = pageNo * 0x9E3779B97F4A7C15L;
+        return stripes[(int) ((h >>> 32) % stripes.length)];
+    }
+
+    /*
+     * Returns a free or evictable frame of stripe, whose lock must be held.
+     * The hand sweeps at most twice: once to clear reference bits and once
+     * more to find a page that was not referenced again meanwhile.
+     */
+    private Page victim(Stripe stripe) {
+        if (stripe.used < stripe.frames.length) {
+            Page page = new Page(stripe, new byte[pageSize]);
+            stripe.frames[stripe.used++] = page;
+            return page;
+        }
+        Page[] frames = stripe.frames;
+        for (int i = 0; i < 2 * frames.length; i++) {
+            Page page = frames[stripe.hand];
+            stripe.hand = (stripe.hand + 1) % frames.length;
+            if (page.pins > 0) {
+                continue;
+            }
+            if (page.referenced && page.pageNo >= 0) {
+                page.referenced = false;
+                continue;
+            }
+            return page;
+        }
+        throw new IllegalStateException("all " + frames.length + " pages of the stripe are pinned");
+    }
+
+    private void read(long pageNo, byte[] data) throws IOException {
+        ByteBuffer target = ByteBuffer.wrap(data);
+        long position = pageNo * pageSize;
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                Arrays.fill(data, target.position(), data.length, (byte) 0);
+                break;
+            }
+        }
+    }
+
+    private void writeBack(Page page) throws IOException {
+        if (page.dirty) {
+            ByteBuffer source = ByteBuffer.wrap(page.data);
+            long position = page.pageNo * pageSize;
+            while (source.hasRemaining()) {
+                channel.write(source, position + source.position());
+            }
+            page.dirty = false;
+            writeBacks.increment();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A file of fixed-size pages with a bounded LRU cache of page contents, used
+ * by the on-disk indexes of this package.
+ * <p>
+ * {@link #page(long)} returns the cached array of a page; after modifying it
+ * the caller must call {@link #write(long, byte[])}, which marks the page as
+ * dirty. Dirty pages are written back when evicted and on {@link #flush()}.
+ * A page array stays valid after eviction, but callers that may have caused
+ * evictions since they obtained it should fetch it again before reading.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+final class PageFile implements Closeable {
+
+    private static final class Page {
+        final byte[] data;
+        boolean dirty;
+
+        Page(byte[] data, boolean dirty) {
+            this.data = data;
+            this.dirty = dirty;
+        }
+    }
+
+    private final FileChannel channel;
+    private final int pageSize;
+    private final int capacity;
+    private final LinkedHashMap<Long, Page> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long pageCount;
+
+    PageFile(Path path, int pageSize, int capacity) throws IOException {
+        if (pageSize <= 0 || capacity < 4) {
+            throw new IllegalArgumentException("pageSize must be positive and capacity at least 4");
+        }
+        this.pageSize = pageSize;
+        this.capacity = capacity;
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.pageCount = (channel.size() + pageSize - 1) / pageSize;
+    }
+
+    int pageSize() {
+        return pageSize;
+    }
+
+    long pageCount() {
+        return pageCount;
+    }
+
+    byte[] page(long pageNo) throws IOException {
+        Page page = cache.get(pageNo);
+        if (page == null) {
+            if (pageNo < 0 || pageNo >= pageCount) {
+                throw new IOException("page " + pageNo + " does not exist");
+            }
+            byte[] data = new byte[pageSize];
+            ByteBuffer target = ByteBuffer.wrap(data);
+            long position = pageNo * pageSize;
+            while (target.hasRemaining()) {
+                if (channel.read(target, position + target.position()) < 0) {
+                    break;
+                }
+            }
+            page = new Page(data, false);
+            put(pageNo, page);
+        }
+        return page.data;
+    }
+
+    void write(long pageNo, byte[] data) throws IOException {
+        Page page = cache.get(pageNo);
+        if (page != null && page.data == data) {
+            page.dirty = true;
+        } else {
+            put(pageNo, new Page(data, true));
+        }
+    }
+
+    long allocate() throws IOException {
+        long pageNo = pageCount++;
+        put(pageNo, new Page(new byte[pageSize], true));
+        return pageNo;
+    }
+
+    void flush() throws IOException {
+        for (Map.Entry<Long, Page> entry : cache.entrySet()) {
+            writeBack(entry.getKey(), entry.getValue());
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            cache.clear();
+            channel.close();
+        }
+    }
+
+    private void put(long pageNo, Page page) throws IOException {
+        cache.put(pageNo, page);
+        Iterator<Map.Entry<Long, Page>> eldest = cache.entrySet().iterator();
+        while (cache.size() > capacity) {
+            Map.Entry<Long, Page> entry = eldest.next();
+            writeBack(entry.getKey(), entry.getValue());
+            eldest.remove();
+        }
+    }
+
+    private void writeBack(long pageNo, Page page) throws IOException {
+        if (page.dirty) {
+            ByteBuffer source = ByteBuffer.wrap(page.data);
+            long position = pageNo * pageSize;
+            while (source.hasRemaining()) {
+                channel.write(source, position + source.position());
+            }
+            page.dirty = false;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of reusable {@code byte[]} record buffers, to avoid allocating a new
+ * buffer for every record packed or unpacked with {@link PackUtils}.
+ * <p>
+ * Buffers are grouped in size classes (powers of two from {@value #MIN_BUFFER_SIZE}
+ * bytes up to a maximum); a request for {@code size} bytes is served with a
+ * buffer of the smallest class that holds it, so buffers may be longer than
+ * requested. Each class keeps a fixed number of slots, and threads start
+ * probing the slots at a position derived from their id, so concurrent
+ * threads rarely touch the same slot and no locks are used. When every slot is
+ * empty a new buffer is allocated (a miss); when every slot is full a released
+ * buffer is simply left to the garbage collector.
+ * </p>
+ * <p>
+ * The preferred way to use the pool is {@link #borrow(int, BufferAction)}, which
+ * always gives the buffer back:
+ * </p>
+ * <pre>{@code
+ * int id = pool.borrow(RECORD_SIZE, record -> {
+ *     file.read(index, record);
+ *     return PackUtils.unpackInt(record, 0);
+ * });
+ * }</pre>
+ * <p>
+ * Buffer contents are not cleared: a borrowed buffer may hold data from a
+ * previous use. A buffer must not be used after it has been released.
+ * Instances are thread-safe.
+ * </p>
+ */
+public class RecordBufferPool {
+
+    /**
+     * Smallest size class, in bytes.
+     */
+    public static final int MIN_BUFFER_SIZE = 16;
+
+    /**
+     * Code run with a borrowed buffer by {@link #borrow(int, BufferAction)}.
+     *
+     * @param <T> the result type
+     * @param <E> the checked exception the action may throw
+     */
+    @FunctionalInterface
+    public interface BufferAction<T, E extends Exception> {
+        /**
+         * Runs the action.
+         *
+         * @param buffer the borrowed buffer; valid only during this call
+         * @return the result of the action
+         * @throws E if the action fails
+         */
+        T apply(byte[] buffer) throws E;
+    }
+
+    /**
+     * A snapshot of the pool counters.
+     *
+     * @param hits number of requests served with a pooled buffer
+     * @param misses number of requests that had to allocate a new buffer
+     * @param outstanding number of buffers currently acquired and not yet released
+     */
+    public record Stats(long hits, long misses, long outstanding) { }
+
+    private final int maxBufferSize;
+    private final int slotsPerClass;
+    private final AtomicReferenceArray<byte[]>[] classes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder outstanding = new LongAdder();
+
+    /**
+     * Creates a pool for buffers of up to 64 KiB with four slots per size class
+     * and available processor.
+     */
+    public RecordBufferPool() {
+        this(64 * 1024, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxBufferSize largest pooled size; it is rounded up to a power of two and
+     *        larger requests are always allocated
+     * @param slotsPerClass number of buffers kept for each size class
+     * @throws IllegalArgumentException if {@code maxBufferSize} is not in
+     *         {@code [1, 2^30]} or {@code slotsPerClass <= 0}
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public RecordBufferPool(int maxBufferSize, int slotsPerClass) {
+        if (maxBufferSize <= 0 || maxBufferSize > 1 << 30 || slotsPerClass <= 0) {
+            throw new IllegalArgumentException("invalid pool size");
+        }
+        this.maxBufferSize = Math.max(MIN_BUFFER_SIZE, roundUp(maxBufferSize));
+        this.slotsPerClass = slotsPerClass;
+        this.classes = new AtomicReferenceArray[sizeClass(this.maxBufferSize) + 1];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new AtomicReferenceArray<>(slotsPerClass);
+        }
+    }
+
+    /**
+     * Returns a buffer of at least {@code size} bytes. It should be given back
+     * with {@link #release(byte[])}.
+     * <p>
+     * The buffer is not cleared: a reused buffer still holds whatever its
+     * previous user left in it, so callers must overwrite every byte they read.
+     * </p>
+     *
+     * @param size the minimum buffer length
+     * @return a buffer whose length is at least {@code size}
+     * @throws IllegalArgumentException if {@code size} is negative
+     */
+    public byte[] acquire(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("negative size " + size);
+        }
+        outstanding.increment();
+        if (size > maxBufferSize) {
+            misses.increment();
+            return new byte[size];
+        }
+        int sizeClass = sizeClass(size);
+        AtomicReferenceArray<byte[]> slots = classes[sizeClass];
+        int start = probe();
+        for (int i = 0; i < slotsPerClass; i++) {
+            byte[] buffer = slots.getAndSet((start + i) % slotsPerClass, null);
+            if (buffer != null) {
+                hits.increment();
+                return buffer;
+            }
+        }
+        misses.increment();
+        return new byte[MIN_BUFFER_SIZE << sizeClass];
+    }
+
+    /**
+     * Gives back a buffer obtained from {@link #acquire(int)}.
+     * <p>
+     * Each acquired buffer must be released exactly once. Releasing a buffer
+     * that is still in the pool is detected, but once another caller has
+     * acquired it again a second release goes unnoticed and the pool may hand
+     * the same array to two threads. The pool cannot tell its own buffers from
+     * others: any array whose length is a size class is adopted, and the
+     * caller must not touch it afterwards.
+     * </p>
+     *
+     * @param buffer the buffer to release
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IllegalStateException if {@code buffer} is already in the pool
+     */
+    public void release(byte[] buffer) {
+        int length = buffer.length;
+        if (length < MIN_BUFFER_SIZE || length > maxBufferSize || Integer.bitCount(length) != 1) {
+            outstanding.decrement();
+            return;
+        }
+        AtomicReferenceArray<byte[]> slots = classes[sizeClass(length)];
+        for (int i = 0; i < slotsPerClass; i++) {
+            if (slots.get(i) == buffer) {
+                throw new IllegalStateException("buffer released twice");
+            }
+        }
+        outstanding.decrement();
+        int start = probe();
+        for (int i = 0; i < slotsPerClass; i++) {
+            if (slots.compareAndSet((start + i) % slotsPerClass, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs {@code action} with a buffer of at least {@code size} bytes and releases
+     * the buffer when the action finishes, normally or with an exception.
+     *
+     * @param size the minimum buffer length
+     * @param action the code to run
+     * @param <T> the result type
+     * @param <E> the checked exception the action may throw
+     * @return the result of the action
+     * @throws E if the action throws it
+     * @throws IllegalArgumentException if {@code size} is negative
+     */
+    public <T, E extends Exception> T borrow(int size, BufferAction<T, E> action) throws E {
+        byte[] buffer = acquire(size);
+        try {
+            return action.apply(buffer);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the hit, miss and outstanding counters.
+     *
+     * @return the current statistics
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), outstanding.sum());
+    }
+
+    private static int roundUp(int size) {
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private static int sizeClass(int size) {
+        return Math.max(0, Integer.numberOfTrailingZeros(roundUp(size))
+                - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE));
+    }
+
+    private int probe() {
+        long id = Thread.currentThread().threadId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 33) % slotsPerClass;
+    }
+}
@@ -0,0 +1,253 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Fixed-layout binary codec for Java {@code record} types, built on {@link PackUtils}.
+ * <p>
+ * The layout is derived from the record components in declaration order: each
+ * component is packed right after the previous one with the corresponding
+ * {@code PackUtils.pack*} method, so the result is byte-for-byte identical to
+ * hand-written code using the same offsets. Supported component types are the
+ * eight primitives and {@code String}; strings must be annotated with
+ * {@link MaxLength}, which also selects their encoding.
+ * </p>
+ * <pre>{@code
+ * record Person(int id, @MaxLength(20) String name, double salary) { }
+ *
+ * RecordCodec<Person> codec = RecordCodec.of(Person.class);
+ * byte[] record = new byte[codec.size()];
+ * codec.pack(new Person(1, "Ada", 1000.0), record, 0);
+ * Person p = codec.unpack(record, 0);
+ * }</pre>
+ * <p>
+ * Performance: the layout is computed and the pack/unpack functions are
+ * composed from method handles once per record class; codecs are cached, so
+ * {@link #of(Class)} is cheap. Encoding and decoding involve no reflection and
+ * no boxing.
+ * </p>
+ * <p>
+ * Instances are immutable and thread-safe.
+ * </p>
+ *
+ * @param <R> the record type
+ */
+public final class RecordCodec<R extends Record> {
+
+    private static final ClassValue<RecordCodec<?>> CACHE = new ClassValue<>() {
+        @Override
+        protected RecordCodec<?> computeValue(Class<?> type) {
+            return new RecordCodec<>(type.asSubclass(Record.class));
+        }
+    };
+
+    private static final MethodHandle ADD;
+
+    static {
+        try {
+            ADD = MethodHandles.lookup().findStatic(RecordCodec.class, "add",
+                    MethodType.methodType(int.class, int.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Class<R> type;
+    private final int size;
+    private final Map<String, Integer> offsets;
+    private final MethodHandle packer;   // (Record, byte[], int) void
+    private final MethodHandle unpacker; // (byte[], int) Record
+
+    /**
+     * Returns the (cached) codec for {@code type}.
+     *
+     * @param type the record class
+     * @param <R> the record type
+     * @return the codec for {@code type}
+     * @throws NullPointerException if {@code type} is {@code null}
+     * @throws IllegalArgumentException if a component has an unsupported type,
+     *         a {@code String} component lacks a valid {@link MaxLength}, or the
+     *         record class is not accessible
+     */
+    @SuppressWarnings("unchecked")
+    public static <R extends Record> RecordCodec<R> of(Class<R> type) {
+        Objects.requireNonNull(type, "type");
+        return (RecordCodec<R>) CACHE.get(type);
+    }
+
+    private RecordCodec(Class<R> type) {
+        this.type = type;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            RecordComponent[] components = type.getRecordComponents();
+            Class<?>[] types = new Class<?>[components.length];
+            MethodHandle[] readers = new MethodHandle[components.length];
+            Map<String, Integer> offsets = new LinkedHashMap<>();
+            MethodHandle packer = MethodHandles.empty(
+                    MethodType.methodType(void.class, Record.class, byte[].class, int.class));
+            int offset = 0;
+            for (int i = 0; i < components.length; i++) {
+                RecordComponent component = components[i];
+                Class<?> t = component.getType();
+                types[i] = t;
+                offsets.put(component.getName(), offset);
+                MethodHandle writer;
+                int fieldSize;
+                if (t == String.class) {
+                    MaxLength maxLength = component.getAnnotation(MaxLength.class);
+                    if (maxLength == null || maxLength.value() <= 0) {
+                        throw new IllegalArgumentException("String component " + component.getName()
+                                + " of " + type.getName() + " needs a positive @MaxLength");
+                    }
+                    String suffix = switch (maxLength.encoding()) {
+                        case UTF16 -> "LimitedString";
+                        case LATIN1 -> "Latin1String";
+                        case UTF8 -> "Utf8String";
+                    };
+                    writer = MethodHandles.insertArguments(
+                            packUtils("pack" + suffix, void.class, String.class, int.class, byte[].class, int.class),
+                            1, maxLength.value());
+                    readers[i] = MethodHandles.insertArguments(
+                            packUtils("unpack" + suffix, String.class, int.class, byte[].class, int.class),
+                            0, maxLength.value());
+                    fieldSize = maxLength.encoding() == MaxLength.Encoding.UTF16
+                            ? maxLength.value() * PackUtils.SIZEOF_CHAR
+                            : maxLength.value();
+                } else if (t.isPrimitive() && t != void.class) {
+                    String name = Character.toUpperCase(t.getName().charAt(0)) + t.getName().substring(1);
+                    writer = packUtils("pack" + name, void.class, t, byte[].class, int.class);
+                    readers[i] = packUtils("unpack" + name, t, byte[].class, int.class);
+                    fieldSize = sizeOf(t);
+                } else {
+                    throw new IllegalArgumentException("unsupported component type " + t.getName()
+                            + " for " + component.getName() + " of " + type.getName());
+                }
+                MethodHandle shift = MethodHandles.insertArguments(ADD, 1, offset);
+                writer = MethodHandles.filterArguments(writer, 2, shift);
+                readers[i] = MethodHandles.filterArguments(readers[i], 1, shift);
+                MethodHandle getter = lookup.unreflect(component.getAccessor())
+                        .asType(MethodType.methodType(t, Record.class));
+                packer = MethodHandles.foldArguments(MethodHandles.filterArguments(writer, 0, getter), packer);
+                offset += fieldSize;
+            }
+            MethodHandle unpacker = lookup.findConstructor(type, MethodType.methodType(void.class, types));
+            int[] reorder = new int[2 * components.length];
+            for (int i = components.length - 1; i >= 0; i--) {
+                unpacker = MethodHandles.collectArguments(unpacker, i, readers[i]);
+                reorder[2 * i + 1] = 1;
+            }
+            this.unpacker = MethodHandles.permuteArguments(unpacker,
+                            MethodType.methodType(type, byte[].class, int.class), reorder)
+                    .asType(MethodType.methodType(Record.class, byte[].class, int.class));
+            this.packer = packer;
+            this.offsets = Map.copyOf(offsets);
+            this.size = offset;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("cannot access record " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Returns the record class handled by this codec.
+     *
+     * @return the record class
+     */
+    public Class<R> type() {
+        return type;
+    }
+
+    /**
+     * Returns the number of bytes of a packed record.
+     *
+     * @return the packed size in bytes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the offset, relative to the start of a packed record, of the
+     * named component. Useful to read a single field with {@code PackUtils}
+     * without decoding the whole record.
+     *
+     * @param component the component name
+     * @return the byte offset of the component
+     * @throws IllegalArgumentException if there is no such component
+     */
+    public int offsetOf(String component) {
+        Integer offset = offsets.get(component);
+        if (offset == null) {
+            throw new IllegalArgumentException("no component " + component + " in " + type.getName());
+        }
+        return offset;
+    }
+
+    /**
+     * Packs {@code value} into {@code buffer[offset..offset+size()-1]}.
+     *
+     * @param value the record to write (must be non-null, as must its strings)
+     * @param buffer the destination array
+     * @param offset the starting position
+     * @throws NullPointerException if {@code value}, {@code buffer} or a string component is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public void pack(R value, byte[] buffer, int offset) {
+        Objects.requireNonNull(value, "value");
+        Objects.checkFromIndexSize(offset, size, buffer.length);
+        try {
+            packer.invokeExact((Record) value, buffer, offset);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+
+    /**
+     * Unpacks a record from {@code buffer[offset..offset+size()-1]}.
+     *
+     * @param buffer the source array
+     * @param offset the starting position
+     * @return the decoded record
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if there isn’t enough space
+     */
+    public R unpack(byte[] buffer, int offset) {
+        Objects.checkFromIndexSize(offset, size, buffer.length);
+        try {
+            return type.cast((Record) unpacker.invokeExact(buffer, offset));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+
+    private static int add(int a, int b) {
+        return a + b;
+    }
+
+    private static MethodHandle packUtils(String name, Class<?> returnType, Class<?>... parameterTypes)
+            throws ReflectiveOperationException {
+        return MethodHandles.publicLookup().findStatic(PackUtils.class, name,
+                MethodType.methodType(returnType, parameterTypes));
+    }
+
+    private static int sizeOf(Class<?> t) {
+        if (t == boolean.class) return PackUtils.SIZEOF_BOOLEAN;
+        if (t == byte.class)    return PackUtils.SIZEOF_BYTE;
+        if (t == char.class)    return PackUtils.SIZEOF_CHAR;
+        if (t == short.class)   return PackUtils.SIZEOF_SHORT;
+        if (t == int.class)     return PackUtils.SIZEOF_INT;
+        if (t == long.class)    return PackUtils.SIZEOF_LONG;
+        if (t == float.class)   return PackUtils.SIZEOF_FLOAT;
+        return PackUtils.SIZEOF_DOUBLE;
+    }
+}
@@ -0,0 +1,756 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * A random-access file of fixed-size records backed by memory-mapped windows.
+ * <p>
+ * Records are numbered from {@code 0} to {@link #size()}{@code  - 1} and record
+ * {@code i} lives at byte position {@code i * recordSize}, so files written
+ * with {@link RecordWriter} can be opened directly. The file is mapped
+ * in windows that hold a whole number of records, so no record ever crosses a
+ * window boundary and files larger than 2 GB are supported. Reads and writes of
+ * existing records are plain memory copies; windows are mapped lazily and the
+ * last one is remapped when the file grows.
+ * </p>
+ * <p>
+ * The record contents are opaque: use {@link PackUtils} to encode and decode
+ * them. A typical usage:
+ * </p>
+ * <pre>{@code
+ * try (RecordFile file = new RecordFile(path, RECORD_SIZE)) {
+ *     byte[] record = new byte[RECORD_SIZE];
+ *     PackUtils.packInt(id, record, 0);
+ *     long index = file.append(record);
+ *     ...
+ *     file.read(index, record);
+ *     int readId = PackUtils.unpackInt(record, 0);
+ * }
+ * }</pre>
+ * <p>
+ * Bulk scans use {@link #stream(RecordDecoder)}, or the primitive
+ * {@link #ints(RecordToIntFunction)}, {@link #longs(RecordToLongFunction)} and
+ * {@link #doubles(RecordToDoubleFunction)}, whose functions receive the mapped
+ * window and the offset of each record and decode it in place with the
+ * {@code ByteBuffer} overloads of {@link PackUtils}. Their spliterators split by
+ * record ranges, so parallel streams decode on every core without copying:
+ * </p>
+ * <pre>{@code
+ * double total = file.doubles((buffer, offset) -> PackUtils.unpackDouble(buffer, offset + 8))
+ *         .parallel()
+ *         .sum();
+ * }</pre>
+ * <p>
+ * In checksummed mode every record is stored followed by its CRC-32C (see
+ * {@link Checksums}): writes and appends compute it, {@link #read(long, byte[])}
+ * verifies it and {@link #verify()} checks the whole file in parallel. Streams
+ * see the records without verifying them. A checksummed file starts with a
+ * 12-byte header that records the mode and the record size, and is itself
+ * sealed with a checksum:
+ * </p>
+ * <pre>
+ * [magic: int][recordSize: int][checksum: int][record 0][checksum 0][record 1]...
+ * </pre>
+ * <p>
+ * Opening a checksummed file without checksummed mode, a plain file with it,
+ * or a checksummed file with another record size fails instead of misreading
+ * the records.
+ * </p>
+ * <p>
+ * Durability: changes reach the operating system immediately but are only
+ * guaranteed to be on the storage device after {@link #force()}.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class RecordFile implements Closeable {
+
+    /**
+     * Default size in bytes of each mapped window (64 MiB), rounded down to a
+     * whole number of records.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    static final int MAGIC = 0x5245434B; // "RECK"
+    // [magic: int][recordSize: int][checksum: int], only in checksummed mode
+    static final int HEADER_SIZE = 2 * PackUtils.SIZEOF_INT + Checksums.SIZEOF_CHECKSUM;
+
+    /**
+     * Decodes the record starting at {@code buffer[offset]}.
+     *
+     * @param <T> the decoded type
+     */
+    @FunctionalInterface
+    public interface RecordDecoder<T> {
+        /**
+         * Decodes one record.
+         *
+         * @param buffer the mapped window holding the record
+         * @param offset the position of the record in {@code buffer}
+         * @return the decoded record
+         */
+        T decode(ByteBuffer buffer, int offset);
+    }
+
+    /**
+     * Computes an {@code int} from the record starting at {@code buffer[offset]}.
+     */
+    @FunctionalInterface
+    public interface RecordToIntFunction {
+        /**
+         * Applies this function to one record.
+         *
+         * @param buffer the mapped window holding the record
+         * @param offset the position of the record in {@code buffer}
+         * @return the function result
+         */
+        int applyAsInt(ByteBuffer buffer, int offset);
+    }
+
+    /**
+     * Computes a {@code long} from the record starting at {@code buffer[offset]}.
+     */
+    @FunctionalInterface
+    public interface RecordToLongFunction {
+        /**
+         * Applies this function to one record.
+         *
+         * @param buffer the mapped window holding the record
+         * @param offset the position of the record in {@code buffer}
+         * @return the function result
+         */
+        long applyAsLong(ByteBuffer buffer, int offset);
+    }
+
+    /**
+     * Computes a {@code double} from the record starting at {@code buffer[offset]}.
+     */
+    @FunctionalInterface
+    public interface RecordToDoubleFunction {
+        /**
+         * Applies this function to one record.
+         *
+         * @param buffer the mapped window holding the record
+         * @param offset the position of the record in {@code buffer}
+         * @return the function result
+         */
+        double applyAsDouble(ByteBuffer buffer, int offset);
+    }
+
+    private final FileChannel channel;
+    private final int recordSize;
+    private final int slotSize;
+    private final boolean checksummed;
+    private final int base;
+    private final byte[] slot;
+    private final CRC32C crc = new CRC32C();
+    private final int recordsPerWindow;
+    private final List<MappedByteBuffer> windows = new ArrayList<>();
+    private long size;
+
+    /**
+     * Opens (creating it if needed) a record file with the default window size.
+     *
+     * @param path the file to open
+     * @param recordSize size in bytes of each record (must be positive)
+     * @throws IOException if the file cannot be opened, is checksummed or its
+     *         length is not a multiple of {@code recordSize}
+     * @throws IllegalArgumentException if {@code recordSize <= 0}
+     */
+    public RecordFile(Path path, int recordSize) throws IOException {
+        this(path, recordSize, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Opens (creating it if needed) a record file mapped in windows of about
+     * {@code windowSize} bytes. The effective window holds
+     * {@code max(1, windowSize / recordSize)} records.
+     *
+     * @param path the file to open
+     * @param recordSize size in bytes of each record (must be positive)
+     * @param windowSize requested size in bytes of each mapped window (must be positive)
+     * @throws IOException if the file cannot be opened, is checksummed or its
+     *         length is not a multiple of {@code recordSize}
+     * @throws IllegalArgumentException if {@code recordSize <= 0} or {@code windowSize <= 0}
+     */
+    public RecordFile(Path path, int recordSize, int windowSize) throws IOException {
+        this(path, recordSize, windowSize, false);
+    }
+
+    /**
+     * Opens (creating it if needed) a record file mapped in windows of about
+     * {@code windowSize} bytes, optionally in checksummed mode. The effective
+     * window holds {@code max(1, windowSize / slotSize)} records, where the slot
+     * size is {@code recordSize}, plus {@link Checksums#SIZEOF_CHECKSUM} in
+     * checksummed mode. A new or empty file opened in checksummed mode gets the
+     * checksummed header.
+     *
+     * @param path the file to open
+     * @param recordSize size in bytes of each record, without the checksum (must be positive)
+     * @param windowSize requested size in bytes of each mapped window (must be positive)
+     * @param checksummed whether each record is stored with its checksum and
+     *        verified when read
+     * @throws IOException if the file cannot be opened, its mode or record size
+     *         is not the requested one, or its records do not fill it exactly
+     * @throws IllegalArgumentException if {@code recordSize <= 0} or {@code windowSize <= 0}
+     */
+    public RecordFile(Path path, int recordSize, int windowSize, boolean checksummed) throws IOException {
+        if (recordSize <= 0 || windowSize <= 0) {
+            throw new IllegalArgumentException("recordSize and windowSize must be positive");
+        }
+        this.recordSize = recordSize;
+        this.checksummed = checksummed;
+        this.slotSize = checksummed ? recordSize + Checksums.SIZEOF_CHECKSUM : recordSize;
+        this.base = checksummed ? HEADER_SIZE : 0;
+        this.slot = checksummed ? new byte[slotSize] : null;
+        this.recordsPerWindow = Math.max(1, windowSize / slotSize);
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long length = channel.size();
+            if (checksummed && length == 0) {
+                writeHeader();
+                length = HEADER_SIZE;
+            }
+            int headerRecordSize = readHeader(channel);
+            if (checksummed && headerRecordSize != recordSize) {
+                throw new IOException(headerRecordSize < 0
+                        ? "not a checksummed record file"
+                        : "checksummed file has record size " + headerRecordSize + ", not " + recordSize);
+            }
+            if (!checksummed && headerRecordSize >= 0) {
+                throw new IOException("file is checksummed and must be opened in checksummed mode");
+            }
+            if ((length - base) % slotSize != 0) {
+                throw new IOException("file length " + length
+                        + " is not a multiple of the record size " + slotSize);
+            }
+            this.size = (length - base) / slotSize;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        PackUtils.packInt(MAGIC, header, 0);
+        PackUtils.packInt(recordSize, header, PackUtils.SIZEOF_INT);
+        Checksums.seal(header, 0, HEADER_SIZE - Checksums.SIZEOF_CHECKSUM);
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        long position = 0;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /*
+     * Returns the record size stored in the checksummed header at the start of
+     * the file, or -1 if the file does not start with one. A plain file only
+     * passes for a checksummed one if its first bytes happen to be the magic
+     * and a matching CRC-32C.
+     */
+    static int readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        long position = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return -1;
+            }
+            position += read;
+        }
+        byte[] header = buffer.array();
+        if (PackUtils.unpackInt(header, 0) != MAGIC
+                || !Checksums.isSealed(header, 0, HEADER_SIZE - Checksums.SIZEOF_CHECKSUM)) {
+            return -1;
+        }
+        return PackUtils.unpackInt(header, PackUtils.SIZEOF_INT);
+    }
+
+    /**
+     * Returns the size in bytes of each record.
+     *
+     * @return the record size
+     */
+    public int recordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Returns whether records are stored with their checksums.
+     *
+     * @return {@code true} in checksummed mode
+     */
+    public boolean isChecksummed() {
+        return checksummed;
+    }
+
+    /**
+     * Returns the number of records in the file.
+     *
+     * @return the number of records
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Copies record {@code index} into {@code dst[0..recordSize-1]}.
+     *
+     * @param index the record number, in {@code [0, size())}
+     * @param dst destination array (at least {@code recordSize} bytes)
+     * @throws IOException if the file region cannot be mapped or, in checksummed
+     *         mode, the record does not match its checksum
+     * @throws IndexOutOfBoundsException if {@code index} is out of range or
+     *         {@code dst} is too small
+     */
+    public void read(long index, byte[] dst) throws IOException {
+        Objects.checkIndex(index, size);
+        Objects.checkFromIndexSize(0, recordSize, dst.length);
+        MappedByteBuffer window = window(index);
+        int position = positionInWindow(index);
+        window.get(position, dst, 0, recordSize);
+        if (checksummed && Checksums.crc32c(crc, dst, 0, recordSize)
+                != PackUtils.unpackInt(window, position + recordSize)) {
+            throw new IOException("record " + index + " does not match its checksum");
+        }
+    }
+
+    /**
+     * Overwrites record {@code index} with {@code src[0..recordSize-1]}.
+     *
+     * @param index the record number, in {@code [0, size())}
+     * @param src source array (at least {@code recordSize} bytes)
+     * @throws IOException if the file region cannot be mapped
+     * @throws IndexOutOfBoundsException if {@code index} is out of range or
+     *         {@code src} is too small
+     */
+    public void write(long index, byte[] src) throws IOException {
+        Objects.checkIndex(index, size);
+        Objects.checkFromIndexSize(0, recordSize, src.length);
+        MappedByteBuffer window = window(index);
+        int position = positionInWindow(index);
+        window.put(position, src, 0, recordSize);
+        if (checksummed) {
+            PackUtils.packInt(Checksums.crc32c(crc, src, 0, recordSize), window, position + recordSize);
+        }
+    }
+
+    /**
+     * Appends {@code src[0..recordSize-1]} as a new record at the end of the file.
+     * <p>
+     * Appending extends the underlying file with a positional write; the new
+     * record becomes accessible through the mapping on its next read or write.
+     * </p>
+     *
+     * @param src source array (at least {@code recordSize} bytes)
+     * @return the index of the new record
+     * @throws IOException if the file cannot be extended
+     * @throws IndexOutOfBoundsException if {@code src} is too small
+     */
+    public long append(byte[] src) throws IOException {
+        Objects.checkFromIndexSize(0, recordSize, src.length);
+        ByteBuffer record;
+        if (checksummed) {
+            System.arraycopy(src, 0, slot, 0, recordSize);
+            PackUtils.packInt(Checksums.crc32c(crc, slot, 0, recordSize), slot, recordSize);
+            record = ByteBuffer.wrap(slot);
+        } else {
+            record = ByteBuffer.wrap(src, 0, recordSize);
+        }
+        long position = base + size * slotSize;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        return size++;
+    }
+
+    /**
+     * Returns a stream of the records currently in the file, decoded by
+     * {@code decoder}. The stream is sized and splits by record ranges, so it can
+     * be made parallel; {@code decoder} must then be thread-safe.
+     * <p>
+     * The stream sees the records present when this method is called; it must not
+     * be used while the file is being written and should be consumed before the
+     * file is closed.
+     * </p>
+     *
+     * @param decoder decodes each record from its mapped window
+     * @param <T> the decoded type
+     * @return a sequential stream of the decoded records
+     * @throws IOException if the file cannot be mapped
+     */
+    public <T> Stream<T> stream(RecordDecoder<T> decoder) throws IOException {
+        Objects.requireNonNull(decoder, "decoder");
+        return StreamSupport.stream(new Records<>(regions(), 0, size, decoder), false);
+    }
+
+    /**
+     * Returns a stream of one {@code int} per record, computed by {@code function}
+     * without allocating an object per record. See {@link #stream(RecordDecoder)}.
+     *
+     * @param function computes the value of each record from its mapped window
+     * @return a sequential stream of the values
+     * @throws IOException if the file cannot be mapped
+     */
+    public IntStream ints(RecordToIntFunction function) throws IOException {
+        Objects.requireNonNull(function, "function");
+        return StreamSupport.intStream(new Ints(regions(), 0, size, function), false);
+    }
+
+    /**
+     * Returns a stream of one {@code long} per record, computed by {@code function}
+     * without allocating an object per record. See {@link #stream(RecordDecoder)}.
+     *
+     * @param function computes the value of each record from its mapped window
+     * @return a sequential stream of the values
+     * @throws IOException if the file cannot be mapped
+     */
+    public LongStream longs(RecordToLongFunction function) throws IOException {
+        Objects.requireNonNull(function, "function");
+        return StreamSupport.longStream(new Longs(regions(), 0, size, function), false);
+    }
+
+    /**
+     * Returns a stream of one {@code double} per record, computed by {@code function}
+     * without allocating an object per record. See {@link #stream(RecordDecoder)}.
+     *
+     * @param function computes the value of each record from its mapped window
+     * @return a sequential stream of the values
+     * @throws IOException if the file cannot be mapped
+     */
+    public DoubleStream doubles(RecordToDoubleFunction function) throws IOException {
+        Objects.requireNonNull(function, "function");
+        return StreamSupport.doubleStream(new Doubles(regions(), 0, size, function), false);
+    }
+
+    /**
+     * Checks every record against its checksum, in parallel, and returns the
+     * numbers of the records that do not match.
+     * <p>
+     * Windows are checked in parallel and the records of each window in
+     * sequence, reusing one checksum engine and one view of the window.
+     * </p>
+     *
+     * @return the numbers of the corrupt records, in increasing order; empty if
+     *         every record is intact
+     * @throws IOException if the file cannot be mapped
+     * @throws IllegalStateException if the file is not in checksummed mode
+     */
+    public long[] verify() throws IOException {
+        if (!checksummed) {
+            throw new IllegalStateException("file is not checksummed");
+        }
+        Regions regions = regions();
+        return IntStream.range(0, regions.windows.length)
+                .parallel()
+                .mapToObj(w -> verifyWindow(regions.windows[w], (long) w * recordsPerWindow))
+                .flatMapToLong(LongStream::of)
+                .toArray();
+    }
+
+    /*
+     * Returns the numbers of the corrupt records among those held by window,
+     * whose first record is first.
+     */
+    private long[] verifyWindow(ByteBuffer window, long first) {
+        CRC32C windowCrc = new CRC32C();
+        ByteBuffer view = window.duplicate();
+        int count = (int) Math.min(recordsPerWindow, size - first);
+        LongStream.Builder corrupt = LongStream.builder();
+        for (int r = 0; r < count; r++) {
+            int offset = r * slotSize;
+            if (Checksums.crc32c(windowCrc, view, offset, recordSize)
+                    != PackUtils.unpackInt(window, offset + recordSize)) {
+                corrupt.add(first + r);
+            }
+        }
+        return corrupt.build().toArray();
+    }
+
+    /**
+     * Forces every change made through this file to the storage device.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void force() throws IOException {
+        for (MappedByteBuffer window : windows) {
+            if (window != null) {
+                window.force();
+            }
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Closes the file. Mapped windows are released when they are garbage collected.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        windows.clear();
+        channel.close();
+    }
+
+    /*
+     * Maps every window covering the current records, so that spliterators can
+     * read them from any thread without touching the window list.
+     */
+    private Regions regions() throws IOException {
+        int count = (int) ((size + recordsPerWindow - 1) / recordsPerWindow);
+        ByteBuffer[] mapped = new ByteBuffer[count];
+        for (int w = 0; w < count; w++) {
+            mapped[w] = window(Math.min((long) (w + 1) * recordsPerWindow, size) - 1);
+        }
+        return new Regions(mapped, recordsPerWindow, slotSize);
+    }
+
+    private record Regions(ByteBuffer[] windows, int recordsPerWindow, int slotSize) {
+    }
+
+    /*
+     * Common state of the record spliterators: the range [index, end) of records
+     * still to visit. Splitting hands out the first half of the range.
+     */
+    private abstract static class Range {
+        final Regions regions;
+        final long end;
+        long index;
+
+        Range(Regions regions, long index, long end) {
+            this.regions = regions;
+            this.index = index;
+            this.end = end;
+        }
+
+        /*
+         * Moves index to the middle of the range and returns the old index, or
+         * -1 if the range is too small to split.
+         */
+        long split() {
+            long from = index;
+            long mid = (index + end) >>> 1;
+            if (mid <= from) {
+                return -1;
+            }
+            index = mid;
+            return from;
+        }
+
+        ByteBuffer window() {
+            return regions.windows[(int) (index / regions.recordsPerWindow)];
+        }
+
+        int offset() {
+            return (int) (index % regions.recordsPerWindow) * regions.slotSize;
+        }
+
+        /*
+         * Returns the end of the run of records, starting at index, that share
+         * the same window.
+         */
+        long windowEnd() {
+            return Math.min(end, (index / regions.recordsPerWindow + 1) * regions.recordsPerWindow);
+        }
+
+        public long estimateSize() {
+            return end - index;
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED
+                    | Spliterator.IMMUTABLE;
+        }
+    }
+
+    private static final class Records<T> extends Range implements Spliterator<T> {
+        private final RecordDecoder<T> decoder;
+
+        Records(Regions regions, long index, long end, RecordDecoder<T> decoder) {
+            super(regions, index, end);
+            this.decoder = decoder;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(decoder.decode(window(), offset()));
+            index++;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            while (index < end) {
+                ByteBuffer window = window();
+                int offset = offset();
+                for (long stop = windowEnd(); index < stop; index++, offset += regions.slotSize) {
+                    action.accept(decoder.decode(window, offset));
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            long from = split();
+            return from < 0 ? null : new Records<>(regions, from, index, decoder);
+        }
+    }
+
+    private static final class Ints extends Range implements Spliterator.OfInt {
+        private final RecordToIntFunction function;
+
+        Ints(Regions regions, long index, long end, RecordToIntFunction function) {
+            super(regions, index, end);
+            this.function = function;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(function.applyAsInt(window(), offset()));
+            index++;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            while (index < end) {
+                ByteBuffer window = window();
+                int offset = offset();
+                for (long stop = windowEnd(); index < stop; index++, offset += regions.slotSize) {
+                    action.accept(function.applyAsInt(window, offset));
+                }
+            }
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            long from = split();
+            return from < 0 ? null : new Ints(regions, from, index, function);
+        }
+    }
+
+    private static final class Longs extends Range implements Spliterator.OfLong {
+        private final RecordToLongFunction function;
+
+        Longs(Regions regions, long index, long end, RecordToLongFunction function) {
+            super(regions, index, end);
+            this.function = function;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(function.applyAsLong(window(), offset()));
+            index++;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            while (index < end) {
+                ByteBuffer window = window();
+                int offset = offset();
+                for (long stop = windowEnd(); index < stop; index++, offset += regions.slotSize) {
+                    action.accept(function.applyAsLong(window, offset));
+                }
+            }
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            long from = split();
+            return from < 0 ? null : new Longs(regions, from, index, function);
+        }
+    }
+
+    private static final class Doubles extends Range implements Spliterator.OfDouble {
+        private final RecordToDoubleFunction function;
+
+        Doubles(Regions regions, long index, long end, RecordToDoubleFunction function) {
+            super(regions, index, end);
+            this.function = function;
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(function.applyAsDouble(window(), offset()));
+            index++;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            while (index < end) {
+                ByteBuffer window = window();
+                int offset = offset();
+                for (long stop = windowEnd(); index < stop; index++, offset += regions.slotSize) {
+                    action.accept(function.applyAsDouble(window, offset));
+                }
+            }
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            long from = split();
+            return from < 0 ? null : new Doubles(regions, from, index, function);
+        }
+    }
+
+    private int positionInWindow(long index) {
+        return (int) (index % recordsPerWindow) * slotSize;
+    }
+
+    /*
+     * Returns the window holding record index, mapping it if it has never been
+     * mapped or remapping it if it was mapped before the file grew past it.
+     */
+    private MappedByteBuffer window(long index) throws IOException {
+        int w = (int) (index / recordsPerWindow);
+        while (windows.size() <= w) {
+            windows.add(null);
+        }
+        MappedByteBuffer window = windows.get(w);
+        int needed = positionInWindow(index) + slotSize;
+        if (window == null || window.capacity() < needed) {
+            long start = (long) w * recordsPerWindow * slotSize;
+            long length = Math.min((long) recordsPerWindow * slotSize, size * slotSize - start);
+            window = channel.map(FileChannel.MapMode.READ_WRITE, base + start, length);
+            windows.set(w, window);
+        }
+        return window;
+    }
+}
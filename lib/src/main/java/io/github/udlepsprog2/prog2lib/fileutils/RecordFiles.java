@@ -0,0 +1,235 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.function.LongPredicate;
+
+/**
+ * Bulk operations on files of fixed-size records (such as those of
+ * {@link RecordWriter}, {@link RecordReader} or a plain {@link RecordFile})
+ * that move the records without copying them through Java memory.
+ * <p>
+ * Only plain files, made of records and nothing else, are supported: files in
+ * the checksummed mode of {@link RecordFile} start with a header and store a
+ * checksum after each record, and are rejected.
+ * </p>
+ * <p>
+ * Every contiguous run of records is moved with a single
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+ * which lets the operating system copy the bytes directly between the files
+ * (or share them, on file systems that support it). When compacting, records
+ * are tested in place through a read-only mapping of the source, and the kept
+ * records are coalesced into runs before they are transferred.
+ * </p>
+ */
+public final class RecordFiles {
+
+    /**
+     * Decides whether to keep the record starting at {@code buffer[offset]} when
+     * compacting, typically by checking a tombstone field with {@link PackUtils}.
+     */
+    @FunctionalInterface
+    public interface RecordPredicate {
+        /**
+         * Tests one record.
+         *
+         * @param buffer the mapped window holding the record
+         * @param offset the position of the record in {@code buffer}
+         * @return {@code true} to keep the record
+         */
+        boolean test(ByteBuffer buffer, int offset);
+    }
+
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private RecordFiles() {
+    }
+
+    /**
+     * Appends records {@code [from, from + count)} of {@code source} to the end
+     * of {@code target}, creating it if needed.
+     *
+     * @param source the file to copy from
+     * @param target the file to append to; must not be {@code source}
+     * @param recordSize size in bytes of each record (must be positive)
+     * @param from the first record to copy
+     * @param count the number of records to copy
+     * @return the index in {@code target} of the first copied record
+     * @throws IOException if an I/O error occurs, a file length is not a
+     *         multiple of {@code recordSize} or a file is checksummed
+     * @throws IllegalArgumentException if {@code recordSize <= 0} or both paths
+     *         are the same file
+     * @throws IndexOutOfBoundsException if the range is outside {@code source}
+     */
+    public static long copy(Path source, Path target, int recordSize, long from, long count) throws IOException {
+        checkRecordSize(recordSize);
+        checkDistinct(source, target);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long records = records(in, source, recordSize);
+            Objects.checkFromIndexSize(from, count, records);
+            long first = records(out, target, recordSize);
+            out.position(first * recordSize);
+            transfer(in, from * recordSize, count * recordSize, out);
+            return first;
+        }
+    }
+
+    /**
+     * Writes to {@code target} (creating or truncating it) the records of every
+     * source, one file after the other.
+     *
+     * @param target the file to write; must not be one of the sources
+     * @param recordSize size in bytes of each record (must be positive)
+     * @param sources the files to concatenate
+     * @return the number of records written
+     * @throws IOException if an I/O error occurs, a source length is not a
+     *         multiple of {@code recordSize} or a source is checksummed
+     * @throws IllegalArgumentException if {@code recordSize <= 0} or the target
+     *         is one of the sources
+     */
+    public static long concatenate(Path target, int recordSize, Path... sources) throws IOException {
+        checkRecordSize(recordSize);
+        for (Path source : sources) {
+            checkDistinct(source, target);
+        }
+        long total = 0;
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Path source : sources) {
+                try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                    long records = records(in, source, recordSize);
+                    transfer(in, 0, records * recordSize, out);
+                    total += records;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Writes to {@code target} (creating or truncating it) the records of
+     * {@code source} whose index satisfies {@code keep}, in order.
+     *
+     * @param source the file to compact
+     * @param target the file to write; must not be {@code source}
+     * @param recordSize size in bytes of each record (must be positive)
+     * @param keep tells, by record index, which records to keep
+     * @return the number of records kept
+     * @throws IOException if an I/O error occurs, the source length is not a
+     *         multiple of {@code recordSize} or the source is checksummed
+     * @throws IllegalArgumentException if {@code recordSize <= 0} or both paths
+     *         are the same file
+     */
+    public static long compact(Path source, Path target, int recordSize, LongPredicate keep) throws IOException {
+        Objects.requireNonNull(keep, "keep");
+        checkRecordSize(recordSize);
+        checkDistinct(source, target);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long records = records(in, source, recordSize);
+            long kept = 0;
+            long runStart = 0;
+            for (long i = 0; i < records; i++) {
+                if (!keep.test(i)) {
+                    transfer(in, runStart * recordSize, (i - runStart) * recordSize, out);
+                    kept += i - runStart;
+                    runStart = i + 1;
+                }
+            }
+            transfer(in, runStart * recordSize, (records - runStart) * recordSize, out);
+            return kept + records - runStart;
+        }
+    }
+
+    /**
+     * Writes to {@code target} (creating or truncating it) the records of
+     * {@code source} that satisfy {@code keep}, in order. Records are tested in
+     * place through a read-only mapping of {@code source}.
+     *
+     * @param source the file to compact
+     * @param target the file to write; must not be {@code source}
+     * @param recordSize size in bytes of each record (must be positive)
+     * @param keep tells, from its contents, whether to keep each record
+     * @return the number of records kept
+     * @throws IOException if an I/O error occurs, the source length is not a
+     *         multiple of {@code recordSize} or the source is checksummed
+     * @throws IllegalArgumentException if {@code recordSize <= 0} or both paths
+     *         are the same file
+     */
+    public static long compact(Path source, Path target, int recordSize, RecordPredicate keep) throws IOException {
+        Objects.requireNonNull(keep, "keep");
+        checkRecordSize(recordSize);
+        checkDistinct(source, target);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long records = records(in, source, recordSize);
+            long recordsPerWindow = Math.max(1, WINDOW_SIZE / recordSize);
+            long kept = 0;
+            long runStart = 0;
+            for (long start = 0; start < records; start += recordsPerWindow) {
+                long end = Math.min(records, start + recordsPerWindow);
+                MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY,
+                        start * recordSize, (end - start) * recordSize);
+                int offset = 0;
+                for (long i = start; i < end; i++, offset += recordSize) {
+                    if (!keep.test(window, offset)) {
+                        transfer(in, runStart * recordSize, (i - runStart) * recordSize, out);
+                        kept += i - runStart;
+                        runStart = i + 1;
+                    }
+                }
+            }
+            transfer(in, runStart * recordSize, (records - runStart) * recordSize, out);
+            return kept + records - runStart;
+        }
+    }
+
+    /*
+     * Transfers bytes [position, position + length) of in to the current
+     * position of out.
+     */
+    private static void transfer(FileChannel in, long position, long length, FileChannel out) throws IOException {
+        while (length > 0) {
+            long n = in.transferTo(position, length, out);
+            if (n <= 0) {
+                throw new IOException("source file ended during the transfer");
+            }
+            position += n;
+            length -= n;
+        }
+    }
+
+    private static long records(FileChannel channel, Path path, int recordSize) throws IOException {
+        if (RecordFile.readHeader(channel) >= 0) {
+            throw new IOException(path + " is a checksummed record file");
+        }
+        long length = channel.size();
+        if (length % recordSize != 0) {
+            throw new IOException("length " + length + " of " + path
+                    + " is not a multiple of the record size " + recordSize);
+        }
+        return length / recordSize;
+    }
+
+    private static void checkRecordSize(int recordSize) {
+        if (recordSize <= 0) {
+            throw new IllegalArgumentException("recordSize must be positive");
+        }
+    }
+
+    private static void checkDistinct(Path source, Path target) throws IOException {
+        if (Files.exists(target) && Files.exists(source) && Files.isSameFile(source, target)) {
+            throw new IllegalArgumentException(target + " is also a source");
+        }
+    }
+}
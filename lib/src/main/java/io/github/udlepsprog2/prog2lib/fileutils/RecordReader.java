@@ -0,0 +1,222 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sequential reader of a file of fixed-size records that transfers data in
+ * large blocks.
+ * <p>
+ * Records are not copied: after each successful {@link #next()}, the current
+ * record occupies {@code buffer()[offset() .. offset() + recordSize - 1]} and
+ * can be decoded in place with {@code PackUtils.unpack*}:
+ * </p>
+ * <pre>{@code
+ * try (RecordReader reader = new RecordReader(path, RECORD_SIZE)) {
+ *     while (reader.next()) {
+ *         total += PackUtils.unpackInt(reader.buffer(), reader.offset());
+ *     }
+ * }
+ * }</pre>
+ * <p>
+ * The reader keeps two blocks: while the caller walks the records of one block,
+ * a background thread reads the following block from the {@link FileChannel}.
+ * The array returned by {@link #buffer()} is therefore only valid until the next
+ * call to {@link #next()}.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class RecordReader implements Closeable {
+
+    /**
+     * Default block size in bytes (1 MiB), rounded down to a whole number of records.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final int recordSize;
+    private final ExecutorService readAhead;
+    private byte[] current;
+    private byte[] spare;
+    private Future<Integer> pending;
+    private long nextPosition;
+    private int limit;
+    private int offset;
+    private long index = -1;
+
+    /**
+     * Opens {@code path} for reading with the default block size.
+     *
+     * @param path the file to read
+     * @param recordSize size in bytes of each record (must be positive)
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if {@code recordSize <= 0}
+     */
+    public RecordReader(Path path, int recordSize) throws IOException {
+        this(path, recordSize, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Opens {@code path} for reading in blocks of about {@code blockSize} bytes.
+     * The effective block holds {@code max(1, blockSize / recordSize)} records.
+     *
+     * @param path the file to read
+     * @param recordSize size in bytes of each record (must be positive)
+     * @param blockSize requested block size in bytes (must be positive)
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if {@code recordSize <= 0} or {@code blockSize <= 0}
+     */
+    public RecordReader(Path path, int recordSize, int blockSize) throws IOException {
+        if (recordSize <= 0 || blockSize <= 0) {
+            throw new IllegalArgumentException("recordSize and blockSize must be positive");
+        }
+        this.recordSize = recordSize;
+        int length = Math.max(1, blockSize / recordSize) * recordSize;
+        this.current = new byte[length];
+        this.spare = new byte[length];
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.readAhead = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "RecordReader read-ahead");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.offset = -recordSize;
+        scheduleRead();
+    }
+
+    /**
+     * Returns the size in bytes of each record.
+     *
+     * @return the record size
+     */
+    public int recordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Advances to the next record.
+     *
+     * @return {@code true} if there is a current record; {@code false} at the end of the file
+     * @throws IOException if an I/O error occurs or the file ends in a partial record
+     */
+    public boolean next() throws IOException {
+        offset += recordSize;
+        if (offset + recordSize > limit) {
+            if (pending == null) {
+                return false;
+            }
+            byte[] filled = spare;
+            spare = current;
+            current = filled;
+            limit = awaitRead();
+            offset = 0;
+            if (limit % recordSize != 0) {
+                throw new IOException("file ends with a partial record");
+            }
+            if (limit == 0) {
+                pending = null;
+                return false;
+            }
+            scheduleRead();
+        }
+        index++;
+        return true;
+    }
+
+    /**
+     * Returns the block holding the current record. Only valid until the next
+     * call to {@link #next()}.
+     *
+     * @return the current block
+     */
+    public byte[] buffer() {
+        return current;
+    }
+
+    /**
+     * Returns the offset of the current record within {@link #buffer()}.
+     *
+     * @return the offset of the current record
+     */
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * Returns the index of the current record in the file.
+     *
+     * @return the current record number, or {@code -1} before the first {@link #next()}
+     */
+    public long index() {
+        return index;
+    }
+
+    /**
+     * Advances to the next record and copies it into {@code dst[0..recordSize-1]}.
+     *
+     * @param dst destination array (at least {@code recordSize} bytes)
+     * @return {@code true} if a record was read; {@code false} at the end of the file
+     * @throws IOException if an I/O error occurs or the file ends in a partial record
+     * @throws IndexOutOfBoundsException if {@code dst} is too small
+     */
+    public boolean read(byte[] dst) throws IOException {
+        Objects.checkFromIndexSize(0, recordSize, dst.length);
+        if (!next()) {
+            return false;
+        }
+        System.arraycopy(current, offset, dst, 0, recordSize);
+        return true;
+    }
+
+    /**
+     * Closes the file and stops the read-ahead thread.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        readAhead.shutdownNow();
+        channel.close();
+    }
+
+    private void scheduleRead() {
+        byte[] block = spare;
+        long position = nextPosition;
+        pending = readAhead.submit(() -> {
+            ByteBuffer target = ByteBuffer.wrap(block);
+            while (target.hasRemaining()) {
+                int n = channel.read(target, position + target.position());
+                if (n < 0) {
+                    break;
+                }
+            }
+            return target.position();
+        });
+        nextPosition += block.length;
+    }
+
+    private int awaitRead() throws IOException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while reading", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
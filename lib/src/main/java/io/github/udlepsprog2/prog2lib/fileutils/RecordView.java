@@ -0,0 +1,292 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Base class of flyweight views over packed records: a view is positioned on
+ * a record inside a {@code byte[]} or a {@link ByteBuffer} and reads each field
+ * with {@link PackUtils} only when it is asked for, so filtering records by a
+ * field or two decodes nothing else and allocates nothing.
+ * <p>
+ * A view type is declared by hand, with one accessor per field built on the
+ * protected {@code *At} methods; field offsets can be taken from a
+ * {@link RecordCodec}:
+ * </p>
+ * <pre>{@code
+ * record Person(int id, @MaxLength(20) String name, double salary) { }
+ *
+ * final class PersonView extends RecordView {
+ *     private static final RecordCodec<Person> CODEC = RecordCodec.of(Person.class);
+ *     private static final int ID = CODEC.offsetOf("id");
+ *     private static final int SALARY = CODEC.offsetOf("salary");
+ *
+ *     PersonView() { super(CODEC.size()); }
+ *
+ *     int id() { return intAt(ID); }
+ *     double salary() { return doubleAt(SALARY); }
+ * }
+ * }</pre>
+ * <p>
+ * One view is then moved from record to record, for instance over the blocks
+ * of a {@link RecordReader}:
+ * </p>
+ * <pre>{@code
+ * PersonView person = new PersonView();
+ * while (reader.next()) {
+ *     person.wrap(reader.buffer(), reader.offset());
+ *     if (person.salary() > 1000.0) {
+ *         count++;
+ *     }
+ * }
+ * }</pre>
+ * <p>
+ * or over the records packed one after another in a single array or buffer
+ * with {@link #next()}. The view does not copy the record: it reflects changes
+ * to the underlying bytes, and it is only meaningful while they hold the
+ * record. Only string accessors allocate, to return the string.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public abstract class RecordView {
+
+    private final int recordSize;
+    private byte[] array;
+    private ByteBuffer buffer;
+    private int offset;
+    private int limit;
+
+    /**
+     * Creates a view, not yet positioned on any record, for records of
+     * {@code recordSize} bytes.
+     *
+     * @param recordSize size in bytes of each record (must be positive)
+     * @throws IllegalArgumentException if {@code recordSize <= 0}
+     */
+    protected RecordView(int recordSize) {
+        if (recordSize <= 0) {
+            throw new IllegalArgumentException("recordSize must be positive");
+        }
+        this.recordSize = recordSize;
+    }
+
+    /**
+     * Returns the size in bytes of each record.
+     *
+     * @return the record size
+     */
+    public final int recordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Positions the view on the record at {@code array[offset]}.
+     *
+     * @param array the array holding the record
+     * @param offset the position of the record in {@code array}
+     * @throws NullPointerException if {@code array} is {@code null}
+     * @throws IndexOutOfBoundsException if the record does not fit in {@code array}
+     */
+    public final void wrap(byte[] array, int offset) {
+        Objects.checkFromIndexSize(offset, recordSize, array.length);
+        this.array = array;
+        this.buffer = null;
+        this.offset = offset;
+        this.limit = array.length;
+    }
+
+    /**
+     * Positions the view on the record at absolute index {@code offset} of
+     * {@code buffer}, which may be a heap, direct or mapped buffer. The
+     * buffer's position and limit are not used, except that records are only
+     * read below its limit.
+     *
+     * @param buffer the buffer holding the record
+     * @param offset the absolute position of the record in {@code buffer}
+     * @throws NullPointerException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if the record does not fit below the limit
+     */
+    public final void wrap(ByteBuffer buffer, int offset) {
+        Objects.checkFromIndexSize(offset, recordSize, buffer.limit());
+        this.array = null;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * Moves the view to the record that follows the current one in the same
+     * array or buffer, if there is a whole one.
+     *
+     * @return {@code true} if the view moved; {@code false}, leaving it on the
+     *         current record, if the next record does not fit
+     * @throws IllegalStateException if the view has not been positioned
+     */
+    public final boolean next() {
+        if (array == null && buffer == null) {
+            throw new IllegalStateException("the view is not positioned on a record");
+        }
+        if (limit - offset - recordSize < recordSize) {
+            return false;
+        }
+        offset += recordSize;
+        return true;
+    }
+
+    /**
+     * Returns the position of the current record in its array or buffer.
+     *
+     * @return the offset of the current record
+     */
+    public final int offset() {
+        return offset;
+    }
+
+    /**
+     * Reads the boolean at {@code field} bytes from the start of the record.
+     *
+     * @param field the offset of the field within the record
+     * @return the field value
+     */
+    protected final boolean booleanAt(int field) {
+        return array != null
+                ? PackUtils.unpackBoolean(array, offset + field)
+                : PackUtils.unpackBoolean(buffer, offset + field);
+    }
+
+    /**
+     * Reads the byte at {@code field} bytes from the start of the record.
+     *
+     * @param field the offset of the field within the record
+     * @return the field value
+     */
+    protected final byte byteAt(int field) {
+        return array != null
+                ? PackUtils.unpackByte(array, offset + field)
+                : PackUtils.unpackByte(buffer, offset + field);
+    }
+
+    /**
+     * Reads the char at {@code field} bytes from the start of the record.
+     *
+     * @param field the offset of the field within the record
+     * @return the field value
+     */
+    protected final char charAt(int field) {
+        return array != null
+                ? PackUtils.unpackChar(array, offset + field)
+                : PackUtils.unpackChar(buffer, offset + field);
+    }
+
+    /**
+     * Reads the short at {@code field} bytes from the start of the record.
+     *
+     * @param field the offset of the field within the record
+     * @return the field value
+     */
+    protected final short shortAt(int field) {
+        return array != null
+                ? PackUtils.unpackShort(array, offset + field)
+                : PackUtils.unpackShort(buffer, offset + field);
+    }
+
+    /**
+     * Reads the int at {@code field} bytes from the start of the record.
+     *
+     * @param field the offset of the field within the record
+     * @return the field value
+     */
+    protected final int intAt(int field) {
+        return array != null
+                ? PackUtils.unpackInt(array, offset + field)
+                : PackUtils.unpackInt(buffer, offset + field);
+    }
+
+    /**
+     * Reads the long at {@code field} bytes from the start of the record.
+     *
+     * @param field the offset of the field within the record
+     * @return the field value
+     */
+    protected final long longAt(int field) {
+        return array != null
+                ? PackUtils.unpackLong(array, offset + field)
+                : PackUtils.unpackLong(buffer, offset + field);
+    }
+
+    /**
+     * Reads the float at {@code field} bytes from the start of the record.
+     *
+     * @param field the offset of the field within the record
+     * @return the field value
+     */
+    protected final float floatAt(int field) {
+        return array != null
+                ? PackUtils.unpackFloat(array, offset + field)
+                : PackUtils.unpackFloat(buffer, offset + field);
+    }
+
+    /**
+     * Reads the double at {@code field} bytes from the start of the record.
+     *
+     * @param field the offset of the field within the record
+     * @return the field value
+     */
+    protected final double doubleAt(int field) {
+        return array != null
+                ? PackUtils.unpackDouble(array, offset + field)
+                : PackUtils.unpackDouble(buffer, offset + field);
+    }
+
+    /**
+     * Reads the string of at most {@code maxLength} characters packed with
+     * {@link PackUtils#packLimitedString(String, int, byte[], int)} at
+     * {@code field} bytes from the start of the record. Unlike the other
+     * accessors, it allocates the returned string.
+     *
+     * @param field the offset of the field within the record
+     * @param maxLength the maximum length the field was packed with
+     * @return the field value
+     */
+    protected final String stringAt(int field, int maxLength) {
+        return array != null
+                ? PackUtils.unpackLimitedString(maxLength, array, offset + field)
+                : PackUtils.unpackLimitedString(maxLength, buffer, offset + field);
+    }
+
+    /**
+     * Reads the string of at most {@code maxLength} characters packed with
+     * {@link PackUtils#packLatin1String(String, int, byte[], int)} (a
+     * {@code @MaxLength(encoding = LATIN1)} field of a {@link RecordCodec}) at
+     * {@code field} bytes from the start of the record. It allocates the
+     * returned string.
+     *
+     * @param field the offset of the field within the record
+     * @param maxLength the maximum length the field was packed with
+     * @return the field value
+     */
+    protected final String latin1StringAt(int field, int maxLength) {
+        return array != null
+                ? PackUtils.unpackLatin1String(maxLength, array, offset + field)
+                : PackUtils.unpackLatin1String(maxLength, buffer, offset + field);
+    }
+
+    /**
+     * Reads the string of at most {@code maxBytes} bytes packed with
+     * {@link PackUtils#packUtf8String(String, int, byte[], int)} (a
+     * {@code @MaxLength(encoding = UTF8)} field of a {@link RecordCodec}) at
+     * {@code field} bytes from the start of the record. It allocates the
+     * returned string.
+     *
+     * @param field the offset of the field within the record
+     * @param maxBytes the maximum number of bytes the field was packed with
+     * @return the field value
+     */
+    protected final String utf8StringAt(int field, int maxBytes) {
+        return array != null
+                ? PackUtils.unpackUtf8String(maxBytes, array, offset + field)
+                : PackUtils.unpackUtf8String(maxBytes, buffer, offset + field);
+    }
+}
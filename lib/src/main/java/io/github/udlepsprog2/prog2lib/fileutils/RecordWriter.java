@@ -0,0 +1,172 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Sequential writer of a file of fixed-size records that batches records into
+ * large blocks before writing them to a {@link FileChannel}.
+ * <p>
+ * Records can be copied in with {@link #write(byte[])} or packed in place:
+ * {@link #reserve()} returns the offset within {@link #buffer()} where the next
+ * record must be written.
+ * </p>
+ * <pre>{@code
+ * try (RecordWriter writer = new RecordWriter(path, RECORD_SIZE)) {
+ *     for (Person p : people) {
+ *         int offset = writer.reserve();
+ *         PackUtils.packInt(p.id(), writer.buffer(), offset);
+ *         ...
+ *     }
+ * }
+ * }</pre>
+ * <p>
+ * Pending records are written when the block is full, on {@link #flush()} and on
+ * {@link #close()}.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class RecordWriter implements Closeable, Flushable {
+
+    /**
+     * Default block size in bytes (1 MiB), rounded down to a whole number of records.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final int recordSize;
+    private final byte[] block;
+    private int used;
+    private long written;
+
+    /**
+     * Creates (or truncates) {@code path} with the default block size.
+     *
+     * @param path the file to write
+     * @param recordSize size in bytes of each record (must be positive)
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if {@code recordSize <= 0}
+     */
+    public RecordWriter(Path path, int recordSize) throws IOException {
+        this(path, recordSize, DEFAULT_BLOCK_SIZE, false);
+    }
+
+    /**
+     * Opens {@code path} for writing in blocks of about {@code blockSize} bytes.
+     * The effective block holds {@code max(1, blockSize / recordSize)} records.
+     *
+     * @param path the file to write
+     * @param recordSize size in bytes of each record (must be positive)
+     * @param blockSize requested block size in bytes (must be positive)
+     * @param append if {@code true}, records are added after the existing ones;
+     *        otherwise the file is truncated
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if {@code recordSize <= 0} or {@code blockSize <= 0}
+     */
+    public RecordWriter(Path path, int recordSize, int blockSize, boolean append) throws IOException {
+        if (recordSize <= 0 || blockSize <= 0) {
+            throw new IllegalArgumentException("recordSize and blockSize must be positive");
+        }
+        this.recordSize = recordSize;
+        this.block = new byte[Math.max(1, blockSize / recordSize) * recordSize];
+        this.channel = append
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND)
+                : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Returns the size in bytes of each record.
+     *
+     * @return the record size
+     */
+    public int recordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Returns the number of records written through this writer so far,
+     * including those not yet flushed.
+     *
+     * @return the number of records written
+     */
+    public long count() {
+        return written + used / recordSize;
+    }
+
+    /**
+     * Reserves space for the next record, flushing the block first if it is full.
+     * The caller must fill {@code buffer()[offset .. offset + recordSize - 1]}
+     * before the next call to any other method of this writer.
+     *
+     * @return the offset of the new record within {@link #buffer()}
+     * @throws IOException if flushing a full block fails
+     */
+    public int reserve() throws IOException {
+        if (used == block.length) {
+            flush();
+        }
+        int offset = used;
+        used += recordSize;
+        return offset;
+    }
+
+    /**
+     * Returns the block into which records are packed.
+     *
+     * @return the current block
+     */
+    public byte[] buffer() {
+        return block;
+    }
+
+    /**
+     * Appends a copy of {@code src[0..recordSize-1]} as the next record.
+     *
+     * @param src source array (at least {@code recordSize} bytes)
+     * @throws IOException if flushing a full block fails
+     * @throws IndexOutOfBoundsException if {@code src} is too small
+     */
+    public void write(byte[] src) throws IOException {
+        Objects.checkFromIndexSize(0, recordSize, src.length);
+        System.arraycopy(src, 0, block, reserve(), recordSize);
+    }
+
+    /**
+     * Writes the pending records to the file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        ByteBuffer pending = ByteBuffer.wrap(block, 0, used);
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        written += used / recordSize;
+        used = 0;
+    }
+
+    /**
+     * Flushes the pending records and closes the file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+
+/**
+ * {@link BulkCodec} made of one indexed access per element through
+ * byte-array view {@link VarHandle}s. It is used whenever the vector codec is
+ * not available, and by the vector codec for the elements that do not fill a
+ * whole vector.
+ */
+final class ScalarBulkCodec implements BulkCodec {
+
+    static final ScalarBulkCodec INSTANCE = new ScalarBulkCodec();
+
+    private static final VarHandle INT_BE =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_BE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private ScalarBulkCodec() { }
+
+    @Override
+    public void packInts(int[] src, int srcOff, int len, byte[] buffer, int offset) {
+        for (int i = 0; i < len; i++) {
+            INT_BE.set(buffer, offset + SIZEOF_INT * i, src[srcOff + i]);
+        }
+    }
+
+    @Override
+    public void unpackInts(byte[] buffer, int offset, int[] dst, int dstOff, int len) {
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = (int) INT_BE.get(buffer, offset + SIZEOF_INT * i);
+        }
+    }
+
+    @Override
+    public void packLongs(long[] src, int srcOff, int len, byte[] buffer, int offset) {
+        for (int i = 0; i < len; i++) {
+            LONG_BE.set(buffer, offset + SIZEOF_LONG * i, src[srcOff + i]);
+        }
+    }
+
+    @Override
+    public void unpackLongs(byte[] buffer, int offset, long[] dst, int dstOff, int len) {
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = (long) LONG_BE.get(buffer, offset + SIZEOF_LONG * i);
+        }
+    }
+
+    @Override
+    public void packFloats(float[] src, int srcOff, int len, byte[] buffer, int offset) {
+        for (int i = 0; i < len; i++) {
+            INT_BE.set(buffer, offset + SIZEOF_FLOAT * i, Float.floatToIntBits(src[srcOff + i]));
+        }
+    }
+
+    @Override
+    public void unpackFloats(byte[] buffer, int offset, float[] dst, int dstOff, int len) {
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = Float.intBitsToFloat((int) INT_BE.get(buffer, offset + SIZEOF_FLOAT * i));
+        }
+    }
+
+    @Override
+    public void packDoubles(double[] src, int srcOff, int len, byte[] buffer, int offset) {
+        for (int i = 0; i < len; i++) {
+            LONG_BE.set(buffer, offset + SIZEOF_DOUBLE * i, Double.doubleToLongBits(src[srcOff + i]));
+        }
+    }
+
+    @Override
+    public void unpackDoubles(byte[] buffer, int offset, double[] dst, int dstOff, int len) {
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = Double.longBitsToDouble((long) LONG_BE.get(buffer, offset + SIZEOF_DOUBLE * i));
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+
+/**
+ * An append-only log of variable-length entries that are durable once
+ * {@link #append(byte[])} returns.
+ * <p>
+ * Each entry is written as a header packed with {@link PackUtils} followed by
+ * the entry bytes:
+ * </p>
+ * <pre>
+ * [length: int][checksum: int][payload: length bytes]
+ * </pre>
+ * <p>
+ * where the checksum is the CRC-32C of the packed length and the payload.
+ * </p>
+ * <p>
+ * Appends use group commit: concurrent writers add their entries to a shared
+ * batch and one of them writes the whole batch and forces it to the storage
+ * device, while the others wait. A single {@code force()} thus makes many
+ * entries durable, and entries arriving during a force form the next batch.
+ * </p>
+ * <p>
+ * When a log is opened it is scanned from the start; the scan stops at the
+ * first entry that is incomplete or fails its checksum (a torn tail left by a
+ * crash), and the file is truncated there. {@link #replay(EntryVisitor)} visits
+ * the surviving entries in order.
+ * </p>
+ * <p>
+ * Instances are thread-safe.
+ * </p>
+ */
+public class WriteAheadLog implements Closeable {
+
+    /**
+     * Size in bytes of the header that precedes every entry.
+     */
+    public static final int HEADER_SIZE = SIZEOF_INT + SIZEOF_INT;
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * Code run for every entry by {@link #replay(EntryVisitor)}.
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        /**
+         * Visits one entry.
+         *
+         * @param position the position of the entry, as returned by {@link #append(byte[])}
+         * @param buffer the array holding the entry bytes; valid only during this call
+         * @param offset the offset of the entry bytes in {@code buffer}
+         * @param length the number of entry bytes
+         * @throws IOException if the visitor fails; replay stops and rethrows it
+         */
+        void visit(long position, byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition committed = lock.newCondition();
+    private final CRC32C crc = new CRC32C();
+    private byte[] batch = new byte[BLOCK_SIZE];
+    private byte[] spare = new byte[BLOCK_SIZE];
+    private int batchSize;
+    private long end;
+    private long durable;
+    private long syncs;
+    private boolean syncing;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Opens (creating it if needed) the log at {@code path}, truncating any torn tail.
+     *
+     * @param path the log file
+     * @throws IOException if the file cannot be opened or scanned
+     */
+    public WriteAheadLog(Path path) throws IOException {
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long valid = scan(channel.size(), null);
+            if (valid < channel.size()) {
+                channel.truncate(valid);
+                channel.force(false);
+            }
+            this.end = valid;
+            this.durable = valid;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends {@code entry} and waits until it is durable.
+     *
+     * @param entry the entry bytes
+     * @return the position of the entry in the log
+     * @throws IOException if the log is closed or the batch holding the entry
+     *         could not be written
+     */
+    public long append(byte[] entry) throws IOException {
+        return append(entry, 0, entry.length);
+    }
+
+    /**
+     * Appends {@code entry[offset..offset+length-1]} and waits until it is durable.
+     *
+     * @param entry the array holding the entry bytes
+     * @param offset the offset of the entry bytes
+     * @param length the number of entry bytes
+     * @return the position of the entry in the log
+     * @throws IOException if the log is closed or the batch holding the entry
+     *         could not be written
+     * @throws IndexOutOfBoundsException if the range is outside {@code entry}
+     */
+    public long append(byte[] entry, int offset, int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, entry.length);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("log is closed");
+            }
+            if (failure != null) {
+                throw new IOException("log failed", failure);
+            }
+            long position = end;
+            addToBatch(entry, offset, length);
+            long entryEnd = end;
+            while (durable < entryEnd) {
+                if (failure != null) {
+                    throw new IOException("log failed", failure);
+                }
+                if (syncing) {
+                    committed.awaitUninterruptibly();
+                } else {
+                    commitBatch();
+                }
+            }
+            return position;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Visits every durable entry in order.
+     *
+     * @param visitor the code run for each entry
+     * @throws IOException if an I/O error occurs or the visitor fails
+     */
+    public void replay(EntryVisitor visitor) throws IOException {
+        Objects.requireNonNull(visitor, "visitor");
+        long limit;
+        lock.lock();
+        try {
+            limit = durable;
+        } finally {
+            lock.unlock();
+        }
+        scan(limit, visitor);
+    }
+
+    /**
+     * Returns the number of durable bytes in the log, which is also the position
+     * the next entry will be written at when no appends are in progress.
+     *
+     * @return the durable size of the log
+     */
+    public long size() {
+        lock.lock();
+        try {
+            return durable;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how many times the log has been forced to the storage device,
+     * which with group commit is usually much lower than the number of appends.
+     *
+     * @return the number of forces
+     */
+    public long syncs() {
+        lock.lock();
+        try {
+            return syncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the log after every entry already appended is durable. Appends
+     * after this call fail.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                // Writers may still be waiting for the last batch
+                while (failure == null && (syncing || batchSize > 0)) {
+                    if (syncing) {
+                        committed.awaitUninterruptibly();
+                    } else {
+                        commitBatch();
+                    }
+                }
+            } finally {
+                channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Packs the header and the entry at the end of the current batch. Called
+     * with the lock held.
+     */
+    private void addToBatch(byte[] entry, int offset, int length) {
+        int needed = batchSize + HEADER_SIZE + length;
+        if (needed > batch.length) {
+            batch = Arrays.copyOf(batch, Math.max(needed, batch.length * 2));
+        }
+        packInt(length, batch, batchSize);
+        crc.reset();
+        crc.update(batch, batchSize, SIZEOF_INT);
+        crc.update(entry, offset, length);
+        packInt((int) crc.getValue(), batch, batchSize + SIZEOF_INT);
+        System.arraycopy(entry, offset, batch, batchSize + HEADER_SIZE, length);
+        batchSize = needed;
+        end += HEADER_SIZE + length;
+    }
+
+    /*
+     * Takes the current batch, writes and forces it without holding the lock so
+     * that other writers can fill the next batch meanwhile, and wakes up the
+     * writers waiting for it. Called with the lock held and no sync in progress.
+     */
+    private void commitBatch() throws IOException {
+        byte[] data = batch;
+        int size = batchSize;
+        long position = durable;
+        batch = spare;
+        batchSize = 0;
+        syncing = true;
+        lock.unlock();
+        IOException error = null;
+        try {
+            ByteBuffer source = ByteBuffer.wrap(data, 0, size);
+            while (source.hasRemaining()) {
+                channel.write(source, position + source.position());
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            lock.lock();
+        }
+        spare = data;
+        syncing = false;
+        if (error != null) {
+            failure = error;
+        } else {
+            durable = position + size;
+            syncs++;
+        }
+        committed.signalAll();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /*
+     * Reads entries from the start of the log up to limit, passing them to the
+     * visitor if it is not null, and returns the position just after the last
+     * entry that is complete and matches its checksum.
+     */
+    private long scan(long limit, EntryVisitor visitor) throws IOException {
+        CRC32C check = new CRC32C();
+        byte[] block = new byte[BLOCK_SIZE];
+        long blockStart = 0;
+        int blockLength = 0;
+        long position = 0;
+        while (limit - position >= HEADER_SIZE) {
+            if (position + HEADER_SIZE > blockStart + blockLength) {
+                blockStart = position;
+                blockLength = read(block, position, limit);
+            }
+            int offset = (int) (position - blockStart);
+            int length = unpackInt(block, offset);
+            if (length < 0 || length > limit - position - HEADER_SIZE) {
+                break;
+            }
+            if (position + HEADER_SIZE + length > blockStart + blockLength) {
+                if (HEADER_SIZE + length > block.length) {
+                    block = new byte[HEADER_SIZE + length];
+                }
+                blockStart = position;
+                blockLength = read(block, position, limit);
+                offset = 0;
+            }
+            check.reset();
+            check.update(block, offset, SIZEOF_INT);
+            check.update(block, offset + HEADER_SIZE, length);
+            if ((int) check.getValue() != unpackInt(block, offset + SIZEOF_INT)) {
+                break;
+            }
+            if (visitor != null) {
+                visitor.visit(position, block, offset + HEADER_SIZE, length);
+            }
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /*
+     * Fills block with the bytes of the file starting at position, without
+     * going past limit, and returns how many were read.
+     */
+    private int read(byte[] block, long position, long limit) throws IOException {
+        int length = (int) Math.min(block.length, limit - position);
+        ByteBuffer target = ByteBuffer.wrap(block, 0, length);
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                break;
+            }
+        }
+        return target.position();
+    }
+}
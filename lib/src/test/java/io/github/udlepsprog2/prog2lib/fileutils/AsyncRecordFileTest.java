@@ -0,0 +1,120 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncRecordFileTest {
+
+    private static final int RECORD_SIZE = 12;
+
+    @TempDir
+    Path dir;
+
+    // Record i holds i as an int followed by i * i as a long
+    private Path createFile(int records) throws IOException {
+        Path path = dir.resolve("records.dat");
+        byte[] bytes = new byte[records * RECORD_SIZE];
+        for (int i = 0; i < records; i++) {
+            packInt(i, bytes, i * RECORD_SIZE);
+            packLong((long) i * i, bytes, i * RECORD_SIZE + SIZEOF_INT);
+        }
+        Files.write(path, bytes);
+        return path;
+    }
+
+    @Test
+    void readsAndDecodesRecords() throws Exception {
+        Path path = createFile(1000);
+        try (AsyncRecordFile file = new AsyncRecordFile(path, RECORD_SIZE)) {
+            assertEquals(1000, file.size());
+            List<CompletableFuture<Long>> squares = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                long index = (i * 37L) % 1000;
+                squares.add(file.read(index, (buffer, offset) -> unpackLong(buffer, offset + SIZEOF_INT)));
+            }
+            for (int i = 0; i < 1000; i++) {
+                long index = (i * 37L) % 1000;
+                assertEquals(index * index, (long) squares.get(i).get());
+            }
+            byte[] record = file.read(999).get();
+            assertEquals(RECORD_SIZE, record.length);
+            assertEquals(999, unpackInt(record, 0));
+        }
+    }
+
+    @Test
+    void mergesQueuedAdjacentReads() throws Exception {
+        Path path = createFile(200);
+        try (AsyncRecordFile file = new AsyncRecordFile(path, RECORD_SIZE, 1, 64 * RECORD_SIZE)) {
+            CountDownLatch queued = new CountDownLatch(1);
+            // Holds the only in-flight slot until the other reads are queued
+            CompletableFuture<Integer> first = file.read(199, (buffer, offset) -> {
+                try {
+                    queued.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return unpackInt(buffer, offset);
+            });
+            List<CompletableFuture<Integer>> values = new ArrayList<>();
+            for (int i = 100; i >= 0; i--) {
+                values.add(file.read(i, (buffer, offset) -> unpackInt(buffer, offset)));
+            }
+            values.add(file.read(50, (buffer, offset) -> unpackInt(buffer, offset)));
+            queued.countDown();
+            assertEquals(199, (int) first.get());
+            for (int i = 0; i <= 100; i++) {
+                assertEquals(100 - i, (int) values.get(i).get());
+            }
+            assertEquals(50, (int) values.get(101).get());
+            // One read for 199, then 101 records in runs of at most 64
+            assertEquals(3, file.reads());
+        }
+    }
+
+    @Test
+    void readBeyondEndFails() throws Exception {
+        Path path = createFile(10);
+        try (AsyncRecordFile file = new AsyncRecordFile(path, RECORD_SIZE)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> file.read(10).get());
+            assertInstanceOf(EOFException.class, e.getCause());
+            assertThrows(IndexOutOfBoundsException.class, () -> file.read(-1));
+        }
+    }
+
+    @Test
+    void decoderFailureCompletesExceptionally() throws Exception {
+        Path path = createFile(10);
+        try (AsyncRecordFile file = new AsyncRecordFile(path, RECORD_SIZE)) {
+            CompletableFuture<Object> future = file.read(3, (buffer, offset) -> {
+                throw new IllegalStateException("bad record");
+            });
+            ExecutionException e = assertThrows(ExecutionException.class, future::get);
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertEquals(3, unpackInt(file.read(3).get(), 0));
+        }
+    }
+
+    @Test
+    void readAfterCloseFails() throws Exception {
+        Path path = createFile(10);
+        AsyncRecordFile file = new AsyncRecordFile(path, RECORD_SIZE);
+        file.close();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> file.read(0).get());
+        assertInstanceOf(ClosedChannelException.class, e.getCause());
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BPlusTreeTest {
+
+    // Small pages force deep trees with few keys
+    private static final int PAGE_SIZE = 128;
+    private static final int CACHE_PAGES = 8;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void putGetAndReopen() throws IOException {
+        Path path = dir.resolve("ints.idx");
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            keys.add(i * 3 - 7000);
+        }
+        Collections.shuffle(keys, new Random(42));
+        try (BPlusTree<Integer> tree = new BPlusTree<>(path, KeyType.INT, PAGE_SIZE, CACHE_PAGES)) {
+            for (int key : keys) {
+                assertEquals(-1, tree.put(key, key + 7000L));
+            }
+            assertEquals(5000, tree.size());
+            assertEquals(-7000 + 7000L, tree.put(-7000, 1));
+            assertEquals(5000, tree.size());
+        }
+        try (BPlusTree<Integer> tree = new BPlusTree<>(path, KeyType.INT, PAGE_SIZE, CACHE_PAGES)) {
+            assertEquals(5000, tree.size());
+            assertEquals(1, tree.get(-7000));
+            for (int i = 1; i < 5000; i++) {
+                assertEquals(i * 3L, tree.get(i * 3 - 7000));
+                assertEquals(-1, tree.get(i * 3 - 6999));
+            }
+        }
+    }
+
+    @Test
+    void rangeScan() throws IOException {
+        try (BPlusTree<Long> tree = new BPlusTree<>(dir.resolve("longs.idx"), KeyType.LONG, PAGE_SIZE, CACHE_PAGES)) {
+            Random random = new Random(7);
+            TreeMap<Long, Long> expected = new TreeMap<>();
+            for (int i = 0; i < 3000; i++) {
+                long key = random.nextLong() % 100_000;
+                expected.put(key, (long) i);
+                tree.put(key, i);
+            }
+            BPlusTree<Long>.Cursor cursor = tree.range(-500L, 20_000L);
+            for (var entry : expected.subMap(-500L, 20_000L).entrySet()) {
+                assertTrue(cursor.next());
+                assertEquals(entry.getKey(), cursor.key());
+                assertEquals((long) entry.getValue(), cursor.value());
+            }
+            assertFalse(cursor.next());
+
+            cursor = tree.range(null, null);
+            int count = 0;
+            while (cursor.next()) {
+                count++;
+            }
+            assertEquals(expected.size(), count);
+        }
+    }
+
+    @Test
+    void stringKeys() throws IOException {
+        try (BPlusTree<String> tree = new BPlusTree<>(dir.resolve("names.idx"),
+                KeyType.limitedString(8), PAGE_SIZE, CACHE_PAGES)) {
+            String[] names = {"pere", "anna", "joan", "marta", "jordi", "ana", "pau", "maria"};
+            for (int i = 0; i < names.length; i++) {
+                tree.put(names[i], i);
+            }
+            assertEquals(4, tree.get("jordi"));
+            assertEquals(-1, tree.get("jor"));
+            BPlusTree<String>.Cursor cursor = tree.range("j", "p");
+            List<String> found = new ArrayList<>();
+            while (cursor.next()) {
+                found.add(cursor.key());
+            }
+            assertEquals(List.of("joan", "jordi", "maria", "marta"), found);
+        }
+    }
+
+    @Test
+    void bulkLoad() throws IOException {
+        Path path = dir.resolve("bulk.idx");
+        int n = 20_000;
+        try (BPlusTree<Integer> tree = new BPlusTree<>(path, KeyType.INT, PAGE_SIZE, CACHE_PAGES)) {
+            try (BPlusTree<Integer>.Loader loader = tree.bulkLoad()) {
+                for (int i = 0; i < n; i++) {
+                    loader.add(2 * i, i);
+                }
+            }
+            assertEquals(n, tree.size());
+            assertThrows(IllegalStateException.class, tree::bulkLoad);
+        }
+        try (BPlusTree<Integer> tree = new BPlusTree<>(path, KeyType.INT, PAGE_SIZE, CACHE_PAGES)) {
+            for (int i = 0; i < n; i++) {
+                assertEquals(i, tree.get(2 * i));
+                assertEquals(-1, tree.get(2 * i + 1));
+            }
+            // The bulk-loaded tree accepts further inserts
+            for (int i = 0; i < n; i++) {
+                tree.put(2 * i + 1, n + i);
+            }
+            BPlusTree<Integer>.Cursor cursor = tree.range(null, null);
+            for (int i = 0; i < 2 * n; i++) {
+                assertTrue(cursor.next());
+                assertEquals(Integer.valueOf(i), cursor.key());
+            }
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    void bulkLoadRejectsUnsortedKeys() throws IOException {
+        try (BPlusTree<Integer> tree = new BPlusTree<>(dir.resolve("unsorted.idx"), KeyType.INT, PAGE_SIZE, CACHE_PAGES)) {
+            BPlusTree<Integer>.Loader loader = tree.bulkLoad();
+            loader.add(1, 0);
+            assertThrows(IllegalArgumentException.class, () -> loader.add(1, 1));
+            loader.close();
+        }
+    }
+
+    @Test
+    void emptyTree() throws IOException {
+        try (BPlusTree<Integer> tree = new BPlusTree<>(dir.resolve("empty.idx"), KeyType.INT)) {
+            assertEquals(-1, tree.get(3));
+            assertFalse(tree.range(null, null).next());
+        }
+    }
+}
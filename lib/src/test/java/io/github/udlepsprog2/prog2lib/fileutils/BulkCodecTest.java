@@ -0,0 +1,92 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkCodecTest {
+
+    // Long enough for several 512-bit vectors plus a tail
+    private static final int LENGTH = 203;
+    private static final int OFFSET = 3;
+
+    private static final BulkCodec SCALAR = ScalarBulkCodec.INSTANCE;
+    private static final BulkCodec CODEC = BulkCodec.load(BulkCodec.VECTOR_CODEC);
+
+    private final Random random = new Random(20);
+
+    @Test
+    void loadsTheVectorCodecWhenTheModuleIsPresent() {
+        boolean module = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        assertEquals(module, CODEC != SCALAR);
+    }
+
+    @Test
+    void fallsBackToScalarWhenTheCodecCannotBeLoaded() {
+        assertSame(SCALAR, BulkCodec.load(BulkCodec.VECTOR_CODEC + "Missing"));
+        assertSame(SCALAR, BulkCodec.load(String.class.getName()));
+    }
+
+    @Test
+    void intsAndLongsMatchScalar() {
+        for (int len = 0; len <= LENGTH; len += 29) {
+            int[] ints = random.ints(len).toArray();
+            byte[] expected = new byte[OFFSET + SIZEOF_INT * len];
+            byte[] actual = new byte[expected.length];
+            SCALAR.packInts(ints, 0, len, expected, OFFSET);
+            CODEC.packInts(ints, 0, len, actual, OFFSET);
+            assertArrayEquals(expected, actual);
+            int[] intsOut = new int[len + 1];
+            CODEC.unpackInts(actual, OFFSET, intsOut, 1, len);
+            assertArrayEquals(ints, Arrays.copyOfRange(intsOut, 1, len + 1));
+
+            long[] longs = random.longs(len).toArray();
+            expected = new byte[OFFSET + SIZEOF_LONG * len];
+            actual = new byte[expected.length];
+            SCALAR.packLongs(longs, 0, len, expected, OFFSET);
+            CODEC.packLongs(longs, 0, len, actual, OFFSET);
+            assertArrayEquals(expected, actual);
+            long[] longsOut = new long[len + 1];
+            CODEC.unpackLongs(actual, OFFSET, longsOut, 1, len);
+            assertArrayEquals(longs, Arrays.copyOfRange(longsOut, 1, len + 1));
+        }
+    }
+
+    @Test
+    void floatsAndDoublesMatchScalarIncludingNaNs() {
+        float[] floats = new float[LENGTH];
+        double[] doubles = new double[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            // Every third value is a NaN with a random payload
+            floats[i] = i % 3 == 0
+                    ? Float.intBitsToFloat(0x7F800001 | random.nextInt() & 0x807FFFFF)
+                    : random.nextFloat() - 0.5f;
+            doubles[i] = i % 3 == 0
+                    ? Double.longBitsToDouble(0x7FF0000000000001L | random.nextLong() & 0x800FFFFFFFFFFFFFL)
+                    : random.nextDouble() - 0.5;
+        }
+        byte[] expected = new byte[OFFSET + SIZEOF_DOUBLE * LENGTH];
+        byte[] actual = new byte[expected.length];
+        SCALAR.packFloats(floats, 0, LENGTH, expected, OFFSET);
+        CODEC.packFloats(floats, 0, LENGTH, actual, OFFSET);
+        assertArrayEquals(expected, actual);
+        float[] floatsOut = new float[LENGTH];
+        CODEC.unpackFloats(actual, OFFSET, floatsOut, 0, LENGTH);
+        for (int i = 0; i < LENGTH; i++) {
+            assertEquals(Float.floatToIntBits(floats[i]), Float.floatToRawIntBits(floatsOut[i]));
+        }
+
+        SCALAR.packDoubles(doubles, 0, LENGTH, expected, OFFSET);
+        CODEC.packDoubles(doubles, 0, LENGTH, actual, OFFSET);
+        assertArrayEquals(expected, actual);
+        double[] doublesOut = new double[LENGTH];
+        CODEC.unpackDoubles(actual, OFFSET, doublesOut, 0, LENGTH);
+        for (int i = 0; i < LENGTH; i++) {
+            assertEquals(Double.doubleToLongBits(doubles[i]), Double.doubleToRawLongBits(doublesOut[i]));
+        }
+    }
+}
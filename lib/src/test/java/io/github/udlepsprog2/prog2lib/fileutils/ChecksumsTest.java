@@ -0,0 +1,40 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.Checksums.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChecksumsTest {
+
+    @Test
+    void knownValue() {
+        // Standard CRC-32C check value
+        byte[] bytes = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0xE3069283, crc32c(bytes, 0, bytes.length));
+        assertEquals(0xE3069283, crc32c(ByteBuffer.wrap(bytes), 0, bytes.length));
+    }
+
+    @Test
+    void sealAndVerify() {
+        byte[] buffer = new byte[3 + 10 + SIZEOF_CHECKSUM];
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = (byte) (i * 31);
+        }
+        seal(buffer, 3, 10);
+        assertTrue(isSealed(buffer, 3, 10));
+        assertTrue(isSealed(ByteBuffer.wrap(buffer), 3, 10));
+        buffer[7] ^= 0x10;
+        assertFalse(isSealed(buffer, 3, 10));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(buffer.length);
+        direct.put(0, buffer);
+        seal(direct, 3, 10);
+        assertTrue(isSealed(direct, 3, 10));
+        assertEquals(0, direct.position());
+        assertThrows(IndexOutOfBoundsException.class, () -> seal(buffer, 4, 10));
+    }
+}
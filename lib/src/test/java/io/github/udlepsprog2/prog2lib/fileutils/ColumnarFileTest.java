@@ -0,0 +1,117 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarFileTest {
+
+    private static final int ROWS = 100_003;
+
+    @TempDir
+    Path dir;
+
+    private static ColumnarFile.Column column(String name, ColumnType type) {
+        return new ColumnarFile.Column(name, type);
+    }
+
+    private void writeTable(Path table) throws IOException {
+        try (ColumnarWriter writer = new ColumnarWriter(table,
+                column("id", ColumnType.INT),
+                column("price", ColumnType.DOUBLE),
+                column("flag", ColumnType.BOOLEAN))) {
+            int[] ids = new int[1000];
+            double[] prices = new double[1000];
+            boolean[] flags = new boolean[1000];
+            for (int row = 0; row < ROWS; ) {
+                int n = Math.min(ids.length, ROWS - row);
+                for (int i = 0; i < n; i++) {
+                    ids[i] = row + i;
+                    prices[i] = (row + i) * 0.5;
+                    flags[i] = (row + i) % 3 == 0;
+                }
+                writer.writeInts("id", ids, 0, n);
+                writer.writeDoubles("price", prices, 0, n);
+                writer.writeBooleans("flag", flags, 0, n);
+                row += n;
+            }
+            assertEquals(ROWS, writer.count("price"));
+        }
+    }
+
+    @Test
+    void readsColumnsInBulk() throws IOException {
+        Path table = dir.resolve("table");
+        writeTable(table);
+        try (ColumnarFile file = new ColumnarFile(table)) {
+            assertEquals(ROWS, file.rowCount());
+            assertEquals(List.of(column("id", ColumnType.INT), column("price", ColumnType.DOUBLE),
+                    column("flag", ColumnType.BOOLEAN)), file.columns());
+
+            ColumnarFile.ColumnReader prices = file.column("price");
+            double[] chunk = new double[4096];
+            double total = 0;
+            for (int n; (n = prices.readDoubles(chunk, 0, chunk.length)) > 0; ) {
+                for (int i = 0; i < n; i++) {
+                    total += chunk[i];
+                }
+            }
+            assertEquals((double) ROWS * (ROWS - 1) / 4, total, 0.0);
+            assertEquals(ROWS, prices.position());
+
+            ColumnarFile.ColumnReader ids = file.column("id");
+            ids.seek(ROWS - 10);
+            int[] last = new int[20];
+            assertEquals(10, ids.readInts(last, 5, 15));
+            assertEquals(ROWS - 10, last[5]);
+            assertEquals(ROWS - 1, last[14]);
+            assertEquals(0, ids.readInts(last, 0, 20));
+
+            boolean[] flags = new boolean[4];
+            assertEquals(4, file.column("flag").readBooleans(flags, 0, 4));
+            assertArrayEquals(new boolean[] {true, false, false, true}, flags);
+
+            assertThrows(IllegalStateException.class, () -> file.column("id").readLongs(new long[1], 0, 1));
+            assertThrows(IllegalArgumentException.class, () -> file.column("missing"));
+        }
+    }
+
+    @Test
+    void scanReadsOnlyRequestedColumns() throws IOException {
+        Path table = dir.resolve("partial");
+        writeTable(table);
+        // A scan of "id" must not need the other column files
+        Files.delete(table.resolve("price" + ColumnarFile.COLUMN_SUFFIX));
+        try (ColumnarFile file = new ColumnarFile(table)) {
+            int[] ids = new int[ROWS];
+            assertEquals(ROWS, file.column("id").readInts(ids, 0, ROWS));
+            assertEquals(12345, ids[12345]);
+            assertThrows(IOException.class, () -> file.column("price"));
+        }
+    }
+
+    @Test
+    void mismatchedColumnsAreNotCommitted() throws IOException {
+        Path table = dir.resolve("bad");
+        ColumnarWriter writer = new ColumnarWriter(table,
+                column("a", ColumnType.LONG), column("b", ColumnType.SHORT));
+        writer.writeLongs("a", new long[3], 0, 3);
+        writer.writeShorts("b", new short[2], 0, 2);
+        assertThrows(IllegalStateException.class, writer::close);
+        assertFalse(Files.exists(table.resolve(ColumnarFile.SCHEMA_FILE)));
+        assertThrows(IOException.class, () -> new ColumnarFile(table));
+    }
+
+    @Test
+    void rejectsInvalidColumns() {
+        assertThrows(IllegalArgumentException.class, () -> column("../x", ColumnType.INT));
+        assertThrows(IllegalArgumentException.class, () -> new ColumnarWriter(dir.resolve("dup"),
+                column("a", ColumnType.INT), column("a", ColumnType.LONG)));
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedRecordFileTest {
+
+    private static final int NAME_LENGTH = 12;
+    private static final int RECORD_SIZE = SIZEOF_INT + NAME_LENGTH * SIZEOF_CHAR;
+
+    @TempDir
+    Path dir;
+
+    private static void writeRecords(Path path, int count, int blockSize, int level) throws IOException {
+        try (CompressedRecordWriter writer = new CompressedRecordWriter(path, RECORD_SIZE, blockSize, level)) {
+            for (int i = 0; i < count; i++) {
+                int offset = writer.reserve();
+                packInt(i, writer.buffer(), offset);
+                packLimitedString("name" + i % 100, NAME_LENGTH, writer.buffer(), offset + SIZEOF_INT);
+            }
+            assertEquals(count, writer.count());
+        }
+    }
+
+    @Test
+    void randomReads() throws IOException {
+        Path path = dir.resolve("people.crf");
+        int count = 10_000;
+        writeRecords(path, count, 50 * RECORD_SIZE, Deflater.BEST_SPEED);
+        assertTrue(Files.size(path) < (long) count * RECORD_SIZE / 2);
+        try (CompressedRecordFile file = new CompressedRecordFile(path, 4)) {
+            assertEquals(count, file.size());
+            assertEquals(RECORD_SIZE, file.recordSize());
+            byte[] record = new byte[RECORD_SIZE];
+            for (int i = 0; i < count; i += 37) {
+                file.read(i, record);
+                assertEquals(i, unpackInt(record, 0));
+                assertEquals("name" + i % 100, unpackLimitedString(NAME_LENGTH, record, SIZEOF_INT));
+            }
+            file.read(count - 1, record);
+            assertEquals(count - 1, unpackInt(record, 0));
+            assertThrows(IndexOutOfBoundsException.class, () -> file.read(count, record));
+        }
+    }
+
+    @Test
+    void parallelScan() throws IOException {
+        Path path = dir.resolve("scan.crf");
+        int count = 5_003;
+        writeRecords(path, count, 64 * RECORD_SIZE, Deflater.DEFAULT_COMPRESSION);
+        try (CompressedRecordFile file = new CompressedRecordFile(path)) {
+            for (int readAhead : new int[] {1, 3, 16}) {
+                CompressedRecordFile.Scanner scanner = file.scan(readAhead);
+                int expected = 0;
+                while (scanner.next()) {
+                    assertEquals(expected, scanner.index());
+                    assertEquals(expected, unpackInt(scanner.buffer(), scanner.offset()));
+                    expected++;
+                }
+                assertEquals(count, expected);
+                assertFalse(scanner.next());
+            }
+        }
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        Path path = dir.resolve("empty.crf");
+        writeRecords(path, 0, CompressedRecordWriter.DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+        try (CompressedRecordFile file = new CompressedRecordFile(path)) {
+            assertEquals(0, file.size());
+            assertFalse(file.scan().next());
+        }
+    }
+
+    @Test
+    void detectsCorruptBlocks() throws IOException {
+        Path path = dir.resolve("corrupt.crf");
+        writeRecords(path, 1000, 100 * RECORD_SIZE, Deflater.DEFAULT_COMPRESSION);
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[CompressedRecordFile.HEADER_SIZE + 5] ^= 1;
+        Files.write(path, bytes);
+        try (CompressedRecordFile file = new CompressedRecordFile(path)) {
+            byte[] record = new byte[RECORD_SIZE];
+            file.read(500, record);
+            assertEquals(500, unpackInt(record, 0));
+            assertThrows(IOException.class, () -> file.read(0, record));
+            assertThrows(IOException.class, () -> file.scan().next());
+        }
+    }
+
+    @Test
+    void rejectsIncompleteFiles() throws IOException {
+        Path path = dir.resolve("truncated.crf");
+        writeRecords(path, 100, 10 * RECORD_SIZE, Deflater.DEFAULT_COMPRESSION);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> new CompressedRecordFile(path));
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExternalSortTest {
+
+    // [seq: int][key: int][padding: 8 bytes]
+    private static final int RECORD_SIZE = 16;
+    private static final int KEY_OFFSET = SIZEOF_INT;
+
+    @TempDir
+    Path dir;
+
+    private Path writeRecords(String name, int count, int keyRange) throws IOException {
+        Path path = dir.resolve(name);
+        Random random = new Random(count);
+        try (RecordWriter writer = new RecordWriter(path, RECORD_SIZE)) {
+            for (int i = 0; i < count; i++) {
+                int offset = writer.reserve();
+                packInt(i, writer.buffer(), offset);
+                packInt(random.nextInt(keyRange) - keyRange / 2, writer.buffer(), offset + KEY_OFFSET);
+            }
+        }
+        return path;
+    }
+
+    /*
+     * Checks that path holds a permutation of records 0..count-1 ordered by
+     * key and, for equal keys, by sequence number.
+     */
+    private static void assertSorted(Path path, int count) throws IOException {
+        try (RecordReader reader = new RecordReader(path, RECORD_SIZE)) {
+            boolean[] seen = new boolean[count];
+            int n = 0;
+            int previousKey = Integer.MIN_VALUE;
+            int previousSeq = -1;
+            while (reader.next()) {
+                int seq = unpackInt(reader.buffer(), reader.offset());
+                int key = unpackInt(reader.buffer(), reader.offset() + KEY_OFFSET);
+                assertTrue(key > previousKey || key == previousKey && seq > previousSeq,
+                        "record " + n + " is out of order");
+                assertFalse(seen[seq]);
+                seen[seq] = true;
+                previousKey = key;
+                previousSeq = seq;
+                n++;
+            }
+            assertEquals(count, n);
+        }
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void sortsInMemory() throws IOException {
+        Path source = writeRecords("small.dat", 5000, 1000);
+        Path target = dir.resolve("sorted.dat");
+        assertEquals(5000, ExternalSort.sort(source, target, RECORD_SIZE, KeyType.INT, KEY_OFFSET));
+        assertSorted(target, 5000);
+    }
+
+    @Test
+    void mergesManyRunsInSeveralPasses() throws IOException {
+        Path temp = Files.createDirectory(dir.resolve("tmp"));
+        Path source = writeRecords("large.dat", 100_000, 500);
+        Path target = dir.resolve("sorted.dat");
+        // Runs of about 5,000 records, merged two at a time
+        long budget = 3 * 64 * 1024;
+        assertEquals(100_000, ExternalSort.sort(source, target, RECORD_SIZE, KeyType.INT, KEY_OFFSET, budget, temp));
+        assertSorted(target, 100_000);
+        assertEquals(0, countFiles(temp));
+        assertEquals(Files.size(source), Files.size(target));
+    }
+
+    @Test
+    void tinyBudgetStillSorts() throws IOException {
+        Path temp = Files.createDirectory(dir.resolve("tmp"));
+        Path source = writeRecords("tiny.dat", 300, 20);
+        Path target = dir.resolve("sorted.dat");
+        assertEquals(300, ExternalSort.sort(source, target, RECORD_SIZE, KeyType.INT, KEY_OFFSET, 1, temp));
+        assertSorted(target, 300);
+        assertEquals(0, countFiles(temp));
+    }
+
+    @Test
+    void sortsEmptyFile() throws IOException {
+        Path source = writeRecords("empty.dat", 0, 1);
+        Path target = dir.resolve("sorted.dat");
+        Files.write(target, new byte[] {1, 2, 3});
+        assertEquals(0, ExternalSort.sort(source, target, RECORD_SIZE, KeyType.INT, KEY_OFFSET));
+        assertEquals(0, Files.size(target));
+    }
+
+    @Test
+    void failedRunFailsTheSortWithoutHanging() throws IOException {
+        Path source = writeRecords("large.dat", 100_000, 500);
+        Path target = dir.resolve("sorted.dat");
+        Path missing = dir.resolve("missing");
+        // Every run fails to be created, including those still queued behind the first
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> assertThrows(IOException.class,
+                () -> ExternalSort.sort(source, target, RECORD_SIZE, KeyType.INT, KEY_OFFSET, 64 * 1024, missing)));
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    void rejectsInvalidArguments() throws IOException {
+        Path source = writeRecords("source.dat", 10, 10);
+        Path target = dir.resolve("sorted.dat");
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> ExternalSort.sort(source, target, RECORD_SIZE, KeyType.LONG, RECORD_SIZE - 4));
+        assertThrows(IllegalArgumentException.class,
+                () -> ExternalSort.sort(source, source, RECORD_SIZE, KeyType.INT, KEY_OFFSET));
+        assertThrows(IOException.class,
+                () -> ExternalSort.sort(source, target, RECORD_SIZE + 1, KeyType.INT, KEY_OFFSET));
+    }
+}
@@ -0,0 +1,124 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashIndexTest {
+
+    // Small pages force many bucket splits with few keys
+    private static final int PAGE_SIZE = 128;
+    private static final int CACHE_PAGES = 8;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void putGetAndReopen() throws IOException {
+        Path path = dir.resolve("ints.hidx");
+        try (HashIndex<Integer> index = new HashIndex<>(path, KeyType.INT, PAGE_SIZE, CACHE_PAGES)) {
+            for (int i = 0; i < 20_000; i++) {
+                assertEquals(-1, index.put(i * 7, i));
+            }
+            assertEquals(20_000, index.size());
+            assertEquals(0, index.put(0, 99));
+            assertEquals(20_000, index.size());
+        }
+        assertTrue(Files.exists(dir.resolve("ints.hidx.dir")));
+        try (HashIndex<Integer> index = new HashIndex<>(path, KeyType.INT, PAGE_SIZE, CACHE_PAGES)) {
+            assertEquals(20_000, index.size());
+            assertEquals(99, index.get(0));
+            for (int i = 1; i < 20_000; i++) {
+                assertEquals(i, index.get(i * 7));
+                assertEquals(-1, index.get(i * 7 + 1));
+            }
+        }
+    }
+
+    @Test
+    void matchesHashMap() throws IOException {
+        try (HashIndex<Long> index = new HashIndex<>(dir.resolve("longs.hidx"), KeyType.LONG, PAGE_SIZE, CACHE_PAGES)) {
+            Random random = new Random(11);
+            Map<Long, Long> expected = new HashMap<>();
+            for (int i = 0; i < 10_000; i++) {
+                long key = random.nextLong() % 5_000;
+                Long previous = expected.put(key, (long) i);
+                assertEquals(previous == null ? -1 : previous, index.put(key, i));
+            }
+            assertEquals(expected.size(), index.size());
+            for (var entry : expected.entrySet()) {
+                assertEquals((long) entry.getValue(), index.get(entry.getKey()));
+            }
+        }
+    }
+
+    @Test
+    void stringKeys() throws IOException {
+        try (HashIndex<String> index = new HashIndex<>(dir.resolve("names.hidx"),
+                KeyType.limitedString(10), PAGE_SIZE, CACHE_PAGES)) {
+            for (int i = 0; i < 2000; i++) {
+                index.put("name" + i, i);
+            }
+            assertEquals(1234, index.get("name1234"));
+            assertEquals(-1, index.get("name"));
+            assertEquals(-1, index.get("name20000"));
+        }
+    }
+
+    @Test
+    void indexThatWasNotClosedIsDetected() throws IOException {
+        Path path = dir.resolve("crash.hidx");
+        HashIndex<Integer> crashed = new HashIndex<>(path, KeyType.INT, PAGE_SIZE, CACHE_PAGES);
+        // A new index can be reopened before it is ever closed
+        assertTrue(Files.exists(dir.resolve("crash.hidx.dir")));
+        new HashIndex<>(path, KeyType.INT, PAGE_SIZE, CACHE_PAGES).close();
+
+        for (int i = 0; i < 5000; i++) {
+            crashed.put(i, i);
+        }
+        crashed.flush();
+        try (HashIndex<Integer> reopened = new HashIndex<>(path, KeyType.INT, PAGE_SIZE, CACHE_PAGES)) {
+            assertEquals(5000, reopened.size());
+            for (int i = 0; i < 5000; i++) {
+                assertEquals(i, reopened.get(i));
+            }
+        }
+
+        // Evicted buckets reach the file, but the directory does not match them
+        for (int i = 5000; i < 10_000; i++) {
+            crashed.put(i, i);
+        }
+        IOException e = assertThrows(IOException.class,
+                () -> new HashIndex<>(path, KeyType.INT, PAGE_SIZE, CACHE_PAGES));
+        assertTrue(e.getMessage().contains("not closed"), e.getMessage());
+
+        crashed.close();
+        try (HashIndex<Integer> reopened = new HashIndex<>(path, KeyType.INT, PAGE_SIZE, CACHE_PAGES)) {
+            assertEquals(10_000, reopened.size());
+            assertEquals(9999, reopened.get(9999));
+        }
+    }
+
+    @Test
+    void rejectsMismatchedFiles() throws IOException {
+        Path path = dir.resolve("mismatch.hidx");
+        new HashIndex<>(path, KeyType.INT, PAGE_SIZE, CACHE_PAGES).close();
+        assertThrows(IOException.class, () -> new HashIndex<>(path, KeyType.LONG, PAGE_SIZE, CACHE_PAGES));
+        assertThrows(IllegalArgumentException.class, () -> new HashIndex<>(dir.resolve("tiny.hidx"), KeyType.LONG, 16, CACHE_PAGES));
+    }
+
+    @Test
+    void rejectsNegativeRecordNumbers() throws IOException {
+        try (HashIndex<Integer> index = new HashIndex<>(dir.resolve("neg.hidx"), KeyType.INT)) {
+            assertThrows(IllegalArgumentException.class, () -> index.put(1, -1));
+        }
+    }
+}
@@ -3,6 +3,10 @@ package io.github.udlepsprog2.prog2lib.fileutils;
 import io.github.udlepsprog2.prog2lib.random.RandomGenerator;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
 import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -108,4 +112,631 @@ class PackUtilsTest {
             assertEquals(in, out, DELTA);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void testBulkBooleans() {
+        boolean[] in = new boolean[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            in[i] = GEN.nextBoolean();
+        }
+        packBooleans(in, 0, LENGTH, buffer, 0);
+        boolean[] out = new boolean[LENGTH];
+        unpackBooleans(buffer, 0, out, 0, LENGTH);
+        assertArrayEquals(in, out);
+        for (int i = 0; i < LENGTH; i++) {
+            assertEquals(in[i], unpackBoolean(buffer, i));
+        }
+    }
+
+    @Test
+    void testBulkChars() {
+        int len = LENGTH / SIZEOF_CHAR - 1;
+        char[] in = new char[len];
+        for (int i = 0; i < len; i++) {
+            in[i] = (char) GEN.nextInt('\u0000', '\uffff');
+        }
+        packChars(in, 0, len, buffer, 1);
+        char[] out = new char[len];
+        unpackChars(buffer, 1, out, 0, len);
+        assertArrayEquals(in, out);
+        for (int i = 0; i < len; i++) {
+            assertEquals(in[i], unpackChar(buffer, 1 + SIZEOF_CHAR * i));
+        }
+    }
+
+    @Test
+    void testBulkShorts() {
+        int len = LENGTH / SIZEOF_SHORT - 1;
+        short[] in = new short[len];
+        for (int i = 0; i < len; i++) {
+            in[i] = (short) GEN.nextInt(0x00, 0xFFFF);
+        }
+        packShorts(in, 0, len, buffer, 1);
+        short[] out = new short[len];
+        unpackShorts(buffer, 1, out, 0, len);
+        assertArrayEquals(in, out);
+        for (int i = 0; i < len; i++) {
+            assertEquals(in[i], unpackShort(buffer, 1 + SIZEOF_SHORT * i));
+        }
+    }
+
+    @Test
+    void testBulkInts() {
+        int len = LENGTH / SIZEOF_INT - 1;
+        int[] in = new int[len];
+        for (int i = 0; i < len; i++) {
+            in[i] = GEN.nextInt();
+        }
+        packInts(in, 0, len, buffer, 3);
+        int[] out = new int[len];
+        unpackInts(buffer, 3, out, 0, len);
+        assertArrayEquals(in, out);
+        for (int i = 0; i < len; i++) {
+            assertEquals(in[i], unpackInt(buffer, 3 + SIZEOF_INT * i));
+        }
+    }
+
+    @Test
+    void testBulkLongs() {
+        int len = LENGTH / SIZEOF_LONG - 1;
+        long[] in = new long[len];
+        for (int i = 0; i < len; i++) {
+            in[i] = GEN.nextLong();
+        }
+        packLongs(in, 0, len, buffer, 5);
+        long[] out = new long[len];
+        unpackLongs(buffer, 5, out, 0, len);
+        assertArrayEquals(in, out);
+        for (int i = 0; i < len; i++) {
+            assertEquals(in[i], unpackLong(buffer, 5 + SIZEOF_LONG * i));
+        }
+    }
+
+    @Test
+    void testBulkFloats() {
+        int len = LENGTH / SIZEOF_FLOAT;
+        float[] in = new float[len];
+        for (int i = 0; i < len; i++) {
+            in[i] = GEN.nextFloat();
+        }
+        in[0] = Float.NaN;
+        packFloats(in, 0, len, buffer, 0);
+        float[] out = new float[len];
+        unpackFloats(buffer, 0, out, 0, len);
+        assertArrayEquals(in, out);
+        for (int i = 0; i < len; i++) {
+            assertEquals(in[i], unpackFloat(buffer, SIZEOF_FLOAT * i), DELTA);
+        }
+    }
+
+    @Test
+    void testBulkDoubles() {
+        int len = LENGTH / SIZEOF_DOUBLE;
+        double[] in = new double[len];
+        for (int i = 0; i < len; i++) {
+            in[i] = GEN.nextDouble();
+        }
+        packDoubles(in, 0, len, buffer, 0);
+        double[] out = new double[len];
+        unpackDoubles(buffer, 0, out, 0, len);
+        assertArrayEquals(in, out);
+        for (int i = 0; i < len; i++) {
+            assertEquals(in[i], unpackDouble(buffer, SIZEOF_DOUBLE * i), DELTA);
+        }
+    }
+
+    @Test
+    void testBulkNaNsMatchSingleValues() {
+        float[] floats = {Float.intBitsToFloat(0x7fc00123), Float.intBitsToFloat(0xffc00000), 1.5f};
+        double[] doubles = {Double.longBitsToDouble(0x7ff8000000000123L), Double.longBitsToDouble(0xfff8000000000000L), 1.5};
+        byte[] expected = new byte[LENGTH];
+        packFloats(floats, 0, floats.length, buffer, 0);
+        for (int i = 0; i < floats.length; i++) {
+            packFloat(floats[i], expected, SIZEOF_FLOAT * i);
+        }
+        assertArrayEquals(Arrays.copyOf(expected, floats.length * SIZEOF_FLOAT),
+                Arrays.copyOf(buffer, floats.length * SIZEOF_FLOAT));
+        packDoubles(doubles, 0, doubles.length, buffer, 0);
+        for (int i = 0; i < doubles.length; i++) {
+            packDouble(doubles[i], expected, SIZEOF_DOUBLE * i);
+        }
+        assertArrayEquals(Arrays.copyOf(expected, doubles.length * SIZEOF_DOUBLE),
+                Arrays.copyOf(buffer, doubles.length * SIZEOF_DOUBLE));
+    }
+
+    @Test
+    void testBulkSubRanges() {
+        int[] in = {1, 2, 3, 4, 5, 6};
+        packInts(in, 2, 3, buffer, 0);
+        int[] out = new int[6];
+        unpackInts(buffer, 0, out, 1, 3);
+        assertArrayEquals(new int[] {0, 3, 4, 5, 0, 0}, out);
+    }
+
+    @Test
+    void testBulkOutOfBounds() {
+        int[] values = new int[LENGTH / SIZEOF_INT];
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> packInts(values, 0, values.length, buffer, 1));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> unpackInts(buffer, 0, values, 1, values.length));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> packLongs(new long[1], 0, 1, buffer, -1));
+    }
+
+    @Test
+    void testByteBufferMatchesByteArrayLayout() {
+        ByteBuffer heap = ByteBuffer.allocate(LENGTH);
+        ByteBuffer direct = ByteBuffer.allocateDirect(LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        for (ByteBuffer bb : new ByteBuffer[] {heap, direct}) {
+            for (int i = 0; i < MAX_TEST; i++) {
+                int n = GEN.nextInt();
+                long l = GEN.nextLong();
+                double d = GEN.nextDouble();
+                packInt(n, bb, 1);
+                packLong(l, bb, 5);
+                packDouble(d, bb, 13);
+                packInt(n, buffer, 1);
+                packLong(l, buffer, 5);
+                packDouble(d, buffer, 13);
+                for (int j = 1; j < 21; j++) {
+                    assertEquals(buffer[j], bb.get(j));
+                }
+                assertEquals(n, unpackInt(bb, 1));
+                assertEquals(l, unpackLong(bb, 5));
+                assertEquals(d, unpackDouble(bb, 13), DELTA);
+            }
+            assertEquals(0, bb.position());
+        }
+    }
+
+    @Test
+    void testByteBufferSmallTypes() {
+        ByteBuffer bb = ByteBuffer.allocateDirect(16);
+        packBoolean(true, bb, 0);
+        packByte((byte) -7, bb, 1);
+        packChar('\u20ac', bb, 2);
+        packShort((short) -12345, bb, 4);
+        packFloat(3.25f, bb, 6);
+        assertTrue(unpackBoolean(bb, 0));
+        assertEquals((byte) -7, unpackByte(bb, 1));
+        assertEquals('\u20ac', unpackChar(bb, 2));
+        assertEquals((short) -12345, unpackShort(bb, 4));
+        assertEquals(3.25f, unpackFloat(bb, 6), DELTA);
+    }
+
+    @Test
+    void testByteBufferStrings() {
+        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        packLimitedString("hello", 10, bb, 0);
+        assertEquals("hello", unpackLimitedString(10, bb, 0));
+        assertEquals("hello", unpackLimitedString(10, buffer, 0));
+        packLimitedString("truncated", 5, bb, 0);
+        assertEquals("trunc", unpackLimitedString(5, bb, 0));
+    }
+
+    @Test
+    void testVarInts() {
+        int[] edges = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        int[] sizes = {1, 1, 1, 2, 2, 3, 5, 5, 5};
+        for (int i = 0; i < edges.length; i++) {
+            assertEquals(sizes[i], packVarInt(edges[i], buffer, 0));
+            assertEquals(sizes[i], sizeOfVarInt(edges[i]));
+            assertEquals(edges[i], unpackVarInt(buffer, 0));
+        }
+        for (int i = 0; i < MAX_TEST; i++) {
+            int in = GEN.nextInt() >>> GEN.nextInt(0, 31);
+            int written = packVarInt(in, buffer, 1);
+            assertEquals(sizeOfVarInt(in), written);
+            assertEquals(in, unpackVarInt(buffer, 1));
+        }
+    }
+
+    @Test
+    void testVarLongs() {
+        assertEquals(1, packVarLong(0L, buffer, 0));
+        assertEquals(MAX_SIZEOF_VARLONG, packVarLong(-1L, buffer, 0));
+        assertEquals(-1L, unpackVarLong(buffer, 0));
+        for (int i = 0; i < MAX_TEST; i++) {
+            long in = GEN.nextLong() >>> GEN.nextInt(0, 63);
+            int written = packVarLong(in, buffer, 0);
+            assertEquals(sizeOfVarLong(in), written);
+            assertEquals(in, unpackVarLong(buffer, 0));
+        }
+    }
+
+    @Test
+    void testZigZag() {
+        assertEquals(1, packZigZagInt(-1, buffer, 0));
+        assertEquals(1, buffer[0]);
+        assertEquals(-1, unpackZigZagInt(buffer, 0));
+        assertEquals(1, packZigZagInt(-64, buffer, 0));
+        assertEquals(2, packZigZagInt(64, buffer, 0));
+        assertEquals(1, packZigZagLong(-64L, buffer, 0));
+        for (int i = 0; i < MAX_TEST; i++) {
+            int n = GEN.nextInt() >> GEN.nextInt(0, 31);
+            packZigZagInt(n, buffer, 0);
+            assertEquals(n, unpackZigZagInt(buffer, 0));
+            long l = GEN.nextLong() >> GEN.nextInt(0, 63);
+            packZigZagLong(l, buffer, 0);
+            assertEquals(l, unpackZigZagLong(buffer, 0));
+        }
+    }
+
+    @Test
+    void testBulkVarInts() {
+        int len = LENGTH / MAX_SIZEOF_VARINT;
+        int[] in = new int[len];
+        for (int i = 0; i < len; i++) {
+            in[i] = GEN.nextInt() >> GEN.nextInt(0, 31);
+        }
+        int written = packVarInts(in, 0, len, buffer, 0);
+        int[] out = new int[len];
+        assertEquals(written, unpackVarInts(buffer, 0, out, 0, len));
+        assertArrayEquals(in, out);
+
+        written = packZigZagInts(in, 0, len, buffer, 0);
+        assertEquals(written, unpackZigZagInts(buffer, 0, out, 0, len));
+        assertArrayEquals(in, out);
+    }
+
+    @Test
+    void testBulkVarLongs() {
+        int len = LENGTH / MAX_SIZEOF_VARLONG;
+        long[] in = new long[len];
+        for (int i = 0; i < len; i++) {
+            in[i] = GEN.nextLong() >> GEN.nextInt(0, 63);
+        }
+        int written = packVarLongs(in, 0, len, buffer, 0);
+        long[] out = new long[len];
+        assertEquals(written, unpackVarLongs(buffer, 0, out, 0, len));
+        assertArrayEquals(in, out);
+
+        written = packZigZagLongs(in, 0, len, buffer, 0);
+        assertEquals(written, unpackZigZagLongs(buffer, 0, out, 0, len));
+        assertArrayEquals(in, out);
+    }
+
+    @Test
+    void testMalformedVarInt() {
+        for (int i = 0; i < MAX_SIZEOF_VARINT; i++) {
+            buffer[i] = (byte) 0x80;
+        }
+        assertThrows(IllegalArgumentException.class, () -> unpackVarInt(buffer, 0));
+    }
+
+    @Test
+    void testNonMinimalVarInts() {
+        // 0 padded to two bytes, 1 padded to five, then 300 and 3 as written by packVarInt
+        byte[] bytes = {(byte) 0x80, 0x00, (byte) 0x81, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x00,
+                (byte) 0xAC, 0x02, 0x03};
+        assertEquals(0, unpackVarInt(bytes, 0));
+        assertEquals(2, sizeOfVarIntAt(bytes, 0));
+        assertEquals(1, unpackVarInt(bytes, 2));
+        assertEquals(5, sizeOfVarIntAt(bytes, 2));
+        assertEquals(1L, unpackVarLong(bytes, 2));
+        assertEquals(5, sizeOfVarLongAt(bytes, 2));
+        assertEquals(2, sizeOfVarIntAt(bytes, 7));
+
+        int[] ints = new int[4];
+        assertEquals(bytes.length, unpackVarInts(bytes, 0, ints, 0, 4));
+        assertArrayEquals(new int[] {0, 1, 300, 3}, ints);
+        assertEquals(bytes.length, unpackZigZagInts(bytes, 0, ints, 0, 4));
+        assertArrayEquals(new int[] {0, -1, 150, -2}, ints);
+        long[] longs = new long[4];
+        assertEquals(bytes.length, unpackVarLongs(bytes, 0, longs, 0, 4));
+        assertArrayEquals(new long[] {0, 1, 300, 3}, longs);
+        assertEquals(bytes.length, unpackZigZagLongs(bytes, 0, longs, 0, 4));
+        assertArrayEquals(new long[] {0, -1, 150, -2}, longs);
+    }
+
+    @Test
+    void testOverflowingVarInts() {
+        byte[] bytes = new byte[MAX_SIZEOF_VARLONG];
+        packVarInt(-1, bytes, 0);
+        assertEquals(0x0F, bytes[MAX_SIZEOF_VARINT - 1]);
+        bytes[MAX_SIZEOF_VARINT - 1] = 0x10;
+        assertThrows(IllegalArgumentException.class, () -> unpackVarInt(bytes, 0));
+        assertThrows(IllegalArgumentException.class, () -> unpackZigZagInt(bytes, 0));
+        assertThrows(IllegalArgumentException.class, () -> sizeOfVarIntAt(bytes, 0));
+        assertThrows(IllegalArgumentException.class, () -> unpackVarInts(bytes, 0, new int[1], 0, 1));
+        // The same bytes are a valid long
+        assertEquals(1L << 32 | 0x0FFFFFFFL, unpackVarLong(bytes, 0));
+
+        packVarLong(-1L, bytes, 0);
+        assertEquals(1, bytes[MAX_SIZEOF_VARLONG - 1]);
+        bytes[MAX_SIZEOF_VARLONG - 1] = 0x02;
+        assertThrows(IllegalArgumentException.class, () -> unpackVarLong(bytes, 0));
+        assertThrows(IllegalArgumentException.class, () -> unpackZigZagLong(bytes, 0));
+        assertThrows(IllegalArgumentException.class, () -> sizeOfVarLongAt(bytes, 0));
+        assertThrows(IllegalArgumentException.class, () -> unpackVarLongs(bytes, 0, new long[1], 0, 1));
+        bytes[MAX_SIZEOF_VARLONG - 1] = (byte) 0x81;
+        assertThrows(IllegalArgumentException.class, () -> unpackVarLong(bytes, 0));
+    }
+
+    @Test
+    void testLatin1Strings() {
+        for (int i = 0; i < MAX_TEST; i++) {
+            StringBuilder in = new StringBuilder();
+            int maxLength = GEN.nextInt(LENGTH);
+            for (int j = 0; j < GEN.nextInt(LENGTH); j++) {
+                in.append((char) GEN.nextInt('\u0001', '\u00ff'));
+            }
+            packLatin1String(in.toString(), maxLength, buffer, 0);
+            String out = unpackLatin1String(maxLength, buffer, 0);
+            assertEquals(in.substring(0, Math.min(maxLength, in.length())), out);
+        }
+        packLatin1String("a\u20acb", 3, buffer, 0);
+        assertEquals("a?b", unpackLatin1String(3, buffer, 0));
+    }
+
+    @Test
+    void testUtf8Strings() {
+        packUtf8String("Lleida", 10, buffer, 0);
+        assertEquals("Lleida", unpackUtf8String(10, buffer, 0));
+        assertEquals(0, buffer[6]);
+        packUtf8String("Lleida", 6, buffer, 0);
+        assertEquals("Lleida", unpackUtf8String(6, buffer, 0));
+        // 'è' takes two bytes and must not be split
+        packUtf8String("Què", 3, buffer, 0);
+        assertEquals("Qu", unpackUtf8String(3, buffer, 0));
+        packUtf8String("a\uD83D\uDE00b", 4, buffer, 0);
+        assertEquals("a", unpackUtf8String(4, buffer, 0));
+        packUtf8String("a\uD83D\uDE00b", 5, buffer, 0);
+        assertEquals("a\uD83D\uDE00", unpackUtf8String(5, buffer, 0));
+    }
+
+    @Test
+    void testDefaultStringFormatIsUnchanged() {
+        packLimitedString("ab", 4, buffer, 0);
+        assertArrayEquals(new byte[] {0, 'a', 0, 'b', 0, 0},
+                java.util.Arrays.copyOf(buffer, 6));
+    }
+
+    @Test
+    void testFloat16() {
+        for (int i = 0; i < MAX_TEST; i++) {
+            float in = (float) GEN.nextDouble(-60000.0, 60000.0);
+            packFloat16(in, buffer, 0);
+            float out = unpackFloat16(buffer, 0);
+            // binary16 keeps 11 significant bits
+            assertEquals(in, out, Math.abs(in) / 1024.0f);
+            assertEquals(Float.float16ToFloat(Float.floatToFloat16(in)), out);
+        }
+        packFloat16(1.5f, buffer, 0);
+        assertEquals(0x3E, buffer[0]);
+        assertEquals(0x00, buffer[1]);
+        packFloat16(Float.NaN, buffer, 0);
+        assertTrue(Float.isNaN(unpackFloat16(buffer, 0)));
+        packFloat16(1.0e6f, buffer, 0);
+        assertEquals(Float.POSITIVE_INFINITY, unpackFloat16(buffer, 0));
+    }
+
+    @Test
+    void testBulkFloat16() {
+        int len = LENGTH / SIZEOF_FLOAT16;
+        float[] in = new float[len];
+        for (int i = 0; i < len; i++) {
+            in[i] = (float) GEN.nextDouble(-100.0, 100.0);
+        }
+        packFloat16s(in, 0, len, buffer, 0);
+        float[] out = new float[len];
+        unpackFloat16s(buffer, 0, out, 0, len);
+        for (int i = 0; i < len; i++) {
+            assertEquals(unpackFloat16(buffer, i * SIZEOF_FLOAT16), out[i]);
+            assertEquals(in[i], out[i], 0.0625f);
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> packFloat16s(in, 0, len, buffer, 1));
+    }
+
+    @Test
+    void testFixedPoint() {
+        for (int i = 0; i < MAX_TEST; i++) {
+            double in = Math.rint(GEN.nextDouble(-327.0, 327.0) * 100) / 100;
+            packFixed16(in, 100, buffer, 0);
+            assertEquals(in, unpackFixed16(100, buffer, 0), DELTA);
+            packFixed32(in * 1000, 100, buffer, 0);
+            assertEquals(in * 1000, unpackFixed32(100, buffer, 0), 1.0E-6);
+        }
+        packFixed16(21.37, 100, buffer, 0);
+        assertEquals(2137, unpackShort(buffer, 0));
+        packFixed16(-0.005, 100, buffer, 0);
+        assertEquals(0.0, unpackFixed16(100, buffer, 0), 0.0);
+        assertThrows(IllegalArgumentException.class, () -> packFixed16(327.68, 100, buffer, 0));
+        assertThrows(IllegalArgumentException.class, () -> packFixed32(Double.NaN, 1, buffer, 0));
+        assertThrows(IllegalArgumentException.class, () -> packFixed32(1, 0, buffer, 0));
+        assertThrows(IllegalArgumentException.class, () -> unpackFixed16(-1, buffer, 0));
+    }
+
+    @Test
+    void testBulkFixedPoint() {
+        int len = LENGTH / SIZEOF_FIXED32;
+        double[] in = new double[len];
+        for (int i = 0; i < len; i++) {
+            in[i] = Math.rint(GEN.nextDouble(-300.0, 300.0) * 10) / 10;
+        }
+        double[] out = new double[len];
+        packFixed16s(in, 0, len, 10, buffer, 0);
+        unpackFixed16s(10, buffer, 0, out, 0, len);
+        for (int i = 0; i < len; i++) {
+            assertEquals(in[i], out[i], DELTA);
+            assertEquals(unpackFixed16(10, buffer, i * SIZEOF_FIXED16), out[i]);
+        }
+        packFixed32s(in, 0, len, 10, buffer, 0);
+        unpackFixed32s(10, buffer, 0, out, 0, len);
+        for (int i = 0; i < len; i++) {
+            assertEquals(in[i], out[i], DELTA);
+        }
+        double[] tooBig = {1.0, 4000.0};
+        assertThrows(IllegalArgumentException.class, () -> packFixed16s(tooBig, 0, 2, 10, buffer, 0));
+    }
+
+    @Test
+    void testBits() {
+        Arrays.fill(buffer, 0, 4, (byte) 0);
+        packBit(true, buffer, 1, 0);
+        packBit(true, buffer, 1, 7);
+        packBit(true, buffer, 1, 9);
+        assertEquals((byte) 0x81, buffer[1]);
+        assertEquals((byte) 0x40, buffer[2]);
+        assertTrue(unpackBit(buffer, 1, 9));
+        assertTrue(unpackBit(buffer, 2, 1));
+        packBit(false, buffer, 1, 0);
+        assertEquals((byte) 0x01, buffer[1]);
+        assertFalse(unpackBit(buffer, 1, 8));
+        assertThrows(IndexOutOfBoundsException.class, () -> packBit(true, buffer, LENGTH - 1, 8));
+        assertThrows(IndexOutOfBoundsException.class, () -> unpackBit(buffer, 0, -1));
+    }
+
+    @Test
+    void testBitFields() {
+        for (int i = 0; i < MAX_TEST; i++) {
+            int width = GEN.nextInt(1, 32);
+            int value = width == 32 ? GEN.nextInt() : GEN.nextInt(1 << width - 1) << 1 | GEN.nextInt(2);
+            int bitIndex = GEN.nextInt(0, 40);
+            packLong(GEN.nextLong(), buffer, 0);
+            packLong(GEN.nextLong(), buffer, 8);
+            byte[] before = Arrays.copyOf(buffer, 16);
+            packBitField(value, width, buffer, 3, bitIndex);
+            assertEquals(value, unpackBitField(width, buffer, 3, bitIndex));
+            // Bits around the field are preserved
+            for (int bit = 0; bit < 16 * 8; bit++) {
+                if (bit < 24 + bitIndex || bit >= 24 + bitIndex + width) {
+                    assertEquals(unpackBit(before, 0, bit), unpackBit(buffer, 0, bit));
+                }
+            }
+        }
+        packBitField(5, 3, buffer, 0, 0);
+        packBitField(2, 2, buffer, 0, 3);
+        assertEquals(0b10110, unpackBitField(5, buffer, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> packBitField(8, 3, buffer, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> packBitField(-1, 31, buffer, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> unpackBitField(0, buffer, 0, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> unpackBitField(9, buffer, LENGTH - 1, 0));
+    }
+
+    @Test
+    void testBulkBits() {
+        int len = 8 * 20 + 5;
+        boolean[] in = new boolean[len];
+        for (int i = 0; i < len; i++) {
+            in[i] = GEN.nextBoolean();
+        }
+        assertEquals(21, sizeOfBitFields(len, 1));
+        buffer[1 + 20] = (byte) 0xFF;
+        packBits(in, 0, len, buffer, 1);
+        assertEquals(0x07, buffer[1 + 20] & 0x07);
+        boolean[] out = new boolean[len];
+        unpackBits(buffer, 1, out, 0, len);
+        assertArrayEquals(in, out);
+        for (int i = 0; i < len; i++) {
+            assertEquals(in[i], unpackBit(buffer, 1, i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> packBits(in, 0, len, buffer, LENGTH - 20));
+    }
+
+    @Test
+    void testBulkBitFields() {
+        for (int width = 1; width <= 32; width++) {
+            int len = LENGTH * 8 / width;
+            int[] in = new int[len];
+            for (int i = 0; i < len; i++) {
+                in[i] = width == 32 ? GEN.nextInt() : (int) (GEN.nextLong() & ((1L << width) - 1));
+            }
+            packBitFields(in, 0, len, width, buffer, 0);
+            int[] out = new int[len];
+            unpackBitFields(width, buffer, 0, out, 0, len);
+            assertArrayEquals(in, out);
+            for (int i = 0; i < len; i += 7) {
+                assertEquals(in[i], unpackBitField(width, buffer, 0, i * width));
+            }
+        }
+        int[] tooBig = {1, 16};
+        assertThrows(IllegalArgumentException.class, () -> packBitFields(tooBig, 0, 2, 4, buffer, 0));
+    }
+
+    @Test
+    void testOrderedInts() {
+        byte[] keys = new byte[LENGTH];
+        int[] edges = {Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE};
+        for (int i = 0; i < MAX_TEST; i++) {
+            int a = i < edges.length ? edges[i] : GEN.nextInt();
+            int b = edges[i % edges.length] + (i < 2 * edges.length ? 0 : GEN.nextInt(-3, 3));
+            packOrderedInt(a, keys, 0);
+            packOrderedInt(b, keys, SIZEOF_INT);
+            assertEquals(Integer.signum(Integer.compare(a, b)),
+                    Integer.signum(compareOrdered(keys, 0, keys, SIZEOF_INT, SIZEOF_INT)));
+            assertEquals(a, unpackOrderedInt(keys, 0));
+        }
+    }
+
+    @Test
+    void testOrderedLongs() {
+        byte[] keys = new byte[LENGTH];
+        long[] edges = {Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE};
+        for (int i = 0; i < MAX_TEST; i++) {
+            long a = i < edges.length ? edges[i] : GEN.nextLong();
+            long b = i < 2 * edges.length ? edges[i % edges.length] : GEN.nextLong();
+            packOrderedLong(a, keys, 0);
+            packOrderedLong(b, keys, SIZEOF_LONG);
+            assertEquals(Integer.signum(Long.compare(a, b)),
+                    Integer.signum(compareOrdered(keys, 0, keys, SIZEOF_LONG, SIZEOF_LONG)));
+            assertEquals(a, unpackOrderedLong(keys, 0));
+        }
+    }
+
+    @Test
+    void testOrderedDoubles() {
+        byte[] keys = new byte[LENGTH];
+        double[] values = {Double.NEGATIVE_INFINITY, -Double.MAX_VALUE, -1.5, -Double.MIN_VALUE, -0.0, 0.0,
+                Double.MIN_VALUE, 1.0, 1.5, Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NaN};
+        for (int i = 0; i < MAX_TEST; i++) {
+            double a = i < values.length ? values[i] : GEN.nextDouble(-1e6, 1e6);
+            double b = values[i % values.length];
+            packOrderedDouble(a, keys, 0);
+            packOrderedDouble(b, keys, SIZEOF_DOUBLE);
+            assertEquals(Integer.signum(Double.compare(a, b)),
+                    Integer.signum(compareOrdered(keys, 0, keys, SIZEOF_DOUBLE, SIZEOF_DOUBLE)));
+            assertEquals(Double.doubleToLongBits(a), Double.doubleToLongBits(unpackOrderedDouble(keys, 0)));
+        }
+    }
+
+    @Test
+    void testOrderedStrings() {
+        byte[] keys = new byte[LENGTH];
+        int maxLength = 8;
+        int size = maxLength * SIZEOF_CHAR;
+        String[] sorted = {"", "A", "AB", "Ab", "a", "ab", "abc", "\u00e9t\u00e9", "\uffff"};
+        for (int i = 0; i < sorted.length; i++) {
+            for (int j = 0; j < sorted.length; j++) {
+                Arrays.fill(keys, (byte) 0x55);
+                packOrderedString(sorted[i], maxLength, keys, 0);
+                packOrderedString(sorted[j], maxLength, keys, size);
+                assertEquals(Integer.signum(Integer.compare(i, j)),
+                        Integer.signum(compareOrdered(keys, 0, keys, size, size)));
+            }
+            assertEquals(sorted[i], unpackOrderedString(maxLength, keys, 0));
+        }
+        packOrderedString("truncated string", maxLength, keys, 0);
+        assertEquals("truncat", unpackOrderedString(maxLength - 1, keys, 0));
+        assertEquals("truncate", unpackOrderedString(maxLength, keys, 0));
+        assertThrows(IllegalArgumentException.class, () -> packOrderedString("a\0b", maxLength, keys, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> packOrderedString("", maxLength, keys, LENGTH - 1));
+    }
+
+    @Test
+    void testOrderedCompositeKeys() {
+        byte[] keys = new byte[LENGTH];
+        // [category: int][price: double] sorts by category, then by price
+        int size = SIZEOF_INT + SIZEOF_DOUBLE;
+        packOrderedInt(-2, keys, 0);
+        packOrderedDouble(99.5, keys, SIZEOF_INT);
+        packOrderedInt(-2, keys, size);
+        packOrderedDouble(-3.25, keys, size + SIZEOF_INT);
+        packOrderedInt(7, keys, 2 * size);
+        packOrderedDouble(-100.0, keys, 2 * size + SIZEOF_INT);
+        assertTrue(compareOrdered(keys, size, keys, 0, size) < 0);
+        assertTrue(compareOrdered(keys, 0, keys, 2 * size, size) < 0);
+        assertEquals(0, compareOrdered(keys, size, keys, size, size));
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import io.github.udlepsprog2.prog2lib.random.RandomGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackerTest {
+
+    private static final int MAX_TEST = 1000;
+    private static final int LENGTH = 256;
+
+    private static final RandomGenerator GEN = RandomGenerator.getInstance();
+
+    private static final Packer BE = Packer.BIG_ENDIAN;
+    private static final Packer LE = Packer.LITTLE_ENDIAN;
+
+    @Test
+    void bigEndianMatchesPackUtils() {
+        byte[] expected = new byte[LENGTH];
+        byte[] actual = new byte[LENGTH];
+        for (int i = 0; i < MAX_TEST; i++) {
+            int n = GEN.nextInt();
+            long l = GEN.nextLong();
+            double d = GEN.nextDouble();
+            packInt(n, expected, 1);
+            packLong(l, expected, 5);
+            packDouble(d, expected, 13);
+            packLimitedString("abc", 5, expected, 21);
+            BE.packInt(n, actual, 1);
+            BE.packLong(l, actual, 5);
+            BE.packDouble(d, actual, 13);
+            BE.packLimitedString("abc", 5, actual, 21);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void littleEndianLayout() {
+        byte[] buffer = new byte[8];
+        LE.packInt(0x01020304, buffer, 0);
+        assertArrayEquals(new byte[] {4, 3, 2, 1, 0, 0, 0, 0}, buffer);
+        LE.packShort((short) 0x0102, buffer, 4);
+        assertEquals(0x0102, LE.unpackShort(buffer, 4));
+        assertEquals(0x01020304, ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN).getInt(0));
+        LE.packChar('A', buffer, 0);
+        assertEquals('A', buffer[0]);
+        assertEquals(0, buffer[1]);
+    }
+
+    @Test
+    void littleEndianRoundTrips() {
+        byte[] buffer = new byte[LENGTH];
+        ByteBuffer direct = ByteBuffer.allocateDirect(LENGTH);
+        for (int i = 0; i < MAX_TEST; i++) {
+            char c = (char) GEN.nextInt('\u0000', '\uffff');
+            short s = (short) GEN.nextInt(0x00, 0xFFFF);
+            int n = GEN.nextInt();
+            long l = GEN.nextLong();
+            float f = GEN.nextFloat();
+            double d = GEN.nextDouble();
+            LE.packChar(c, buffer, 0);
+            LE.packShort(s, buffer, 2);
+            LE.packInt(n, buffer, 4);
+            LE.packLong(l, buffer, 8);
+            LE.packFloat(f, buffer, 16);
+            LE.packDouble(d, buffer, 20);
+            assertEquals(c, LE.unpackChar(buffer, 0));
+            assertEquals(s, LE.unpackShort(buffer, 2));
+            assertEquals(n, LE.unpackInt(buffer, 4));
+            assertEquals(l, LE.unpackLong(buffer, 8));
+            assertEquals(f, LE.unpackFloat(buffer, 16));
+            assertEquals(d, LE.unpackDouble(buffer, 20));
+
+            LE.packLong(l, direct, 3);
+            assertEquals(l, LE.unpackLong(direct, 3));
+            assertEquals(Long.reverseBytes(l), unpackLong(direct, 3));
+        }
+    }
+
+    @Test
+    void littleEndianBulk() {
+        byte[] buffer = new byte[LENGTH];
+        int len = LENGTH / SIZEOF_INT;
+        int[] in = new int[len];
+        for (int i = 0; i < len; i++) {
+            in[i] = GEN.nextInt();
+        }
+        LE.packInts(in, 0, len, buffer, 0);
+        int[] out = new int[len];
+        LE.unpackInts(buffer, 0, out, 0, len);
+        assertArrayEquals(in, out);
+        for (int i = 0; i < len; i++) {
+            assertEquals(Integer.reverseBytes(in[i]), unpackInt(buffer, SIZEOF_INT * i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> LE.unpackInts(buffer, 1, out, 0, len));
+    }
+
+    @Test
+    void reducedPrecisionInBothOrders() {
+        byte[] be = new byte[LENGTH];
+        byte[] le = new byte[LENGTH];
+        BE.packFloat16(1.5f, be, 0);
+        packFloat16(1.5f, le, 2);
+        assertEquals(unpackShort(le, 2), unpackShort(be, 0));
+        LE.packFloat16(-2.25f, le, 0);
+        assertEquals(-2.25f, LE.unpackFloat16(le, 0));
+        assertEquals(-2.25f, Float.float16ToFloat(Short.reverseBytes(unpackShort(le, 0))));
+
+        LE.packFixed16(12.34, 100, le, 0);
+        assertEquals(Short.reverseBytes((short) 1234), unpackShort(le, 0));
+        assertEquals(12.34, LE.unpackFixed16(100, le, 0), 1e-9);
+        LE.packFixed32(-123456.7, 10, le, 0);
+        assertEquals(Integer.reverseBytes(-1234567), unpackInt(le, 0));
+        assertEquals(-123456.7, LE.unpackFixed32(10, le, 0), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> LE.packFixed16(400, 100, le, 0));
+
+        float[] floats = {0f, 1f, -0.5f, 65504f};
+        LE.packFloat16s(floats, 0, floats.length, le, 1);
+        float[] floatsOut = new float[floats.length];
+        LE.unpackFloat16s(le, 1, floatsOut, 0, floats.length);
+        assertArrayEquals(floats, floatsOut);
+        double[] values = {0.0, 1.25, -3.5, 300.75};
+        double[] out = new double[values.length];
+        for (Packer packer : new Packer[] {BE, LE}) {
+            packer.packFixed16s(values, 0, values.length, 100, le, 0);
+            packer.unpackFixed16s(100, le, 0, out, 0, values.length);
+            assertArrayEquals(values, out, 1e-9);
+            packer.packFixed32s(values, 0, values.length, 1000, le, 0);
+            packer.unpackFixed32s(1000, le, 0, out, 0, values.length);
+            assertArrayEquals(values, out, 1e-9);
+        }
+        BE.packFixed32s(values, 0, values.length, 1000, be, 0);
+        packFixed32s(values, 0, values.length, 1000, le, 0);
+        assertArrayEquals(le, be);
+        LE.packFixed32s(values, 0, values.length, 1000, le, 0);
+        assertEquals(Integer.reverseBytes(1250), unpackInt(le, SIZEOF_FIXED32));
+    }
+
+    @Test
+    void littleEndianStrings() {
+        byte[] buffer = new byte[LENGTH];
+        LE.packLimitedString("hola", 8, buffer, 0);
+        assertEquals("hola", LE.unpackLimitedString(8, buffer, 0));
+        assertEquals('h', buffer[0]);
+        ByteBuffer bb = ByteBuffer.allocate(LENGTH);
+        LE.packLimitedString("adeu", 3, bb, 0);
+        assertEquals("ade", LE.unpackLimitedString(3, bb, 0));
+    }
+
+    @Test
+    void ofSelectsPacker() {
+        assertSame(BE, Packer.of(ByteOrder.BIG_ENDIAN));
+        assertSame(LE, Packer.of(ByteOrder.LITTLE_ENDIAN));
+        assertEquals(ByteOrder.LITTLE_ENDIAN, LE.order());
+    }
+}
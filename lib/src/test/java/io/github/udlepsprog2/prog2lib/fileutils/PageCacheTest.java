@@ -0,0 +1,137 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCacheTest {
+
+    private static final int PAGE_SIZE = 256;
+
+    @TempDir
+    Path dir;
+
+    private static void store(PageCache cache, long pageNo, int value) throws IOException {
+        try (PageCache.Page page = cache.pin(pageNo)) {
+            packInt(value, page.data(), PAGE_SIZE - SIZEOF_INT);
+            page.markDirty();
+        }
+    }
+
+    private static int load(PageCache cache, long pageNo) throws IOException {
+        try (PageCache.Page page = cache.pin(pageNo)) {
+            return unpackInt(page.data(), PAGE_SIZE - SIZEOF_INT);
+        }
+    }
+
+    @Test
+    void dirtyPagesAreWrittenBack() throws IOException {
+        Path path = dir.resolve("pages.dat");
+        try (PageCache cache = new PageCache(path, PAGE_SIZE, 4, 1)) {
+            for (int i = 0; i < 10; i++) {
+                store(cache, i, i * 10);
+            }
+            // Pages 0..5 were evicted and written back, the rest are still cached
+            assertEquals(6, cache.stats().writeBacks());
+            assertEquals(0, load(cache, 12));
+        }
+        // Page 12 was only read, so it did not extend the file
+        assertEquals(10L * PAGE_SIZE, Files.size(path));
+        try (PageCache cache = new PageCache(path, PAGE_SIZE, 4, 1)) {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i * 10, load(cache, i));
+            }
+        }
+    }
+
+    @Test
+    void countsHitsMissesAndEvictions() throws IOException {
+        try (PageCache cache = new PageCache(dir.resolve("stats.dat"), PAGE_SIZE, 4, 1)) {
+            for (int i = 0; i < 4; i++) {
+                load(cache, i);
+            }
+            load(cache, 0);
+            load(cache, 3);
+            load(cache, 4);
+            assertEquals(new PageCache.Stats(2, 5, 1, 0), cache.stats());
+        }
+    }
+
+    @Test
+    void clockGivesReferencedPagesASecondChance() throws IOException {
+        try (PageCache cache = new PageCache(dir.resolve("clock.dat"), PAGE_SIZE, 2, 1)) {
+            load(cache, 0);
+            load(cache, 1);
+            // Clears both reference bits and evicts page 0
+            load(cache, 2);
+            // Page 1 was not referenced since, so it goes before page 2
+            load(cache, 0);
+            load(cache, 2);
+            assertEquals(new PageCache.Stats(1, 4, 2, 0), cache.stats());
+        }
+    }
+
+    @Test
+    void pinnedPagesAreNotEvicted() throws IOException {
+        try (PageCache cache = new PageCache(dir.resolve("pinned.dat"), PAGE_SIZE, 2, 1)) {
+            PageCache.Page first = cache.pin(0);
+            PageCache.Page second = cache.pin(1);
+            packInt(42, second.data(), 0);
+            assertThrows(IllegalStateException.class, () -> cache.pin(2));
+            cache.unpin(first);
+            assertThrows(IllegalStateException.class, () -> cache.unpin(first));
+            try (PageCache.Page third = cache.pin(2)) {
+                assertEquals(2, third.pageNo());
+            }
+            assertEquals(1, second.pageNo());
+            assertEquals(42, unpackInt(second.data(), 0));
+            second.close();
+        }
+    }
+
+    @Test
+    void concurrentThreadsShareTheCache() throws Exception {
+        Path path = dir.resolve("concurrent.dat");
+        int threads = 8;
+        int pages = 256;
+        int rounds = 20;
+        try (PageCache cache = new PageCache(path, PAGE_SIZE, 128, 8)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    // Each thread owns the pages congruent to its number
+                    for (int round = 0; round < rounds; round++) {
+                        for (int p = thread; p < pages; p += threads) {
+                            store(cache, p, load(cache, p) + 1);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+            PageCache.Stats stats = cache.stats();
+            assertEquals(2L * pages * rounds, stats.hits() + stats.misses());
+        }
+        try (PageCache cache = new PageCache(path, PAGE_SIZE, 16, 2)) {
+            for (int p = 0; p < pages; p++) {
+                assertEquals(rounds, load(cache, p));
+            }
+        }
+    }
+}
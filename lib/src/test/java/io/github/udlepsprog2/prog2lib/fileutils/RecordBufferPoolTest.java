@@ -0,0 +1,100 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordBufferPoolTest {
+
+    @Test
+    void reusesReleasedBuffers() {
+        RecordBufferPool pool = new RecordBufferPool(1024, 2);
+        byte[] first = pool.acquire(24);
+        assertEquals(32, first.length);
+        assertEquals(new RecordBufferPool.Stats(0, 1, 1), pool.stats());
+        pool.release(first);
+        assertSame(first, pool.acquire(20));
+        assertEquals(new RecordBufferPool.Stats(1, 1, 1), pool.stats());
+    }
+
+    @Test
+    void sizeClasses() {
+        RecordBufferPool pool = new RecordBufferPool(1000, 2);
+        assertEquals(RecordBufferPool.MIN_BUFFER_SIZE, pool.acquire(0).length);
+        assertEquals(RecordBufferPool.MIN_BUFFER_SIZE, pool.acquire(16).length);
+        assertEquals(64, pool.acquire(33).length);
+        assertEquals(1024, pool.acquire(1024).length);
+        assertEquals(1025, pool.acquire(1025).length);
+        assertThrows(IllegalArgumentException.class, () -> pool.acquire(-1));
+    }
+
+    @Test
+    void dropsBuffersWhenFull() {
+        RecordBufferPool pool = new RecordBufferPool(64, 1);
+        byte[] a = pool.acquire(64);
+        byte[] b = pool.acquire(64);
+        pool.release(a);
+        pool.release(b);
+        assertSame(a, pool.acquire(64));
+        assertNotSame(b, pool.acquire(64));
+        assertEquals(3, pool.stats().misses());
+    }
+
+    @Test
+    void rejectsInvalidReleases() {
+        RecordBufferPool pool = new RecordBufferPool(1024, 2);
+        byte[] buffer = pool.acquire(32);
+        assertThrows(NullPointerException.class, () -> pool.release(null));
+        pool.release(buffer);
+        assertThrows(IllegalStateException.class, () -> pool.release(buffer));
+        assertEquals(0, pool.stats().outstanding());
+        assertSame(buffer, pool.acquire(32));
+        assertNotSame(buffer, pool.acquire(32));
+    }
+
+    @Test
+    void borrowAlwaysReleases() {
+        RecordBufferPool pool = new RecordBufferPool();
+        int value = pool.borrow(PackUtils.SIZEOF_INT, buffer -> {
+            PackUtils.packInt(42, buffer, 0);
+            return PackUtils.unpackInt(buffer, 0);
+        });
+        assertEquals(42, value);
+        assertThrows(IOException.class, () -> pool.borrow(8, buffer -> {
+            throw new IOException("boom");
+        }));
+        assertEquals(0, pool.stats().outstanding());
+        assertEquals(1, pool.stats().hits());
+    }
+
+    @Test
+    void concurrentUse() throws InterruptedException {
+        RecordBufferPool pool = new RecordBufferPool(256, 4);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int id = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    int stored = pool.borrow(100, buffer -> {
+                        PackUtils.packInt(id, buffer, 96);
+                        return PackUtils.unpackInt(buffer, 96);
+                    });
+                    assertEquals(id, stored);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        RecordBufferPool.Stats stats = pool.stats();
+        assertEquals(0, stats.outstanding());
+        assertEquals(80_000, stats.hits() + stats.misses());
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordCodecTest {
+
+    record Person(int id, @MaxLength(10) String name, double salary, boolean active) { }
+
+    record AllPrimitives(boolean z, byte b, char c, short s, int i, long l, float f, double d) { }
+
+    record Compact(@MaxLength(value = 4, encoding = MaxLength.Encoding.LATIN1) String code,
+                   @MaxLength(value = 6, encoding = MaxLength.Encoding.UTF8) String city) { }
+
+    record Empty() { }
+
+    record Unannotated(String name) { }
+
+    record Unsupported(Object value) { }
+
+    @Test
+    void layoutMatchesHandWrittenPackUtilsCalls() {
+        RecordCodec<Person> codec = RecordCodec.of(Person.class);
+        assertEquals(SIZEOF_INT + 10 * SIZEOF_CHAR + SIZEOF_DOUBLE + SIZEOF_BOOLEAN, codec.size());
+        assertEquals(0, codec.offsetOf("id"));
+        assertEquals(SIZEOF_INT, codec.offsetOf("name"));
+        assertEquals(SIZEOF_INT + 10 * SIZEOF_CHAR, codec.offsetOf("salary"));
+
+        byte[] expected = new byte[codec.size() + 3];
+        packInt(42, expected, 3);
+        packLimitedString("Ada", 10, expected, 3 + SIZEOF_INT);
+        packDouble(1234.5, expected, 3 + codec.offsetOf("salary"));
+        packBoolean(true, expected, 3 + codec.offsetOf("active"));
+
+        byte[] actual = new byte[codec.size() + 3];
+        codec.pack(new Person(42, "Ada", 1234.5, true), actual, 3);
+        assertArrayEquals(expected, actual);
+        assertEquals(new Person(42, "Ada", 1234.5, true), codec.unpack(actual, 3));
+    }
+
+    @Test
+    void roundTripsEveryPrimitiveType() {
+        RecordCodec<AllPrimitives> codec = RecordCodec.of(AllPrimitives.class);
+        assertEquals(1 + 1 + 2 + 2 + 4 + 8 + 4 + 8, codec.size());
+        AllPrimitives in = new AllPrimitives(true, (byte) -3, 'ñ', (short) -300,
+                123456789, -9876543210L, 1.5f, Math.PI);
+        byte[] buffer = new byte[codec.size()];
+        codec.pack(in, buffer, 0);
+        assertEquals(in, codec.unpack(buffer, 0));
+    }
+
+    @Test
+    void truncatesLongStrings() {
+        RecordCodec<Person> codec = RecordCodec.of(Person.class);
+        byte[] buffer = new byte[codec.size()];
+        codec.pack(new Person(1, "a very long name", 0.0, false), buffer, 0);
+        assertEquals("a very lon", codec.unpack(buffer, 0).name());
+    }
+
+    @Test
+    void codecsAreCached() {
+        assertSame(RecordCodec.of(Person.class), RecordCodec.of(Person.class));
+        assertEquals(0, RecordCodec.of(Empty.class).size());
+        assertEquals(new Empty(), RecordCodec.of(Empty.class).unpack(new byte[0], 0));
+    }
+
+    @Test
+    void rejectsInvalidRecords() {
+        assertThrows(IllegalArgumentException.class, () -> RecordCodec.of(Unannotated.class));
+        assertThrows(IllegalArgumentException.class, () -> RecordCodec.of(Unsupported.class));
+        assertThrows(IllegalArgumentException.class, () -> RecordCodec.of(Person.class).offsetOf("age"));
+    }
+
+    @Test
+    void rejectsTooSmallBuffers() {
+        RecordCodec<Person> codec = RecordCodec.of(Person.class);
+        byte[] buffer = new byte[codec.size()];
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> codec.pack(new Person(1, "x", 0.0, true), buffer, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> codec.unpack(buffer, 1));
+    }
+
+    @Test
+    void compactStringEncodings() {
+        RecordCodec<Compact> codec = RecordCodec.of(Compact.class);
+        assertEquals(4 + 6, codec.size());
+        byte[] buffer = new byte[codec.size()];
+        codec.pack(new Compact("ES", "Lleida"), buffer, 0);
+        assertEquals("ES", unpackLatin1String(4, buffer, 0));
+        assertEquals(new Compact("ES", "Lleida"), codec.unpack(buffer, 0));
+        codec.pack(new Compact("ABCDE", "Núria!"), buffer, 0);
+        assertEquals(new Compact("ABCD", "Núria"), codec.unpack(buffer, 0));
+    }
+}
@@ -0,0 +1,191 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordFileTest {
+
+    private static final int NAME_LENGTH = 10;
+    private static final int RECORD_SIZE = SIZEOF_INT + NAME_LENGTH * SIZEOF_CHAR;
+
+    @TempDir
+    Path dir;
+
+    private static byte[] record(int id, String name) {
+        byte[] record = new byte[RECORD_SIZE];
+        packInt(id, record, 0);
+        packLimitedString(name, NAME_LENGTH, record, SIZEOF_INT);
+        return record;
+    }
+
+    @Test
+    void appendReadAndWrite() throws IOException {
+        try (RecordFile file = new RecordFile(dir.resolve("people.dat"), RECORD_SIZE)) {
+            assertEquals(0, file.size());
+            assertEquals(0, file.append(record(1, "ada")));
+            assertEquals(1, file.append(record(2, "grace")));
+            assertEquals(2, file.size());
+
+            byte[] record = new byte[RECORD_SIZE];
+            file.read(1, record);
+            assertEquals(2, unpackInt(record, 0));
+            assertEquals("grace", unpackLimitedString(NAME_LENGTH, record, SIZEOF_INT));
+
+            file.write(0, record(7, "alan"));
+            file.read(0, record);
+            assertEquals(7, unpackInt(record, 0));
+            assertEquals("alan", unpackLimitedString(NAME_LENGTH, record, SIZEOF_INT));
+        }
+    }
+
+    @Test
+    void recordsSpanSeveralWindows() throws IOException {
+        Path path = dir.resolve("numbers.dat");
+        // Three records per window
+        try (RecordFile file = new RecordFile(path, RECORD_SIZE, 3 * RECORD_SIZE + 1)) {
+            byte[] record = new byte[RECORD_SIZE];
+            for (int i = 0; i < 10; i++) {
+                file.append(record(i, "n" + i));
+                // Reading right after appending forces the last window to be remapped
+                file.read(i, record);
+                assertEquals(i, unpackInt(record, 0));
+            }
+            for (int i = 9; i >= 0; i--) {
+                file.write(i, record(-i, "m" + i));
+            }
+            file.force();
+        }
+        assertEquals(10L * RECORD_SIZE, Files.size(path));
+        try (RecordFile file = new RecordFile(path, RECORD_SIZE, 2 * RECORD_SIZE)) {
+            assertEquals(10, file.size());
+            byte[] record = new byte[RECORD_SIZE];
+            for (int i = 0; i < 10; i++) {
+                file.read(i, record);
+                assertEquals(-i, unpackInt(record, 0));
+                assertEquals("m" + i, unpackLimitedString(NAME_LENGTH, record, SIZEOF_INT));
+            }
+        }
+    }
+
+    @Test
+    void rejectsOutOfRangeAccess() throws IOException {
+        try (RecordFile file = new RecordFile(dir.resolve("empty.dat"), RECORD_SIZE)) {
+            byte[] record = new byte[RECORD_SIZE];
+            assertThrows(IndexOutOfBoundsException.class, () -> file.read(0, record));
+            assertThrows(IndexOutOfBoundsException.class, () -> file.write(-1, record));
+            assertThrows(IndexOutOfBoundsException.class, () -> file.append(new byte[RECORD_SIZE - 1]));
+        }
+    }
+
+    @Test
+    void rejectsFileWithPartialRecord() throws IOException {
+        Path path = dir.resolve("broken.dat");
+        Files.write(path, new byte[RECORD_SIZE + 1]);
+        assertThrows(IOException.class, () -> new RecordFile(path, RECORD_SIZE));
+    }
+
+    @Test
+    void parallelStreamsSpanSeveralWindows() throws IOException {
+        // 7 records per window, so ranges split inside and across windows
+        try (RecordFile file = new RecordFile(dir.resolve("stream.dat"), RECORD_SIZE, 7 * RECORD_SIZE + 5)) {
+            int count = 1000;
+            for (int i = 0; i < count; i++) {
+                file.append(record(i, "n" + i));
+            }
+            long expected = (long) count * (count - 1) / 2;
+            assertEquals(expected, file.ints((buffer, offset) -> unpackInt(buffer, offset)).parallel().asLongStream().sum());
+            assertEquals(expected, file.longs((buffer, offset) -> unpackInt(buffer, offset)).parallel().sum());
+            assertEquals((double) expected, file.doubles((buffer, offset) -> unpackInt(buffer, offset)).parallel().sum(), 0.0);
+
+            List<String> names = file.stream((buffer, offset) -> unpackLimitedString(NAME_LENGTH, buffer, offset + SIZEOF_INT))
+                    .parallel()
+                    .collect(Collectors.toList());
+            assertEquals(count, names.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals("n" + i, names.get(i));
+            }
+        }
+    }
+
+    @Test
+    void streamOfEmptyFile() throws IOException {
+        try (RecordFile file = new RecordFile(dir.resolve("empty-stream.dat"), RECORD_SIZE)) {
+            assertEquals(0, file.stream((buffer, offset) -> unpackInt(buffer, offset)).count());
+        }
+    }
+
+    @Test
+    void checksummedRecords() throws IOException {
+        Path path = dir.resolve("checked.dat");
+        int slot = RECORD_SIZE + Checksums.SIZEOF_CHECKSUM;
+        try (RecordFile file = new RecordFile(path, RECORD_SIZE, 3 * RECORD_SIZE, true)) {
+            assertTrue(file.isChecksummed());
+            for (int i = 0; i < 10; i++) {
+                file.append(record(i, "n" + i));
+            }
+            file.write(4, record(44, "changed"));
+            assertEquals(0, file.verify().length);
+        }
+        assertEquals(RecordFile.HEADER_SIZE + 10L * slot, Files.size(path));
+
+        // Flip one bit in record 4 and one in the checksum of record 7
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[RecordFile.HEADER_SIZE + 4 * slot + 1] ^= 1;
+        bytes[RecordFile.HEADER_SIZE + 8 * slot - 1] ^= 1;
+        Files.write(path, bytes);
+
+        try (RecordFile file = new RecordFile(path, RECORD_SIZE, 3 * RECORD_SIZE, true)) {
+            assertArrayEquals(new long[] {4, 7}, file.verify());
+            byte[] record = new byte[RECORD_SIZE];
+            file.read(3, record);
+            assertEquals(3, unpackInt(record, 0));
+            assertThrows(IOException.class, () -> file.read(4, record));
+        }
+        try (RecordFile file = new RecordFile(dir.resolve("plain.dat"), RECORD_SIZE)) {
+            assertThrows(IllegalStateException.class, file::verify);
+        }
+    }
+
+    @Test
+    void openingInTheWrongModeFails() throws IOException {
+        Path checked = dir.resolve("checked.dat");
+        try (RecordFile file = new RecordFile(checked, RECORD_SIZE, RecordFile.DEFAULT_WINDOW_SIZE, true)) {
+            for (int i = 0; i < 3; i++) {
+                file.append(record(i, "n" + i));
+            }
+        }
+        // The header and 3 slots of 28 bytes take 96 bytes, as 4 plain records would
+        assertEquals(4L * RECORD_SIZE, Files.size(checked));
+        assertThrows(IOException.class, () -> new RecordFile(checked, RECORD_SIZE));
+        assertThrows(IOException.class, () -> new RecordFile(checked, RECORD_SIZE + Checksums.SIZEOF_CHECKSUM));
+        assertThrows(IOException.class,
+                () -> new RecordFile(checked, RECORD_SIZE - 2, RecordFile.DEFAULT_WINDOW_SIZE, true));
+
+        Path plain = dir.resolve("plain.dat");
+        try (RecordFile file = new RecordFile(plain, RECORD_SIZE)) {
+            for (int i = 0; i < 4; i++) {
+                file.append(record(i, "n" + i));
+            }
+        }
+        assertThrows(IOException.class,
+                () -> new RecordFile(plain, RECORD_SIZE, RecordFile.DEFAULT_WINDOW_SIZE, true));
+
+        // Both files are still intact
+        try (RecordFile file = new RecordFile(checked, RECORD_SIZE, RecordFile.DEFAULT_WINDOW_SIZE, true)) {
+            assertEquals(3, file.size());
+            assertEquals(0, file.verify().length);
+        }
+        try (RecordFile file = new RecordFile(plain, RECORD_SIZE)) {
+            assertEquals(4, file.size());
+        }
+    }
+}
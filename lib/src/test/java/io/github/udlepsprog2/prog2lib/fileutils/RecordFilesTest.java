@@ -0,0 +1,116 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordFilesTest {
+
+    // [id: int][deleted: boolean]
+    private static final int RECORD_SIZE = SIZEOF_INT + SIZEOF_BOOLEAN;
+
+    @TempDir
+    Path dir;
+
+    private Path writeRecords(String name, int first, int count) throws IOException {
+        Path path = dir.resolve(name);
+        try (RecordWriter writer = new RecordWriter(path, RECORD_SIZE)) {
+            for (int i = first; i < first + count; i++) {
+                int offset = writer.reserve();
+                packInt(i, writer.buffer(), offset);
+                packBoolean(i % 4 == 1, writer.buffer(), offset + SIZEOF_INT);
+            }
+        }
+        return path;
+    }
+
+    private static int[] ids(Path path) throws IOException {
+        try (RecordFile file = new RecordFile(path, RECORD_SIZE)) {
+            int[] ids = new int[(int) file.size()];
+            byte[] record = new byte[RECORD_SIZE];
+            for (int i = 0; i < ids.length; i++) {
+                file.read(i, record);
+                ids[i] = unpackInt(record, 0);
+            }
+            return ids;
+        }
+    }
+
+    @Test
+    void copyAppendsRange() throws IOException {
+        Path source = writeRecords("source.dat", 0, 100);
+        Path target = dir.resolve("target.dat");
+        assertEquals(0, RecordFiles.copy(source, target, RECORD_SIZE, 10, 3));
+        assertEquals(3, RecordFiles.copy(source, target, RECORD_SIZE, 98, 2));
+        assertArrayEquals(new int[] {10, 11, 12, 98, 99}, ids(target));
+        assertThrows(IndexOutOfBoundsException.class, () -> RecordFiles.copy(source, target, RECORD_SIZE, 99, 2));
+        assertThrows(IllegalArgumentException.class, () -> RecordFiles.copy(source, source, RECORD_SIZE, 0, 1));
+    }
+
+    @Test
+    void concatenateFiles() throws IOException {
+        Path a = writeRecords("a.dat", 0, 3);
+        Path b = writeRecords("b.dat", 100, 0);
+        Path c = writeRecords("c.dat", 200, 2);
+        Path target = dir.resolve("all.dat");
+        Files.write(target, new byte[7]);
+        assertEquals(5, RecordFiles.concatenate(target, RECORD_SIZE, a, b, c));
+        assertArrayEquals(new int[] {0, 1, 2, 200, 201}, ids(target));
+    }
+
+    @Test
+    void compactByContents() throws IOException {
+        Path source = writeRecords("tombstones.dat", 0, 1000);
+        Path target = dir.resolve("compacted.dat");
+        long kept = RecordFiles.compact(source, target, RECORD_SIZE,
+                (buffer, offset) -> !unpackBoolean(buffer, offset + SIZEOF_INT));
+        assertEquals(750, kept);
+        int[] ids = ids(target);
+        assertEquals(750, ids.length);
+        for (int i = 0, expected = 0; i < ids.length; i++, expected++) {
+            if (expected % 4 == 1) {
+                expected++;
+            }
+            assertEquals(expected, ids[i]);
+        }
+    }
+
+    @Test
+    void compactByIndex() throws IOException {
+        Path source = writeRecords("indexed.dat", 0, 10);
+        Path target = dir.resolve("indexed-compacted.dat");
+        assertEquals(4, RecordFiles.compact(source, target, RECORD_SIZE, i -> i == 0 || i >= 7));
+        assertArrayEquals(new int[] {0, 7, 8, 9}, ids(target));
+        assertEquals(0, RecordFiles.compact(source, target, RECORD_SIZE, i -> false));
+        assertEquals(0, Files.size(target));
+    }
+
+    @Test
+    void rejectsPartialRecords() throws IOException {
+        Path source = dir.resolve("partial.dat");
+        Files.write(source, new byte[RECORD_SIZE + 1]);
+        assertThrows(IOException.class, () -> RecordFiles.concatenate(dir.resolve("out.dat"), RECORD_SIZE, source));
+    }
+
+    @Test
+    void rejectsChecksummedFiles() throws IOException {
+        // With 8-byte records the 12-byte header and the slots would divide the length
+        Path checked = dir.resolve("checked.dat");
+        try (RecordFile file = new RecordFile(checked, 8, RecordFile.DEFAULT_WINDOW_SIZE, true)) {
+            file.append(new byte[8]);
+        }
+        Path plain = writeRecords("plain.dat", 0, 4);
+        Path out = dir.resolve("out.dat");
+        assertThrows(IOException.class, () -> RecordFiles.copy(checked, out, 8, 0, 1));
+        assertThrows(IOException.class, () -> RecordFiles.copy(writeRecords("p8.dat", 0, 0), checked, 8, 0, 0));
+        assertThrows(IOException.class, () -> RecordFiles.concatenate(out, 8, checked));
+        assertThrows(IOException.class, () -> RecordFiles.compact(checked, out, 8, i -> true));
+        assertEquals(4, RecordFiles.concatenate(out, RECORD_SIZE, plain));
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordReaderWriterTest {
+
+    private static final int RECORD_SIZE = SIZEOF_INT + SIZEOF_DOUBLE;
+
+    @TempDir
+    Path dir;
+
+    private void writeRecords(Path path, int count, int blockSize) throws IOException {
+        try (RecordWriter writer = new RecordWriter(path, RECORD_SIZE, blockSize, false)) {
+            for (int i = 0; i < count; i++) {
+                int offset = writer.reserve();
+                packInt(i, writer.buffer(), offset);
+                packDouble(i / 2.0, writer.buffer(), offset + SIZEOF_INT);
+            }
+            assertEquals(count, writer.count());
+        }
+    }
+
+    @Test
+    void writesAndReadsAcrossBlocks() throws IOException {
+        Path path = dir.resolve("records.dat");
+        writeRecords(path, 1000, 7 * RECORD_SIZE);
+        assertEquals(1000L * RECORD_SIZE, Files.size(path));
+        try (RecordReader reader = new RecordReader(path, RECORD_SIZE, 5 * RECORD_SIZE + 3)) {
+            int expected = 0;
+            while (reader.next()) {
+                assertEquals(expected, reader.index());
+                assertEquals(expected, unpackInt(reader.buffer(), reader.offset()));
+                assertEquals(expected / 2.0, unpackDouble(reader.buffer(), reader.offset() + SIZEOF_INT), 0.0);
+                expected++;
+            }
+            assertEquals(1000, expected);
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void readCopiesRecords() throws IOException {
+        Path path = dir.resolve("copy.dat");
+        writeRecords(path, 3, RecordWriter.DEFAULT_BLOCK_SIZE);
+        try (RecordReader reader = new RecordReader(path, RECORD_SIZE)) {
+            byte[] record = new byte[RECORD_SIZE];
+            assertTrue(reader.read(record));
+            assertTrue(reader.read(record));
+            assertEquals(1, unpackInt(record, 0));
+            assertTrue(reader.read(record));
+            assertFalse(reader.read(record));
+        }
+    }
+
+    @Test
+    void appendKeepsExistingRecords() throws IOException {
+        Path path = dir.resolve("append.dat");
+        writeRecords(path, 2, RECORD_SIZE);
+        try (RecordWriter writer = new RecordWriter(path, RECORD_SIZE, RECORD_SIZE, true)) {
+            byte[] record = new byte[RECORD_SIZE];
+            packInt(99, record, 0);
+            writer.write(record);
+        }
+        try (RecordFile file = new RecordFile(path, RECORD_SIZE)) {
+            assertEquals(3, file.size());
+            byte[] record = new byte[RECORD_SIZE];
+            file.read(2, record);
+            assertEquals(99, unpackInt(record, 0));
+        }
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        Path path = dir.resolve("empty.dat");
+        writeRecords(path, 0, RECORD_SIZE);
+        try (RecordReader reader = new RecordReader(path, RECORD_SIZE)) {
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void partialRecordIsAnError() throws IOException {
+        Path path = dir.resolve("partial.dat");
+        Files.write(path, new byte[RECORD_SIZE + 1]);
+        try (RecordReader reader = new RecordReader(path, RECORD_SIZE)) {
+            assertThrows(IOException.class, reader::next);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordViewTest {
+
+    record Person(int id, @MaxLength(10) String name, double salary, boolean active) { }
+
+    static final class PersonView extends RecordView {
+        private static final RecordCodec<Person> CODEC = RecordCodec.of(Person.class);
+        private static final int ID = CODEC.offsetOf("id");
+        private static final int NAME = CODEC.offsetOf("name");
+        private static final int SALARY = CODEC.offsetOf("salary");
+        private static final int ACTIVE = CODEC.offsetOf("active");
+
+        PersonView() {
+            super(CODEC.size());
+        }
+
+        int id() {
+            return intAt(ID);
+        }
+
+        String name() {
+            return stringAt(NAME, 10);
+        }
+
+        double salary() {
+            return doubleAt(SALARY);
+        }
+
+        boolean active() {
+            return booleanAt(ACTIVE);
+        }
+    }
+
+    private static final RecordCodec<Person> CODEC = RecordCodec.of(Person.class);
+
+    @TempDir
+    Path dir;
+
+    private static Person person(int i) {
+        return new Person(i, "p" + i, 100.0 * i, i % 3 == 0);
+    }
+
+    private static byte[] packPeople(int count) {
+        byte[] bytes = new byte[count * CODEC.size()];
+        for (int i = 0; i < count; i++) {
+            CODEC.pack(person(i), bytes, i * CODEC.size());
+        }
+        return bytes;
+    }
+
+    private static void assertView(Person expected, PersonView view) {
+        assertEquals(expected.id(), view.id());
+        assertEquals(expected.name(), view.name());
+        assertEquals(expected.salary(), view.salary());
+        assertEquals(expected.active(), view.active());
+    }
+
+    @Test
+    void readsFieldsOfConsecutiveRecordsInAnArray() {
+        byte[] bytes = packPeople(50);
+        PersonView view = new PersonView();
+        view.wrap(bytes, 0);
+        int i = 0;
+        do {
+            assertEquals(i * CODEC.size(), view.offset());
+            assertView(person(i), view);
+            i++;
+        } while (view.next());
+        assertEquals(50, i);
+        view.wrap(bytes, 7 * CODEC.size());
+        assertView(person(7), view);
+    }
+
+    @Test
+    void readsFieldsFromByteBuffers() {
+        byte[] bytes = packPeople(20);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).position(5);
+        PersonView view = new PersonView();
+        view.wrap(direct, 0);
+        int i = 0;
+        do {
+            assertView(person(i++), view);
+        } while (view.next());
+        assertEquals(20, i);
+        view.wrap(ByteBuffer.wrap(bytes), 19 * CODEC.size());
+        assertView(person(19), view);
+    }
+
+    @Test
+    void followsARecordReader() throws IOException {
+        Path path = dir.resolve("people.dat");
+        try (RecordWriter writer = new RecordWriter(path, CODEC.size())) {
+            for (int i = 0; i < 1000; i++) {
+                CODEC.pack(person(i), writer.buffer(), writer.reserve());
+            }
+        }
+        PersonView view = new PersonView();
+        double total = 0;
+        try (RecordReader reader = new RecordReader(path, CODEC.size(), 4096)) {
+            while (reader.next()) {
+                view.wrap(reader.buffer(), reader.offset());
+                if (view.active()) {
+                    total += view.salary();
+                }
+            }
+        }
+        double expected = 0;
+        for (int i = 0; i < 1000; i += 3) {
+            expected += 100.0 * i;
+        }
+        assertEquals(expected, total);
+    }
+
+    @Test
+    void scanningDoesNotAllocate() {
+        int count = 1_000_000;
+        byte[] bytes = new byte[count * CODEC.size()];
+        for (int i = 0; i < count; i += 1000) {
+            CODEC.pack(person(i), bytes, i * CODEC.size());
+        }
+        PersonView view = new PersonView();
+        long sum = scan(view, bytes);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        sum += scan(view, bytes);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        // A single object per record would already take more than 16 MB
+        assertTrue(allocated < 64 * 1024, allocated + " bytes allocated");
+        // Ids 1000, 2000, ..., 999000, summed by both scans
+        assertEquals(2 * 1000L * (999 * 1000 / 2), sum);
+    }
+
+    private static long scan(PersonView view, byte[] bytes) {
+        long sum = 0;
+        view.wrap(bytes, 0);
+        do {
+            if (view.salary() > 0.0) {
+                sum += view.id();
+            }
+        } while (view.next());
+        return sum;
+    }
+
+    record Label(@MaxLength(value = 6, encoding = MaxLength.Encoding.LATIN1) String code,
+                 @MaxLength(value = 8, encoding = MaxLength.Encoding.UTF8) String text) { }
+
+    static final class LabelView extends RecordView {
+        private static final RecordCodec<Label> CODEC = RecordCodec.of(Label.class);
+        private static final int CODE = CODEC.offsetOf("code");
+        private static final int TEXT = CODEC.offsetOf("text");
+
+        LabelView() {
+            super(CODEC.size());
+        }
+
+        String code() {
+            return latin1StringAt(CODE, 6);
+        }
+
+        String text() {
+            return utf8StringAt(TEXT, 8);
+        }
+    }
+
+    @Test
+    void readsCompactStrings() {
+        RecordCodec<Label> codec = RecordCodec.of(Label.class);
+        Label[] labels = {new Label("año", "camión"), new Label("abcdef", "añoaño")};
+        byte[] bytes = new byte[labels.length * codec.size()];
+        for (int i = 0; i < labels.length; i++) {
+            codec.pack(labels[i], bytes, i * codec.size());
+        }
+        LabelView view = new LabelView();
+        for (ByteBuffer buffer : new ByteBuffer[] {null, ByteBuffer.wrap(bytes), ByteBuffer.allocateDirect(bytes.length)}) {
+            if (buffer == null) {
+                view.wrap(bytes, 0);
+            } else {
+                buffer.put(0, bytes);
+                view.wrap(buffer, 0);
+            }
+            for (Label label : labels) {
+                assertEquals(label.code(), view.code());
+                assertEquals(label.text(), view.text());
+                view.next();
+            }
+        }
+    }
+
+    @Test
+    void rejectsRecordsOutsideTheBackingStore() {
+        PersonView view = new PersonView();
+        assertThrows(IllegalStateException.class, view::next);
+        byte[] bytes = packPeople(2);
+        assertThrows(IndexOutOfBoundsException.class, () -> view.wrap(bytes, CODEC.size() + 1));
+        view.wrap(bytes, 1);
+        assertFalse(view.next());
+        assertEquals(1, view.offset());
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] entry(int value, int length) {
+        byte[] entry = new byte[SIZEOF_INT + length];
+        packInt(value, entry, 0);
+        return entry;
+    }
+
+    private static List<Integer> values(WriteAheadLog log) throws IOException {
+        List<Integer> values = new ArrayList<>();
+        log.replay((position, buffer, offset, length) -> values.add(unpackInt(buffer, offset)));
+        return values;
+    }
+
+    @Test
+    void appendAndReplay() throws IOException {
+        Path path = dir.resolve("events.log");
+        try (WriteAheadLog log = new WriteAheadLog(path)) {
+            assertEquals(0, log.append(entry(1, 0)));
+            assertEquals(WriteAheadLog.HEADER_SIZE + SIZEOF_INT, log.append(entry(2, 100_000)));
+            log.append(entry(3, 10));
+        }
+        try (WriteAheadLog log = new WriteAheadLog(path)) {
+            assertEquals(List.of(1, 2, 3), values(log));
+            log.append(entry(4, 0));
+            assertEquals(List.of(1, 2, 3, 4), values(log));
+            assertEquals(Files.size(path), log.size());
+        }
+    }
+
+    @Test
+    void concurrentAppendsShareForces() throws Exception {
+        Path path = dir.resolve("concurrent.log");
+        int threads = 8;
+        int perThread = 200;
+        try (WriteAheadLog log = new WriteAheadLog(path)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int base = t * perThread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        log.append(entry(base + i, i % 50));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+            assertTrue(log.syncs() <= threads * perThread);
+            List<Integer> values = values(log);
+            assertEquals(threads * perThread, values.size());
+            boolean[] seen = new boolean[threads * perThread];
+            for (int value : values) {
+                assertFalse(seen[value]);
+                seen[value] = true;
+            }
+        }
+    }
+
+    @Test
+    void recoveryStopsAtTornTail() throws IOException {
+        Path path = dir.resolve("torn.log");
+        long secondEnd;
+        try (WriteAheadLog log = new WriteAheadLog(path)) {
+            log.append(entry(1, 20));
+            log.append(entry(2, 20));
+            secondEnd = log.size();
+            log.append(entry(3, 20));
+        }
+        // Cut the last entry in half
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(secondEnd + 10);
+        }
+        try (WriteAheadLog log = new WriteAheadLog(path)) {
+            assertEquals(List.of(1, 2), values(log));
+            assertEquals(secondEnd, Files.size(path));
+            log.append(entry(4, 0));
+            assertEquals(List.of(1, 2, 4), values(log));
+        }
+    }
+
+    @Test
+    void recoveryStopsAtCorruptEntry() throws IOException {
+        Path path = dir.resolve("corrupt.log");
+        try (WriteAheadLog log = new WriteAheadLog(path)) {
+            log.append(entry(1, 0));
+            log.append(entry(2, 0));
+            log.append(entry(3, 0));
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[2 * WriteAheadLog.HEADER_SIZE + SIZEOF_INT + 2] ^= 1;
+        Files.write(path, bytes);
+        try (WriteAheadLog log = new WriteAheadLog(path)) {
+            assertEquals(List.of(1), values(log));
+        }
+    }
+
+    @Test
+    void appendAfterCloseFails() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(dir.resolve("closed.log"));
+        log.close();
+        assertThrows(IOException.class, () -> log.append(new byte[1]));
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.udlepsprog2.prog2lib.fileutils;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static io.github.udlepsprog2.prog2lib.fileutils.PackUtils.*;
+
+/**
+ * {@link BulkCodec} built on the {@code jdk.incubator.vector} module. Each step
+ * loads a whole vector of bytes, reinterprets it as lanes of the element type
+ * and reverses the bytes of every lane (reinterpretation is little-endian on
+ * all platforms), or the other way round when packing. Elements that do not
+ * fill a whole vector go through {@link ScalarBulkCodec}.
+ * <p>
+ * This class lives in its own source set, compiled with
+ * {@code --add-modules jdk.incubator.vector}, and is only reached through
+ * {@link BulkCodec#load(String)}: without the module it fails to link and
+ * {@link PackUtils} keeps the scalar codec.
+ * </p>
+ */
+final class VectorBulkCodec implements BulkCodec {
+
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    // The bit patterns Float.floatToIntBits and Double.doubleToLongBits give every NaN
+    private static final int CANONICAL_FLOAT_NAN = Float.floatToIntBits(Float.NaN);
+    private static final long CANONICAL_DOUBLE_NAN = Double.doubleToLongBits(Double.NaN);
+
+    private static final BulkCodec SCALAR = ScalarBulkCodec.INSTANCE;
+
+    /**
+     * Creates the codec.
+     *
+     * @throws UnsupportedOperationException if the platform has no vectors of
+     *         at least 128 bits, on which the Vector API would be slower than
+     *         the scalar loops
+     */
+    VectorBulkCodec() {
+        if (BYTES.vectorBitSize() < 128) {
+            throw new UnsupportedOperationException("no vector hardware");
+        }
+    }
+
+    @Override
+    public void packInts(int[] src, int srcOff, int len, byte[] buffer, int offset) {
+        int i = 0;
+        for (int bound = INTS.loopBound(len); i < bound; i += INTS.length()) {
+            IntVector.fromArray(INTS, src, srcOff + i)
+                    .lanewise(VectorOperators.REVERSE_BYTES)
+                    .reinterpretAsBytes()
+                    .intoArray(buffer, offset + SIZEOF_INT * i);
+        }
+        SCALAR.packInts(src, srcOff + i, len - i, buffer, offset + SIZEOF_INT * i);
+    }
+
+    @Override
+    public void unpackInts(byte[] buffer, int offset, int[] dst, int dstOff, int len) {
+        int i = 0;
+        for (int bound = INTS.loopBound(len); i < bound; i += INTS.length()) {
+            ByteVector.fromArray(BYTES, buffer, offset + SIZEOF_INT * i)
+                    .reinterpretAsInts()
+                    .lanewise(VectorOperators.REVERSE_BYTES)
+                    .intoArray(dst, dstOff + i);
+        }
+        SCALAR.unpackInts(buffer, offset + SIZEOF_INT * i, dst, dstOff + i, len - i);
+    }
+
+    @Override
+    public void packLongs(long[] src, int srcOff, int len, byte[] buffer, int offset) {
+        int i = 0;
+        for (int bound = LONGS.loopBound(len); i < bound; i += LONGS.length()) {
+            LongVector.fromArray(LONGS, src, srcOff + i)
+                    .lanewise(VectorOperators.REVERSE_BYTES)
+                    .reinterpretAsBytes()
+                    .intoArray(buffer, offset + SIZEOF_LONG * i);
+        }
+        SCALAR.packLongs(src, srcOff + i, len - i, buffer, offset + SIZEOF_LONG * i);
+    }
+
+    @Override
+    public void unpackLongs(byte[] buffer, int offset, long[] dst, int dstOff, int len) {
+        int i = 0;
+        for (int bound = LONGS.loopBound(len); i < bound; i += LONGS.length()) {
+            ByteVector.fromArray(BYTES, buffer, offset + SIZEOF_LONG * i)
+                    .reinterpretAsLongs()
+                    .lanewise(VectorOperators.REVERSE_BYTES)
+                    .intoArray(dst, dstOff + i);
+        }
+        SCALAR.unpackLongs(buffer, offset + SIZEOF_LONG * i, dst, dstOff + i, len - i);
+    }
+
+    @Override
+    public void packFloats(float[] src, int srcOff, int len, byte[] buffer, int offset) {
+        int i = 0;
+        for (int bound = FLOATS.loopBound(len); i < bound; i += FLOATS.length()) {
+            FloatVector v = FloatVector.fromArray(FLOATS, src, srcOff + i);
+            // Only NaN compares unequal to itself
+            VectorMask<Integer> nan = v.compare(VectorOperators.NE, v).cast(INTS);
+            v.reinterpretAsInts()
+                    .blend(CANONICAL_FLOAT_NAN, nan)
+                    .lanewise(VectorOperators.REVERSE_BYTES)
+                    .reinterpretAsBytes()
+                    .intoArray(buffer, offset + SIZEOF_FLOAT * i);
+        }
+        SCALAR.packFloats(src, srcOff + i, len - i, buffer, offset + SIZEOF_FLOAT * i);
+    }
+
+    @Override
+    public void unpackFloats(byte[] buffer, int offset, float[] dst, int dstOff, int len) {
+        int i = 0;
+        for (int bound = FLOATS.loopBound(len); i < bound; i += FLOATS.length()) {
+            ByteVector.fromArray(BYTES, buffer, offset + SIZEOF_FLOAT * i)
+                    .reinterpretAsInts()
+                    .lanewise(VectorOperators.REVERSE_BYTES)
+                    .reinterpretAsFloats()
+                    .intoArray(dst, dstOff + i);
+        }
+        SCALAR.unpackFloats(buffer, offset + SIZEOF_FLOAT * i, dst, dstOff + i, len - i);
+    }
+
+    @Override
+    public void packDoubles(double[] src, int srcOff, int len, byte[] buffer, int offset) {
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(len); i < bound; i += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, src, srcOff + i);
+            VectorMask<Long> nan = v.compare(VectorOperators.NE, v).cast(LONGS);
+            v.reinterpretAsLongs()
+                    .blend(CANONICAL_DOUBLE_NAN, nan)
+                    .lanewise(VectorOperators.REVERSE_BYTES)
+                    .reinterpretAsBytes()
+                    .intoArray(buffer, offset + SIZEOF_DOUBLE * i);
+        }
+        SCALAR.packDoubles(src, srcOff + i, len - i, buffer, offset + SIZEOF_DOUBLE * i);
+    }
+
+    @Override
+    public void unpackDoubles(byte[] buffer, int offset, double[] dst, int dstOff, int len) {
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(len); i < bound; i += DOUBLES.length()) {
+            ByteVector.fromArray(BYTES, buffer, offset + SIZEOF_DOUBLE * i)
+                    .reinterpretAsLongs()
+                    .lanewise(VectorOperators.REVERSE_BYTES)
+                    .reinterpretAsDoubles()
+                    .intoArray(dst, dstOff + i);
+        }
+        SCALAR.unpackDoubles(buffer, offset + SIZEOF_DOUBLE * i, dst, dstOff + i, len - i);
+    }
+}